@@ -0,0 +1,71 @@
+package com.ezxuen.studytracker;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * AppExecutors provides the shared threads used by the Study Tracker app.
+ * Database and file work runs on a single background thread so that writes
+ * are applied in order, while UI updates are posted back to the main thread.
+ * Maintenance (archiving, purging, rebuilding derived tables) runs on a separate
+ * background-priority thread, so it never queues in front of work the UI waits for.
+ */
+public final class AppExecutors {
+    private static final Executor DISK_IO = Executors.newSingleThreadExecutor();
+    private static final Executor MAINTENANCE = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        runnable.run();
+    }, "maintenance"));
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private AppExecutors() {
+    }
+
+    /**
+     * Gets the executor used for database and file access.
+     * @return The single-threaded disk I/O executor.
+     */
+    public static Executor diskIO() {
+        return DISK_IO;
+    }
+
+    /**
+     * Gets the executor used for database maintenance that nothing on screen waits for.
+     * Its writes still take the database lock, so they are kept in small transactions.
+     * @return The single-threaded, background-priority maintenance executor.
+     */
+    public static Executor maintenance() {
+        return MAINTENANCE;
+    }
+
+    /**
+     * Posts a task to the main (UI) thread.
+     * @param runnable The task to run on the main thread.
+     */
+    public static void runOnMain(Runnable runnable) {
+        MAIN_HANDLER.post(runnable);
+    }
+
+    /**
+     * Posts a task to the main thread after a delay, replacing any earlier
+     * pending post of the same task.
+     * @param runnable The task to run on the main thread.
+     * @param delayMillis The delay in milliseconds.
+     */
+    public static void runOnMainDelayed(Runnable runnable, long delayMillis) {
+        MAIN_HANDLER.removeCallbacks(runnable);
+        MAIN_HANDLER.postDelayed(runnable, delayMillis);
+    }
+
+    /**
+     * Cancels any pending post of a task to the main thread.
+     * @param runnable The task posted with {@link #runOnMainDelayed(Runnable, long)}.
+     */
+    public static void cancelOnMain(Runnable runnable) {
+        MAIN_HANDLER.removeCallbacks(runnable);
+    }
+}
@@ -0,0 +1,437 @@
+package com.ezxuen.studytracker;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * ChangeLog records every task write made through {@link DatabaseHelper} for the
+ * {@link SyncEngine}. Tasks are identified across devices by their `uid` column.
+ *
+ * Each written field becomes one row in `change_log`, with an increasing sequence number
+ * and a clock value used to resolve conflicts. The log holds at most one row per task and
+ * field: a newer write replaces the older row (and gets a new sequence number), so a field
+ * edited many times between syncs is pushed once. Rows are deleted once the server has
+ * acknowledged them.
+ *
+ * `field_clock` keeps the clock and device of the write that set each field's current value,
+ * so that a change pulled from the server is only applied if it is newer (last writer wins
+ * per field). Clocks are milliseconds that never go backwards and always move past any
+ * clock seen from another device.
+ *
+ * A task created on another device can arrive spread over several pull batches. Its row is
+ * inserted as a placeholder, hidden behind a deleted_at that is never purged, and is shown
+ * once every synced field has been applied.
+ */
+final class ChangeLog {
+    // Table and column names
+    static final String TABLE_CHANGE_LOG = "change_log";
+    static final String TABLE_FIELD_CLOCK = "field_clock";
+    static final String TABLE_SYNC_STATE = "sync_state";
+    static final String SEQ = "seq";
+    static final String FIELD = "field";
+    static final String VALUE = "value";
+    static final String CLOCK = "clock";
+    static final String DEVICE = "device";
+    static final String NAME = "name";
+
+    // Rows of the sync state table
+    static final String KEY_DEVICE_ID = "device_id";
+    static final String KEY_PULL_CURSOR = "pull_cursor";
+
+    // Task columns that are synced; recurrence links are local to a device and are not
+    static final String[] FIELDS = {DatabaseHelper.NAME, DatabaseHelper.TOPIC, DatabaseHelper.STATUS,
+            DatabaseHelper.DURATION, DatabaseHelper.DATE, DatabaseHelper.DELETED_AT, DatabaseHelper.COMPLETED_DATE};
+
+    // deleted_at of a placeholder row; later than any purge cutoff, so it is never purged
+    static final long PLACEHOLDER_DELETED_AT = Long.MAX_VALUE;
+
+    private String deviceId;
+    private long lastClock = -1;
+    private LongSupplier wallClock = System::currentTimeMillis;
+
+    /**
+     * Creates the sync tables and logs every existing task, so that the first sync uploads them.
+     * The existing fields get clock 0, so any write from another device wins over them.
+     * @param db The database being upgraded; every task must already have a uid.
+     */
+    static void createTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_CHANGE_LOG + " (" + SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + DatabaseHelper.UID + " TEXT NOT NULL, " + FIELD + " TEXT NOT NULL, " + VALUE + " TEXT, "
+                + CLOCK + " INTEGER NOT NULL, UNIQUE (" + DatabaseHelper.UID + ", " + FIELD + "))");
+        db.execSQL("CREATE TABLE " + TABLE_FIELD_CLOCK + " (" + DatabaseHelper.UID + " TEXT NOT NULL, "
+                + FIELD + " TEXT NOT NULL, " + CLOCK + " INTEGER NOT NULL, " + DEVICE + " TEXT NOT NULL, "
+                + "PRIMARY KEY (" + DatabaseHelper.UID + ", " + FIELD + ")) WITHOUT ROWID");
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_STATE + " (" + NAME + " TEXT PRIMARY KEY, " + VALUE + " TEXT)");
+
+        ContentValues device = new ContentValues();
+        device.put(NAME, KEY_DEVICE_ID);
+        device.put(VALUE, UUID.randomUUID().toString());
+        db.insert(TABLE_SYNC_STATE, null, device);
+
+        for (String field : FIELDS) {
+            db.execSQL("INSERT INTO " + TABLE_CHANGE_LOG + " (" + DatabaseHelper.UID + ", " + FIELD + ", " + VALUE
+                    + ", " + CLOCK + ") SELECT " + DatabaseHelper.UID + ", '" + field + "', " + field
+                    + ", 0 FROM " + DatabaseHelper.TABLE_TASKS);
+        }
+    }
+
+    /**
+     * Creates a new uid for a task.
+     * @return A random uid.
+     */
+    static String newUid() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Gets this device's id, used to break ties between writes with the same clock.
+     * @param db The database.
+     * @return The device id.
+     */
+    synchronized String getDeviceId(SQLiteDatabase db) {
+        if (deviceId == null) {
+            deviceId = getState(db, KEY_DEVICE_ID);
+        }
+        return deviceId;
+    }
+
+    /**
+     * Gets the clock value for a new write.
+     * @param db The database, to read the latest known clock on first use.
+     * @return A clock value larger than every clock seen so far.
+     */
+    synchronized long nextClock(SQLiteDatabase db) {
+        observeClock(db, 0);
+        lastClock = Math.max(wallClock.getAsLong(), lastClock + 1);
+        return lastClock;
+    }
+
+    /**
+     * Replaces the time source of new clock values, so tests can order writes made on
+     * different devices.
+     * @param wallClock Returns the current time in milliseconds.
+     */
+    synchronized void setWallClock(LongSupplier wallClock) {
+        this.wallClock = wallClock;
+    }
+
+    /**
+     * Moves the clock past a clock value seen in a change from another device.
+     * @param db The database, to read the latest known clock on first use.
+     * @param clock The clock value seen.
+     */
+    synchronized void observeClock(SQLiteDatabase db, long clock) {
+        if (lastClock == -1) {
+            Cursor cursor = db.rawQuery("SELECT MAX(" + CLOCK + ") FROM " + TABLE_FIELD_CLOCK, null);
+            lastClock = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+            cursor.close();
+        }
+        lastClock = Math.max(lastClock, clock);
+    }
+
+    /**
+     * Gets the synced columns among some written columns.
+     * @param columns The written columns.
+     * @return The synced columns, in {@link #FIELDS} order.
+     */
+    static List<String> syncedFields(Collection<String> columns) {
+        List<String> synced = new ArrayList<>();
+        for (String field : FIELDS) {
+            if (columns.contains(field)) {
+                synced.add(field);
+            }
+        }
+        return synced;
+    }
+
+    /**
+     * Reads the synced fields of the tasks matching a condition, before they are written.
+     * @param db The database.
+     * @param condition The WHERE clause, without "WHERE".
+     * @param args The arguments of the condition.
+     * @param fields The synced columns to read.
+     * @return The values of the fields by task uid.
+     */
+    Map<String, String[]> snapshot(SQLiteDatabase db, String condition, String[] args, List<String> fields) {
+        Map<String, String[]> rows = new HashMap<>();
+        if (fields.isEmpty()) {
+            return rows;
+        }
+        Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.UID + ", " + TextUtils.join(", ", fields)
+                + " FROM " + DatabaseHelper.TABLE_TASKS + " WHERE " + condition, args);
+        while (cursor.moveToNext()) {
+            if (!cursor.isNull(0)) {
+                String[] values = new String[fields.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = cursor.getString(i + 1);
+                }
+                rows.put(cursor.getString(0), values);
+            }
+        }
+        cursor.close();
+        return rows;
+    }
+
+    /**
+     * Logs the fields that a local write changed. Must run inside the write's transaction.
+     * @param db The writable database.
+     * @param before The values of the fields before the write by task uid, as returned by
+     *               {@link #snapshot}; a null value marks an inserted task, whose fields are all logged.
+     * @param fields The synced columns that were written.
+     */
+    void record(SQLiteDatabase db, Map<String, String[]> before, List<String> fields) {
+        if (before.isEmpty() || fields.isEmpty()) {
+            return;
+        }
+        long clock = nextClock(db);
+        String device = getDeviceId(db);
+
+        SQLiteStatement logChange = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_CHANGE_LOG
+                + " (" + DatabaseHelper.UID + ", " + FIELD + ", " + VALUE + ", " + CLOCK + ") VALUES (?, ?, ?, ?)");
+        SQLiteStatement setClock = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_FIELD_CLOCK
+                + " (" + DatabaseHelper.UID + ", " + FIELD + ", " + CLOCK + ", " + DEVICE + ") VALUES (?, ?, ?, ?)");
+        List<String> uids = new ArrayList<>(before.keySet());
+        for (int start = 0; start < uids.size(); start += DatabaseHelper.MAX_BOUND_IDS) {
+            List<String> chunk = uids.subList(start, Math.min(start + DatabaseHelper.MAX_BOUND_IDS, uids.size()));
+            Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.UID + ", " + TextUtils.join(", ", fields)
+                    + " FROM " + DatabaseHelper.TABLE_TASKS + " WHERE " + DatabaseHelper.UID + " IN ("
+                    + TextUtils.join(",", Collections.nCopies(chunk.size(), "?")) + ")", chunk.toArray(new String[0]));
+            while (cursor.moveToNext()) {
+                String uid = cursor.getString(0);
+                String[] old = before.get(uid);
+                for (int i = 0; i < fields.size(); i++) {
+                    String value = cursor.getString(i + 1);
+                    if (old != null && TextUtils.equals(old[i], value)) {
+                        continue;
+                    }
+                    logChange.clearBindings();
+                    logChange.bindString(1, uid);
+                    logChange.bindString(2, fields.get(i));
+                    if (value != null) {
+                        logChange.bindString(3, value);
+                    }
+                    logChange.bindLong(4, clock);
+                    logChange.executeInsert();
+
+                    setClock.bindString(1, uid);
+                    setClock.bindString(2, fields.get(i));
+                    setClock.bindLong(3, clock);
+                    setClock.bindString(4, device);
+                    setClock.executeInsert();
+                }
+            }
+            cursor.close();
+        }
+        logChange.close();
+        setClock.close();
+    }
+
+    /**
+     * Reads the oldest changes that have not been acknowledged by the server.
+     * @param db The database.
+     * @param limit The maximum number of changes to read.
+     * @return The changes in sequence order.
+     */
+    List<SyncTransport.Change> readPending(SQLiteDatabase db, int limit) {
+        String device = getDeviceId(db);
+        List<SyncTransport.Change> changes = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT " + SEQ + ", " + DatabaseHelper.UID + ", " + FIELD + ", " + VALUE
+                + ", " + CLOCK + " FROM " + TABLE_CHANGE_LOG + " ORDER BY " + SEQ + " LIMIT " + limit, null);
+        while (cursor.moveToNext()) {
+            changes.add(new SyncTransport.Change(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                    cursor.getString(3), cursor.getLong(4), device));
+        }
+        cursor.close();
+        return changes;
+    }
+
+    /**
+     * Deletes the changes the server has stored. A field written again since it was read
+     * has a newer sequence number and is kept for the next push.
+     * @param db The writable database.
+     * @param seq The sequence number of the last acknowledged change.
+     * @return The number of log rows deleted.
+     */
+    int acknowledge(SQLiteDatabase db, long seq) {
+        return db.delete(TABLE_CHANGE_LOG, SEQ + " <= ?", new String[]{String.valueOf(seq)});
+    }
+
+    /**
+     * Checks whether a pulled change is newer than the write that set the field's current value.
+     * Ties on the clock are broken by device id, so every device picks the same winner.
+     * @param db The database.
+     * @param change The pulled change.
+     * @return true if the change should be applied, false if it is older or not a synced field.
+     */
+    boolean isNewer(SQLiteDatabase db, SyncTransport.Change change) {
+        if (!Arrays.asList(FIELDS).contains(change.getField())) {
+            return false;
+        }
+        Cursor cursor = db.rawQuery("SELECT " + CLOCK + ", " + DEVICE + " FROM " + TABLE_FIELD_CLOCK
+                + " WHERE " + DatabaseHelper.UID + " = ? AND " + FIELD + " = ?",
+                new String[]{change.getUid(), change.getField()});
+        boolean newer = true;
+        if (cursor.moveToFirst()) {
+            long clock = cursor.getLong(0);
+            newer = change.getClock() > clock
+                    || (change.getClock() == clock && change.getDevice().compareTo(cursor.getString(1)) > 0);
+        }
+        cursor.close();
+        return newer;
+    }
+
+    /**
+     * Checks whether a pulled value fits its column: dates in "yyyy-MM-dd" format, a known
+     * status, a non-negative duration, and a name and topic that are set.
+     * @param field The synced column.
+     * @param value The pulled value.
+     * @return true if the value can be written to the column.
+     */
+    static boolean isValid(String field, String value) {
+        switch (field) {
+            case DatabaseHelper.NAME:
+            case DatabaseHelper.TOPIC:
+                return value != null;
+            case DatabaseHelper.STATUS:
+                return "pending".equals(value) || "completed".equals(value);
+            case DatabaseHelper.DURATION:
+                return value != null && value.matches("\\d{1,9}");
+            case DatabaseHelper.DATE:
+                return isDate(value);
+            case DatabaseHelper.COMPLETED_DATE:
+                return value == null || isDate(value);
+            case DatabaseHelper.DELETED_AT:
+                return value == null || value.matches("\\d{1,18}");
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isDate(String value) {
+        // Formatting the parsed day again rejects dates such as 2025-02-30
+        return value != null && value.matches("\\d{4}-\\d{2}-\\d{2}")
+                && EpochDay.format(EpochDay.parse(value)).equals(value);
+    }
+
+    /**
+     * Finds the row of the task a pulled change applies to, inserting a hidden placeholder
+     * row for a task created on another device, until its other fields arrive.
+     * @param db The writable database.
+     * @param uid The uid of the task.
+     * @return The row ID, or -1 if the task was archived or purged on this device.
+     */
+    long findOrCreateTask(SQLiteDatabase db, String uid) {
+        Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.ID + " FROM " + DatabaseHelper.TABLE_TASKS
+                + " WHERE " + DatabaseHelper.UID + " = ?", new String[]{uid});
+        long id = cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        cursor.close();
+        if (id != -1) {
+            return id;
+        }
+
+        // A known uid without a row has left the table on this device
+        cursor = db.rawQuery("SELECT 1 FROM " + TABLE_FIELD_CLOCK + " WHERE " + DatabaseHelper.UID + " = ? LIMIT 1",
+                new String[]{uid});
+        boolean known = cursor.moveToFirst();
+        cursor.close();
+        if (known) {
+            return -1;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.UID, uid);
+        values.put(DatabaseHelper.NAME, "");
+        values.put(DatabaseHelper.TOPIC, "");
+        values.put(DatabaseHelper.STATUS, "pending");
+        values.put(DatabaseHelper.DURATION, 0);
+        values.put(DatabaseHelper.DATE, EpochDay.format(EpochDay.today()));
+        values.put(DatabaseHelper.DELETED_AT, PLACEHOLDER_DELETED_AT);
+        return db.insert(DatabaseHelper.TABLE_TASKS, null, values);
+    }
+
+    /**
+     * Checks whether a row is a placeholder whose task has not fully arrived.
+     * @param db The database.
+     * @param id The row ID.
+     * @return true if the row is still hidden as a placeholder.
+     */
+    static boolean isPlaceholder(SQLiteDatabase db, long id) {
+        Cursor cursor = db.rawQuery("SELECT 1 FROM " + DatabaseHelper.TABLE_TASKS + " WHERE " + DatabaseHelper.ID
+                + " = ? AND " + DatabaseHelper.DELETED_AT + " = " + PLACEHOLDER_DELETED_AT,
+                new String[]{String.valueOf(id)});
+        boolean placeholder = cursor.moveToFirst();
+        cursor.close();
+        return placeholder;
+    }
+
+    /**
+     * Shows a placeholder row once a value has been accepted for every synced field of its task.
+     * A task deleted on the other device has its own deleted_at by then and stays hidden.
+     * @param db The writable database.
+     * @param id The row ID.
+     * @param uid The uid of the task.
+     */
+    static void revealIfComplete(SQLiteDatabase db, long id, String uid) {
+        db.execSQL("UPDATE " + DatabaseHelper.TABLE_TASKS + " SET " + DatabaseHelper.DELETED_AT + " = NULL WHERE "
+                + DatabaseHelper.ID + " = ? AND " + DatabaseHelper.DELETED_AT + " = " + PLACEHOLDER_DELETED_AT
+                + " AND (SELECT COUNT(*) FROM " + TABLE_FIELD_CLOCK + " WHERE " + DatabaseHelper.UID + " = ?) = "
+                + FIELDS.length, new Object[]{id, uid});
+    }
+
+    /**
+     * Records that a pulled change set a field's value: its clock becomes the field's clock,
+     * and a local change to the same field that lost to it is no longer pushed.
+     * @param db The writable database.
+     * @param change The applied change.
+     */
+    void accept(SQLiteDatabase db, SyncTransport.Change change) {
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.UID, change.getUid());
+        values.put(FIELD, change.getField());
+        values.put(CLOCK, change.getClock());
+        values.put(DEVICE, change.getDevice());
+        db.insertWithOnConflict(TABLE_FIELD_CLOCK, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        db.delete(TABLE_CHANGE_LOG, DatabaseHelper.UID + " = ? AND " + FIELD + " = ? AND " + CLOCK + " <= ?",
+                new String[]{change.getUid(), change.getField(), String.valueOf(change.getClock())});
+    }
+
+    /**
+     * Reads a value from the sync state table.
+     * @param db The database.
+     * @param name The name of the value.
+     * @return The value, or null if it is not set.
+     */
+    static String getState(SQLiteDatabase db, String name) {
+        Cursor cursor = db.rawQuery("SELECT " + VALUE + " FROM " + TABLE_SYNC_STATE + " WHERE " + NAME + " = ?",
+                new String[]{name});
+        String value = cursor.moveToFirst() ? cursor.getString(0) : null;
+        cursor.close();
+        return value;
+    }
+
+    /**
+     * Writes a value to the sync state table.
+     * @param db The writable database.
+     * @param name The name of the value.
+     * @param value The value.
+     */
+    static void putState(SQLiteDatabase db, String name, String value) {
+        ContentValues values = new ContentValues();
+        values.put(NAME, name);
+        values.put(VALUE, value);
+        db.insertWithOnConflict(TABLE_SYNC_STATE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
@@ -5,14 +5,37 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * DatabaseHelper manages the SQLite database for the Study Tracker app.
- * It provides methods to perform CRUD operations on the `tasks` table.
+ * It provides methods to perform CRUD operations on the `tasks` table, and stores
+ * recurring tasks as rules in the `recurrences` table (see {@link RecurrenceRule}).
+ * A single shared instance is used by the whole app, so the connection is kept
+ * open for the lifetime of the process instead of being closed after each write.
+ * Recent results of the lookup and list queries are kept in a {@link QueryCache},
+ * which every write invalidates.
  */
 public class DatabaseHelper extends SQLiteOpenHelper {
+    private static final String TAG = "DatabaseHelper";
     private static final String DATABASE_NAME = "StudyTracker.db";
-    private static final int DATABASE_VERSION = 3;
+    public static final String ARCHIVE_DATABASE_NAME = "StudyTracker-archive.db";
+    public static final String ARCHIVE_SCHEMA = "archive";
+    private static final int DATABASE_VERSION = 12;
 
     // Table and column names
     public static final String TABLE_TASKS = "tasks";
@@ -22,17 +45,189 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String STATUS = "status";
     public static final String DURATION = "duration";
     public static final String DATE = "date";
+    public static final String DELETED_AT = "deleted_at";
+    public static final String RECURRENCE_ID = "recurrence_id";
+    public static final String OCCURRENCE_DATE = "occurrence_date";
+    public static final String COMPLETED_DATE = "completed_date";
+    public static final String UID = "uid";
+
+    // Recurrence rule table and column names
+    public static final String TABLE_RECURRENCES = "recurrences";
+    public static final String FREQUENCY = "frequency";
+    public static final String REPEAT_INTERVAL = "repeat_interval";
+    public static final String WEEKDAYS = "weekdays";
+    public static final String START_DATE = "start_date";
+    public static final String UNTIL_DATE = "until_date";
+    public static final String REPEAT_COUNT = "repeat_count";
+
+    // Condition that excludes soft-deleted tasks; every query over live tasks includes it
+    public static final String NOT_DELETED = DELETED_AT + " IS NULL";
+
+    // Condition of the partial index over live pending tasks; queries must repeat it
+    // literally (not as a bound argument) for SQLite to use that index
+    public static final String PENDING = STATUS + " = 'pending' AND " + NOT_DELETED;
+
+    // Default number of rows fetched per query when streaming tasks
+    public static final int STREAM_CHUNK_SIZE = 256;
+
+    // Maximum number of IDs bound in one IN (...) clause (SQLite allows 999 variables)
+    static final int MAX_BOUND_IDS = 500;
+
+    // Estimated size of the query results kept in memory (see QueryCache)
+    private static final long QUERY_CACHE_BYTES = 1024 * 1024;
+
+    // Tables read by the cached queries
+    private static final String[] TASK_TABLES = {TABLE_TASKS};
+    private static final String[] OCCURRENCE_TABLES = {TABLE_RECURRENCES, TABLE_TASKS};
+
+    private static DatabaseHelper instance;
+
+    private final Context context;
+    private final StatsEngine statsEngine = new StatsEngine(this);
+    private final ChangeLog changeLog = new ChangeLog();
+    private final QueryCache queryCache = new QueryCache(QUERY_CACHE_BYTES);
+    private final TagIndex tagIndex = new TagIndex(this);
+    private final List<TaskChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Listener notified after tasks are written, so derived state (alarms, caches, counters)
+     * can be updated from the change instead of being recomputed from the whole table.
+     * Callbacks run on the thread that made the write and should hand off any slow work.
+     */
+    public interface TaskChangeListener {
+        /**
+         * Called after a single task was inserted, updated, deleted, or restored.
+         * @param before The task as it was before the write, or null if it was inserted or restored.
+         * @param after The task as it is after the write, or null if it was deleted.
+         */
+        void onTaskChanged(Task before, Task after);
+
+        /**
+         * Called after a write that changed several tasks at once (bulk actions, archiving,
+         * recurrence rules); any state derived from tasks should be recomputed.
+         */
+        void onTasksChanged();
+    }
 
     /**
      * Constructor for DatabaseHelper.
      * @param context The context in which the database is accessed.
      */
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    private DatabaseHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Constructor for a DatabaseHelper on a database file other than the app's own.
+     * Used by tests, which need isolated databases.
+     * @param context The context in which the database is accessed.
+     * @param name The database file name, or null for an in-memory database.
+     */
+    DatabaseHelper(Context context, String name) {
+        this(context, name, null);
+    }
+
+    /**
+     * Constructor for a DatabaseHelper whose cursors are created by a custom factory.
+     * Used by tests that inspect the SQL each query runs.
+     * @param context The context in which the database is accessed.
+     * @param name The database file name, or null for an in-memory database.
+     * @param factory The factory used to create every cursor, or null for the default one.
+     */
+    DatabaseHelper(Context context, String name, SQLiteDatabase.CursorFactory factory) {
+        super(context, name, factory, DATABASE_VERSION);
+        this.context = context;
+    }
+
+    /**
+     * Gets the engine that keeps the running statistics of completed tasks.
+     * @return The statistics engine of this database.
+     */
+    public StatsEngine getStatsEngine() {
+        return statsEngine;
+    }
+
+    /**
+     * Gets the cache of recent query results, e.g. to read its hit and miss counters.
+     * @return The query cache of this database.
+     */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Gets the in-memory index of task tags.
+     * @return The tag index of this database.
+     */
+    public TagIndex getTagIndex() {
+        return tagIndex;
+    }
+
+    /**
+     * Gets the log of task writes waiting to be synced.
+     * @return The change log of this database.
+     */
+    ChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    /**
+     * Registers a listener that is notified after tasks are written.
+     * @param listener The listener to add.
+     */
+    public void addTaskChangeListener(TaskChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with {@link #addTaskChangeListener(TaskChangeListener)}.
+     * @param listener The listener to remove.
+     */
+    public void removeTaskChangeListener(TaskChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Reads a task for a change notification; skipped when nobody is listening.
+     */
+    private Task getTaskForListeners(long id) {
+        return changeListeners.isEmpty() || id == -1 ? null : getTaskById((int) id);
+    }
+
+    private void notifyTaskChanged(Task before, Task after) {
+        if (before == null && after == null) {
+            return;
+        }
+        for (TaskChangeListener listener : changeListeners) {
+            listener.onTaskChanged(before, after);
+        }
+    }
+
+    /**
+     * Notifies the listeners that several tasks changed at once.
+     * Also used by {@link TaskArchiver}, which moves rows out of the table directly.
+     */
+    void notifyTasksChanged() {
+        for (TaskChangeListener listener : changeListeners) {
+            listener.onTasksChanged();
+        }
+    }
+
+    /**
+     * Gets the shared DatabaseHelper instance, creating it on first use.
+     * @param context Any context; the application context is retained.
+     * @return The shared DatabaseHelper.
+     */
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext());
+        }
+        return instance;
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
+        long start = SystemClock.elapsedRealtime();
         // SQL command to create the tasks table
         String createTable = "CREATE TABLE " + TABLE_TASKS + " (" +
                 ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
@@ -42,13 +237,116 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 DURATION + " INTEGER, " +
                 DATE + " TEXT)";
         db.execSQL(createTable);
+
+        // Apply every migration made since version 3 on top of the base table
+        migrate(db, 3);
+        Log.i(TAG, "Schema created in " + (SystemClock.elapsedRealtime() - start) + " ms");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Drop the existing table and recreate it
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TASKS);
-        onCreate(db);
+        long start = SystemClock.elapsedRealtime();
+        if (oldVersion < 3) {
+            // Schemas before version 3 are not migrated: drop the existing table and recreate it
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_TASKS);
+            onCreate(db);
+        } else {
+            migrate(db, oldVersion);
+        }
+        Log.i(TAG, "Migrated from version " + oldVersion + " to " + newVersion
+                + " in " + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    /**
+     * Applies the schema changes needed to bring a version 3 or later database up to date,
+     * keeping the existing rows.
+     * @param db The database being created or upgraded.
+     * @param fromVersion The schema version the database currently has.
+     */
+    private void migrate(SQLiteDatabase db, int fromVersion) {
+        if (fromVersion < 4) {
+            // Index used to find completed tasks by date (e.g., for archiving)
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_tasks_status_date ON "
+                    + TABLE_TASKS + " (" + STATUS + ", " + DATE + ")");
+        }
+        if (fromVersion < 5) {
+            // Soft delete: deleted tasks keep a tombstone timestamp until they are purged
+            db.execSQL("ALTER TABLE " + TABLE_TASKS + " ADD COLUMN " + DELETED_AT + " INTEGER");
+
+            // Rebuild the status/date index as a partial index over live tasks only
+            db.execSQL("DROP INDEX IF EXISTS idx_tasks_status_date");
+            db.execSQL("CREATE INDEX idx_tasks_status_date ON " + TABLE_TASKS
+                    + " (" + STATUS + ", " + DATE + ") WHERE " + NOT_DELETED);
+            db.execSQL("CREATE INDEX idx_tasks_tombstones ON " + TABLE_TASKS
+                    + " (" + DELETED_AT + ") WHERE " + DELETED_AT + " IS NOT NULL");
+        }
+        if (fromVersion < 6) {
+            // One index per Home sort order, each also holding the filter columns, so a
+            // sorted and filtered page of ids is read from the index alone (see TaskQuery)
+            String filterColumns = DATE + ", " + STATUS + ", " + TOPIC;
+            db.execSQL("CREATE INDEX idx_tasks_sort_date ON " + TABLE_TASKS
+                    + " (" + filterColumns + ") WHERE " + NOT_DELETED);
+            db.execSQL("CREATE INDEX idx_tasks_sort_duration ON " + TABLE_TASKS
+                    + " (" + DURATION + ", " + filterColumns + ") WHERE " + NOT_DELETED);
+            db.execSQL("CREATE INDEX idx_tasks_sort_name ON " + TABLE_TASKS
+                    + " (" + NAME + " COLLATE NOCASE, " + filterColumns + ") WHERE " + NOT_DELETED);
+            db.execSQL("CREATE INDEX idx_tasks_topic_date ON " + TABLE_TASKS
+                    + " (" + TOPIC + ", " + DATE + ") WHERE " + NOT_DELETED);
+        }
+        if (fromVersion < 7) {
+            // Recurring tasks are stored once as a rule; occurrences are expanded when queried
+            db.execSQL("CREATE TABLE " + TABLE_RECURRENCES + " (" +
+                    ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    NAME + " TEXT, " +
+                    TOPIC + " TEXT, " +
+                    DURATION + " INTEGER, " +
+                    FREQUENCY + " TEXT, " +
+                    REPEAT_INTERVAL + " INTEGER NOT NULL DEFAULT 1, " +
+                    WEEKDAYS + " INTEGER NOT NULL DEFAULT 0, " +
+                    START_DATE + " TEXT, " +
+                    UNTIL_DATE + " TEXT, " +
+                    REPEAT_COUNT + " INTEGER NOT NULL DEFAULT 0)");
+
+            // An occurrence that was completed, edited or deleted is saved as a task row that
+            // points back to its rule; the unique index also serves the exception lookup
+            db.execSQL("ALTER TABLE " + TABLE_TASKS + " ADD COLUMN " + RECURRENCE_ID + " INTEGER");
+            db.execSQL("ALTER TABLE " + TABLE_TASKS + " ADD COLUMN " + OCCURRENCE_DATE + " TEXT");
+            db.execSQL("CREATE UNIQUE INDEX idx_tasks_occurrence ON " + TABLE_TASKS
+                    + " (" + RECURRENCE_ID + ", " + OCCURRENCE_DATE + ") WHERE " + RECURRENCE_ID + " IS NOT NULL");
+        }
+        if (fromVersion < 8) {
+            // Covering index for the per-day minute totals of the calendar and heatmap,
+            // so a date range is summed from the index alone, already grouped by date
+            db.execSQL("CREATE INDEX idx_tasks_day_minutes ON " + TABLE_TASKS
+                    + " (" + DATE + ", " + STATUS + ", " + DURATION + ") WHERE " + NOT_DELETED);
+        }
+        if (fromVersion < 9) {
+            // Pending tasks in due date order; holds only the open work, so overdue tasks
+            // are read and counted without touching completed history
+            db.execSQL("CREATE INDEX idx_tasks_pending_date ON " + TABLE_TASKS
+                    + " (" + DATE + ") WHERE " + PENDING);
+        }
+        if (fromVersion < 10) {
+            // The day a task was completed, for streaks and on-time rates; tasks completed
+            // earlier are assumed to have been completed on their due date
+            db.execSQL("ALTER TABLE " + TABLE_TASKS + " ADD COLUMN " + COMPLETED_DATE + " TEXT");
+            db.execSQL("UPDATE " + TABLE_TASKS + " SET " + COMPLETED_DATE + " = " + DATE
+                    + " WHERE " + STATUS + " = 'completed'");
+
+            // Running statistics totals, filled on first use (see StatsEngine)
+            StatsEngine.createTables(db);
+        }
+        if (fromVersion < 11) {
+            // A uid identifies a task across devices; every write is logged for sync (see ChangeLog)
+            db.execSQL("ALTER TABLE " + TABLE_TASKS + " ADD COLUMN " + UID + " TEXT");
+            db.execSQL("UPDATE " + TABLE_TASKS + " SET " + UID + " = lower(hex(randomblob(16)))");
+            db.execSQL("CREATE UNIQUE INDEX idx_tasks_uid ON " + TABLE_TASKS + " (" + UID + ")");
+            ChangeLog.createTables(db);
+        }
+        if (fromVersion < 12) {
+            // Any number of tags per task, through a join table (see TagIndex)
+            TagIndex.createTables(db);
+        }
     }
 
     /**
@@ -61,6 +359,21 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return The row ID of the newly inserted task, or -1 if an error occurred.
      */
     public long insertTask(String name, String topic, String status, int duration, String date) {
+        return insertTask(name, topic, status, duration, date, null);
+    }
+
+    /**
+     * Inserts a new task together with its tags, in one transaction and with one change event.
+     * @param name The name of the task.
+     * @param topic The topic associated with the task.
+     * @param status The current status of the task.
+     * @param duration The duration of the task in minutes.
+     * @param date The due date of the task.
+     * @param tags The tag names (see {@link #setTaskTags(int, Collection)}), or null for none.
+     * @return The row ID of the newly inserted task, or -1 if an error occurred.
+     */
+    public long insertTask(String name, String topic, String status, int duration, String date,
+                           Collection<String> tags) {
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(NAME, name);
@@ -68,8 +381,34 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(STATUS, status);
         values.put(DURATION, duration);
         values.put(DATE, date);
-        long result = db.insert(TABLE_TASKS, null, values);
-        db.close();
+        if ("completed".equals(status)) {
+            values.put(COMPLETED_DATE, EpochDay.format(EpochDay.today()));
+        }
+        String uid = ChangeLog.newUid();
+        values.put(UID, uid);
+
+        long result;
+        Map<Integer, String> tagsById = null;
+        db.beginTransaction();
+        try {
+            result = db.insert(TABLE_TASKS, null, values);
+            if (result != -1) {
+                statsEngine.apply(db, Collections.emptyList(),
+                        statsEngine.read(db, ID + " = ?", new String[]{String.valueOf(result)}));
+                changeLog.record(db, Collections.singletonMap(uid, null), Arrays.asList(ChangeLog.FIELDS));
+                if (tags != null) {
+                    tagsById = writeTaskTags(db, (int) result, tags);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            queryCache.invalidate(TABLE_TASKS);
+        }
+        if (tagsById != null) {
+            tagIndex.onTaskTagsChanged((int) result, tagsById);
+        }
+        notifyTaskChanged(null, getTaskForListeners(result));
         return result;
     }
 
@@ -80,30 +419,27 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public Cursor getTasksByStatus(String status) {
         SQLiteDatabase db = this.getReadableDatabase();
-        return db.rawQuery("SELECT * FROM " + TABLE_TASKS + " WHERE " + STATUS + " = ?", new String[]{status});
+        return db.rawQuery("SELECT * FROM " + TABLE_TASKS + " WHERE " + STATUS + " = ? AND " + NOT_DELETED,
+                new String[]{status});
     }
 
     /**
      * Fetches a task by its ID.
      * @param id The ID of the task.
-     * @return A Task object containing the task's details, or null if not found.
+     * @return A Task object containing the task's details, or null if not found or deleted.
      */
     public Task getTaskById(int id) {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT * FROM " + TABLE_TASKS + " WHERE " + ID + " = ?", new String[]{String.valueOf(id)});
-        Task task = null;
-        if (cursor != null && cursor.moveToFirst()) {
-            task = new Task(
-                    cursor.getInt(cursor.getColumnIndexOrThrow(ID)),
-                    cursor.getString(cursor.getColumnIndexOrThrow(NAME)),
-                    cursor.getString(cursor.getColumnIndexOrThrow(TOPIC)),
-                    cursor.getString(cursor.getColumnIndexOrThrow(STATUS)),
-                    cursor.getInt(cursor.getColumnIndexOrThrow(DURATION)),
-                    cursor.getString(cursor.getColumnIndexOrThrow(DATE))
-            );
+        String sql = "SELECT * FROM " + TABLE_TASKS + " WHERE " + ID + " = ? AND " + NOT_DELETED;
+        String[] args = {String.valueOf(id)};
+        return queryCache.get(sql, args, TASK_TABLES, QueryCache.TASK, () -> {
+            Cursor cursor = getReadableDatabase().rawQuery(sql, args);
+            Task task = null;
+            if (cursor.moveToFirst()) {
+                task = cursorToTask(cursor);
+            }
             cursor.close();
-        }
-        return task;
+            return task;
+        });
     }
 
     /**
@@ -113,27 +449,255 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return true if the update was successful, false otherwise.
      */
     public boolean updateTaskStatus(int id, String status) {
-        SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(STATUS, status);
 
-        int rowsUpdated = db.update(TABLE_TASKS, values, ID + " = ?", new String[]{String.valueOf(id)});
-        db.close();
+        Task before = getTaskForListeners(id);
+        int rowsUpdated = updateTaskRow(id, values, NOT_DELETED);
+        if (rowsUpdated > 0) {
+            notifyTaskChanged(before, getTaskForListeners(id));
+        }
         return rowsUpdated > 0;
     }
 
     /**
      * Deletes a task by its ID.
+     * The task is soft-deleted: it is hidden from every query right away and can be
+     * brought back with {@link #restoreTask(int)} until {@link TombstonePurger} removes it.
      * @param id The ID of the task to delete.
      * @return true if the deletion was successful, false otherwise.
      */
     public boolean deleteTask(int id) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        int rowsDeleted = db.delete(TABLE_TASKS, ID + " = ?", new String[]{String.valueOf(id)});
-        db.close();
+        ContentValues values = new ContentValues();
+        values.put(DELETED_AT, System.currentTimeMillis());
+        Task before = getTaskForListeners(id);
+        int rowsDeleted = updateTaskRow(id, values, NOT_DELETED);
+        if (rowsDeleted > 0) {
+            notifyTaskChanged(before, null);
+        }
         return rowsDeleted > 0;
     }
 
+    /**
+     * Restores a soft-deleted task that has not been purged yet.
+     * @param id The ID of the task to restore.
+     * @return true if the task was restored, false otherwise.
+     */
+    public boolean restoreTask(int id) {
+        ContentValues values = new ContentValues();
+        values.putNull(DELETED_AT);
+        int rowsRestored = updateTaskRow(id, values, DELETED_AT + " IS NOT NULL");
+        if (rowsRestored > 0) {
+            notifyTaskChanged(null, getTaskForListeners(id));
+        }
+        return rowsRestored > 0;
+    }
+
+    /**
+     * Updates the status of several tasks in a single transaction.
+     * @param ids The IDs of the tasks to update.
+     * @param status The new status of the tasks.
+     * @return The number of tasks updated.
+     */
+    public int updateTasksStatus(Collection<Integer> ids, String status) {
+        ContentValues values = new ContentValues();
+        values.put(STATUS, status);
+        return updateTasks(ids, values, NOT_DELETED);
+    }
+
+    /**
+     * Changes the due date of several tasks in a single transaction.
+     * @param ids The IDs of the tasks to reschedule.
+     * @param date The new due date in "yyyy-MM-dd" format.
+     * @return The number of tasks rescheduled.
+     */
+    public int rescheduleTasks(Collection<Integer> ids, String date) {
+        ContentValues values = new ContentValues();
+        values.put(DATE, date);
+        return updateTasks(ids, values, NOT_DELETED);
+    }
+
+    /**
+     * Soft-deletes several tasks in a single transaction.
+     * @param ids The IDs of the tasks to delete.
+     * @return The number of tasks deleted.
+     */
+    public int deleteTasks(Collection<Integer> ids) {
+        ContentValues values = new ContentValues();
+        values.put(DELETED_AT, System.currentTimeMillis());
+        return updateTasks(ids, values, NOT_DELETED);
+    }
+
+    /**
+     * Restores several soft-deleted tasks in a single transaction.
+     * @param ids The IDs of the tasks to restore.
+     * @return The number of tasks restored.
+     */
+    public int restoreTasks(Collection<Integer> ids) {
+        ContentValues values = new ContentValues();
+        values.putNull(DELETED_AT);
+        return updateTasks(ids, values, DELETED_AT + " IS NOT NULL");
+    }
+
+    /**
+     * Applies the same values to several tasks in one transaction, so a bulk action
+     * costs a single commit. IDs are bound in chunks to stay under SQLite's variable limit.
+     * @param ids The IDs of the tasks to update.
+     * @param values The column values to set.
+     * @param condition An extra condition each row must meet.
+     * @return The number of rows updated.
+     */
+    private int updateTasks(Collection<Integer> ids, ContentValues values, String condition) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        List<Integer> idList = new ArrayList<>(ids);
+        int rowsUpdated = 0;
+
+        db.beginTransaction();
+        try {
+            for (int start = 0; start < idList.size(); start += MAX_BOUND_IDS) {
+                List<Integer> chunk = idList.subList(start, Math.min(start + MAX_BOUND_IDS, idList.size()));
+                String[] args = new String[chunk.size()];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = String.valueOf(chunk.get(i));
+                }
+                String placeholders = TextUtils.join(",", Collections.nCopies(args.length, "?"));
+                rowsUpdated += updateRows(db, values, ID + " IN (" + placeholders + ")", args, condition);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            queryCache.invalidate(TABLE_TASKS);
+        }
+        if (rowsUpdated > 0) {
+            notifyTasksChanged();
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Applies values to a single task in one transaction, together with its statistics.
+     * @param id The ID of the task to update.
+     * @param values The column values to set.
+     * @param condition An extra condition the row must meet.
+     * @return The number of rows updated (0 or 1).
+     */
+    private int updateTaskRow(int id, ContentValues values, String condition) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            int rowsUpdated = updateRows(db, values, ID + " = ?", new String[]{String.valueOf(id)}, condition);
+            db.setTransactionSuccessful();
+            return rowsUpdated;
+        } finally {
+            db.endTransaction();
+            queryCache.invalidate(TABLE_TASKS);
+        }
+    }
+
+    /**
+     * Updates task rows inside the caller's transaction and applies the change to the
+     * statistics: the completed rows among them are read before and after the update,
+     * and when the status is written the completion date is set or cleared to match.
+     * The fields whose values changed are added to the change log.
+     * @param db The writable database, inside a transaction.
+     * @param values The column values to set.
+     * @param idCondition A condition selecting the rows by id.
+     * @param args The arguments of the id condition.
+     * @param condition An extra condition each row must meet to be updated.
+     * @return The number of rows updated.
+     */
+    private int updateRows(SQLiteDatabase db, ContentValues values, String idCondition, String[] args,
+                           String condition) {
+        List<StatsEngine.Contribution> before = statsEngine.read(db, idCondition, args);
+        Set<String> columns = new HashSet<>(values.keySet());
+        if (columns.contains(STATUS)) {
+            columns.add(COMPLETED_DATE);
+        }
+        List<String> fields = ChangeLog.syncedFields(columns);
+        Map<String, String[]> logged = changeLog.snapshot(db, idCondition + " AND " + condition, args, fields);
+
+        int rowsUpdated = db.update(TABLE_TASKS, values, idCondition + " AND " + condition, args);
+        if (rowsUpdated > 0) {
+            if (values.containsKey(STATUS)) {
+                // Keep the date of a task that was already completed
+                String[] stampArgs = new String[args.length + 1];
+                stampArgs[0] = EpochDay.format(EpochDay.today());
+                System.arraycopy(args, 0, stampArgs, 1, args.length);
+                db.execSQL("UPDATE " + TABLE_TASKS + " SET " + COMPLETED_DATE + " = CASE WHEN " + STATUS
+                        + " = 'completed' THEN COALESCE(" + COMPLETED_DATE + ", ?) END WHERE " + idCondition, stampArgs);
+            }
+            statsEngine.apply(db, before, statsEngine.read(db, idCondition, args));
+            changeLog.record(db, logged, fields);
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Gets the server cursor saved by the last applied pull.
+     * @return The cursor, or 0 if nothing has been pulled yet.
+     */
+    long getPullCursor() {
+        String cursor = ChangeLog.getState(getReadableDatabase(), ChangeLog.KEY_PULL_CURSOR);
+        return cursor == null ? 0 : Long.parseLong(cursor);
+    }
+
+    /**
+     * Applies a batch of changes pulled from the sync server in one transaction, together
+     * with the server cursor, so an interrupted pull resumes after the last applied batch.
+     * A change only replaces a field written by a newer write, and is not logged again.
+     * Values that do not fit their column are skipped, and a task created on another device
+     * is hidden until all of its fields have been applied.
+     * @param changes The pulled changes, in server order.
+     * @param cursor The server cursor after the batch.
+     * @return The number of changes applied.
+     */
+    int applyRemoteChanges(List<SyncTransport.Change> changes, long cursor) {
+        SQLiteDatabase db = getWritableDatabase();
+        int applied = 0;
+        db.beginTransaction();
+        try {
+            for (SyncTransport.Change change : changes) {
+                changeLog.observeClock(db, change.getClock());
+                if (!changeLog.isNewer(db, change)) {
+                    continue;
+                }
+                if (!ChangeLog.isValid(change.getField(), change.getValue())) {
+                    Log.w(TAG, "Skipped invalid " + change.getField() + " of task " + change.getUid());
+                    continue;
+                }
+                long id = changeLog.findOrCreateTask(db, change.getUid());
+                if (id == -1) {
+                    continue;
+                }
+
+                String[] args = {String.valueOf(id)};
+                List<StatsEngine.Contribution> before = statsEngine.read(db, ID + " = ?", args);
+                boolean placeholder = ChangeLog.isPlaceholder(db, id);
+                // A placeholder stays hidden until the rest of its task arrives, even if it is not deleted
+                if (!placeholder || !DELETED_AT.equals(change.getField()) || change.getValue() != null) {
+                    ContentValues values = new ContentValues();
+                    values.put(change.getField(), change.getValue());
+                    db.update(TABLE_TASKS, values, ID + " = ?", args);
+                }
+                changeLog.accept(db, change);
+                if (placeholder) {
+                    ChangeLog.revealIfComplete(db, id, change.getUid());
+                }
+                statsEngine.apply(db, before, statsEngine.read(db, ID + " = ?", args));
+                applied++;
+            }
+            ChangeLog.putState(db, ChangeLog.KEY_PULL_CURSOR, String.valueOf(cursor));
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            queryCache.invalidate(TABLE_TASKS);
+        }
+        if (applied > 0) {
+            notifyTasksChanged();
+        }
+        return applied;
+    }
+
     /**
      * Updates a task's details by ID.
      * @param taskId The ID of the task to update.
@@ -145,15 +709,50 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return true if the update was successful, false otherwise.
      */
     public boolean updateTask(int taskId, String name, String topic, String status, int duration, String date) {
-        SQLiteDatabase db = this.getWritableDatabase();
+        return updateTask(taskId, name, topic, status, duration, date, null);
+    }
+
+    /**
+     * Updates a task's details and replaces its tags, in one transaction and with one change event.
+     * The tags are left unchanged if the task is not updated.
+     * @param taskId The ID of the task to update.
+     * @param name The updated name of the task.
+     * @param topic The updated topic of the task.
+     * @param status The updated status of the task.
+     * @param duration The updated duration of the task in minutes.
+     * @param date The updated due date of the task.
+     * @param tags The new tag names (see {@link #setTaskTags(int, Collection)}), or null to keep them.
+     * @return true if the update was successful, false otherwise.
+     */
+    public boolean updateTask(int taskId, String name, String topic, String status, int duration, String date,
+                              Collection<String> tags) {
         ContentValues values = new ContentValues();
         values.put(NAME, name);
         values.put(TOPIC, topic);
         values.put(STATUS, status);
         values.put(DURATION, duration);
         values.put(DATE, date);
-        int rowsUpdated = db.update(TABLE_TASKS, values, ID + " = ?", new String[]{String.valueOf(taskId)});
-        db.close();
+        Task before = getTaskForListeners(taskId);
+        SQLiteDatabase db = this.getWritableDatabase();
+        int rowsUpdated;
+        Map<Integer, String> tagsById = null;
+        db.beginTransaction();
+        try {
+            rowsUpdated = updateRows(db, values, ID + " = ?", new String[]{String.valueOf(taskId)}, NOT_DELETED);
+            if (rowsUpdated > 0 && tags != null) {
+                tagsById = writeTaskTags(db, taskId, tags);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            queryCache.invalidate(TABLE_TASKS);
+        }
+        if (tagsById != null) {
+            tagIndex.onTaskTagsChanged(taskId, tagsById);
+        }
+        if (rowsUpdated > 0) {
+            notifyTaskChanged(before, getTaskForListeners(taskId));
+        }
         return rowsUpdated > 0;
     }
 
@@ -165,8 +764,740 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public Cursor getTasksDueTodayOrLater(String todayDate) {
         SQLiteDatabase db = this.getReadableDatabase();
         return db.rawQuery(
-                "SELECT * FROM " + TABLE_TASKS + " WHERE DATE(" + DATE + ") >= DATE(?)",
+                "SELECT * FROM " + TABLE_TASKS + " WHERE " + DATE + " >= ? AND " + NOT_DELETED,
                 new String[]{todayDate}
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * Fetches the pending tasks whose due date has passed, oldest first.
+     * Read in order from the partial index over pending tasks.
+     * @param todayDate The current date in "yyyy-MM-dd" format.
+     * @return The overdue tasks, ordered by due date and id.
+     */
+    public List<Task> getOverdueTasks(String todayDate) {
+        String sql = "SELECT * FROM " + TABLE_TASKS
+                + " WHERE " + PENDING + " AND " + DATE + " < ? ORDER BY " + DATE + ", " + ID;
+        String[] args = {todayDate};
+        return queryCache.get(sql, args, TASK_TABLES, QueryCache.TASKS, () -> {
+            List<Task> tasks = new ArrayList<>();
+            Cursor cursor = getReadableDatabase().rawQuery(sql, args);
+            while (cursor.moveToNext()) {
+                tasks.add(cursorToTask(cursor));
+            }
+            cursor.close();
+            return tasks;
+        });
+    }
+
+    /**
+     * Counts the pending tasks whose due date has passed, from the partial index alone.
+     * @param todayDate The current date in "yyyy-MM-dd" format.
+     * @return The number of overdue tasks.
+     */
+    public int countOverdueTasks(String todayDate) {
+        String sql = "SELECT COUNT(*) FROM " + TABLE_TASKS + " WHERE " + PENDING + " AND " + DATE + " < ?";
+        String[] args = {todayDate};
+        return queryCache.get(sql, args, TASK_TABLES, QueryCache.<Integer>immutable(), () -> {
+            Cursor cursor = getReadableDatabase().rawQuery(sql, args);
+            int count = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+            cursor.close();
+            return count;
+        });
+    }
+
+    /**
+     * Counts how often each topic is used by tasks (including archived ones) and recurring
+     * task rules. The live tasks are grouped from the (topic, date) index alone.
+     * Topics are grouped exactly as stored; the caller merges spelling variants.
+     * @return A Cursor with one row per table and topic: the topic, its number of uses, and
+     *         the latest date it was used on. The caller must close it.
+     */
+    public Cursor getTopicCounts() {
+        String counts = "SELECT " + TOPIC + ", COUNT(*), MAX(" + DATE + ") FROM ";
+        String sql = counts + "main." + TABLE_TASKS + " WHERE " + NOT_DELETED + " GROUP BY " + TOPIC
+                + " UNION ALL SELECT " + TOPIC + ", COUNT(*), MAX(" + START_DATE + ") FROM main." + TABLE_RECURRENCES
+                + " GROUP BY " + TOPIC;
+        if (hasArchive()) {
+            sql += " UNION ALL " + counts + ARCHIVE_SCHEMA + "." + TABLE_TASKS + " GROUP BY " + TOPIC;
+            return attachArchive().rawQuery(sql, null);
+        }
+        return getReadableDatabase().rawQuery(sql, null);
+    }
+
+    /**
+     * Replaces the tags of a task. Tags that do not exist yet are created; a tag matching an
+     * existing one ignoring case reuses it. The {@link TagIndex} is updated for this task only.
+     * To save a task's details and tags together, use the insertTask and updateTask overloads
+     * that take tags.
+     * @param taskId The ID of the task.
+     * @param names The tag names, e.g. from {@link TagFilter#parseTags(String)}.
+     */
+    public void setTaskTags(int taskId, Collection<String> names) {
+        SQLiteDatabase db = getWritableDatabase();
+        Map<Integer, String> tags;
+        db.beginTransaction();
+        try {
+            tags = writeTaskTags(db, taskId, names);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        tagIndex.onTaskTagsChanged(taskId, tags);
+        Task task = getTaskForListeners(taskId);
+        notifyTaskChanged(task, task);
+    }
+
+    /**
+     * Replaces the tag links of a task inside the caller's transaction.
+     * @param db The writable database, inside a transaction.
+     * @param taskId The ID of the task.
+     * @param names The tag names.
+     * @return The task's tags by ID, for {@link TagIndex#onTaskTagsChanged} once committed.
+     */
+    private Map<Integer, String> writeTaskTags(SQLiteDatabase db, int taskId, Collection<String> names) {
+        String[] taskArgs = {String.valueOf(taskId)};
+        Map<Integer, String> tags = new LinkedHashMap<>();
+        db.delete(TagIndex.TABLE_TASK_TAGS, TagIndex.TASK_ID + " = ?", taskArgs);
+        for (String name : names) {
+            String tag = TagFilter.clean(name);
+            if (tag.isEmpty()) {
+                continue;
+            }
+            ContentValues tagValues = new ContentValues();
+            tagValues.put(NAME, tag);
+            db.insertWithOnConflict(TagIndex.TABLE_TAGS, null, tagValues, SQLiteDatabase.CONFLICT_IGNORE);
+            // The name column compares ignoring case, so this finds an existing spelling too
+            Cursor cursor = db.rawQuery("SELECT " + ID + ", " + NAME + " FROM " + TagIndex.TABLE_TAGS
+                    + " WHERE " + NAME + " = ?", new String[]{tag});
+            if (cursor.moveToFirst()) {
+                tags.put(cursor.getInt(0), cursor.getString(1));
+            }
+            cursor.close();
+        }
+        for (int tagId : tags.keySet()) {
+            ContentValues link = new ContentValues();
+            link.put(TagIndex.TASK_ID, taskId);
+            link.put(TagIndex.TAG_ID, tagId);
+            db.insert(TagIndex.TABLE_TASK_TAGS, null, link);
+        }
+        return tags;
+    }
+
+    /**
+     * Gets the tags of a task, read through the join table's primary key.
+     * @param taskId The ID of the task.
+     * @return The tag names, sorted ignoring case.
+     */
+    public List<String> getTaskTags(int taskId) {
+        List<String> tags = new ArrayList<>();
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT g." + NAME + " FROM " + TagIndex.TABLE_TASK_TAGS
+                + " AS l JOIN " + TagIndex.TABLE_TAGS + " AS g ON g." + ID + " = l." + TagIndex.TAG_ID
+                + " WHERE l." + TagIndex.TASK_ID + " = ? ORDER BY g." + NAME, new String[]{String.valueOf(taskId)});
+        while (cursor.moveToNext()) {
+            tags.add(cursor.getString(0));
+        }
+        cursor.close();
+        return tags;
+    }
+
+    /**
+     * Finds the earliest due date of a pending task on or after a date.
+     * Answered with a single seek on the (status, date) index, however many tasks there are.
+     * @param fromDate The earliest date to consider, in "yyyy-MM-dd" format.
+     * @return The earliest due date, or null if no pending task is due on or after the date.
+     */
+    public String getNextDueDate(String fromDate) {
+        String sql = "SELECT MIN(" + DATE + ") FROM " + TABLE_TASKS
+                + " WHERE " + STATUS + " = 'pending' AND " + DATE + " >= ? AND " + NOT_DELETED;
+        String[] args = {fromDate};
+        return queryCache.get(sql, args, TASK_TABLES, QueryCache.<String>immutable(), () -> {
+            Cursor cursor = getReadableDatabase().rawQuery(sql, args);
+            String date = cursor.moveToFirst() ? cursor.getString(0) : null;
+            cursor.close();
+            return date;
+        });
+    }
+
+    /**
+     * Adds the planned and completed minutes of each day in a date range to two arrays.
+     * Each table is read with one grouped range query over the covering (date, status, duration)
+     * index; archived tasks are included when an archive exists, and occurrences of recurring
+     * tasks count as planned minutes.
+     * @param fromDate The first date of the range in "yyyy-MM-dd" format (inclusive).
+     * @param toDate The last date of the range in "yyyy-MM-dd" format (inclusive).
+     * @param planned Receives the minutes of all tasks due on each day, indexed by days since fromDate.
+     * @param completed Receives the minutes of completed tasks due on each day, indexed the same way.
+     */
+    public void addDailyMinutes(String fromDate, String toDate, int[] planned, int[] completed) {
+        int fromDay = EpochDay.parse(fromDate);
+        String[] args = {fromDate, toDate};
+        String totals = "SELECT " + DATE + ", SUM(" + DURATION + "), SUM(CASE WHEN " + STATUS
+                + " = 'completed' THEN " + DURATION + " ELSE 0 END) FROM ";
+        String range = " WHERE " + DATE + " BETWEEN ? AND ?";
+
+        addDailyMinutes(getReadableDatabase().rawQuery(totals + TABLE_TASKS + range + " AND " + NOT_DELETED
+                + " GROUP BY " + DATE, args), fromDay, planned, completed);
+        if (hasArchive()) {
+            addDailyMinutes(attachArchive().rawQuery(totals + ARCHIVE_SCHEMA + "." + TABLE_TASKS + range
+                    + " GROUP BY " + DATE, args), fromDay, planned, completed);
+        }
+
+        // Occurrences are only expanded from today on (see TaskQuery#getOccurrenceWindow)
+        String todayDate = EpochDay.format(EpochDay.today());
+        String occurrenceFrom = fromDate.compareTo(todayDate) > 0 ? fromDate : todayDate;
+        if (occurrenceFrom.compareTo(toDate) <= 0) {
+            for (Task occurrence : getOccurrences(occurrenceFrom, toDate)) {
+                planned[EpochDay.parse(occurrence.getDate()) - fromDay] += occurrence.getDuration();
+            }
+        }
+    }
+
+    private static void addDailyMinutes(Cursor cursor, int fromDay, int[] planned, int[] completed) {
+        while (cursor.moveToNext()) {
+            int index = EpochDay.parse(cursor.getString(0)) - fromDay;
+            planned[index] += cursor.getInt(1);
+            completed[index] += cursor.getInt(2);
+        }
+        cursor.close();
+    }
+
+    /**
+     * Fetches one page of tasks matching a query, in the query's sort order.
+     * The page of ids is selected first from the sort order's index, then only those
+     * rows are read from the table. Queries with a tag filter are answered from the
+     * {@link TagIndex} instead, in id order.
+     * @param query The sort order and filters to apply.
+     * @param after The last task of the previous page, or null for the first page.
+     * @param limit The maximum number of tasks to return.
+     * @return The tasks on the page.
+     */
+    public List<Task> queryTasks(TaskQuery query, Task after, int limit) {
+        if (query.getTagFilter() != null) {
+            return queryTaggedTasks(query, after == null ? 0 : after.getId(), limit);
+        }
+        List<String> args = new ArrayList<>();
+        String where = query.buildWhere(args);
+        if (after != null) {
+            where += " AND " + query.buildKeyset(after, args);
+        }
+
+        String sql = "SELECT t.* FROM (SELECT " + ID + " FROM " + TABLE_TASKS
+                + " WHERE " + where
+                + " ORDER BY " + query.buildOrderBy("")
+                + " LIMIT " + limit + ") AS page"
+                + " JOIN " + TABLE_TASKS + " AS t ON t." + ID + " = page." + ID
+                + " ORDER BY " + query.buildOrderBy("t.");
+
+        String[] sqlArgs = args.toArray(new String[0]);
+        return queryCache.get(sql, sqlArgs, TASK_TABLES, QueryCache.TASKS, () -> {
+            List<Task> tasks = new ArrayList<>(limit);
+            Cursor cursor = getReadableDatabase().rawQuery(sql, sqlArgs);
+            while (cursor.moveToNext()) {
+                tasks.add(cursorToTask(cursor));
+            }
+            cursor.close();
+            return tasks;
+        });
+    }
+
+    /**
+     * Fetches the ids of every task matching a query, read from the query's index.
+     * @param query The filters to apply.
+     * @return The ids of all matching tasks.
+     */
+    public List<Integer> queryTaskIds(TaskQuery query) {
+        if (query.getTagFilter() != null) {
+            List<Integer> ids = new ArrayList<>();
+            for (Task task : queryTaggedTasks(query, 0, Integer.MAX_VALUE)) {
+                ids.add(task.getId());
+            }
+            return ids;
+        }
+        List<String> args = new ArrayList<>();
+        String where = query.buildWhere(args);
+
+        String sql = "SELECT " + ID + " FROM " + TABLE_TASKS + " WHERE " + where;
+        String[] sqlArgs = args.toArray(new String[0]);
+        return queryCache.get(sql, sqlArgs, TASK_TABLES, QueryCache.IDS, () -> {
+            List<Integer> ids = new ArrayList<>();
+            Cursor cursor = getReadableDatabase().rawQuery(sql, sqlArgs);
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getInt(0));
+            }
+            cursor.close();
+            return ids;
+        });
+    }
+
+    /**
+     * Fetches a page of the tasks matching a query with a tag filter, in id order.
+     * The ids matching the tags come from the {@link TagIndex}; the rows are then read by
+     * primary key, up to {@link #MAX_BOUND_IDS} ids at a time, continuing after the last id
+     * of the previous page, with the query's other filters applied to them. The results
+     * are not cached, since tag changes do not invalidate the query cache.
+     * @param query The filters to apply, including the tag filter.
+     * @param afterId The id of the last task of the previous page, or 0 for the first page.
+     * @param limit The maximum number of tasks to return.
+     * @return The tasks on the page.
+     */
+    private List<Task> queryTaggedTasks(TaskQuery query, int afterId, int limit) {
+        BitSet matches = tagIndex.match(query.getTagFilter());
+        List<String> args = new ArrayList<>();
+        String where = query.buildWhere(args);
+        String[] sqlArgs = args.toArray(new String[0]);
+
+        List<Task> tasks = new ArrayList<>();
+        int next = matches.nextSetBit(afterId + 1);
+        while (next != -1 && tasks.size() < limit) {
+            // The ids are integers from the index, so they are inlined rather than bound
+            StringBuilder ids = new StringBuilder();
+            for (int i = 0; i < MAX_BOUND_IDS && next != -1; i++) {
+                ids.append(i == 0 ? "" : ",").append(next);
+                next = next == Integer.MAX_VALUE ? -1 : matches.nextSetBit(next + 1);
+            }
+            Cursor cursor = getReadableDatabase().rawQuery("SELECT * FROM " + TABLE_TASKS
+                    + " WHERE " + ID + " IN (" + ids + ") AND " + where
+                    + " ORDER BY " + ID + " LIMIT " + (limit - tasks.size()), sqlArgs);
+            while (cursor.moveToNext()) {
+                tasks.add(cursorToTask(cursor));
+            }
+            cursor.close();
+        }
+        return tasks;
+    }
+
+    /**
+     * Streams the (non-deleted) tasks matching a selection in bounded, id-ordered chunks.
+     * Unlike the Cursor-returning queries, no Cursor is held open while the caller
+     * processes the rows, so unbounded tables can be processed in constant memory.
+     * @param selection An optional WHERE clause (without "WHERE"), or null for all tasks.
+     * @param selectionArgs The arguments for the selection, or null.
+     * @param chunkSize The maximum number of rows fetched per query.
+     * @return A closeable iterable over the matching tasks.
+     */
+    public TaskIterable streamTasks(String selection, String[] selectionArgs, int chunkSize) {
+        String where = selection == null || selection.isEmpty() ? NOT_DELETED : "(" + selection + ") AND " + NOT_DELETED;
+        return new TaskIterable(getReadableDatabase(), TABLE_TASKS, where, selectionArgs, chunkSize);
+    }
+
+    /**
+     * Streams the tasks with a specific status in bounded, id-ordered chunks.
+     * @param status The status to filter tasks by (e.g., "pending", "completed").
+     * @return A closeable iterable over the matching tasks.
+     */
+    public TaskIterable streamTasksByStatus(String status) {
+        return streamTasks(STATUS + " = ?", new String[]{status}, STREAM_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a Task object from the current row of a cursor over the `tasks` table.
+     * @param cursor A cursor positioned on a task row.
+     * @return The Task for that row.
+     */
+    static Task cursorToTask(Cursor cursor) {
+        Task task = new Task(
+                cursor.getInt(cursor.getColumnIndexOrThrow(ID)),
+                cursor.getString(cursor.getColumnIndexOrThrow(NAME)),
+                cursor.getString(cursor.getColumnIndexOrThrow(TOPIC)),
+                cursor.getString(cursor.getColumnIndexOrThrow(STATUS)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(DURATION)),
+                cursor.getString(cursor.getColumnIndexOrThrow(DATE))
+        );
+
+        // Archives created before recurring tasks existed may not have the recurrence columns yet
+        int recurrenceIndex = cursor.getColumnIndex(RECURRENCE_ID);
+        if (recurrenceIndex != -1 && !cursor.isNull(recurrenceIndex)) {
+            task.setOccurrence(cursor.getInt(recurrenceIndex),
+                    cursor.getString(cursor.getColumnIndexOrThrow(OCCURRENCE_DATE)));
+        }
+        return task;
+    }
+
+    /**
+     * Inserts a recurring task rule into the `recurrences` table.
+     * No task rows are created; occurrences are expanded when a date window is queried.
+     * @param name The name of every occurrence.
+     * @param topic The topic of every occurrence.
+     * @param duration The duration of every occurrence in minutes.
+     * @param frequency {@link RecurrenceRule#DAILY} or {@link RecurrenceRule#WEEKLY}.
+     * @param interval Repeat every this many days or weeks.
+     * @param weekdays For weekly rules, a bit mask of weekdays (bit 0 = Monday), or 0 for the start date's weekday.
+     * @param startDate The date of the first occurrence in "yyyy-MM-dd" format.
+     * @param untilDate The last date an occurrence may fall on, or null for no end date.
+     * @param count The maximum number of occurrences, or 0 for no limit.
+     * @return The row ID of the new rule, or -1 if an error occurred.
+     */
+    public long insertRecurrence(String name, String topic, int duration, String frequency, int interval,
+                                 int weekdays, String startDate, String untilDate, int count) {
+        ContentValues values = new ContentValues();
+        values.put(NAME, name);
+        values.put(TOPIC, topic);
+        values.put(DURATION, duration);
+        values.put(FREQUENCY, frequency);
+        values.put(REPEAT_INTERVAL, interval);
+        values.put(WEEKDAYS, weekdays);
+        values.put(START_DATE, startDate);
+        values.put(UNTIL_DATE, untilDate);
+        values.put(REPEAT_COUNT, count);
+        long result = getWritableDatabase().insert(TABLE_RECURRENCES, null, values);
+        queryCache.invalidate(TABLE_RECURRENCES);
+        if (result != -1) {
+            notifyTasksChanged();
+        }
+        return result;
+    }
+
+    /**
+     * Ends a recurring task so that it has no occurrences after a date.
+     * Occurrences already saved as task rows are kept.
+     * @param recurrenceId The ID of the recurrence rule.
+     * @param lastDate The last date an occurrence may fall on, in "yyyy-MM-dd" format.
+     * @return true if the rule was updated, false otherwise.
+     */
+    public boolean endRecurrence(int recurrenceId, String lastDate) {
+        ContentValues values = new ContentValues();
+        values.put(UNTIL_DATE, lastDate);
+        int rowsUpdated = getWritableDatabase().update(TABLE_RECURRENCES, values,
+                ID + " = ? AND (" + UNTIL_DATE + " IS NULL OR " + UNTIL_DATE + " > ?)",
+                new String[]{String.valueOf(recurrenceId), lastDate});
+        queryCache.invalidate(TABLE_RECURRENCES);
+        if (rowsUpdated > 0) {
+            notifyTasksChanged();
+        }
+        return rowsUpdated > 0;
+    }
+
+    /**
+     * Expands the occurrences of every recurring task within a date window.
+     * Only rules whose date range overlaps the window are read, and occurrences that already
+     * have a task row (completed, edited or deleted ones) are left out, so the result only
+     * holds the occurrences that exist nowhere else.
+     * @param fromDate The first date of the window in "yyyy-MM-dd" format (inclusive).
+     * @param toDate The last date of the window in "yyyy-MM-dd" format (inclusive).
+     * @return Pending, unsaved tasks for the occurrences, ordered by rule and date.
+     */
+    public List<Task> getOccurrences(String fromDate, String toDate) {
+        return queryCache.get("occurrences", new String[]{fromDate, toDate}, OCCURRENCE_TABLES, QueryCache.TASKS,
+                () -> loadOccurrences(fromDate, toDate));
+    }
+
+    private List<Task> loadOccurrences(String fromDate, String toDate) {
+        SQLiteDatabase db = getReadableDatabase();
+        List<Task> occurrences = new ArrayList<>();
+
+        List<RecurrenceRule> rules = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT * FROM " + TABLE_RECURRENCES
+                + " WHERE " + START_DATE + " <= ? AND (" + UNTIL_DATE + " IS NULL OR " + UNTIL_DATE + " >= ?)",
+                new String[]{toDate, fromDate});
+        while (cursor.moveToNext()) {
+            String untilDate = cursor.getString(cursor.getColumnIndexOrThrow(UNTIL_DATE));
+            rules.add(new RecurrenceRule(
+                    cursor.getInt(cursor.getColumnIndexOrThrow(ID)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(NAME)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(TOPIC)),
+                    cursor.getInt(cursor.getColumnIndexOrThrow(DURATION)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(FREQUENCY)),
+                    cursor.getInt(cursor.getColumnIndexOrThrow(REPEAT_INTERVAL)),
+                    cursor.getInt(cursor.getColumnIndexOrThrow(WEEKDAYS)),
+                    EpochDay.parse(cursor.getString(cursor.getColumnIndexOrThrow(START_DATE))),
+                    untilDate != null ? EpochDay.parse(untilDate) : -1,
+                    cursor.getInt(cursor.getColumnIndexOrThrow(REPEAT_COUNT))));
+        }
+        cursor.close();
+        if (rules.isEmpty()) {
+            return occurrences;
+        }
+
+        // Saved occurrences within the window, including deleted ones, replace the expanded ones
+        Set<String> saved = new HashSet<>();
+        cursor = db.rawQuery("SELECT " + RECURRENCE_ID + ", " + OCCURRENCE_DATE + " FROM " + TABLE_TASKS
+                + " WHERE " + RECURRENCE_ID + " IS NOT NULL AND " + OCCURRENCE_DATE + " BETWEEN ? AND ?",
+                new String[]{fromDate, toDate});
+        while (cursor.moveToNext()) {
+            saved.add(cursor.getInt(0) + "/" + cursor.getString(1));
+        }
+        cursor.close();
+
+        int fromDay = EpochDay.parse(fromDate);
+        int toDay = EpochDay.parse(toDate);
+        for (RecurrenceRule rule : rules) {
+            for (int day : rule.occurrencesBetween(fromDay, toDay)) {
+                if (!saved.contains(rule.getId() + "/" + EpochDay.format(day))) {
+                    occurrences.add(rule.toTask(day));
+                }
+            }
+        }
+        return occurrences;
+    }
+
+    /**
+     * Expands the occurrences of recurring tasks that match a Home query, within the
+     * query's occurrence window (see {@link TaskQuery#getOccurrenceWindow(String)}).
+     * @param query The sort order and filters to apply.
+     * @param todayDate The current date in "yyyy-MM-dd" format.
+     * @return The matching occurrences, in the query's sort order.
+     */
+    public List<Task> queryOccurrences(TaskQuery query, String todayDate) {
+        String[] window = query.getOccurrenceWindow(todayDate);
+        // Recurring task rules have no tags, so their occurrences never match a tag filter
+        if (window == null || query.getTagFilter() != null) {
+            return new ArrayList<>();
+        }
+        List<Task> occurrences = new ArrayList<>();
+        for (Task task : getOccurrences(window[0], window[1])) {
+            if (query.getTopic() == null || query.getTopic().equals(task.getTopic())) {
+                occurrences.add(task);
+            }
+        }
+        Collections.sort(occurrences, query.comparator());
+        return occurrences;
+    }
+
+    /**
+     * Saves an expanded occurrence as a task row, so it can be completed or edited like any task.
+     * If the occurrence has been saved already, the existing row is used.
+     * @param occurrence An occurrence returned by {@link #getOccurrences(String, String)}.
+     * @return The ID of the occurrence's task row, or -1 if an error occurred.
+     */
+    public int materializeOccurrence(Task occurrence) {
+        SQLiteDatabase db = getWritableDatabase();
+        long id;
+        db.beginTransaction();
+        try {
+            id = insertOccurrence(db, occurrence);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            queryCache.invalidate(TABLE_TASKS);
+        }
+        if (id != -1) {
+            notifyTaskChanged(null, getTaskForListeners(id));
+            return (int) id;
+        }
+        return findOccurrenceRow(db, occurrence);
+    }
+
+    /**
+     * Resolves a set of task IDs for a bulk action, saving any expanded occurrences among
+     * them as task rows first, in a single transaction. The listeners are notified once,
+     * as for any bulk write, after the transaction has committed.
+     * @param ids The IDs of the selected tasks; occurrences have negative IDs.
+     * @param occurrences The selected occurrences that have not been saved yet.
+     * @return The row IDs of all selected tasks.
+     */
+    public Set<Integer> materializeOccurrences(Collection<Integer> ids, Collection<Task> occurrences) {
+        Set<Integer> rowIds = new HashSet<>();
+        for (int id : ids) {
+            if (id >= 0) {
+                rowIds.add(id);
+            }
+        }
+        if (occurrences.isEmpty()) {
+            return rowIds;
+        }
+
+        SQLiteDatabase db = getWritableDatabase();
+        boolean inserted = false;
+        db.beginTransaction();
+        try {
+            for (Task occurrence : occurrences) {
+                long id = insertOccurrence(db, occurrence);
+                if (id != -1) {
+                    inserted = true;
+                } else {
+                    id = findOccurrenceRow(db, occurrence);
+                }
+                if (id != -1) {
+                    rowIds.add((int) id);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            queryCache.invalidate(TABLE_TASKS);
+        }
+        if (inserted) {
+            notifyTasksChanged();
+        }
+        return rowIds;
+    }
+
+    /**
+     * Inserts the task row of an occurrence inside the caller's transaction, together with
+     * its statistics and change log entry.
+     * @param db The writable database, inside a transaction.
+     * @param occurrence The occurrence to save.
+     * @return The ID of the new row, or -1 if the occurrence already has a row.
+     */
+    private long insertOccurrence(SQLiteDatabase db, Task occurrence) {
+        ContentValues values = new ContentValues();
+        values.put(NAME, occurrence.getName());
+        values.put(TOPIC, occurrence.getTopic());
+        values.put(STATUS, occurrence.getStatus());
+        values.put(DURATION, occurrence.getDuration());
+        values.put(DATE, occurrence.getDate());
+        values.put(RECURRENCE_ID, occurrence.getRecurrenceId());
+        values.put(OCCURRENCE_DATE, occurrence.getOccurrenceDate());
+        if ("completed".equals(occurrence.getStatus())) {
+            values.put(COMPLETED_DATE, EpochDay.format(EpochDay.today()));
+        }
+        String uid = ChangeLog.newUid();
+        values.put(UID, uid);
+
+        long id = db.insertWithOnConflict(TABLE_TASKS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+        if (id != -1) {
+            statsEngine.apply(db, Collections.emptyList(),
+                    statsEngine.read(db, ID + " = ?", new String[]{String.valueOf(id)}));
+            changeLog.record(db, Collections.singletonMap(uid, null), Arrays.asList(ChangeLog.FIELDS));
+        }
+        return id;
+    }
+
+    /**
+     * Finds the task row an occurrence was saved as earlier.
+     * @param db The database.
+     * @param occurrence The occurrence.
+     * @return The ID of its row, or -1 if it has none.
+     */
+    private int findOccurrenceRow(SQLiteDatabase db, Task occurrence) {
+        Cursor cursor = db.rawQuery("SELECT " + ID + " FROM " + TABLE_TASKS
+                + " WHERE " + RECURRENCE_ID + " = ? AND " + OCCURRENCE_DATE + " = ?",
+                new String[]{String.valueOf(occurrence.getRecurrenceId()), occurrence.getOccurrenceDate()});
+        int id = cursor.moveToFirst() ? cursor.getInt(0) : -1;
+        cursor.close();
+        return id;
+    }
+
+    /**
+     * Checks whether an archive database has been created by {@link TaskArchiver}.
+     * @return true if the archive database file exists, false otherwise.
+     */
+    public boolean hasArchive() {
+        return context.getDatabasePath(ARCHIVE_DATABASE_NAME).exists();
+    }
+
+    /**
+     * Attaches the archive database as the `archive` schema, creating it if needed.
+     * The archive is only attached on demand, so queries that never touch it do not pay for it.
+     * Its `tasks` table is kept column-compatible with the main table.
+     * @return The writable database with the archive attached.
+     */
+    public synchronized SQLiteDatabase attachArchive() {
+        SQLiteDatabase db = getWritableDatabase();
+
+        boolean attached = false;
+        Cursor cursor = db.rawQuery("PRAGMA database_list", null);
+        while (cursor.moveToNext()) {
+            if (ARCHIVE_SCHEMA.equals(cursor.getString(cursor.getColumnIndexOrThrow("name")))) {
+                attached = true;
+            }
+        }
+        cursor.close();
+
+        if (!attached) {
+            String path = context.getDatabasePath(ARCHIVE_DATABASE_NAME).getPath();
+            db.execSQL("ATTACH DATABASE ? AS " + ARCHIVE_SCHEMA, new Object[]{path});
+            ensureArchiveSchema(db);
+        }
+        return db;
+    }
+
+    /**
+     * Creates the archive `tasks` table, or adds any columns the main table gained since
+     * the archive was created, and makes sure the archive's indexes exist.
+     * @param db The database with the archive attached.
+     */
+    private void ensureArchiveSchema(SQLiteDatabase db) {
+        List<String[]> mainColumns = getColumns(db, "main");
+        List<String[]> archiveColumns = getColumns(db, ARCHIVE_SCHEMA);
+
+        if (archiveColumns.isEmpty()) {
+            StringBuilder createTable = new StringBuilder("CREATE TABLE " + ARCHIVE_SCHEMA + "." + TABLE_TASKS
+                    + " (" + ID + " INTEGER PRIMARY KEY");
+            for (String[] column : mainColumns) {
+                if (!ID.equals(column[0])) {
+                    createTable.append(", ").append(column[0]).append(' ').append(column[1]);
+                }
+            }
+            db.execSQL(createTable.append(')').toString());
+        } else {
+            for (String[] column : mainColumns) {
+                boolean present = false;
+                for (String[] archiveColumn : archiveColumns) {
+                    present |= archiveColumn[0].equals(column[0]);
+                }
+                if (!present) {
+                    db.execSQL("ALTER TABLE " + ARCHIVE_SCHEMA + "." + TABLE_TASKS
+                            + " ADD COLUMN " + column[0] + " " + column[1]);
+                }
+            }
+        }
+
+        // Covering index for the per-day minute totals (see addDailyMinutes)
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + ARCHIVE_SCHEMA + ".idx_archive_day_minutes ON " + TABLE_TASKS
+                + " (" + DATE + ", " + STATUS + ", " + DURATION + ")");
+    }
+
+    /**
+     * Lists the columns of the `tasks` table in a schema.
+     * @param db The database to inspect.
+     * @param schema The schema name (e.g., "main" or "archive").
+     * @return The name and declared type of each column, in table order.
+     */
+    List<String[]> getColumns(SQLiteDatabase db, String schema) {
+        List<String[]> columns = new ArrayList<>();
+        Cursor cursor = db.rawQuery("PRAGMA " + schema + ".table_info(" + TABLE_TASKS + ")", null);
+        while (cursor.moveToNext()) {
+            columns.add(new String[]{
+                    cursor.getString(cursor.getColumnIndexOrThrow("name")),
+                    cursor.getString(cursor.getColumnIndexOrThrow("type"))
+            });
+        }
+        cursor.close();
+        return columns;
+    }
+
+    /**
+     * Streams archived tasks with a specific status in bounded, id-ordered chunks.
+     * Attaches the archive database if it is not attached yet.
+     * @param status The status to filter tasks by (e.g., "completed").
+     * @return A closeable iterable over the matching archived tasks.
+     */
+    public TaskIterable streamArchivedTasksByStatus(String status) {
+        SQLiteDatabase db = attachArchive();
+        return new TaskIterable(db, ARCHIVE_SCHEMA + "." + TABLE_TASKS,
+                STATUS + " = ?", new String[]{status}, STREAM_CHUNK_SIZE);
+    }
+
+    /**
+     * Switches the main database to incremental auto-vacuum. This needs a one-time full
+     * VACUUM to take effect, after which freed pages can be released a few at a time.
+     * Must not be called inside a transaction.
+     */
+    public void enableIncrementalVacuum() {
+        SQLiteDatabase db = getWritableDatabase();
+        Cursor cursor = db.rawQuery("PRAGMA main.auto_vacuum", null);
+        int mode = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        cursor.close();
+
+        // 2 = INCREMENTAL
+        if (mode != 2) {
+            db.execSQL("PRAGMA main.auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+        }
+    }
+
+    /**
+     * Releases up to the given number of free pages of the main database back to the file system.
+     * @param pages The maximum number of pages to release.
+     */
+    public void incrementalVacuum(int pages) {
+        // The pragma frees one page per step, so the cursor has to be stepped through
+        Cursor cursor = getWritableDatabase().rawQuery("PRAGMA main.incremental_vacuum(" + pages + ")", null);
+        while (cursor.moveToNext()) {
+            // Keep stepping until the requested pages are freed
+        }
+        cursor.close();
+    }
+}
@@ -0,0 +1,163 @@
+package com.ezxuen.studytracker;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * DayClock tells date-relative screens and counters when "today" changes, so they can
+ * update themselves instead of keeping the date they were created on.
+ *
+ * While it has listeners, the clock listens for the system date, time and time zone
+ * broadcasts, and posts one callback for the next local midnight. Nothing polls: the
+ * current day is only read again when one of these fires, or when a screen comes back to
+ * the foreground and calls {@link #check()}. The midnight callback is not delivered while
+ * the device sleeps; the date broadcast or the next {@link #check()} covers that case.
+ *
+ * Listeners are called on the main thread, for every event, with the day before and after
+ * it; the two are equal when the time or time zone changed within the same day.
+ */
+public class DayClock {
+
+    /**
+     * What made the clock read the current day again.
+     */
+    public enum Change {
+        DAY,        // Midnight passed, or the date was found changed on return to the app
+        TIME,       // The time was set manually
+        TIME_ZONE   // The time zone changed
+    }
+
+    /**
+     * Listener notified when the clock reads the current day again.
+     */
+    public interface DayListener {
+        /**
+         * Called on the main thread after a date, time or time zone event.
+         * @param previousDay The epoch day before the event.
+         * @param today The epoch day after the event.
+         * @param change What caused the event.
+         */
+        void onDayChanged(int previousDay, int today, Change change);
+    }
+
+    // The midnight callback runs this long after midnight, so the new day has surely begun
+    private static final long MIDNIGHT_MARGIN_MS = 1000;
+
+    private static DayClock instance;
+
+    private final Context context;
+    private final List<DayListener> listeners = new CopyOnWriteArrayList<>();
+    private final Runnable midnight = () -> update(Change.DAY);
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (Intent.ACTION_TIMEZONE_CHANGED.equals(action)) {
+                update(Change.TIME_ZONE);
+            } else if (Intent.ACTION_TIME_CHANGED.equals(action)) {
+                update(Change.TIME);
+            } else {
+                update(Change.DAY);
+            }
+        }
+    };
+
+    // Accessed on the main thread only
+    private int today;
+    private boolean running;
+
+    private DayClock(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Gets the shared DayClock instance.
+     * @param context Any context; the application context is used.
+     * @return The shared DayClock.
+     */
+    public static synchronized DayClock getInstance(Context context) {
+        if (instance == null) {
+            instance = new DayClock(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the current day. Called on the main thread.
+     * @return Today's epoch day, as of the last event while the clock runs.
+     */
+    public int getToday() {
+        return running ? today : EpochDay.today();
+    }
+
+    /**
+     * Registers a listener; the first one starts the clock. Called on the main thread.
+     * @param listener The listener to add.
+     */
+    public void addDayListener(DayListener listener) {
+        listeners.add(listener);
+        if (!running) {
+            running = true;
+            today = EpochDay.today();
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_DATE_CHANGED);
+            filter.addAction(Intent.ACTION_TIME_CHANGED);
+            filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+            context.registerReceiver(receiver, filter);
+            scheduleMidnight();
+        }
+    }
+
+    /**
+     * Unregisters a listener; removing the last one stops the clock. Called on the main thread.
+     * @param listener The listener to remove.
+     */
+    public void removeDayListener(DayListener listener) {
+        listeners.remove(listener);
+        if (running && listeners.isEmpty()) {
+            running = false;
+            context.unregisterReceiver(receiver);
+            AppExecutors.cancelOnMain(midnight);
+        }
+    }
+
+    /**
+     * Reads the current day again and notifies the listeners if it changed, e.g. when
+     * returning to the app after the device slept through midnight. Called on the main thread.
+     */
+    public void check() {
+        if (running && EpochDay.today() != today) {
+            update(Change.DAY);
+        }
+    }
+
+    private void update(Change change) {
+        if (!running) {
+            return;
+        }
+        int previousDay = today;
+        today = EpochDay.today();
+        // Time and time zone changes move the next midnight too
+        scheduleMidnight();
+        for (DayListener listener : listeners) {
+            listener.onDayChanged(previousDay, today, change);
+        }
+    }
+
+    private void scheduleMidnight() {
+        Calendar now = Calendar.getInstance();
+        Calendar next = (Calendar) now.clone();
+        next.add(Calendar.DAY_OF_MONTH, 1);
+        next.set(Calendar.HOUR_OF_DAY, 0);
+        next.set(Calendar.MINUTE, 0);
+        next.set(Calendar.SECOND, 0);
+        next.set(Calendar.MILLISECOND, 0);
+        AppExecutors.runOnMainDelayed(midnight, next.getTimeInMillis() - now.getTimeInMillis() + MIDNIGHT_MARGIN_MS);
+    }
+}
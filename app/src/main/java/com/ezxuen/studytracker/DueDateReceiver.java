@@ -0,0 +1,32 @@
+package com.ezxuen.studytracker;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * DueDateReceiver handles the alarm set by {@link DueDateScheduler}, and restores the
+ * alarm after a reboot, since the system clears alarms when the device restarts.
+ */
+public class DueDateReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        DueDateScheduler scheduler = DueDateScheduler.getInstance(context);
+        String action = intent.getAction();
+        PendingResult result = goAsync();
+
+        // Database work runs on the disk I/O thread; the broadcast stays alive until it is done
+        AppExecutors.diskIO().execute(() -> {
+            try {
+                if (DueDateScheduler.ACTION_NOTIFY_DUE.equals(action)) {
+                    scheduler.onAlarm();
+                } else if (Intent.ACTION_BOOT_COMPLETED.equals(action)) {
+                    scheduler.reschedule();
+                }
+            } finally {
+                result.finish();
+            }
+        });
+    }
+}
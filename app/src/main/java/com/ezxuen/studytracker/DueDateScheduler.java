@@ -0,0 +1,260 @@
+package com.ezxuen.studytracker;
+
+import android.Manifest;
+import android.app.AlarmManager;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * DueDateScheduler notifies the user about pending tasks on their due date, while keeping
+ * at most one system alarm registered. The alarm points at the earliest due date that has
+ * not been announced yet, which is found with a single index seek. When it fires, every task
+ * due since the last announcement is reported in one notification and the alarm moves on
+ * to the next due date.
+ *
+ * Task writes reach the scheduler through {@link DatabaseHelper.TaskChangeListener}: a task
+ * due earlier than the alarm moves the alarm without a query, and only a change to a task on
+ * the alarm's own date re-runs the seek. All scheduling work runs on the disk I/O thread.
+ */
+public class DueDateScheduler implements DatabaseHelper.TaskChangeListener {
+    private static final String TAG = "DueDateScheduler";
+    public static final String ACTION_NOTIFY_DUE = "com.ezxuen.studytracker.action.NOTIFY_DUE";
+
+    private static final String CHANNEL_ID = "due_tasks";
+    private static final int NOTIFICATION_ID = 1;
+    private static final String PREFS_NAME = "due_date_scheduler";
+    private static final String KEY_LAST_NOTIFIED_DATE = "last_notified_date";
+
+    // Hour of the day at which the tasks due that day are announced
+    public static final int NOTIFY_HOUR = 8;
+
+    // Maximum number of tasks listed in the expanded notification
+    private static final int MAX_LISTED_TASKS = 6;
+
+    private static DueDateScheduler instance;
+
+    private final Context appContext;
+    private final DatabaseHelper dbHelper;
+    private boolean started;
+    private String scheduledDate; // Due date the alarm points at, or null if none is set
+
+    private DueDateScheduler(Context context) {
+        this.appContext = context.getApplicationContext();
+        this.dbHelper = DatabaseHelper.getInstance(appContext);
+    }
+
+    /**
+     * Gets the shared DueDateScheduler instance.
+     * @param context Any context; the application context is retained.
+     * @return The shared DueDateScheduler.
+     */
+    public static synchronized DueDateScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new DueDateScheduler(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Starts listening for task changes and sets the alarm for the next due date.
+     * Calling this more than once has no effect.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        dbHelper.addTaskChangeListener(this);
+        AppExecutors.diskIO().execute(this::reschedule);
+    }
+
+    @Override
+    public void onTaskChanged(Task before, Task after) {
+        AppExecutors.diskIO().execute(() -> update(before, after));
+    }
+
+    @Override
+    public void onTasksChanged() {
+        AppExecutors.diskIO().execute(this::reschedule);
+    }
+
+    /**
+     * Updates the alarm for a single task change.
+     * @param before The task before the change, or null.
+     * @param after The task after the change, or null.
+     */
+    private void update(Task before, Task after) {
+        String firstDate = getFirstUnannouncedDate();
+        if (after != null && "pending".equals(after.getStatus()) && after.getDate().compareTo(firstDate) >= 0
+                && (scheduledDate == null || after.getDate().compareTo(scheduledDate) < 0)) {
+            // The task is due before the current alarm, so it becomes the next due date
+            setAlarm(after.getDate());
+        } else if (before != null && before.getDate().equals(scheduledDate)) {
+            // The task the alarm points at was moved, completed or deleted
+            reschedule();
+        }
+    }
+
+    /**
+     * Finds the next due date and points the alarm at it, or cancels the alarm if nothing is due.
+     * Meant to run on the disk I/O thread.
+     */
+    public void reschedule() {
+        String nextDate = findNextDueDate(getFirstUnannouncedDate());
+        if (nextDate != null) {
+            setAlarm(nextDate);
+        } else {
+            cancelAlarm();
+        }
+    }
+
+    /**
+     * Announces the pending tasks due since the last announcement in a single notification,
+     * then moves the alarm to the next due date. Meant to run on the disk I/O thread.
+     */
+    public void onAlarm() {
+        String firstDate = getFirstUnannouncedDate();
+        String todayDate = EpochDay.format(EpochDay.today());
+        scheduledDate = null;
+
+        // Tasks of days the alarm could not fire on (e.g. while the device was off) are included
+        List<Task> dueTasks = new ArrayList<>();
+        if (firstDate.compareTo(todayDate) <= 0) {
+            try (TaskIterable tasks = dbHelper.streamTasks(DatabaseHelper.STATUS + " = 'pending' AND "
+                    + DatabaseHelper.DATE + " BETWEEN ? AND ?", new String[]{firstDate, todayDate},
+                    DatabaseHelper.STREAM_CHUNK_SIZE)) {
+                for (Task task : tasks) {
+                    dueTasks.add(task);
+                }
+            }
+            dueTasks.addAll(dbHelper.getOccurrences(firstDate, todayDate));
+            getPreferences().edit().putString(KEY_LAST_NOTIFIED_DATE, todayDate).apply();
+        }
+
+        if (!dueTasks.isEmpty()) {
+            showNotification(dueTasks);
+        }
+        reschedule();
+    }
+
+    /**
+     * Finds the earliest due date of a pending task or recurring occurrence.
+     * @param fromDate The earliest date to consider, in "yyyy-MM-dd" format.
+     * @return The next due date, or null if nothing is due.
+     */
+    private String findNextDueDate(String fromDate) {
+        String nextDate = dbHelper.getNextDueDate(fromDate);
+
+        // Occurrences are only expanded up to the next task row, or the usual horizon
+        String toDate = nextDate != null ? nextDate
+                : EpochDay.format(EpochDay.parse(fromDate) + TaskQuery.OCCURRENCE_HORIZON_DAYS);
+        for (Task occurrence : dbHelper.getOccurrences(fromDate, toDate)) {
+            if (nextDate == null || occurrence.getDate().compareTo(nextDate) < 0) {
+                nextDate = occurrence.getDate();
+            }
+        }
+        return nextDate;
+    }
+
+    /**
+     * Gets the first date whose tasks have not been announced yet.
+     * @return Today, or tomorrow if today's tasks were already announced.
+     */
+    private String getFirstUnannouncedDate() {
+        int today = EpochDay.today();
+        String todayDate = EpochDay.format(today);
+        return todayDate.equals(getPreferences().getString(KEY_LAST_NOTIFIED_DATE, null))
+                ? EpochDay.format(today + 1) : todayDate;
+    }
+
+    /**
+     * Points the single alarm at a due date, replacing any alarm set before.
+     * @param date The due date in "yyyy-MM-dd" format.
+     */
+    private void setAlarm(String date) {
+        Calendar trigger = Calendar.getInstance();
+        trigger.clear();
+        trigger.set(Integer.parseInt(date.substring(0, 4)), Integer.parseInt(date.substring(5, 7)) - 1,
+                Integer.parseInt(date.substring(8, 10)), NOTIFY_HOUR, 0);
+        // A date that is already due (e.g. a task added for today after the usual hour) fires right away
+        long triggerAt = Math.max(trigger.getTimeInMillis(), System.currentTimeMillis());
+
+        AlarmManager alarmManager = (AlarmManager) appContext.getSystemService(Context.ALARM_SERVICE);
+        // Inexact alarms need no special permission; a few minutes' delay is fine for a daily reminder
+        alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, getAlarmIntent());
+        scheduledDate = date;
+        Log.d(TAG, "Next due date alarm set for " + scheduledDate);
+    }
+
+    private void cancelAlarm() {
+        AlarmManager alarmManager = (AlarmManager) appContext.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.cancel(getAlarmIntent());
+        scheduledDate = null;
+    }
+
+    /**
+     * Gets the broadcast fired by the alarm. The same request code is always used,
+     * so setting a new alarm replaces the previous one.
+     */
+    private PendingIntent getAlarmIntent() {
+        Intent intent = new Intent(appContext, DueDateReceiver.class).setAction(ACTION_NOTIFY_DUE);
+        return PendingIntent.getBroadcast(appContext, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    /**
+     * Shows one notification listing the due tasks.
+     * @param dueTasks The tasks to announce.
+     */
+    private void showNotification(List<Task> dueTasks) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(appContext, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Due tasks",
+                    NotificationManager.IMPORTANCE_DEFAULT);
+            appContext.getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+
+        String title = dueTasks.size() == 1 ? "1 study task due" : dueTasks.size() + " study tasks due";
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        for (int i = 0; i < Math.min(dueTasks.size(), MAX_LISTED_TASKS); i++) {
+            Task task = dueTasks.get(i);
+            style.addLine(task.getName() + " - " + task.getTopic() + " (" + task.getDate() + ")");
+        }
+        if (dueTasks.size() > MAX_LISTED_TASKS) {
+            style.setSummaryText("+" + (dueTasks.size() - MAX_LISTED_TASKS) + " more");
+        }
+
+        Intent openApp = new Intent(appContext, MainActivity.class).setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(appContext, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_notifications_black_24dp)
+                .setContentTitle(title)
+                .setContentText(dueTasks.get(0).getName() + (dueTasks.size() > 1 ? " and more" : ""))
+                .setStyle(style)
+                .setAutoCancel(true)
+                .setContentIntent(PendingIntent.getActivity(appContext, 0, openApp, PendingIntent.FLAG_IMMUTABLE));
+        NotificationManagerCompat.from(appContext).notify(NOTIFICATION_ID, builder.build());
+    }
+
+    private SharedPreferences getPreferences() {
+        return appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,91 @@
+package com.ezxuen.studytracker;
+
+import java.util.Calendar;
+import java.util.Locale;
+
+/**
+ * EpochDay converts between "yyyy-MM-dd" date strings and day numbers counted from
+ * 1970-01-01, so date arithmetic (adding days, finding weekdays) is plain integer math.
+ * The conversion is pure arithmetic on the proleptic Gregorian calendar and does not
+ * depend on the device time zone.
+ */
+public final class EpochDay {
+
+    private EpochDay() {
+    }
+
+    /**
+     * Parses a date string into an epoch day.
+     * @param date The date in "yyyy-MM-dd" format.
+     * @return The number of days since 1970-01-01.
+     */
+    public static int parse(String date) {
+        int year = Integer.parseInt(date.substring(0, 4));
+        int month = Integer.parseInt(date.substring(5, 7));
+        int day = Integer.parseInt(date.substring(8, 10));
+        return of(year, month, day);
+    }
+
+    /**
+     * Converts a calendar date into an epoch day.
+     * @param year The year (e.g., 2024).
+     * @param month The month, from 1 to 12.
+     * @param day The day of the month, from 1 to 31.
+     * @return The number of days since 1970-01-01.
+     */
+    public static int of(int year, int month, int day) {
+        // Days-from-civil algorithm, with years starting in March so leap days come last
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Formats an epoch day as a date string.
+     * @param epochDay The number of days since 1970-01-01.
+     * @return The date in "yyyy-MM-dd" format.
+     */
+    public static String format(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return String.format(Locale.US, "%04d-%02d-%02d", year, month, day);
+    }
+
+    /**
+     * Gets the day of the week of an epoch day.
+     * @param epochDay The number of days since 1970-01-01.
+     * @return 0 for Monday through 6 for Sunday.
+     */
+    public static int dayOfWeek(int epochDay) {
+        // 1970-01-01 was a Thursday
+        return Math.floorMod(epochDay + 3, 7);
+    }
+
+    /**
+     * Gets the Monday of the week containing an epoch day.
+     * @param epochDay The number of days since 1970-01-01.
+     * @return The epoch day of that week's Monday.
+     */
+    public static int weekStart(int epochDay) {
+        return epochDay - dayOfWeek(epochDay);
+    }
+
+    /**
+     * Gets the current local date as an epoch day.
+     * @return Today's epoch day in the device time zone.
+     */
+    public static int today() {
+        Calendar calendar = Calendar.getInstance();
+        return of(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+    }
+}
@@ -0,0 +1,132 @@
+package com.ezxuen.studytracker;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HomeSnapshot stores the first screenful of Home tasks in a compact binary file.
+ * On cold start the file is memory-mapped and shown before the database is opened,
+ * and the live query then replaces it in the background.
+ *
+ * File layout: magic, version, row count, then for each row the id, duration, recurrence id
+ * and the name, topic, status, date and occurrence date strings (length-prefixed UTF-8).
+ */
+public final class HomeSnapshot {
+    private static final String TAG = "HomeSnapshot";
+    private static final String FILE_NAME = "home_snapshot.bin";
+    private static final int MAGIC = 0x53544853; // "STHS"
+    private static final int VERSION = 2;
+
+    // Number of tasks kept in the snapshot (about one screen of cards)
+    public static final int MAX_TASKS = 20;
+
+    private HomeSnapshot() {
+    }
+
+    /**
+     * Writes the first tasks of the Home list to the snapshot file.
+     * The file is written to a temporary path and renamed so a reader never sees a partial file.
+     * @param context The context used to locate the app's files directory.
+     * @param tasks The tasks currently shown on the Home screen, in display order.
+     */
+    public static void write(Context context, List<Task> tasks) {
+        File target = new File(context.getFilesDir(), FILE_NAME);
+        File temp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+        int count = Math.min(tasks.size(), MAX_TASKS);
+
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                Task task = tasks.get(i);
+                out.writeInt(task.getId());
+                out.writeInt(task.getDuration());
+                out.writeInt(task.getRecurrenceId());
+                writeString(out, task.getName());
+                writeString(out, task.getTopic());
+                writeString(out, task.getStatus());
+                writeString(out, task.getDate());
+                writeString(out, task.getOccurrenceDate());
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write Home snapshot", e);
+            temp.delete();
+            return;
+        }
+
+        if (!temp.renameTo(target)) {
+            Log.w(TAG, "Failed to replace Home snapshot");
+            temp.delete();
+        }
+    }
+
+    /**
+     * Reads the snapshot by memory-mapping the file.
+     * Tasks whose due date has passed since the snapshot was written are skipped.
+     * @param context The context used to locate the app's files directory.
+     * @param todayDate The current date in "yyyy-MM-dd" format.
+     * @return The snapshot tasks, or null if there is no usable snapshot.
+     */
+    public static List<Task> read(Context context, String todayDate) {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+
+            int count = buffer.getInt();
+            List<Task> tasks = new ArrayList<>(Math.min(count, MAX_TASKS));
+            for (int i = 0; i < count; i++) {
+                int id = buffer.getInt();
+                int duration = buffer.getInt();
+                int recurrenceId = buffer.getInt();
+                String name = readString(buffer);
+                String topic = readString(buffer);
+                String status = readString(buffer);
+                String date = readString(buffer);
+                String occurrenceDate = readString(buffer);
+                if (date.compareTo(todayDate) >= 0) {
+                    Task task = new Task(id, name, topic, status, duration, date);
+                    if (recurrenceId != 0) {
+                        task.setOccurrence(recurrenceId, occurrenceDate);
+                    }
+                    tasks.add(task);
+                }
+            }
+            return tasks;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Ignoring unreadable Home snapshot", e);
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,21 +1,30 @@
 package com.ezxuen.studytracker;
 
+import android.Manifest;
+import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
 import androidx.navigation.NavController;
 import androidx.navigation.fragment.NavHostFragment;
 import androidx.navigation.ui.AppBarConfiguration;
 import androidx.navigation.ui.NavigationUI;
 
 import com.ezxuen.studytracker.databinding.ActivityMainBinding;
+import com.google.android.material.badge.BadgeDrawable;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
 /**
  * MainActivity serves as the entry point for the Study Tracker app.
- * It manages the BottomNavigationView and navigation between fragments.
+ * It manages the BottomNavigationView and navigation between fragments,
+ * and shows the number of overdue tasks as a badge on the Home item.
  */
-public class MainActivity extends AppCompatActivity {
+public class MainActivity extends AppCompatActivity implements OverdueCounter.CountListener {
+
+    private static final int REQUEST_NOTIFICATIONS = 1;
 
     private ActivityMainBinding binding;
 
@@ -27,6 +36,14 @@ public class MainActivity extends AppCompatActivity {
         binding = ActivityMainBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
+        // Due date reminders need the notification permission on Android 13 and later
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.POST_NOTIFICATIONS},
+                    REQUEST_NOTIFICATIONS);
+        }
+
         try {
             // Find the NavHostFragment that manages the navigation graph
             NavHostFragment navHostFragment = (NavHostFragment) getSupportFragmentManager()
@@ -46,7 +63,7 @@ public class MainActivity extends AppCompatActivity {
 
             // Define the top-level destinations for the app
             AppBarConfiguration appBarConfiguration = new AppBarConfiguration.Builder(
-                    R.id.navigation_home, R.id.navigation_reminder, R.id.navigation_history)
+                    R.id.navigation_home, R.id.navigation_reminder, R.id.navigation_calendar, R.id.navigation_history)
                     .build();
 
             // Link the NavController to the ActionBar and BottomNavigationView
@@ -60,6 +77,30 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // The counter keeps the count current, so this only queries on the first start of a day
+        OverdueCounter.getInstance(this).addCountListener(this);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        OverdueCounter.getInstance(this).removeCountListener(this);
+    }
+
+    /**
+     * Shows the number of overdue tasks on the Home item, or hides the badge if there are none.
+     * @param count The number of overdue tasks.
+     */
+    @Override
+    public void onOverdueCountChanged(int count) {
+        BadgeDrawable badge = binding.navView.getOrCreateBadge(R.id.navigation_home);
+        badge.setNumber(count);
+        badge.setVisible(count > 0);
+    }
+
     /**
      * Handles navigation when the up button is pressed.
      * @return true if navigation was handled, false otherwise.
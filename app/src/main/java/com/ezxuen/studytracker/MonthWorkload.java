@@ -0,0 +1,103 @@
+package com.ezxuen.studytracker;
+
+/**
+ * MonthWorkload holds the planned and completed study minutes of each day of one month.
+ * Planned minutes count every task due on a day; completed minutes only the completed ones.
+ */
+public class MonthWorkload {
+    private final int year;
+    private final int month;
+    private final int[] plannedMinutes;
+    private final int[] completedMinutes;
+
+    /**
+     * Constructs a MonthWorkload.
+     * @param year The year (e.g., 2024).
+     * @param month The month, from 1 to 12.
+     * @param plannedMinutes The planned minutes of each day, indexed by day of month minus one.
+     * @param completedMinutes The completed minutes of each day, indexed the same way.
+     */
+    public MonthWorkload(int year, int month, int[] plannedMinutes, int[] completedMinutes) {
+        this.year = year;
+        this.month = month;
+        this.plannedMinutes = plannedMinutes;
+        this.completedMinutes = completedMinutes;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * Gets the number of days in the month.
+     * @return The number of days, from 28 to 31.
+     */
+    public int getDayCount() {
+        return plannedMinutes.length;
+    }
+
+    /**
+     * Gets the epoch day of the first day of the month.
+     * @return The number of days from 1970-01-01 to the 1st of the month.
+     */
+    public int getFirstDay() {
+        return EpochDay.of(year, month, 1);
+    }
+
+    /**
+     * Gets the planned minutes of a day.
+     * @param dayOfMonth The day of the month, starting at 1.
+     * @return The minutes of all tasks due that day.
+     */
+    public int getPlannedMinutes(int dayOfMonth) {
+        return plannedMinutes[dayOfMonth - 1];
+    }
+
+    /**
+     * Gets the completed minutes of a day.
+     * @param dayOfMonth The day of the month, starting at 1.
+     * @return The minutes of the completed tasks due that day.
+     */
+    public int getCompletedMinutes(int dayOfMonth) {
+        return completedMinutes[dayOfMonth - 1];
+    }
+
+    /**
+     * Gets the planned minutes of the whole month.
+     * @return The total planned minutes.
+     */
+    public int getTotalPlannedMinutes() {
+        int total = 0;
+        for (int minutes : plannedMinutes) {
+            total += minutes;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the completed minutes of the whole month.
+     * @return The total completed minutes.
+     */
+    public int getTotalCompletedMinutes() {
+        int total = 0;
+        for (int minutes : completedMinutes) {
+            total += minutes;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of days in a month.
+     * @param year The year.
+     * @param month The month, from 1 to 12.
+     * @return The number of days in the month.
+     */
+    public static int daysInMonth(int year, int month) {
+        int nextMonthStart = month == 12 ? EpochDay.of(year + 1, 1, 1) : EpochDay.of(year, month + 1, 1);
+        return nextMonthStart - EpochDay.of(year, month, 1);
+    }
+}
@@ -0,0 +1,165 @@
+package com.ezxuen.studytracker;
+
+import android.content.Context;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * OverdueCounter keeps the number of pending tasks whose due date has passed, for the badge
+ * on the bottom navigation. The count is read once with an index-only COUNT query and then
+ * kept up to date through {@link DatabaseHelper.TaskChangeListener}: a single task write
+ * adds or subtracts one by comparing the task before and after, so showing the badge again
+ * (e.g., when switching tabs or returning to the app) does not query the database.
+ * It is counted again only after a bulk write or when the date has changed; while it has
+ * listeners, the {@link DayClock} reports date changes as they happen.
+ *
+ * The count is maintained on the disk I/O thread and reported to listeners on the main thread.
+ */
+public class OverdueCounter implements DatabaseHelper.TaskChangeListener, DayClock.DayListener {
+
+    /**
+     * Listener notified when the overdue count changes.
+     */
+    public interface CountListener {
+        /**
+         * Called on the main thread with the current count.
+         * @param count The number of overdue tasks.
+         */
+        void onOverdueCountChanged(int count);
+    }
+
+    private static OverdueCounter instance;
+
+    private final DatabaseHelper dbHelper;
+    private final DayClock dayClock;
+    private final List<CountListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Accessed on the disk I/O thread only
+    private int count = -1;    // -1 until the first count
+    private int countDay = -1; // Epoch day the count was made for
+
+    private OverdueCounter(Context context) {
+        this.dbHelper = DatabaseHelper.getInstance(context);
+        this.dayClock = DayClock.getInstance(context);
+        dbHelper.addTaskChangeListener(this);
+    }
+
+    /**
+     * Gets the shared OverdueCounter instance.
+     * @param context Any context; the application context is used.
+     * @return The shared OverdueCounter.
+     */
+    public static synchronized OverdueCounter getInstance(Context context) {
+        if (instance == null) {
+            instance = new OverdueCounter(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a listener and reports the current count to it. The count is only
+     * queried if it is not known yet or was made on an earlier day. Called on the main thread.
+     * @param listener The listener to add.
+     */
+    public void addCountListener(CountListener listener) {
+        if (listeners.isEmpty()) {
+            dayClock.addDayListener(this);
+        }
+        listeners.add(listener);
+        AppExecutors.diskIO().execute(() -> {
+            if (count == -1 || countDay != EpochDay.today()) {
+                recount();
+            }
+            int current = count;
+            AppExecutors.runOnMain(() -> {
+                if (listeners.contains(listener)) {
+                    listener.onOverdueCountChanged(current);
+                }
+            });
+        });
+    }
+
+    /**
+     * Unregisters a listener added with {@link #addCountListener(CountListener)}.
+     * @param listener The listener to remove.
+     */
+    public void removeCountListener(CountListener listener) {
+        if (listeners.remove(listener) && listeners.isEmpty()) {
+            dayClock.removeDayListener(this);
+        }
+    }
+
+    @Override
+    public void onDayChanged(int previousDay, int today, DayClock.Change change) {
+        if (previousDay == today) {
+            return;
+        }
+        // Pending tasks due on the previous day are overdue now
+        AppExecutors.diskIO().execute(() -> {
+            if (count != -1 && countDay != EpochDay.today()) {
+                recount();
+                publish();
+            }
+        });
+    }
+
+    @Override
+    public void onTaskChanged(Task before, Task after) {
+        AppExecutors.diskIO().execute(() -> {
+            if (count == -1) {
+                // Nothing has been counted yet; the first listener will count
+                return;
+            }
+            int today = EpochDay.today();
+            if (countDay != today) {
+                recount();
+            } else {
+                count += (isOverdue(after, today) ? 1 : 0) - (isOverdue(before, today) ? 1 : 0);
+            }
+            publish();
+        });
+    }
+
+    @Override
+    public void onTasksChanged() {
+        AppExecutors.diskIO().execute(() -> {
+            if (count != -1) {
+                recount();
+                publish();
+            }
+        });
+    }
+
+    /**
+     * Counts the overdue tasks with one query. Meant to run on the disk I/O thread.
+     */
+    private void recount() {
+        int today = EpochDay.today();
+        count = dbHelper.countOverdueTasks(EpochDay.format(today));
+        countDay = today;
+    }
+
+    /**
+     * Reports the current count to every listener. Meant to run on the disk I/O thread.
+     */
+    private void publish() {
+        int current = count;
+        AppExecutors.runOnMain(() -> {
+            for (CountListener listener : listeners) {
+                listener.onOverdueCountChanged(current);
+            }
+        });
+    }
+
+    /**
+     * Checks whether a task counts as overdue on a day.
+     * @param task The task, or null.
+     * @param today The current epoch day.
+     * @return true if the task is a saved, pending task due before that day.
+     */
+    static boolean isOverdue(Task task, int today) {
+        return task != null && !task.isVirtual() && "pending".equals(task.getStatus())
+                && EpochDay.parse(task.getDate()) < today;
+    }
+}
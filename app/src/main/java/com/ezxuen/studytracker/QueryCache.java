@@ -0,0 +1,337 @@
+package com.ezxuen.studytracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * QueryCache keeps the results of recent {@link DatabaseHelper} reads in memory, so a
+ * query repeated with the same arguments (opening the same task, re-creating a tab) is
+ * answered without SQLite.
+ *
+ * Results are keyed by query and arguments and evicted least recently used first, once
+ * their estimated size exceeds a byte budget. Every table has a generation counter that
+ * each write bumps. A result is only served while the generations of the tables it was
+ * read from are unchanged, so a read made after a write has returned never sees data
+ * from before it. A result loaded while a write was in progress is returned but not kept.
+ *
+ * Callers get copies of the cached values (see {@link Type}), since tasks handed to the
+ * UI are changed in place.
+ */
+public class QueryCache {
+    /**
+     * Describes how values of a result type are copied and sized.
+     * @param <T> The result type.
+     */
+    public interface Type<T> {
+        /**
+         * Copies a value, so the caller can change it without affecting the cache.
+         * @param value The cached value, which may be null.
+         * @return An independent copy.
+         */
+        T copy(T value);
+
+        /**
+         * Estimates the heap size of a value.
+         * @param value The value, which may be null.
+         * @return The estimated size in bytes.
+         */
+        int sizeOf(T value);
+    }
+
+    /**
+     * Runs a query when its result is not cached.
+     * @param <T> The result type.
+     */
+    public interface Loader<T> {
+        T load();
+    }
+
+    // Estimated sizes of the objects making up an entry
+    private static final int OBJECT_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+    private static final int STRING_BYTES = 40;
+    private static final int ENTRY_BYTES = 96;
+
+    /** A single task, or null if it was not found. */
+    public static final Type<Task> TASK = new Type<Task>() {
+        @Override
+        public Task copy(Task task) {
+            return task == null ? null : task.copy();
+        }
+
+        @Override
+        public int sizeOf(Task task) {
+            if (task == null) {
+                return 0;
+            }
+            return OBJECT_BYTES + 6 * REFERENCE_BYTES + 8 + stringBytes(task.getName())
+                    + stringBytes(task.getTopic()) + stringBytes(task.getStatus()) + stringBytes(task.getDate())
+                    + stringBytes(task.getOccurrenceDate());
+        }
+    };
+
+    /** A list of tasks. */
+    public static final Type<List<Task>> TASKS = new Type<List<Task>>() {
+        @Override
+        public List<Task> copy(List<Task> tasks) {
+            List<Task> copy = new ArrayList<>(tasks.size());
+            for (Task task : tasks) {
+                copy.add(task.copy());
+            }
+            return copy;
+        }
+
+        @Override
+        public int sizeOf(List<Task> tasks) {
+            int size = OBJECT_BYTES + REFERENCE_BYTES * tasks.size();
+            for (Task task : tasks) {
+                size += TASK.sizeOf(task);
+            }
+            return size;
+        }
+    };
+
+    /** A list of task ids. */
+    public static final Type<List<Integer>> IDS = new Type<List<Integer>>() {
+        @Override
+        public List<Integer> copy(List<Integer> ids) {
+            return new ArrayList<>(ids);
+        }
+
+        @Override
+        public int sizeOf(List<Integer> ids) {
+            return OBJECT_BYTES + (REFERENCE_BYTES + OBJECT_BYTES) * ids.size();
+        }
+    };
+
+    // Counts, dates and other immutable values are shared rather than copied
+    private static final Type<Object> IMMUTABLE = new Type<Object>() {
+        @Override
+        public Object copy(Object value) {
+            return value;
+        }
+
+        @Override
+        public int sizeOf(Object value) {
+            return value instanceof String ? stringBytes((String) value) : OBJECT_BYTES;
+        }
+    };
+
+    /**
+     * Gets the type of an immutable result, such as a count or a date string.
+     * @param <T> The result type.
+     * @return A type that hands out the cached value itself.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Type<T> immutable() {
+        return (Type<T>) IMMUTABLE;
+    }
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> generations = new HashMap<>();
+    private long maxBytes;
+    private long sizeBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructs a QueryCache.
+     * @param maxBytes The estimated size the cached results may take up.
+     */
+    public QueryCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets a query result from the cache, or runs the query and caches its result.
+     * The query runs outside the cache's lock, so slow reads do not block other lookups.
+     * @param query The query, e.g. its SQL; together with the arguments it identifies the result.
+     * @param args The arguments of the query.
+     * @param tables The tables the query reads from.
+     * @param type How the result is copied and sized.
+     * @param loader Runs the query.
+     * @param <T> The result type.
+     * @return A copy of the cached or loaded result.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String query, Object[] args, String[] tables, Type<T> type, Loader<T> loader) {
+        Key key = new Key(query, args);
+        long[] loadedAt;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && isCurrent(entry.tables, entry.generations)) {
+                hits++;
+                return type.copy((T) entry.value);
+            }
+            if (entry != null) {
+                remove(key, entry);
+            }
+            misses++;
+            loadedAt = currentGenerations(tables);
+        }
+
+        T value = loader.load();
+        int size = ENTRY_BYTES + key.sizeOf() + type.sizeOf(value);
+        synchronized (this) {
+            // A write during the load may have made the value stale already
+            if (size <= maxBytes && isCurrent(tables, loadedAt)) {
+                Entry previous = entries.put(key, new Entry(type.copy(value), tables, loadedAt, size));
+                if (previous != null) {
+                    sizeBytes -= previous.size;
+                }
+                sizeBytes += size;
+                trimToSize();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Marks every cached result read from a table as stale. Called after each write.
+     * @param table The table that was written.
+     */
+    public synchronized void invalidate(String table) {
+        Long generation = generations.get(table);
+        generations.put(table, generation == null ? 1 : generation + 1);
+    }
+
+    /**
+     * Drops every cached result.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        sizeBytes = 0;
+    }
+
+    /**
+     * Changes the byte budget, evicting results until the cache fits it.
+     * A budget of 0 turns caching off.
+     * @param maxBytes The estimated size the cached results may take up.
+     */
+    public synchronized void resize(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trimToSize();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the estimated size of the cached results.
+     * @return The size in bytes, including stale results not evicted yet.
+     */
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QueryCache{entries=" + entries.size() + ", bytes=" + sizeBytes + "/" + maxBytes
+                + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "}";
+    }
+
+    private long[] currentGenerations(String[] tables) {
+        long[] current = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            Long generation = generations.get(tables[i]);
+            current[i] = generation == null ? 0 : generation;
+        }
+        return current;
+    }
+
+    private boolean isCurrent(String[] tables, long[] loadedAt) {
+        return Arrays.equals(currentGenerations(tables), loadedAt);
+    }
+
+    private void remove(Key key, Entry entry) {
+        entries.remove(key);
+        sizeBytes -= entry.size;
+    }
+
+    private void trimToSize() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (sizeBytes > maxBytes && iterator.hasNext()) {
+            sizeBytes -= iterator.next().size;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private static int stringBytes(String text) {
+        return text == null ? 0 : STRING_BYTES + 2 * text.length();
+    }
+
+    /**
+     * Identifies a result by its query and arguments.
+     */
+    private static final class Key {
+        private final String query;
+        private final Object[] args;
+        private final int hash;
+
+        Key(String query, Object[] args) {
+            this.query = query;
+            this.args = args;
+            this.hash = 31 * query.hashCode() + Arrays.hashCode(args);
+        }
+
+        int sizeOf() {
+            int size = OBJECT_BYTES + REFERENCE_BYTES * args.length;
+            for (Object arg : args) {
+                size += arg instanceof String ? stringBytes((String) arg) : OBJECT_BYTES;
+            }
+            // The query text is usually built per call, so it is counted too
+            return size + stringBytes(query);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && query.equals(other.query) && Arrays.equals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A cached result with the generations of the tables it was read from.
+     */
+    private static final class Entry {
+        final Object value;
+        final String[] tables;
+        final long[] generations;
+        final int size;
+
+        Entry(Object value, String[] tables, long[] generations, int size) {
+            this.value = value;
+            this.tables = tables;
+            this.generations = generations;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.ezxuen.studytracker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RecurrenceRule describes a repeating study task that is stored once instead of as one
+ * row per repeat. Occurrences are expanded on demand, only for the date window a view
+ * asks for, so the cost is proportional to the window and not to the length of the rule.
+ */
+public class RecurrenceRule {
+    public static final String DAILY = "daily";
+    public static final String WEEKLY = "weekly";
+
+    // Occurrences of rules below this id, on days 0 to 0xFFFF (until 2149), get an id packed
+    // from the rule id and day, between -1 and -(2^30 - 1)
+    private static final int MAX_PACKED_RULE_ID = 1 << 14;
+
+    // Other occurrences are numbered from here downwards, once per process
+    private static final int FIRST_ASSIGNED_ID = -(1 << 30);
+
+    private static final Map<Long, Integer> assignedIds = new HashMap<>(); // (rule id, day) to virtual id
+    private static int nextAssignedId = FIRST_ASSIGNED_ID;
+
+    private final int id;
+    private final String name;
+    private final String topic;
+    private final int duration;
+    private final String frequency;
+    private final int interval;
+    private final int weekdays;
+    private final int startDay;
+    private final int untilDay;
+    private final int count;
+
+    /**
+     * Constructs a RecurrenceRule.
+     * @param id The unique identifier of the rule.
+     * @param name The name given to every occurrence.
+     * @param topic The topic given to every occurrence.
+     * @param duration The duration of every occurrence in minutes.
+     * @param frequency {@link #DAILY} or {@link #WEEKLY}.
+     * @param interval Repeat every this many days or weeks (at least 1).
+     * @param weekdays For weekly rules, a bit mask of weekdays (bit 0 = Monday ... bit 6 = Sunday);
+     *                 0 means the weekday of the start date.
+     * @param startDay The epoch day of the first occurrence.
+     * @param untilDay The last epoch day an occurrence may fall on, or -1 for no end date.
+     * @param count The maximum number of occurrences, or 0 for no limit.
+     */
+    public RecurrenceRule(int id, String name, String topic, int duration, String frequency,
+                          int interval, int weekdays, int startDay, int untilDay, int count) {
+        this.id = id;
+        this.name = name;
+        this.topic = topic;
+        this.duration = duration;
+        this.frequency = frequency;
+        this.interval = Math.max(1, interval);
+        this.weekdays = weekdays != 0 ? weekdays : 1 << EpochDay.dayOfWeek(startDay);
+        this.startDay = startDay;
+        this.untilDay = untilDay;
+        this.count = count;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * Lists the occurrences that fall within a window of days.
+     * @param fromDay The first epoch day of the window (inclusive).
+     * @param toDay The last epoch day of the window (inclusive).
+     * @return The epoch days of the occurrences, in ascending order.
+     */
+    public List<Integer> occurrencesBetween(int fromDay, int toDay) {
+        List<Integer> days = new ArrayList<>();
+        int first = Math.max(fromDay, startDay);
+        int last = untilDay >= 0 ? Math.min(toDay, untilDay) : toDay;
+        if (first > last) {
+            return days;
+        }
+
+        // Occurrences before the window count towards the limit
+        long index = countBefore(first);
+        for (int day = first; day <= last; day++) {
+            if (count > 0 && index >= count) {
+                break;
+            }
+            if (occursOn(day)) {
+                days.add(day);
+                index++;
+            }
+        }
+        return days;
+    }
+
+    /**
+     * Checks whether the rule's pattern includes a day, ignoring the end date and count.
+     * @param day An epoch day on or after the start day.
+     * @return true if the pattern includes the day.
+     */
+    private boolean occursOn(int day) {
+        if (WEEKLY.equals(frequency)) {
+            int week = (EpochDay.weekStart(day) - EpochDay.weekStart(startDay)) / 7;
+            return week % interval == 0 && (weekdays & (1 << EpochDay.dayOfWeek(day))) != 0;
+        }
+        return (day - startDay) % interval == 0;
+    }
+
+    /**
+     * Counts the occurrences before a day without enumerating them.
+     * @param day An epoch day on or after the start day.
+     * @return The number of occurrences from the start day up to (not including) the day.
+     */
+    long countBefore(int day) {
+        if (!WEEKLY.equals(frequency)) {
+            return (day - startDay + interval - 1) / interval;
+        }
+
+        int perWeek = Integer.bitCount(weekdays);
+        int week = (EpochDay.weekStart(day) - EpochDay.weekStart(startDay)) / 7;
+        // Active weeks entirely before the day's week, minus the days of the first week before the start
+        long total = (long) ((week + interval - 1) / interval) * perWeek
+                - Integer.bitCount(weekdays & ((1 << EpochDay.dayOfWeek(startDay)) - 1));
+        if (week % interval == 0) {
+            total += Integer.bitCount(weekdays & ((1 << EpochDay.dayOfWeek(day)) - 1));
+        }
+        return total;
+    }
+
+    /**
+     * Creates the task shown for an occurrence that has not been saved as a row.
+     * Its id is negative and unique to the rule and day, and stable across reloads.
+     * @param day The epoch day of the occurrence.
+     * @return A pending Task for the occurrence.
+     */
+    public Task toTask(int day) {
+        Task task = new Task(virtualId(id, day), name, topic, "pending", duration, EpochDay.format(day));
+        task.setOccurrence(id, EpochDay.format(day));
+        return task;
+    }
+
+    /**
+     * Gets the id of the task shown for an occurrence. Ids are packed from the rule id and
+     * day while both are small enough; beyond that each occurrence is given the next free id
+     * below the packed range, and keeps it for the rest of the process.
+     * @param ruleId The ID of the recurrence rule.
+     * @param day The epoch day of the occurrence.
+     * @return A negative id, different for every rule and day.
+     */
+    static int virtualId(int ruleId, int day) {
+        if (ruleId > 0 && ruleId < MAX_PACKED_RULE_ID && day >= 0 && day <= 0xFFFF) {
+            return -(ruleId * 65536 + day);
+        }
+        synchronized (assignedIds) {
+            long key = ((long) ruleId << 32) | (day & 0xFFFFFFFFL);
+            Integer virtualId = assignedIds.get(key);
+            if (virtualId == null) {
+                if (nextAssignedId == Integer.MIN_VALUE) {
+                    throw new IllegalStateException("Out of occurrence ids");
+                }
+                virtualId = nextAssignedId--;
+                assignedIds.put(key, virtualId);
+            }
+            return virtualId;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.ezxuen.studytracker;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * StartupMetrics logs how long the app takes from process start until content is shown,
+ * along with the duration of each startup stage.
+ * Each milestone is reported only once per process, so only the cold start is measured.
+ *
+ * Home first shows the stored snapshot and then the live query; once both are reached
+ * their times are logged together on one line, e.g. for collecting several runs with
+ * {@code adb logcat -s StartupMetrics}. The live query time is only a proxy for a start
+ * without the snapshot: it is measured under the current pipeline, where the query runs
+ * asynchronously after the prefetch, not on the old synchronous load path. The actual
+ * before/after comparison needs cold starts of the old build.
+ */
+public final class StartupMetrics {
+    private static final String TAG = "StartupMetrics";
+
+    // Milestones reported by the Home screen
+    public static final String SNAPSHOT = "snapshot";
+    public static final String LIVE_QUERY = "live query";
+
+    private static final Map<String, Long> reported = new HashMap<>(); // Milestone to time since process start
+
+    private StartupMetrics() {
+    }
+
+    /**
+     * Gets the time elapsed since the process was started.
+     * @return The elapsed time in milliseconds.
+     */
+    public static long sinceProcessStart() {
+        return SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+    }
+
+    /**
+     * Logs the cold-start-to-content time for a milestone the first time it is reached.
+     * @param milestone A short name for the milestone (e.g., "snapshot", "live query").
+     */
+    public static synchronized void markContentShown(String milestone) {
+        if (reported.containsKey(milestone)) {
+            return;
+        }
+        long elapsed = sinceProcessStart();
+        reported.put(milestone, elapsed);
+        Log.i(TAG, "Cold start to " + milestone + " content: " + elapsed + " ms");
+
+        Long snapshot = reported.get(SNAPSHOT);
+        Long liveQuery = reported.get(LIVE_QUERY);
+        if (snapshot != null && liveQuery != null) {
+            Log.i(TAG, "Cold start to content: snapshot " + snapshot + " ms, live query " + liveQuery
+                    + " ms (proxy for no snapshot, not the old synchronous load), difference "
+                    + (liveQuery - snapshot) + " ms");
+        }
+    }
+
+    /**
+     * Logs the duration of a startup stage.
+     * @param stage A short name for the stage (e.g., "database open").
+     * @param durationMs How long the stage took in milliseconds.
+     */
+    public static void logStage(String stage, long durationMs) {
+        Log.i(TAG, "Startup stage '" + stage + "' took " + durationMs + " ms");
+    }
+}
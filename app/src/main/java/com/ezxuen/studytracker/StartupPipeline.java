@@ -0,0 +1,118 @@
+package com.ezxuen.studytracker;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * StartupPipeline warms up the database as early as the process starts.
+ * It opens the database (running any schema creation or migration) and prefetches
+ * the Home query on the disk I/O thread, logging the time taken by each stage, and hands
+ * the page over through a future that the Home list awaits.
+ *
+ * Only then is maintenance submitted to {@link AppExecutors#maintenance()}: archiving,
+ * purging, building the {@link StatsEngine} totals if needed and starting the
+ * {@link DueDateScheduler} and the {@link TodayWidgetUpdater}. None of it runs on the
+ * disk I/O thread, so the Home load never queues behind a VACUUM or a stats build.
+ */
+public final class StartupPipeline {
+    private static StartupPipeline instance;
+
+    private final Context appContext;
+    private final CompletableFuture<List<Task>> prefetchedHomeTasks = new CompletableFuture<>();
+    private boolean started;
+    private boolean taken;
+    private volatile String prefetchedDate;
+
+    private StartupPipeline(Context context) {
+        this.appContext = context.getApplicationContext();
+    }
+
+    /**
+     * Gets the shared StartupPipeline instance.
+     * @param context Any context; the application context is retained.
+     * @return The shared StartupPipeline.
+     */
+    public static synchronized StartupPipeline getInstance(Context context) {
+        if (instance == null) {
+            instance = new StartupPipeline(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Starts the pipeline on the disk I/O thread. Calling this more than once has no effect.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        StartupMetrics.logStage("process start to pipeline start", StartupMetrics.sinceProcessStart());
+        AppExecutors.diskIO().execute(this::run);
+    }
+
+    /**
+     * Runs the startup stages on the disk I/O thread: database open and migration, then the
+     * Home prefetch. Maintenance is handed to its own executor once the page is ready.
+     */
+    private void run() {
+        List<Task> homeTasks = null;
+        try {
+            long start = SystemClock.elapsedRealtime();
+            DatabaseHelper dbHelper = DatabaseHelper.getInstance(appContext);
+            dbHelper.getWritableDatabase();
+            long opened = SystemClock.elapsedRealtime();
+            StartupMetrics.logStage("database open and migration", opened - start);
+
+            String todayDate = EpochDay.format(EpochDay.today());
+            homeTasks = dbHelper.queryTasks(TaskQuery.dueTodayOrLater(todayDate), null, TaskQuery.PAGE_SIZE);
+            StartupMetrics.logStage("Home prefetch", SystemClock.elapsedRealtime() - opened);
+            prefetchedDate = todayDate;
+        } finally {
+            // Never leave the Home list waiting; without a page it queries the database itself
+            prefetchedHomeTasks.complete(homeTasks);
+        }
+        AppExecutors.maintenance().execute(this::runMaintenance);
+    }
+
+    /**
+     * Runs the startup maintenance at background priority, off the disk I/O thread.
+     */
+    private void runMaintenance() {
+        DatabaseHelper dbHelper = DatabaseHelper.getInstance(appContext);
+        long maintenanceStart = SystemClock.elapsedRealtime();
+        new TaskArchiver(appContext).runIfDue();
+        new TombstonePurger(appContext).purge();
+        StartupMetrics.logStage("archive and purge", SystemClock.elapsedRealtime() - maintenanceStart);
+
+        // Fill the statistics tables once after they are created; later writes keep them current
+        dbHelper.getStatsEngine().ensureBuilt();
+
+        // Keep the due date alarm in step with task writes from now on
+        DueDateScheduler.getInstance(appContext).start();
+
+        // Keep the home screen widget's summary current, starting with today's
+        TodayWidgetUpdater.getInstance(appContext).start();
+    }
+
+    /**
+     * Returns the prefetched first page of the default Home query once, waiting for the
+     * prefetch if it is still running; later calls query the database as usual.
+     * Must not be called on the main thread.
+     * @param todayDate The current date in "yyyy-MM-dd" format.
+     * @return The prefetched tasks, or null if none are available for this date.
+     */
+    public List<Task> takePrefetchedHomeTasks(String todayDate) {
+        synchronized (this) {
+            if (!started || taken) {
+                return null;
+            }
+            taken = true;
+        }
+        List<Task> tasks = prefetchedHomeTasks.join();
+        return todayDate.equals(prefetchedDate) ? tasks : null;
+    }
+}
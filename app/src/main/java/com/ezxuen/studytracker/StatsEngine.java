@@ -0,0 +1,661 @@
+package com.ezxuen.studytracker;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * StatsEngine keeps running totals of completed study work: minutes and task counts per
+ * topic, per completion day and per week, the number of tasks completed by their due date,
+ * and the current and longest streak of days with a completed task.
+ *
+ * The totals are stored in their own tables and updated by {@link DatabaseHelper} inside the
+ * same transaction as each task write: the completed rows touched by the write are read before
+ * and after it, and only the difference is applied. Opening the statistics therefore reads a
+ * handful of small rows however many tasks there are. Streaks are recomputed from the table of
+ * completion days, and only when a day gains its first or loses its last completed task.
+ *
+ * Archived tasks stay in the totals. {@link #recompute()} rebuilds everything from the task
+ * rows, and {@link #verify()} compares the stored totals with a fresh computation.
+ */
+public class StatsEngine {
+    private static final String TAG = "StatsEngine";
+
+    // Table and column names
+    static final String TABLE_TOPICS = "stats_topics";
+    static final String TABLE_DAYS = "stats_days";
+    static final String TABLE_WEEKS = "stats_weeks";
+    static final String TABLE_SUMMARY = "stats_summary";
+    static final String TOPIC_KEY = "topic_key";
+    static final String DAY = "day";
+    static final String WEEK = "week";
+    static final String MINUTES = "minutes";
+    static final String TASKS = "tasks";
+    static final String ON_TIME = "on_time";
+    static final String NAME = "name";
+    static final String VALUE = "value";
+
+    // Rows of the summary table
+    private static final String KEY_BUILT = "built";
+    private static final String KEY_MINUTES = "minutes";
+    private static final String KEY_COMPLETED = "completed";
+    private static final String KEY_ON_TIME = "on_time";
+    private static final String KEY_LONGEST_STREAK = "longest_streak";
+    private static final String KEY_LAST_DAY = "last_day";
+    private static final String KEY_LAST_RUN = "last_run";
+
+    private final DatabaseHelper dbHelper;
+    private volatile Boolean built; // Cached "built" flag; null until read
+
+    /**
+     * The part of the totals one completed task accounts for.
+     */
+    static final class Contribution {
+        final String topicKey;
+        final String topic;
+        final int minutes;
+        final int day;
+        final boolean onTime;
+
+        Contribution(String topic, int minutes, String dueDate, String completedDate) {
+            this.topic = topic == null ? "" : topic.trim();
+            this.topicKey = TopicIndex.normalize(topic);
+            this.minutes = minutes;
+            // Tasks completed before completion dates were recorded count on their due date
+            String date = completedDate != null ? completedDate : dueDate;
+            this.day = EpochDay.parse(date);
+            this.onTime = date.compareTo(dueDate) <= 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Contribution)) {
+                return false;
+            }
+            Contribution other = (Contribution) o;
+            return topicKey.equals(other.topicKey) && minutes == other.minutes
+                    && day == other.day && onTime == other.onTime;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(topicKey, minutes, day, onTime);
+        }
+    }
+
+    /**
+     * Minutes, completed tasks and tasks completed on time for one topic, day or week.
+     */
+    public static final class Total {
+        private final String label;
+        private final int key;
+        private long minutes;
+        private int tasks;
+        private int onTime;
+
+        Total(String label, int key, long minutes, int tasks, int onTime) {
+            this.label = label;
+            this.key = key;
+            this.minutes = minutes;
+            this.tasks = tasks;
+            this.onTime = onTime;
+        }
+
+        /**
+         * Gets the topic of a topic total.
+         * @return The topic in its first seen spelling, or null for day and week totals.
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Gets the epoch day of a day total, or the epoch day of the Monday of a week total.
+         * @return The day, or 0 for topic totals.
+         */
+        public int getKey() {
+            return key;
+        }
+
+        public long getMinutes() {
+            return minutes;
+        }
+
+        public int getTasks() {
+            return tasks;
+        }
+
+        public int getOnTime() {
+            return onTime;
+        }
+
+        private void add(Contribution contribution, int sign) {
+            minutes += (long) sign * contribution.minutes;
+            tasks += sign;
+            onTime += contribution.onTime ? sign : 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Total)) {
+                return false;
+            }
+            Total other = (Total) o;
+            return key == other.key && minutes == other.minutes && tasks == other.tasks && onTime == other.onTime;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, minutes, tasks, onTime);
+        }
+
+        @Override
+        public String toString() {
+            return (label != null ? label : String.valueOf(key)) + ": " + minutes + " mins, "
+                    + tasks + " tasks, " + onTime + " on time";
+        }
+    }
+
+    /**
+     * A complete set of totals, either read from the statistics tables or computed from the tasks.
+     * Two sets are equal when all their numbers match; topic spellings are not compared.
+     */
+    static final class Aggregates {
+        final Map<String, Total> topics = new HashMap<>();
+        final TreeMap<Integer, Total> days = new TreeMap<>();
+        final TreeMap<Integer, Total> weeks = new TreeMap<>();
+        long minutes;
+        int completed;
+        int onTime;
+        int longestStreak;
+        int lastDay;
+        int lastRun;
+
+        void add(Contribution contribution) {
+            Total topic = topics.get(contribution.topicKey);
+            if (topic == null) {
+                topic = new Total(contribution.topic, 0, 0, 0, 0);
+                topics.put(contribution.topicKey, topic);
+            }
+            topic.add(contribution, 1);
+            Total day = days.get(contribution.day);
+            if (day == null) {
+                day = new Total(null, contribution.day, 0, 0, 0);
+                days.put(contribution.day, day);
+            }
+            day.add(contribution, 1);
+            int weekStart = EpochDay.weekStart(contribution.day);
+            Total week = weeks.get(weekStart);
+            if (week == null) {
+                week = new Total(null, weekStart, 0, 0, 0);
+                weeks.put(weekStart, week);
+            }
+            week.add(contribution, 1);
+            minutes += contribution.minutes;
+            completed++;
+            onTime += contribution.onTime ? 1 : 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Aggregates)) {
+                return false;
+            }
+            Aggregates other = (Aggregates) o;
+            return topics.equals(other.topics) && days.equals(other.days) && weeks.equals(other.weeks)
+                    && minutes == other.minutes && completed == other.completed && onTime == other.onTime
+                    && longestStreak == other.longestStreak && lastDay == other.lastDay && lastRun == other.lastRun;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(minutes, completed, onTime, longestStreak, lastDay, lastRun);
+        }
+
+        @Override
+        public String toString() {
+            return "completed=" + completed + ", onTime=" + onTime + ", minutes=" + minutes
+                    + ", longestStreak=" + longestStreak + ", lastDay=" + lastDay + ", lastRun=" + lastRun
+                    + ", topics=" + topics + ", weeks=" + weeks.values();
+        }
+    }
+
+    /**
+     * Constructs a StatsEngine over the database of a DatabaseHelper.
+     * @param dbHelper The database helper whose tasks are counted.
+     */
+    StatsEngine(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Creates the statistics tables. They start empty and unbuilt; the first call to
+     * {@link #ensureBuilt()} fills them, since archived tasks cannot be read during a migration.
+     * @param db The database being created or upgraded.
+     */
+    static void createTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_TOPICS + " (" + TOPIC_KEY + " TEXT PRIMARY KEY, "
+                + DatabaseHelper.TOPIC + " TEXT, " + MINUTES + " INTEGER NOT NULL, "
+                + TASKS + " INTEGER NOT NULL, " + ON_TIME + " INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + TABLE_DAYS + " (" + DAY + " INTEGER PRIMARY KEY, "
+                + MINUTES + " INTEGER NOT NULL, " + TASKS + " INTEGER NOT NULL, " + ON_TIME + " INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + TABLE_WEEKS + " (" + WEEK + " INTEGER PRIMARY KEY, "
+                + MINUTES + " INTEGER NOT NULL, " + TASKS + " INTEGER NOT NULL, " + ON_TIME + " INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + TABLE_SUMMARY + " (" + NAME + " TEXT PRIMARY KEY, " + VALUE + " INTEGER NOT NULL)");
+    }
+
+    /**
+     * Reads the contributions of the completed, live tasks among some rows.
+     * @param db The database, inside the write's transaction.
+     * @param idCondition A condition selecting the written rows by id.
+     * @param args The arguments of the condition.
+     * @return One contribution per completed task.
+     */
+    List<Contribution> read(SQLiteDatabase db, String idCondition, String[] args) {
+        List<Contribution> contributions = new ArrayList<>();
+        if (!isBuilt(db)) {
+            return contributions;
+        }
+        Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.TOPIC + ", " + DatabaseHelper.DURATION + ", "
+                + DatabaseHelper.DATE + ", " + DatabaseHelper.COMPLETED_DATE + " FROM " + DatabaseHelper.TABLE_TASKS
+                + " WHERE " + idCondition + " AND " + DatabaseHelper.STATUS + " = 'completed' AND "
+                + DatabaseHelper.NOT_DELETED, args);
+        while (cursor.moveToNext()) {
+            contributions.add(new Contribution(cursor.getString(0), cursor.getInt(1),
+                    cursor.getString(2), cursor.getString(3)));
+        }
+        cursor.close();
+        return contributions;
+    }
+
+    /**
+     * Applies the difference between the contributions of some rows before and after a write.
+     * Contributions that did not change (e.g., a renamed completed task) are skipped.
+     * @param db The database, inside the write's transaction.
+     * @param before The contributions read before the write.
+     * @param after The contributions read after the write.
+     */
+    void apply(SQLiteDatabase db, List<Contribution> before, List<Contribution> after) {
+        if (before.isEmpty() && after.isEmpty()) {
+            return;
+        }
+        Map<Contribution, Integer> removed = new HashMap<>();
+        for (Contribution contribution : before) {
+            Integer count = removed.get(contribution);
+            removed.put(contribution, count == null ? 1 : count + 1);
+        }
+        List<Contribution> added = new ArrayList<>();
+        for (Contribution contribution : after) {
+            Integer count = removed.get(contribution);
+            if (count == null) {
+                added.add(contribution);
+            } else if (count == 1) {
+                removed.remove(contribution);
+            } else {
+                removed.put(contribution, count - 1);
+            }
+        }
+
+        boolean daysChanged = false;
+        for (Map.Entry<Contribution, Integer> entry : removed.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                daysChanged |= applyOne(db, entry.getKey(), -1);
+            }
+        }
+        for (Contribution contribution : added) {
+            daysChanged |= applyOne(db, contribution, 1);
+        }
+        if (daysChanged) {
+            writeStreaks(db, readDays(db));
+        }
+    }
+
+    /**
+     * Adds or subtracts one contribution.
+     * @return true if its day gained its first or lost its last completed task.
+     */
+    private boolean applyOne(SQLiteDatabase db, Contribution contribution, int sign) {
+        String[] minutesArgs = {String.valueOf(sign * contribution.minutes), String.valueOf(sign),
+                String.valueOf(contribution.onTime ? sign : 0)};
+
+        ContentValues topic = new ContentValues();
+        topic.put(TOPIC_KEY, contribution.topicKey);
+        topic.put(DatabaseHelper.TOPIC, contribution.topic);
+        addTotal(db, TABLE_TOPICS, topic, TOPIC_KEY, contribution.topicKey, minutesArgs);
+
+        ContentValues week = new ContentValues();
+        int weekStart = EpochDay.weekStart(contribution.day);
+        week.put(WEEK, weekStart);
+        addTotal(db, TABLE_WEEKS, week, WEEK, String.valueOf(weekStart), minutesArgs);
+
+        ContentValues day = new ContentValues();
+        day.put(DAY, contribution.day);
+        boolean dayChanged = addTotal(db, TABLE_DAYS, day, DAY, String.valueOf(contribution.day), minutesArgs);
+
+        addSummary(db, KEY_MINUTES, sign * contribution.minutes);
+        addSummary(db, KEY_COMPLETED, sign);
+        if (contribution.onTime) {
+            addSummary(db, KEY_ON_TIME, sign);
+        }
+        return dayChanged;
+    }
+
+    /**
+     * Adds to the totals of one row, creating it if needed and deleting it when it has no tasks left.
+     * @return true if the row was created or deleted.
+     */
+    private boolean addTotal(SQLiteDatabase db, String table, ContentValues key, String keyColumn, String keyValue,
+                             String[] minutesArgs) {
+        key.put(MINUTES, 0);
+        key.put(TASKS, 0);
+        key.put(ON_TIME, 0);
+        boolean created = db.insertWithOnConflict(table, null, key, SQLiteDatabase.CONFLICT_IGNORE) != -1;
+        db.execSQL("UPDATE " + table + " SET " + MINUTES + " = " + MINUTES + " + ?, " + TASKS + " = " + TASKS
+                + " + ?, " + ON_TIME + " = " + ON_TIME + " + ? WHERE " + keyColumn + " = ?",
+                new Object[]{minutesArgs[0], minutesArgs[1], minutesArgs[2], keyValue});
+        boolean deleted = db.delete(table, keyColumn + " = ? AND " + TASKS + " <= 0", new String[]{keyValue}) > 0;
+        return created || deleted;
+    }
+
+    private void addSummary(SQLiteDatabase db, String name, long delta) {
+        db.execSQL("UPDATE " + TABLE_SUMMARY + " SET " + VALUE + " = " + VALUE + " + ? WHERE " + NAME + " = ?",
+                new Object[]{delta, name});
+    }
+
+    private void putSummary(SQLiteDatabase db, String name, long value) {
+        ContentValues values = new ContentValues();
+        values.put(NAME, name);
+        values.put(VALUE, value);
+        db.insertWithOnConflict(TABLE_SUMMARY, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Lists the days with a completed task, in order, from the primary key of the days table.
+     */
+    private List<Integer> readDays(SQLiteDatabase db) {
+        List<Integer> days = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT " + DAY + " FROM " + TABLE_DAYS + " ORDER BY " + DAY, null);
+        while (cursor.moveToNext()) {
+            days.add(cursor.getInt(0));
+        }
+        cursor.close();
+        return days;
+    }
+
+    private void writeStreaks(SQLiteDatabase db, Collection<Integer> days) {
+        int[] streaks = computeStreaks(days);
+        putSummary(db, KEY_LONGEST_STREAK, streaks[0]);
+        putSummary(db, KEY_LAST_DAY, streaks[1]);
+        putSummary(db, KEY_LAST_RUN, streaks[2]);
+    }
+
+    /**
+     * Finds the runs of consecutive days.
+     * @param days The days with a completed task, in ascending order.
+     * @return The longest run, the last day, and the length of the run ending on the last day
+     *         (the last day is 0 if there are no days).
+     */
+    static int[] computeStreaks(Collection<Integer> days) {
+        int longest = 0;
+        int run = 0;
+        int previous = 0;
+        boolean first = true;
+        for (int day : days) {
+            run = !first && day == previous + 1 ? run + 1 : 1;
+            longest = Math.max(longest, run);
+            previous = day;
+            first = false;
+        }
+        return new int[]{longest, previous, run};
+    }
+
+    private boolean isBuilt(SQLiteDatabase db) {
+        Boolean cached = built;
+        if (cached == null) {
+            Cursor cursor = db.rawQuery("SELECT 1 FROM " + TABLE_SUMMARY + " WHERE " + NAME + " = ?",
+                    new String[]{KEY_BUILT});
+            cached = cursor.moveToFirst();
+            cursor.close();
+            built = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Fills the statistics tables from the tasks if they have never been filled.
+     * Meant to run on a background thread; the startup maintenance and a first read
+     * of the statistics may both call it, and only one of them builds.
+     */
+    public synchronized void ensureBuilt() {
+        if (!isBuilt(dbHelper.getReadableDatabase())) {
+            recompute();
+        }
+    }
+
+    /**
+     * Rebuilds every total from the task rows, including archived ones.
+     * Meant to run on a background thread.
+     */
+    public void recompute() {
+        // The archive is attached before the transaction starts, since ATTACH cannot run inside one
+        SQLiteDatabase db = dbHelper.hasArchive() ? dbHelper.attachArchive() : dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            Aggregates aggregates = computeFromTasks(db);
+            db.delete(TABLE_TOPICS, null, null);
+            db.delete(TABLE_DAYS, null, null);
+            db.delete(TABLE_WEEKS, null, null);
+            db.delete(TABLE_SUMMARY, null, null);
+
+            for (Map.Entry<String, Total> entry : aggregates.topics.entrySet()) {
+                ContentValues values = totalValues(entry.getValue());
+                values.put(TOPIC_KEY, entry.getKey());
+                values.put(DatabaseHelper.TOPIC, entry.getValue().label);
+                db.insert(TABLE_TOPICS, null, values);
+            }
+            for (Total total : aggregates.days.values()) {
+                ContentValues values = totalValues(total);
+                values.put(DAY, total.key);
+                db.insert(TABLE_DAYS, null, values);
+            }
+            for (Total total : aggregates.weeks.values()) {
+                ContentValues values = totalValues(total);
+                values.put(WEEK, total.key);
+                db.insert(TABLE_WEEKS, null, values);
+            }
+            putSummary(db, KEY_MINUTES, aggregates.minutes);
+            putSummary(db, KEY_COMPLETED, aggregates.completed);
+            putSummary(db, KEY_ON_TIME, aggregates.onTime);
+            writeStreaks(db, aggregates.days.keySet());
+            putSummary(db, KEY_BUILT, 1);
+
+            // Set inside the transaction, so writes waiting on it apply their changes on top
+            built = true;
+            db.setTransactionSuccessful();
+            Log.i(TAG, "Recomputed statistics of " + aggregates.completed + " completed tasks");
+        } catch (RuntimeException e) {
+            built = null;
+            throw e;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static ContentValues totalValues(Total total) {
+        ContentValues values = new ContentValues();
+        values.put(MINUTES, total.minutes);
+        values.put(TASKS, total.tasks);
+        values.put(ON_TIME, total.onTime);
+        return values;
+    }
+
+    /**
+     * Computes every total from the completed task rows, without writing anything.
+     * Tasks are read grouped by topic and dates, so each group is one row.
+     * @param db The database, with the archive attached if there is one.
+     * @return The computed totals.
+     */
+    private Aggregates computeFromTasks(SQLiteDatabase db) {
+        Aggregates aggregates = new Aggregates();
+        String columns = "SELECT " + DatabaseHelper.TOPIC + ", " + DatabaseHelper.DURATION + ", " + DatabaseHelper.DATE
+                + ", " + DatabaseHelper.COMPLETED_DATE + ", COUNT(*) FROM ";
+        String where = " WHERE " + DatabaseHelper.STATUS + " = 'completed' AND " + DatabaseHelper.NOT_DELETED
+                + " GROUP BY 1, 2, 3, 4";
+        addContributions(aggregates, db.rawQuery(columns + "main." + DatabaseHelper.TABLE_TASKS + where, null));
+        if (dbHelper.hasArchive()) {
+            addContributions(aggregates, db.rawQuery(columns + DatabaseHelper.ARCHIVE_SCHEMA + "."
+                    + DatabaseHelper.TABLE_TASKS + where, null));
+        }
+        int[] streaks = computeStreaks(aggregates.days.keySet());
+        aggregates.longestStreak = streaks[0];
+        aggregates.lastDay = streaks[1];
+        aggregates.lastRun = streaks[2];
+        return aggregates;
+    }
+
+    private static void addContributions(Aggregates aggregates, Cursor cursor) {
+        while (cursor.moveToNext()) {
+            Contribution contribution = new Contribution(cursor.getString(0), cursor.getInt(1),
+                    cursor.getString(2), cursor.getString(3));
+            for (int i = cursor.getInt(4); i > 0; i--) {
+                aggregates.add(contribution);
+            }
+        }
+        cursor.close();
+    }
+
+    /**
+     * Reads every stored total.
+     * @param db The database.
+     * @return The stored totals.
+     */
+    private Aggregates loadStored(SQLiteDatabase db) {
+        Aggregates aggregates = new Aggregates();
+        Cursor cursor = db.rawQuery("SELECT " + TOPIC_KEY + ", " + DatabaseHelper.TOPIC + ", " + MINUTES + ", "
+                + TASKS + ", " + ON_TIME + " FROM " + TABLE_TOPICS, null);
+        while (cursor.moveToNext()) {
+            aggregates.topics.put(cursor.getString(0), new Total(cursor.getString(1), 0,
+                    cursor.getLong(2), cursor.getInt(3), cursor.getInt(4)));
+        }
+        cursor.close();
+        readTotals(db, TABLE_DAYS, DAY, aggregates.days);
+        readTotals(db, TABLE_WEEKS, WEEK, aggregates.weeks);
+
+        Map<String, Long> summary = readSummary(db);
+        aggregates.minutes = summary.get(KEY_MINUTES);
+        aggregates.completed = summary.get(KEY_COMPLETED).intValue();
+        aggregates.onTime = summary.get(KEY_ON_TIME).intValue();
+        aggregates.longestStreak = summary.get(KEY_LONGEST_STREAK).intValue();
+        aggregates.lastDay = summary.get(KEY_LAST_DAY).intValue();
+        aggregates.lastRun = summary.get(KEY_LAST_RUN).intValue();
+        return aggregates;
+    }
+
+    private static void readTotals(SQLiteDatabase db, String table, String keyColumn, Map<Integer, Total> totals) {
+        Cursor cursor = db.rawQuery("SELECT " + keyColumn + ", " + MINUTES + ", " + TASKS + ", " + ON_TIME
+                + " FROM " + table, null);
+        while (cursor.moveToNext()) {
+            totals.put(cursor.getInt(0), new Total(null, cursor.getInt(0), cursor.getLong(1),
+                    cursor.getInt(2), cursor.getInt(3)));
+        }
+        cursor.close();
+    }
+
+    private static Map<String, Long> readSummary(SQLiteDatabase db) {
+        Map<String, Long> summary = new HashMap<>();
+        for (String key : new String[]{KEY_MINUTES, KEY_COMPLETED, KEY_ON_TIME, KEY_LONGEST_STREAK,
+                KEY_LAST_DAY, KEY_LAST_RUN}) {
+            summary.put(key, 0L);
+        }
+        Cursor cursor = db.rawQuery("SELECT " + NAME + ", " + VALUE + " FROM " + TABLE_SUMMARY, null);
+        while (cursor.moveToNext()) {
+            summary.put(cursor.getString(0), cursor.getLong(1));
+        }
+        cursor.close();
+        return summary;
+    }
+
+    /**
+     * Checks the stored totals against a fresh computation from the task rows.
+     * Meant to run on a background thread.
+     * @return true if every stored total matches.
+     */
+    public boolean verify() {
+        ensureBuilt();
+        SQLiteDatabase db = dbHelper.hasArchive() ? dbHelper.attachArchive() : dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            Aggregates stored = loadStored(db);
+            Aggregates computed = computeFromTasks(db);
+            db.setTransactionSuccessful();
+            if (!stored.equals(computed)) {
+                Log.w(TAG, "Stored statistics differ: stored {" + stored + "}, computed {" + computed + "}");
+                return false;
+            }
+            return true;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Reads the statistics shown on the statistics screen. Only the summary rows, the
+     * top topics and the recent weeks are read, so the cost does not grow with the history.
+     * @param weekCount The number of weeks to include, ending with the current week.
+     * @param topicCount The maximum number of topics to include.
+     * @return The statistics.
+     */
+    public StudyStats getStats(int weekCount, int topicCount) {
+        ensureBuilt();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Map<String, Long> summary = readSummary(db);
+
+        List<Total> topics = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.TOPIC + ", " + MINUTES + ", " + TASKS + ", " + ON_TIME
+                + " FROM " + TABLE_TOPICS + " ORDER BY " + MINUTES + " DESC LIMIT " + topicCount, null);
+        while (cursor.moveToNext()) {
+            topics.add(new Total(cursor.getString(0), 0, cursor.getLong(1), cursor.getInt(2), cursor.getInt(3)));
+        }
+        cursor.close();
+
+        // Every week in the range is listed, including weeks without completed tasks
+        int today = EpochDay.today();
+        int firstWeek = EpochDay.weekStart(today) - 7 * (weekCount - 1);
+        TreeMap<Integer, Total> stored = new TreeMap<>();
+        cursor = db.rawQuery("SELECT " + WEEK + ", " + MINUTES + ", " + TASKS + ", " + ON_TIME + " FROM " + TABLE_WEEKS
+                + " WHERE " + WEEK + " >= ?", new String[]{String.valueOf(firstWeek)});
+        while (cursor.moveToNext()) {
+            stored.put(cursor.getInt(0), new Total(null, cursor.getInt(0), cursor.getLong(1),
+                    cursor.getInt(2), cursor.getInt(3)));
+        }
+        cursor.close();
+        List<Total> weeks = new ArrayList<>(weekCount);
+        for (int week = firstWeek; week <= EpochDay.weekStart(today); week += 7) {
+            Total total = stored.get(week);
+            weeks.add(total != null ? total : new Total(null, week, 0, 0, 0));
+        }
+
+        // The streak is current if its last day is today or yesterday
+        int lastDay = summary.get(KEY_LAST_DAY).intValue();
+        int currentStreak = lastDay >= today - 1 ? summary.get(KEY_LAST_RUN).intValue() : 0;
+        return new StudyStats(summary.get(KEY_MINUTES), summary.get(KEY_COMPLETED).intValue(),
+                summary.get(KEY_ON_TIME).intValue(), currentStreak, summary.get(KEY_LONGEST_STREAK).intValue(),
+                topics, weeks);
+    }
+
+    /**
+     * Reads every stored total, for tests.
+     */
+    Aggregates loadStored() {
+        return loadStored(dbHelper.getReadableDatabase());
+    }
+}
@@ -0,0 +1,280 @@
+package com.ezxuen.studytracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * StudyPlanner schedules pending tasks into a fixed number of study minutes per day,
+ * earliest due date first, starting on a given day. Tasks may be split across days.
+ *
+ * With a constant daily budget the whole plan follows from the prefix sums of the task
+ * durations in due date order: a task occupies the minutes between the end of the task
+ * before it and its own end, and minute m falls on day m / budget. Earliest-deadline-first
+ * is optimal for this problem, so a task that finishes after its due date cannot be
+ * scheduled on time by any order. Building the plan costs a sort, O(n log n).
+ *
+ * Changing one task moves it in the order and recomputes the prefix sums and late counts
+ * from its old or new position to the end of the plan, since tasks due earlier are not
+ * affected. That is O(n - position) additions, without the sort or any date parsing, so the
+ * worst case is a change to a task due first (e.g. today), which walks the whole plan.
+ * A tree over the prefix sums could shift the later tasks in O(log n), but the exact late
+ * count depends on the slack of every later task after the shift, so the walk is kept; the
+ * benchmark test measures this worst case against a full build.
+ */
+public class StudyPlanner {
+
+    /**
+     * Minutes of one task planned on one day.
+     */
+    public static class Allocation {
+        private final Task task;
+        private final int minutes;
+        private final boolean late;
+
+        Allocation(Task task, int minutes, boolean late) {
+            this.task = task;
+            this.minutes = minutes;
+            this.late = late;
+        }
+
+        public Task getTask() {
+            return task;
+        }
+
+        public int getMinutes() {
+            return minutes;
+        }
+
+        /**
+         * Checks whether the task cannot be finished by its due date.
+         * @return true if the task finishes after its due date.
+         */
+        public boolean isLate() {
+            return late;
+        }
+    }
+
+    private final int dailyBudget;
+    private final int startDay;
+
+    // Planned tasks in due date order (ties broken by id), with per-task values kept in parallel
+    private Task[] tasks = new Task[16];
+    private int[] dueDays = new int[16];
+    private long[] ends = new long[16];     // ends[i] = total minutes of tasks 0..i
+    private int[] lateCounts = new int[16]; // lateCounts[i] = number of late tasks among 0..i
+    private int size;
+
+    /**
+     * Constructs a StudyPlanner.
+     * @param dailyBudget The number of study minutes available each day (at least 1).
+     * @param startDay The epoch day the plan starts on, usually today.
+     */
+    public StudyPlanner(int dailyBudget, int startDay) {
+        this.dailyBudget = Math.max(1, dailyBudget);
+        this.startDay = startDay;
+    }
+
+    public int getDailyBudget() {
+        return dailyBudget;
+    }
+
+    public int getStartDay() {
+        return startDay;
+    }
+
+    /**
+     * Plans a new set of tasks, replacing the current plan.
+     * @param pendingTasks The tasks to schedule.
+     */
+    public void setTasks(List<Task> pendingTasks) {
+        size = pendingTasks.size();
+        ensureCapacity(size);
+        Task[] sorted = pendingTasks.toArray(new Task[0]);
+        Arrays.sort(sorted, (a, b) -> {
+            int result = a.getDate().compareTo(b.getDate());
+            return result != 0 ? result : Integer.compare(a.getId(), b.getId());
+        });
+        for (int i = 0; i < size; i++) {
+            tasks[i] = sorted[i];
+            dueDays[i] = EpochDay.parse(sorted[i].getDate());
+        }
+        replanFrom(0);
+    }
+
+    /**
+     * Re-plans after a single task changed. Only the tasks from the changed task's
+     * earlier position onward are recomputed: O(n) for a task due first, less for later ones.
+     * @param before The task before the change, or null if it was added.
+     * @param after The task after the change, or null if it was removed.
+     *              Tasks that are no longer pending are removed from the plan.
+     */
+    public void update(Task before, Task after) {
+        int from = size;
+        if (before != null) {
+            int index = indexOf(EpochDay.parse(before.getDate()), before.getId());
+            if (index >= 0) {
+                System.arraycopy(tasks, index + 1, tasks, index, size - index - 1);
+                System.arraycopy(dueDays, index + 1, dueDays, index, size - index - 1);
+                tasks[--size] = null;
+                from = index;
+            }
+        }
+        if (after != null && "pending".equals(after.getStatus())) {
+            int dueDay = EpochDay.parse(after.getDate());
+            int index = indexOf(dueDay, after.getId());
+            if (index < 0) {
+                index = -index - 1;
+                ensureCapacity(size + 1);
+                System.arraycopy(tasks, index, tasks, index + 1, size - index);
+                System.arraycopy(dueDays, index, dueDays, index + 1, size - index);
+                size++;
+            }
+            tasks[index] = after;
+            dueDays[index] = dueDay;
+            from = Math.min(from, index);
+        }
+        replanFrom(from);
+    }
+
+    /**
+     * Finds a task's position by binary search over the due date order.
+     * @return The position, or (-(insertion point) - 1) if the task is not planned.
+     */
+    private int indexOf(int dueDay, int id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int result = dueDays[mid] != dueDay ? Integer.compare(dueDays[mid], dueDay)
+                    : Integer.compare(tasks[mid].getId(), id);
+            if (result < 0) {
+                low = mid + 1;
+            } else if (result > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (tasks.length < capacity) {
+            int newLength = Math.max(capacity, tasks.length * 2);
+            tasks = Arrays.copyOf(tasks, newLength);
+            dueDays = Arrays.copyOf(dueDays, newLength);
+            ends = Arrays.copyOf(ends, newLength);
+            lateCounts = Arrays.copyOf(lateCounts, newLength);
+        }
+    }
+
+    /**
+     * Recomputes the prefix sums and late counts from a position to the end of the plan.
+     * @param from The first position whose task may have changed.
+     */
+    private void replanFrom(int from) {
+        long end = from > 0 ? ends[from - 1] : 0;
+        int late = from > 0 ? lateCounts[from - 1] : 0;
+        for (int i = from; i < size; i++) {
+            end += tasks[i].getDuration();
+            ends[i] = end;
+            if (getFinishDay(i) > dueDays[i]) {
+                late++;
+            }
+            lateCounts[i] = late;
+        }
+    }
+
+    /**
+     * Gets the number of planned tasks.
+     * @return The number of pending tasks in the plan.
+     */
+    public int getTaskCount() {
+        return size;
+    }
+
+    /**
+     * Gets a task by its position in the plan.
+     * @param index The position, in due date order.
+     * @return The task at that position.
+     */
+    public Task getTask(int index) {
+        return tasks[index];
+    }
+
+    /**
+     * Gets the day a task is finished on.
+     * @param index The position of the task in the plan.
+     * @return The epoch day its last minute is planned on.
+     */
+    public int getFinishDay(int index) {
+        long start = index > 0 ? ends[index - 1] : 0;
+        long lastMinute = Math.max(ends[index] - 1, start);
+        return startDay + (int) (lastMinute / dailyBudget);
+    }
+
+    /**
+     * Checks whether a task cannot be finished by its due date.
+     * @param index The position of the task in the plan.
+     * @return true if the task finishes after its due date.
+     */
+    public boolean isLate(int index) {
+        return getFinishDay(index) > dueDays[index];
+    }
+
+    /**
+     * Gets the number of tasks that cannot be finished by their due date.
+     * @return The number of late tasks.
+     */
+    public int getLateCount() {
+        return size > 0 ? lateCounts[size - 1] : 0;
+    }
+
+    /**
+     * Gets the last day with planned minutes.
+     * @return The epoch day the plan ends on, or the start day if there is nothing to do.
+     */
+    public int getLastDay() {
+        return size == 0 ? startDay : getFinishDay(size - 1);
+    }
+
+    /**
+     * Lists the minutes planned on a day. The first task on the day is found with a
+     * binary search over the prefix sums, so this costs O(log n) plus the tasks listed.
+     * @param day The epoch day.
+     * @return The allocations of the day, in due date order.
+     */
+    public List<Allocation> getDay(int day) {
+        List<Allocation> allocations = new ArrayList<>();
+        if (day < startDay || size == 0) {
+            return allocations;
+        }
+        long dayStart = (long) (day - startDay) * dailyBudget;
+        long dayEnd = dayStart + dailyBudget;
+
+        // First task that ends after the day starts
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= dayStart) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        for (int i = low; i < size; i++) {
+            long taskStart = i > 0 ? ends[i - 1] : 0;
+            if (taskStart >= dayEnd) {
+                break;
+            }
+            int minutes = (int) (Math.min(ends[i], dayEnd) - Math.max(taskStart, dayStart));
+            if (minutes > 0) {
+                allocations.add(new Allocation(tasks[i], minutes, isLate(i)));
+            }
+        }
+        return allocations;
+    }
+}
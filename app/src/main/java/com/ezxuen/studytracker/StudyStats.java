@@ -0,0 +1,76 @@
+package com.ezxuen.studytracker;
+
+import java.util.List;
+
+/**
+ * StudyStats holds the statistics shown on the statistics screen, as read from the
+ * totals kept by {@link StatsEngine}.
+ */
+public class StudyStats {
+    private final long totalMinutes;
+    private final int completedTasks;
+    private final int onTimeTasks;
+    private final int currentStreak;
+    private final int longestStreak;
+    private final List<StatsEngine.Total> topics;
+    private final List<StatsEngine.Total> weeks;
+
+    StudyStats(long totalMinutes, int completedTasks, int onTimeTasks, int currentStreak, int longestStreak,
+               List<StatsEngine.Total> topics, List<StatsEngine.Total> weeks) {
+        this.totalMinutes = totalMinutes;
+        this.completedTasks = completedTasks;
+        this.onTimeTasks = onTimeTasks;
+        this.currentStreak = currentStreak;
+        this.longestStreak = longestStreak;
+        this.topics = topics;
+        this.weeks = weeks;
+    }
+
+    public long getTotalMinutes() {
+        return totalMinutes;
+    }
+
+    public int getCompletedTasks() {
+        return completedTasks;
+    }
+
+    public int getOnTimeTasks() {
+        return onTimeTasks;
+    }
+
+    /**
+     * Gets the share of completed tasks that were completed by their due date.
+     * @return The on-time completion rate from 0 to 1, or 0 if no task is completed.
+     */
+    public double getOnTimeRate() {
+        return completedTasks == 0 ? 0 : (double) onTimeTasks / completedTasks;
+    }
+
+    /**
+     * Gets the number of consecutive days with a completed task, up to today or yesterday.
+     * @return The current streak in days, or 0 if no task was completed today or yesterday.
+     */
+    public int getCurrentStreak() {
+        return currentStreak;
+    }
+
+    public int getLongestStreak() {
+        return longestStreak;
+    }
+
+    /**
+     * Gets the topics with the most completed minutes.
+     * @return The topic totals, most minutes first.
+     */
+    public List<StatsEngine.Total> getTopics() {
+        return topics;
+    }
+
+    /**
+     * Gets the completed minutes of each recent week.
+     * @return The week totals, oldest first, ending with the current week.
+     */
+    public List<StatsEngine.Total> getWeeks() {
+        return weeks;
+    }
+}
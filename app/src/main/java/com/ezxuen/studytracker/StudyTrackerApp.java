@@ -0,0 +1,18 @@
+package com.ezxuen.studytracker;
+
+import android.app.Application;
+
+/**
+ * StudyTrackerApp is the Application class for the Study Tracker app.
+ * It starts the {@link StartupPipeline} as soon as the process is created.
+ */
+public class StudyTrackerApp extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Open the database and prefetch the Home list in the background
+        StartupPipeline.getInstance(this).start();
+    }
+}
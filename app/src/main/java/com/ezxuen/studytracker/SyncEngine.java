@@ -0,0 +1,98 @@
+package com.ezxuen.studytracker;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * SyncEngine exchanges task changes with a sync server through a {@link SyncTransport}.
+ * Only the fields written since the last sync travel, never the whole table: local
+ * writes are read from the {@link ChangeLog} and pushed in batches, then the changes
+ * other devices pushed are pulled in batches and applied field by field, the newest
+ * write winning.
+ *
+ * Both directions resume after an interruption: a pushed batch leaves the log only
+ * once the server has acknowledged it, and each pulled batch is applied in the same
+ * transaction that saves the server cursor.
+ */
+public class SyncEngine {
+    private static final String TAG = "SyncEngine";
+
+    // Number of changes sent or fetched per request
+    public static final int BATCH_SIZE = 200;
+
+    private final DatabaseHelper dbHelper;
+    private final SyncTransport transport;
+    private final int batchSize;
+
+    /**
+     * Constructs a SyncEngine.
+     * @param dbHelper The database to sync.
+     * @param transport The connection to the sync server.
+     */
+    public SyncEngine(DatabaseHelper dbHelper, SyncTransport transport) {
+        this(dbHelper, transport, BATCH_SIZE);
+    }
+
+    /**
+     * Constructs a SyncEngine with a custom batch size. Used by tests.
+     * @param dbHelper The database to sync.
+     * @param transport The connection to the sync server.
+     * @param batchSize The number of changes per request.
+     */
+    SyncEngine(DatabaseHelper dbHelper, SyncTransport transport, int batchSize) {
+        this.dbHelper = dbHelper;
+        this.transport = transport;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Pushes the local changes, then pulls and applies the remote ones. Meant to run on a
+     * background thread; if it fails, calling it again continues where it stopped.
+     * @throws IOException If the server could not be reached.
+     */
+    public synchronized void sync() throws IOException {
+        int pushed = push();
+        int pulled = pull();
+        Log.i(TAG, "Pushed " + pushed + " and pulled " + pulled + " changes");
+    }
+
+    /**
+     * Pushes the unacknowledged local changes in batches, deleting each batch from the
+     * log once the server has stored it.
+     * @return The number of changes pushed.
+     * @throws IOException If a batch could not be pushed; it stays in the log.
+     */
+    int push() throws IOException {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        ChangeLog changeLog = dbHelper.getChangeLog();
+        int pushed = 0;
+        List<SyncTransport.Change> batch;
+        while (!(batch = changeLog.readPending(db, batchSize)).isEmpty()) {
+            transport.push(batch);
+            changeLog.acknowledge(db, batch.get(batch.size() - 1).getSeq());
+            pushed += batch.size();
+        }
+        return pushed;
+    }
+
+    /**
+     * Pulls the changes stored on the server since the last pull, one batch at a time.
+     * @return The number of changes pulled, including ones that lost to newer local writes.
+     * @throws IOException If a batch could not be pulled; the batches before it are kept.
+     */
+    int pull() throws IOException {
+        long cursor = dbHelper.getPullCursor();
+        int pulled = 0;
+        SyncTransport.PullResult result;
+        do {
+            result = transport.pull(cursor, batchSize);
+            dbHelper.applyRemoteChanges(result.getChanges(), result.getCursor());
+            cursor = result.getCursor();
+            pulled += result.getChanges().size();
+        } while (result.hasMore());
+        return pulled;
+    }
+}
@@ -0,0 +1,116 @@
+package com.ezxuen.studytracker;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * SyncTransport carries change batches between a device and the sync server for the
+ * {@link SyncEngine}. The server keeps every pushed change in one ordered log and serves
+ * it back from a cursor; it does not need to resolve conflicts, which each device does
+ * per field when it applies pulled changes.
+ */
+public interface SyncTransport {
+    /**
+     * Sends a batch of local changes. When this returns, the server has stored them.
+     * Pushing the same changes again must be harmless.
+     * @param changes The changes, in sequence order.
+     * @throws IOException If the batch may not have been stored.
+     */
+    void push(List<Change> changes) throws IOException;
+
+    /**
+     * Fetches the changes the server stored after a cursor.
+     * @param cursor The cursor returned by the previous pull, or 0 for the whole log.
+     * @param limit The maximum number of changes to return.
+     * @return The changes and the cursor to continue from.
+     * @throws IOException If the changes could not be fetched.
+     */
+    PullResult pull(long cursor, int limit) throws IOException;
+
+    /**
+     * One field of one task as set by a write on some device.
+     */
+    final class Change {
+        private final long seq;
+        private final String uid;
+        private final String field;
+        private final String value;
+        private final long clock;
+        private final String device;
+
+        /**
+         * Constructs a Change.
+         * @param seq The sequence number of the change in the sending device's log.
+         * @param uid The uid of the task.
+         * @param field The column that was written.
+         * @param value The new value, or null.
+         * @param clock The clock of the write, used for last-writer-wins.
+         * @param device The id of the device that made the write.
+         */
+        public Change(long seq, String uid, String field, String value, long clock, String device) {
+            this.seq = seq;
+            this.uid = uid;
+            this.field = field;
+            this.value = value;
+            this.clock = clock;
+            this.device = device;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public String getUid() {
+            return uid;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public long getClock() {
+            return clock;
+        }
+
+        public String getDevice() {
+            return device;
+        }
+    }
+
+    /**
+     * A batch of changes returned by {@link #pull(long, int)}.
+     */
+    final class PullResult {
+        private final List<Change> changes;
+        private final long cursor;
+        private final boolean hasMore;
+
+        /**
+         * Constructs a PullResult.
+         * @param changes The changes, in server order.
+         * @param cursor The cursor after the last change.
+         * @param hasMore Whether more changes follow the cursor.
+         */
+        public PullResult(List<Change> changes, long cursor, boolean hasMore) {
+            this.changes = changes;
+            this.cursor = cursor;
+            this.hasMore = hasMore;
+        }
+
+        public List<Change> getChanges() {
+            return changes;
+        }
+
+        public long getCursor() {
+            return cursor;
+        }
+
+        public boolean hasMore() {
+            return hasMore;
+        }
+    }
+}
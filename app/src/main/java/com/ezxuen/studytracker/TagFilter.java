@@ -0,0 +1,140 @@
+package com.ezxuen.studytracker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * TagFilter is a combination of tags a task must have, evaluated by the {@link TagIndex}.
+ *
+ * Filters are written as comma-separated terms, e.g. "exam, reading | group, -draft":
+ * every term must match (AND), a term with "|" matches any of its tags (OR), and a term
+ * starting with "-" excludes tasks with that tag (NOT). Tags are matched ignoring case.
+ */
+public class TagFilter {
+    private final List<Set<String>> required = new ArrayList<>();
+    private final Set<String> excluded = new LinkedHashSet<>();
+
+    /**
+     * Parses a filter.
+     * @param text The filter text, e.g. "exam, reading | group, -draft".
+     * @return The filter, which is empty if the text names no tags.
+     */
+    public static TagFilter parse(String text) {
+        TagFilter filter = new TagFilter();
+        if (text == null) {
+            return filter;
+        }
+        for (String term : text.split(",")) {
+            term = term.trim();
+            if (term.startsWith("-")) {
+                String tag = normalize(term.substring(1));
+                if (!tag.isEmpty()) {
+                    filter.excluded.add(tag);
+                }
+                continue;
+            }
+            Set<String> anyOf = new LinkedHashSet<>();
+            for (String alternative : term.split("\\|")) {
+                String tag = normalize(alternative);
+                if (!tag.isEmpty()) {
+                    anyOf.add(tag);
+                }
+            }
+            if (!anyOf.isEmpty()) {
+                filter.required.add(anyOf);
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Splits the comma-separated tags entered for a task, e.g. "exam, Reading".
+     * @param text The tags text.
+     * @return The distinct tag names, cleaned by {@link #clean(String)}, in the order entered.
+     */
+    public static List<String> parseTags(String text) {
+        Set<String> tags = new LinkedHashSet<>();
+        if (text != null) {
+            for (String tag : text.split(",")) {
+                tag = clean(tag);
+                if (!tag.isEmpty()) {
+                    tags.add(tag);
+                }
+            }
+        }
+        return new ArrayList<>(tags);
+    }
+
+    /**
+     * Cleans a tag name so it can be written in a filter: the filter operators are removed
+     * and runs of whitespace are collapsed. The case is kept for display.
+     * @param tag The tag name as entered.
+     * @return The cleaned name, which may be empty.
+     */
+    public static String clean(String tag) {
+        String cleaned = tag.replaceAll("[,|]", " ").trim().replaceAll("\\s+", " ");
+        while (cleaned.startsWith("-")) {
+            cleaned = cleaned.substring(1).trim();
+        }
+        return cleaned;
+    }
+
+    /**
+     * Gets the key a tag is matched by.
+     * @param tag The tag name.
+     * @return The cleaned, lowercase name.
+     */
+    public static String normalize(String tag) {
+        return clean(tag).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the terms every matching task must satisfy.
+     * @return For each term, the tags of which a task needs at least one.
+     */
+    public List<Set<String>> getRequired() {
+        return Collections.unmodifiableList(required);
+    }
+
+    /**
+     * Gets the tags no matching task may have.
+     * @return The excluded tags.
+     */
+    public Set<String> getExcluded() {
+        return Collections.unmodifiableSet(excluded);
+    }
+
+    public boolean isEmpty() {
+        return required.isEmpty() && excluded.isEmpty();
+    }
+
+    /**
+     * Formats this filter in the syntax accepted by {@link #parse(String)}.
+     * @return The filter text.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Set<String> anyOf : required) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            boolean first = true;
+            for (String tag : anyOf) {
+                text.append(first ? "" : " | ").append(tag);
+                first = false;
+            }
+        }
+        for (String tag : excluded) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append('-').append(tag);
+        }
+        return text.toString();
+    }
+}
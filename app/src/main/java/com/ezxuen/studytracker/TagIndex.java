@@ -0,0 +1,175 @@
+package com.ezxuen.studytracker;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * TagIndex answers tag filters ({@link TagFilter}) from memory. Tasks can have any number of
+ * tags, stored in the `task_tags` join table; the index keeps, for every tag, a bitset of the
+ * ids of the tasks that have it. A filter is evaluated with bitset operations (OR within a
+ * term, AND across terms, AND NOT for exclusions), and {@link DatabaseHelper} then reads the
+ * matching rows by id, so combining tags never joins the tag tables in SQL.
+ *
+ * The index is read once on first use and then updated whenever {@link DatabaseHelper} writes
+ * tags, for the one task whose tags changed. Bits of deleted or archived tasks may stay set; the
+ * rows are read from the tasks table, so they are never shown, and ids are never reused.
+ */
+public class TagIndex {
+    // Table and column names
+    static final String TABLE_TAGS = "tags";
+    static final String TABLE_TASK_TAGS = "task_tags";
+    static final String TASK_ID = "task_id";
+    static final String TAG_ID = "tag_id";
+
+    private final DatabaseHelper dbHelper;
+    private final Map<String, Integer> tagIds = new HashMap<>();    // Normalized name to id
+    private final Map<Integer, String> tagNames = new HashMap<>();  // Id to name as entered
+    private final Map<Integer, BitSet> tasksByTag = new HashMap<>();
+    private boolean loaded;
+
+    TagIndex(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Creates the tag tables. A tag's name is unique ignoring case; the primary key of the
+     * join table lists a task's tags, and the second index lists a tag's tasks.
+     * @param db The database being created or upgraded.
+     */
+    static void createTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_TAGS + " (" + DatabaseHelper.ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + DatabaseHelper.NAME + " TEXT NOT NULL UNIQUE COLLATE NOCASE)");
+        db.execSQL("CREATE TABLE " + TABLE_TASK_TAGS + " (" + TASK_ID + " INTEGER NOT NULL, "
+                + TAG_ID + " INTEGER NOT NULL, PRIMARY KEY (" + TASK_ID + ", " + TAG_ID + ")) WITHOUT ROWID");
+        db.execSQL("CREATE INDEX idx_task_tags_tag ON " + TABLE_TASK_TAGS + " (" + TAG_ID + ", " + TASK_ID + ")");
+    }
+
+    /**
+     * Reads every tag and every task-tag link, unless the index is already loaded.
+     * Meant to run on a background thread; {@link #match(TagFilter)} calls it when needed.
+     */
+    public synchronized void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor tags = db.rawQuery("SELECT " + DatabaseHelper.ID + ", " + DatabaseHelper.NAME
+                + " FROM " + TABLE_TAGS, null);
+        while (tags.moveToNext()) {
+            putTag(tags.getInt(0), tags.getString(1));
+        }
+        tags.close();
+
+        // Read in tag order from the tag-first index, so each bitset is filled in one run
+        Cursor links = db.rawQuery("SELECT " + TAG_ID + ", " + TASK_ID + " FROM " + TABLE_TASK_TAGS
+                + " ORDER BY " + TAG_ID + ", " + TASK_ID, null);
+        int currentTag = -1;
+        BitSet tasks = null;
+        while (links.moveToNext()) {
+            int tagId = links.getInt(0);
+            if (tagId != currentTag) {
+                currentTag = tagId;
+                tasks = bitsetOf(tagId);
+            }
+            tasks.set(links.getInt(1));
+        }
+        links.close();
+        loaded = true;
+    }
+
+    /**
+     * Finds the tasks matching a tag filter.
+     * @param filter The tag filter.
+     * @return The ids of the matching tasks, which may include deleted tasks.
+     */
+    public synchronized BitSet match(TagFilter filter) {
+        ensureLoaded();
+        BitSet result = null;
+        for (Set<String> anyOf : filter.getRequired()) {
+            BitSet term = new BitSet();
+            for (String tag : anyOf) {
+                Integer tagId = tagIds.get(tag);
+                if (tagId != null) {
+                    term.or(tasksByTag.get(tagId));
+                }
+            }
+            if (result == null) {
+                result = term;
+            } else {
+                result.and(term);
+            }
+        }
+        if (result == null) {
+            // Only exclusions: start from every task id
+            result = new BitSet();
+            result.set(1, getMaxTaskId() + 1);
+        }
+        for (String tag : filter.getExcluded()) {
+            Integer tagId = tagIds.get(tag);
+            if (tagId != null) {
+                result.andNot(tasksByTag.get(tagId));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the names of every tag, e.g. to suggest them while tags are entered.
+     * @return The tag names, sorted ignoring case.
+     */
+    public synchronized List<String> getTagNames() {
+        ensureLoaded();
+        List<String> names = new ArrayList<>(tagNames.values());
+        Collections.sort(names, String.CASE_INSENSITIVE_ORDER);
+        return names;
+    }
+
+    /**
+     * Replaces the tags of one task in the index. Called after the change is committed.
+     * @param taskId The task whose tags changed.
+     * @param tags The task's tags after the change, by id.
+     */
+    synchronized void onTaskTagsChanged(int taskId, Map<Integer, String> tags) {
+        if (!loaded) {
+            // The change is read with everything else on first use
+            return;
+        }
+        for (BitSet tasks : tasksByTag.values()) {
+            tasks.clear(taskId);
+        }
+        for (Map.Entry<Integer, String> tag : tags.entrySet()) {
+            putTag(tag.getKey(), tag.getValue());
+            bitsetOf(tag.getKey()).set(taskId);
+        }
+    }
+
+    private void putTag(int tagId, String name) {
+        tagIds.put(TagFilter.normalize(name), tagId);
+        tagNames.put(tagId, name);
+    }
+
+    private BitSet bitsetOf(int tagId) {
+        BitSet tasks = tasksByTag.get(tagId);
+        if (tasks == null) {
+            tasks = new BitSet();
+            tasksByTag.put(tagId, tasks);
+        }
+        return tasks;
+    }
+
+    private int getMaxTaskId() {
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT MAX(" + DatabaseHelper.ID + ") FROM "
+                + DatabaseHelper.TABLE_TASKS, null);
+        int maxId = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        cursor.close();
+        return maxId;
+    }
+}
@@ -10,6 +10,8 @@ public class Task {
     private String status;      // Current status of the task (e.g., "pending", "completed")
     private int duration;       // Duration of the task in minutes
     private String date;        // Due date of the task in "yyyy-MM-dd" format
+    private int recurrenceId;   // ID of the recurrence rule this task is an occurrence of, or 0
+    private String occurrenceDate; // Date the occurrence was scheduled for by its rule, or null
 
     /**
      * Constructs a new Task object with the given details.
@@ -84,4 +86,49 @@ public class Task {
     public void setStatus(String status) {
         this.status = status;
     }
+
+    /**
+     * Marks the task as an occurrence of a recurring task.
+     * @param recurrenceId The ID of the recurrence rule.
+     * @param occurrenceDate The date the rule scheduled the occurrence for, in "yyyy-MM-dd" format.
+     */
+    public void setOccurrence(int recurrenceId, String occurrenceDate) {
+        this.recurrenceId = recurrenceId;
+        this.occurrenceDate = occurrenceDate;
+    }
+
+    /**
+     * Gets the recurrence rule this task is an occurrence of.
+     * @return The ID of the recurrence rule, or 0 if the task does not repeat.
+     */
+    public int getRecurrenceId() {
+        return recurrenceId;
+    }
+
+    /**
+     * Gets the date the recurrence rule scheduled this occurrence for.
+     * @return The occurrence date in "yyyy-MM-dd" format, or null if the task does not repeat.
+     */
+    public String getOccurrenceDate() {
+        return occurrenceDate;
+    }
+
+    /**
+     * Checks whether the task is an occurrence that has only been expanded from its rule
+     * and not saved as a row yet. Such tasks have a negative ID.
+     * @return true if the task has no row in the database.
+     */
+    public boolean isVirtual() {
+        return id < 0;
+    }
+
+    /**
+     * Creates a copy of this task, which can be changed without affecting this one.
+     * @return A new Task with the same details.
+     */
+    public Task copy() {
+        Task task = new Task(id, name, topic, status, duration, date);
+        task.setOccurrence(recurrenceId, occurrenceDate);
+        return task;
+    }
 }
\ No newline at end of file
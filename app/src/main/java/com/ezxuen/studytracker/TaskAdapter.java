@@ -15,15 +15,39 @@ import androidx.navigation.NavController;
 import androidx.navigation.Navigation;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * TaskAdapter binds a list of Task objects to a RecyclerView.
  * It handles the display, interaction, and status updates for each task.
+ * It also supports a multi-select mode: a long-press starts selecting, a tap toggles
+ * a task, and a long-press on another task selects the whole range in between.
+ * Occurrences of recurring tasks are saved as rows the first time they are completed or opened.
+ * Status changes and saved occurrences are written on the disk I/O thread, and the row is
+ * updated once the write is done.
  */
 public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder> {
     private Context context;
     private List<Task> taskList;
+    private final Set<Integer> selectedIds = new HashSet<>();
+    private boolean selectionMode = false;
+    private boolean selectionEnabled = true;
+    private int selectionAnchor = RecyclerView.NO_POSITION;
+    private SelectionListener selectionListener;
+
+    /**
+     * Listener notified when the multi-select state changes.
+     */
+    public interface SelectionListener {
+        /**
+         * Called when tasks are selected or deselected.
+         * @param selectedCount The number of selected tasks; 0 when selection mode ends.
+         */
+        void onSelectionChanged(int selectedCount);
+    }
 
     /**
      * Constructs a TaskAdapter with the given context and task list.
@@ -35,6 +59,110 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
         this.taskList = taskList;
     }
 
+    /**
+     * Sets the listener notified when the multi-select state changes.
+     * @param listener The listener, or null to remove it.
+     */
+    public void setSelectionListener(SelectionListener listener) {
+        this.selectionListener = listener;
+    }
+
+    /**
+     * Sets whether a long-press starts multi-select mode.
+     * @param enabled false for lists that have no bulk actions.
+     */
+    public void setSelectionEnabled(boolean enabled) {
+        this.selectionEnabled = enabled;
+    }
+
+    /**
+     * Checks whether the adapter is in multi-select mode.
+     * @return true if tasks are being selected, false otherwise.
+     */
+    public boolean isSelectionMode() {
+        return selectionMode;
+    }
+
+    /**
+     * Gets the IDs of the selected tasks.
+     * @return A copy of the selected task IDs.
+     */
+    public Set<Integer> getSelectedIds() {
+        return new HashSet<>(selectedIds);
+    }
+
+    /**
+     * Selects every task in the list.
+     */
+    public void selectAll() {
+        selectionMode = true;
+        for (Task task : taskList) {
+            selectedIds.add(task.getId());
+        }
+        notifyItemRangeChanged(0, taskList.size());
+        notifySelectionChanged();
+    }
+
+    /**
+     * Adds tasks to the selection by ID, including tasks that are not in the list yet.
+     * @param ids The IDs of the tasks to select.
+     */
+    public void selectIds(Collection<Integer> ids) {
+        selectionMode = true;
+        selectedIds.addAll(ids);
+        notifyItemRangeChanged(0, taskList.size());
+        notifySelectionChanged();
+    }
+
+    /**
+     * Leaves multi-select mode and clears the selection.
+     */
+    public void clearSelection() {
+        if (!selectionMode) {
+            return;
+        }
+        selectionMode = false;
+        selectionAnchor = RecyclerView.NO_POSITION;
+        selectedIds.clear();
+        notifyItemRangeChanged(0, taskList.size());
+        notifySelectionChanged();
+    }
+
+    /**
+     * Toggles the selection of the task at a position.
+     * @param position The adapter position of the task.
+     */
+    private void toggleSelection(int position) {
+        int id = taskList.get(position).getId();
+        if (!selectedIds.remove(id)) {
+            selectedIds.add(id);
+        }
+        selectionAnchor = position;
+        notifyItemChanged(position);
+        notifySelectionChanged();
+    }
+
+    /**
+     * Selects every task between the last selected position and the given one.
+     * @param position The adapter position at the other end of the range.
+     */
+    private void selectRange(int position) {
+        int start = Math.min(selectionAnchor, position);
+        int end = Math.max(selectionAnchor, position);
+        for (int i = start; i <= end; i++) {
+            selectedIds.add(taskList.get(i).getId());
+        }
+        selectionAnchor = position;
+        notifyItemRangeChanged(start, end - start + 1);
+        notifySelectionChanged();
+    }
+
+    private void notifySelectionChanged() {
+        if (selectionListener != null) {
+            selectionListener.onSelectionChanged(selectionMode ? selectedIds.size() : 0);
+        }
+    }
+
     /**
      * Creates a new ViewHolder when the RecyclerView needs one.
      * @param parent The parent ViewGroup.
@@ -63,8 +191,10 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
         holder.taskDate.setText(task.getDate());
         holder.taskDuration.setText(task.getDuration() + " mins");
 
-        // Update the background color based on task status
-        if (task.getStatus().equals("completed")) {
+        // Update the background color based on selection and task status
+        if (selectionMode && selectedIds.contains(task.getId())) {
+            holder.cardView.setCardBackgroundColor(context.getResources().getColor(R.color.teal_200));
+        } else if ("completed".equals(task.getStatus())) {
             holder.cardView.setCardBackgroundColor(context.getResources().getColor(android.R.color.darker_gray));
         } else {
             holder.cardView.setCardBackgroundColor(context.getResources().getColor(android.R.color.white));
@@ -72,37 +202,142 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
 
         // Reset the checkbox to avoid triggering listeners during binding
         holder.checkBoxComplete.setOnCheckedChangeListener(null);
-        holder.checkBoxComplete.setChecked(task.getStatus().equals("completed"));
+        holder.checkBoxComplete.setChecked("completed".equals(task.getStatus()));
+        holder.checkBoxComplete.setEnabled(!selectionMode);
 
         // Handle checkbox state changes
-        holder.checkBoxComplete.setOnCheckedChangeListener((buttonView, isChecked) -> {
-            DatabaseHelper dbHelper = new DatabaseHelper(context);
-
-            if (isChecked) {
-                // Mark the task as completed in the database and UI
-                dbHelper.updateTaskStatus(task.getId(), "completed");
-                task.setStatus("completed");
-                Toast.makeText(context, "Task marked as completed", Toast.LENGTH_SHORT).show();
+        holder.checkBoxComplete.setOnCheckedChangeListener((buttonView, isChecked) ->
+                saveStatus(task, isChecked ? "completed" : "pending"));
+
+        // Handle long-press to start multi-select mode, or to select a range while in it
+        holder.itemView.setOnLongClickListener(v -> {
+            int adapterPosition = holder.getBindingAdapterPosition();
+            if (!selectionEnabled || adapterPosition == RecyclerView.NO_POSITION) {
+                return false;
+            }
+            if (!selectionMode) {
+                selectionMode = true;
+                notifyItemRangeChanged(0, taskList.size());
+                toggleSelection(adapterPosition);
+            } else if (selectionAnchor != RecyclerView.NO_POSITION && selectionAnchor < taskList.size()) {
+                selectRange(adapterPosition);
             } else {
-                // Mark the task as pending in the database and UI
-                dbHelper.updateTaskStatus(task.getId(), "pending");
-                task.setStatus("pending");
-                Toast.makeText(context, "Task marked as pending", Toast.LENGTH_SHORT).show();
+                toggleSelection(adapterPosition);
             }
-
-            // Notify the adapter to refresh the item
-            notifyItemChanged(position);
+            return true;
         });
 
-        // Handle item click to navigate to the task editing screen
+        // Handle item click to toggle selection, or to navigate to the task editing screen
         holder.itemView.setOnClickListener(v -> {
-            NavController navController = Navigation.findNavController((Activity) context, R.id.nav_host_fragment_activity_main);
-            Bundle bundle = new Bundle();
-            bundle.putInt("TASK_ID", task.getId());
-            navController.navigate(R.id.navigation_add_task, bundle);
+            if (selectionMode) {
+                int adapterPosition = holder.getBindingAdapterPosition();
+                if (adapterPosition != RecyclerView.NO_POSITION) {
+                    toggleSelection(adapterPosition);
+                }
+                return;
+            }
+            if (!task.isVirtual()) {
+                openTask(task.getId());
+                return;
+            }
+            Task occurrence = task.copy();
+            Context appContext = context.getApplicationContext();
+            AppExecutors.diskIO().execute(() -> {
+                int id = DatabaseHelper.getInstance(appContext).materializeOccurrence(occurrence);
+                AppExecutors.runOnMain(() -> {
+                    if (id == -1) {
+                        Toast.makeText(context, "Failed to save task", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    replaceOccurrence(occurrence, id);
+                    openTask(id);
+                });
+            });
         });
     }
 
+    /**
+     * Writes a task's new status on the disk I/O thread, saving it first if it is an
+     * expanded occurrence, then shows the status in its row.
+     * @param task The task whose checkbox changed.
+     * @param status The new status.
+     */
+    private void saveStatus(Task task, String status) {
+        Task shown = task.copy();
+        Context appContext = context.getApplicationContext();
+        AppExecutors.diskIO().execute(() -> {
+            DatabaseHelper dbHelper = DatabaseHelper.getInstance(appContext);
+            int id = shown.isVirtual() ? dbHelper.materializeOccurrence(shown) : shown.getId();
+            boolean updated = id != -1 && dbHelper.updateTaskStatus(id, status);
+            AppExecutors.runOnMain(() -> {
+                if (!updated) {
+                    Toast.makeText(context, "Failed to save task", Toast.LENGTH_SHORT).show();
+                    // Rebind the item to undo the checkbox change
+                    int position = findPosition(shown.getId());
+                    if (position != RecyclerView.NO_POSITION) {
+                        notifyItemChanged(position);
+                    }
+                    return;
+                }
+                if (shown.isVirtual()) {
+                    replaceOccurrence(shown, id);
+                }
+                int position = findPosition(id);
+                if (position != RecyclerView.NO_POSITION) {
+                    taskList.get(position).setStatus(status);
+                    notifyItemChanged(position);
+                }
+                Toast.makeText(context, "completed".equals(status) ? "Task marked as completed"
+                        : "Task marked as pending", Toast.LENGTH_SHORT).show();
+            });
+        });
+    }
+
+    /**
+     * Replaces an expanded occurrence in the list with the task row it was saved as.
+     * @param occurrence The occurrence that was saved.
+     * @param id The ID of its task row.
+     */
+    private void replaceOccurrence(Task occurrence, int id) {
+        int position = findPosition(occurrence.getId());
+        if (position == RecyclerView.NO_POSITION) {
+            return;
+        }
+        Task savedTask = new Task(id, occurrence.getName(), occurrence.getTopic(), occurrence.getStatus(),
+                occurrence.getDuration(), occurrence.getDate());
+        savedTask.setOccurrence(occurrence.getRecurrenceId(), occurrence.getOccurrenceDate());
+        taskList.set(position, savedTask);
+    }
+
+    /**
+     * Finds the current position of a task, which may have moved while a write was running.
+     * @param id The ID of the task.
+     * @return The position, or NO_POSITION if the task is no longer in the list.
+     */
+    private int findPosition(int id) {
+        for (int i = 0; i < taskList.size(); i++) {
+            if (taskList.get(i).getId() == id) {
+                return i;
+            }
+        }
+        return RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Navigates to the task editing screen.
+     * @param id The ID of the task row to edit.
+     */
+    private void openTask(int id) {
+        Activity activity = (Activity) context;
+        if (activity.isDestroyed()) {
+            return;
+        }
+        NavController navController = Navigation.findNavController(activity, R.id.nav_host_fragment_activity_main);
+        Bundle bundle = new Bundle();
+        bundle.putInt("TASK_ID", id);
+        navController.navigate(R.id.navigation_add_task, bundle);
+    }
+
     /**
      * Returns the total number of items in the dataset.
      * @return The size of the task list.
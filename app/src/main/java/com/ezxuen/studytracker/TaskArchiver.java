@@ -0,0 +1,165 @@
+package com.ezxuen.studytracker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TaskArchiver moves old completed tasks out of the main database into
+ * {@link DatabaseHelper#ARCHIVE_DATABASE_NAME}, keeping the hot `tasks` table small.
+ * Rows are moved in batches, each in its own transaction, and the freed pages of the
+ * main database are released with incremental vacuuming after every batch.
+ */
+public class TaskArchiver {
+    private static final String TAG = "TaskArchiver";
+    private static final String PREFS_NAME = "task_archiver";
+    private static final String KEY_MAX_AGE_DAYS = "max_age_days";
+    private static final String KEY_LAST_RUN_DATE = "last_run_date";
+
+    // Completed tasks due more than this many days ago are archived by default
+    public static final int DEFAULT_MAX_AGE_DAYS = 180;
+
+    // Completed tasks due before the cutoff date; an occurrence of a recurring task is only
+    // archived once its scheduled date has passed too, since its row hides it from the rule
+    private static final String ARCHIVABLE = DatabaseHelper.STATUS + " = 'completed' AND "
+            + DatabaseHelper.DATE + " < ?1 AND " + DatabaseHelper.NOT_DELETED + " AND ("
+            + DatabaseHelper.RECURRENCE_ID + " IS NULL OR " + DatabaseHelper.OCCURRENCE_DATE + " < ?1)";
+
+    private static final int BATCH_SIZE = 500;
+    private static final int VACUUM_PAGES_PER_BATCH = 256;
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+
+    /**
+     * Constructs a TaskArchiver.
+     * @param context The context in which the database is accessed.
+     */
+    public TaskArchiver(Context context) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = DatabaseHelper.getInstance(context);
+    }
+
+    /**
+     * Gets the configured archive age.
+     * @return The number of days after its due date when a completed task is archived.
+     */
+    public int getMaxAgeDays() {
+        return getPreferences().getInt(KEY_MAX_AGE_DAYS, DEFAULT_MAX_AGE_DAYS);
+    }
+
+    /**
+     * Sets the archive age.
+     * @param days The number of days after its due date when a completed task is archived.
+     */
+    public void setMaxAgeDays(int days) {
+        getPreferences().edit().putInt(KEY_MAX_AGE_DAYS, days).apply();
+    }
+
+    /**
+     * Archives old completed tasks, at most once per day. Meant to run on a background thread.
+     * @return The number of tasks archived.
+     */
+    public int runIfDue() {
+        int today = EpochDay.today();
+        String todayDate = EpochDay.format(today);
+        if (todayDate.equals(getPreferences().getString(KEY_LAST_RUN_DATE, null))) {
+            return 0;
+        }
+
+        int archived = archiveCompletedBefore(EpochDay.format(today - getMaxAgeDays()));
+        getPreferences().edit().putString(KEY_LAST_RUN_DATE, todayDate).apply();
+        return archived;
+    }
+
+    /**
+     * Moves completed tasks due before a date into the archive database.
+     * @param cutoffDate The cutoff date in "yyyy-MM-dd" format (exclusive).
+     * @return The number of tasks archived.
+     */
+    public int archiveCompletedBefore(String cutoffDate) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        // Cheap indexed check, so the archive is not attached when there is nothing to move
+        if (!hasTasksToArchive(db, cutoffDate)) {
+            return 0;
+        }
+
+        dbHelper.enableIncrementalVacuum();
+        dbHelper.attachArchive();
+        String columns = getColumnList(db);
+
+        int total = 0;
+        List<String> ids;
+        do {
+            ids = findBatch(db, cutoffDate);
+            if (ids.isEmpty()) {
+                break;
+            }
+            String inClause = DatabaseHelper.ID + " IN (" + TextUtils.join(",", ids) + ")";
+
+            db.beginTransaction();
+            try {
+                db.execSQL("INSERT OR REPLACE INTO " + DatabaseHelper.ARCHIVE_SCHEMA + "." + DatabaseHelper.TABLE_TASKS
+                        + " (" + columns + ") SELECT " + columns
+                        + " FROM main." + DatabaseHelper.TABLE_TASKS + " WHERE " + inClause);
+                db.execSQL("DELETE FROM main." + DatabaseHelper.TABLE_TASKS + " WHERE " + inClause);
+                // Tags are not kept for archived tasks
+                db.execSQL("DELETE FROM main." + TagIndex.TABLE_TASK_TAGS + " WHERE " + TagIndex.TASK_ID
+                        + " IN (" + TextUtils.join(",", ids) + ")");
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                dbHelper.getQueryCache().invalidate(DatabaseHelper.TABLE_TASKS);
+            }
+            total += ids.size();
+
+            // Return the pages freed by this batch to the file system
+            dbHelper.incrementalVacuum(VACUUM_PAGES_PER_BATCH);
+        } while (ids.size() == BATCH_SIZE);
+
+        Log.i(TAG, "Archived " + total + " completed tasks due before " + cutoffDate);
+        if (total > 0) {
+            dbHelper.notifyTasksChanged();
+        }
+        return total;
+    }
+
+    private boolean hasTasksToArchive(SQLiteDatabase db, String cutoffDate) {
+        Cursor cursor = db.rawQuery("SELECT 1 FROM main." + DatabaseHelper.TABLE_TASKS
+                + " WHERE " + ARCHIVABLE + " LIMIT 1",
+                new String[]{cutoffDate});
+        boolean found = cursor.moveToFirst();
+        cursor.close();
+        return found;
+    }
+
+    private List<String> findBatch(SQLiteDatabase db, String cutoffDate) {
+        List<String> ids = new ArrayList<>(BATCH_SIZE);
+        Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.ID + " FROM main." + DatabaseHelper.TABLE_TASKS
+                + " WHERE " + ARCHIVABLE + " LIMIT " + BATCH_SIZE, new String[]{cutoffDate});
+        while (cursor.moveToNext()) {
+            ids.add(String.valueOf(cursor.getInt(0)));
+        }
+        cursor.close();
+        return ids;
+    }
+
+    private String getColumnList(SQLiteDatabase db) {
+        List<String> names = new ArrayList<>();
+        for (String[] column : dbHelper.getColumns(db, "main")) {
+            names.add(column[0]);
+        }
+        return TextUtils.join(", ", names);
+    }
+
+    private SharedPreferences getPreferences() {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,54 @@
+package com.ezxuen.studytracker;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.List;
+
+/**
+ * TaskDiffCallback compares two task lists so a RecyclerView can be updated
+ * with only the items that were added, removed, moved, or changed.
+ */
+public class TaskDiffCallback extends DiffUtil.Callback {
+    private final List<Task> oldList;
+    private final List<Task> newList;
+
+    /**
+     * Constructs a TaskDiffCallback for the given lists.
+     * @param oldList The list currently shown.
+     * @param newList The list that will replace it.
+     */
+    public TaskDiffCallback(List<Task> oldList, List<Task> newList) {
+        this.oldList = oldList;
+        this.newList = newList;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return oldList.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return newList.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return oldList.get(oldItemPosition).getId() == newList.get(newItemPosition).getId();
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        Task oldTask = oldList.get(oldItemPosition);
+        Task newTask = newList.get(newItemPosition);
+        return oldTask.getDuration() == newTask.getDuration()
+                && equals(oldTask.getName(), newTask.getName())
+                && equals(oldTask.getTopic(), newTask.getTopic())
+                && equals(oldTask.getStatus(), newTask.getStatus())
+                && equals(oldTask.getDate(), newTask.getDate());
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
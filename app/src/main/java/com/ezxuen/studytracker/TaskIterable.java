@@ -0,0 +1,127 @@
+package com.ezxuen.studytracker;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * TaskIterable streams tasks from a `tasks` table in bounded chunks.
+ * Rows are fetched in ascending id order using keyset pagination
+ * ({@code id > lastId ORDER BY id LIMIT n}), so each chunk is a short indexed
+ * query and no Cursor is kept open between chunks. Only one chunk of Task
+ * objects is held in memory at a time, whatever the size of the table.
+ *
+ * Use it in a try-with-resources block; closing stops any further fetching.
+ */
+public class TaskIterable implements Iterable<Task>, Closeable {
+    private final SQLiteDatabase db;
+    private final String table;
+    private final String selection;
+    private final String[] selectionArgs;
+    private final int chunkSize;
+    private boolean closed;
+
+    /**
+     * Constructs a TaskIterable over the rows matching a selection.
+     * @param db The database to read from.
+     * @param table The task table to read, optionally schema-qualified (e.g., "archive.tasks").
+     * @param selection An optional WHERE clause (without "WHERE"), or null for all rows.
+     * @param selectionArgs The arguments for the selection, or null.
+     * @param chunkSize The maximum number of rows fetched per query.
+     */
+    TaskIterable(SQLiteDatabase db, String table, String selection, String[] selectionArgs, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.db = db;
+        this.table = table;
+        this.selection = selection;
+        this.selectionArgs = selectionArgs != null ? selectionArgs : new String[0];
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public Iterator<Task> iterator() {
+        return new ChunkIterator();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Fetches the next chunk of rows after the given id.
+     * @param afterId The id of the last row already returned.
+     * @return Up to chunkSize tasks, in ascending id order.
+     */
+    private List<Task> fetchChunk(int afterId) {
+        String where = DatabaseHelper.ID + " > ?";
+        if (selection != null && !selection.isEmpty()) {
+            where = "(" + selection + ") AND " + where;
+        }
+
+        String[] args = new String[selectionArgs.length + 1];
+        System.arraycopy(selectionArgs, 0, args, 0, selectionArgs.length);
+        args[selectionArgs.length] = String.valueOf(afterId);
+
+        List<Task> chunk = new ArrayList<>(chunkSize);
+        Cursor cursor = db.rawQuery("SELECT * FROM " + table
+                + " WHERE " + where
+                + " ORDER BY " + DatabaseHelper.ID
+                + " LIMIT " + chunkSize, args);
+        try {
+            while (cursor.moveToNext()) {
+                chunk.add(DatabaseHelper.cursorToTask(cursor));
+            }
+        } finally {
+            // Release the cursor before handing any rows to the caller
+            cursor.close();
+        }
+        return chunk;
+    }
+
+    /**
+     * Iterator that maps rows lazily, one chunk at a time.
+     */
+    private class ChunkIterator implements Iterator<Task> {
+        private List<Task> chunk = new ArrayList<>();
+        private int position;
+        private int lastId = Integer.MIN_VALUE;
+        private boolean exhausted;
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+            if (position < chunk.size()) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
+            }
+
+            chunk = fetchChunk(lastId);
+            position = 0;
+            // A short chunk means there are no more rows to fetch
+            exhausted = chunk.size() < chunkSize;
+            return !chunk.isEmpty();
+        }
+
+        @Override
+        public Task next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Task task = chunk.get(position++);
+            lastId = task.getId();
+            return task;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.ezxuen.studytracker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * TaskQuery describes how the Home list is sorted and filtered.
+ * It builds the SQL for one page of results using keyset pagination: each page
+ * continues after the sort key and id of the last task of the previous page, so
+ * fetching any page costs the same as fetching the first one.
+ *
+ * Every sort order has a matching partial index over live tasks that also contains
+ * the filter columns, so the page of ids is read from the index alone.
+ */
+public class TaskQuery {
+
+    /**
+     * The available sort orders for the Home list.
+     */
+    public enum SortOrder {
+        DATE(DatabaseHelper.DATE, ""),
+        DURATION(DatabaseHelper.DURATION, ""),
+        NAME(DatabaseHelper.NAME, " COLLATE NOCASE");
+
+        private final String column;
+        private final String collation;
+
+        SortOrder(String column, String collation) {
+            this.column = column;
+            this.collation = collation;
+        }
+
+        private String sortKey(String prefix) {
+            return prefix + column + collation;
+        }
+    }
+
+    // Number of tasks loaded per page on the Home screen
+    public static final int PAGE_SIZE = 50;
+
+    // Recurring tasks are expanded this many days ahead when the query has no end date
+    public static final int OCCURRENCE_HORIZON_DAYS = 28;
+
+    private SortOrder sortOrder = SortOrder.DATE;
+    private String topic;
+    private String status;
+    private String fromDate;
+    private String toDate;
+    private TagFilter tagFilter;
+
+    /**
+     * Creates the query used by the Home screen when no sort or filter is chosen.
+     * @param todayDate The current date in "yyyy-MM-dd" format.
+     * @return A query for tasks due today or later, sorted by due date.
+     */
+    public static TaskQuery dueTodayOrLater(String todayDate) {
+        TaskQuery query = new TaskQuery();
+        query.setFromDate(todayDate);
+        return query;
+    }
+
+    /**
+     * Creates a copy of this query.
+     * @return A new TaskQuery with the same sort order and filters.
+     */
+    public TaskQuery copy() {
+        TaskQuery query = new TaskQuery();
+        query.sortOrder = sortOrder;
+        query.topic = topic;
+        query.status = status;
+        query.fromDate = fromDate;
+        query.toDate = toDate;
+        query.tagFilter = tagFilter;
+        return query;
+    }
+
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    public void setSortOrder(SortOrder sortOrder) {
+        this.sortOrder = sortOrder;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    /**
+     * Sets the topic filter.
+     * @param topic The topic to match exactly, or null for any topic.
+     */
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Sets the status filter.
+     * @param status The status to match (e.g., "pending"), or null for any status.
+     */
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getFromDate() {
+        return fromDate;
+    }
+
+    /**
+     * Sets the start of the due date range.
+     * @param fromDate The earliest due date in "yyyy-MM-dd" format (inclusive), or null.
+     */
+    public void setFromDate(String fromDate) {
+        this.fromDate = fromDate;
+    }
+
+    public String getToDate() {
+        return toDate;
+    }
+
+    /**
+     * Sets the end of the due date range.
+     * @param toDate The latest due date in "yyyy-MM-dd" format (inclusive), or null.
+     */
+    public void setToDate(String toDate) {
+        this.toDate = toDate;
+    }
+
+    public TagFilter getTagFilter() {
+        return tagFilter;
+    }
+
+    /**
+     * Sets the tag filter. Tasks matching a tag filter are listed in id order, whatever
+     * the sort order, since they are read by id from the {@link TagIndex}.
+     * @param tagFilter The tags to match, or null for any tags.
+     */
+    public void setTagFilter(TagFilter tagFilter) {
+        this.tagFilter = tagFilter;
+    }
+
+    /**
+     * Builds the WHERE clause for this query's filters.
+     * Dates are stored as zero-padded "yyyy-MM-dd" strings, so they are compared
+     * directly; wrapping the column in DATE() would prevent the index from being used.
+     * @param args The list the bound arguments are appended to.
+     * @return The WHERE clause, without "WHERE".
+     */
+    String buildWhere(List<String> args) {
+        StringBuilder where = new StringBuilder(DatabaseHelper.NOT_DELETED);
+        if (topic != null) {
+            where.append(" AND ").append(DatabaseHelper.TOPIC).append(" = ?");
+            args.add(topic);
+        }
+        if (status != null) {
+            where.append(" AND ").append(DatabaseHelper.STATUS).append(" = ?");
+            args.add(status);
+        }
+        if (fromDate != null) {
+            where.append(" AND ").append(DatabaseHelper.DATE).append(" >= ?");
+            args.add(fromDate);
+        }
+        if (toDate != null) {
+            where.append(" AND ").append(DatabaseHelper.DATE).append(" <= ?");
+            args.add(toDate);
+        }
+        return where.toString();
+    }
+
+    /**
+     * Builds the condition that continues after the last task of the previous page.
+     * @param after The last task of the previous page.
+     * @param args The list the bound arguments are appended to.
+     * @return The keyset condition.
+     */
+    String buildKeyset(Task after, List<String> args) {
+        String key = sortOrder.sortKey("");
+        String value;
+        switch (sortOrder) {
+            case DURATION:
+                value = String.valueOf(after.getDuration());
+                break;
+            case NAME:
+                value = after.getName();
+                break;
+            default:
+                value = after.getDate();
+                break;
+        }
+        args.add(value);
+        args.add(value);
+        args.add(String.valueOf(after.getId()));
+        // The leading ">=" term gives the index a range start; the rest skips ties already shown
+        return key + " >= ? AND (" + key + " > ? OR " + DatabaseHelper.ID + " > ?)";
+    }
+
+    /**
+     * Builds the ORDER BY clause, using the id as a tie-breaker so the order is total.
+     * @param prefix A table alias followed by a dot (e.g., "t."), or an empty string.
+     * @return The ORDER BY clause, without "ORDER BY".
+     */
+    String buildOrderBy(String prefix) {
+        return sortOrder.sortKey(prefix) + ", " + prefix + DatabaseHelper.ID;
+    }
+
+    /**
+     * Checks whether this query matches the default Home query for a date.
+     * @param todayDate The current date in "yyyy-MM-dd" format.
+     * @return true if no sort or filter other than the default is applied.
+     */
+    public boolean isDefault(String todayDate) {
+        return sortOrder == SortOrder.DATE && topic == null && status == null
+                && todayDate.equals(fromDate) && toDate == null && tagFilter == null;
+    }
+
+    /**
+     * Gets the date window in which occurrences of recurring tasks are expanded for this query.
+     * Occurrences before today that were never saved are not shown, and open-ended queries
+     * only look {@link #OCCURRENCE_HORIZON_DAYS} ahead.
+     * @param todayDate The current date in "yyyy-MM-dd" format.
+     * @return The first and last date of the window, or null if no occurrence can match.
+     */
+    public String[] getOccurrenceWindow(String todayDate) {
+        // Expanded occurrences are always pending
+        if (status != null && !"pending".equals(status)) {
+            return null;
+        }
+        int fromDay = EpochDay.parse(todayDate);
+        if (fromDate != null) {
+            fromDay = Math.max(fromDay, EpochDay.parse(fromDate));
+        }
+        int toDay = toDate != null ? EpochDay.parse(toDate) : fromDay + OCCURRENCE_HORIZON_DAYS;
+        if (fromDay > toDay) {
+            return null;
+        }
+        return new String[]{EpochDay.format(fromDay), EpochDay.format(toDay)};
+    }
+
+    /**
+     * Creates a comparator that orders tasks like {@link #buildOrderBy(String)} does in SQL,
+     * so expanded occurrences can be merged into the pages read from the database.
+     * @return A comparator for this query's sort order.
+     */
+    public Comparator<Task> comparator() {
+        return (a, b) -> {
+            int result;
+            switch (sortOrder) {
+                case DURATION:
+                    result = Integer.compare(a.getDuration(), b.getDuration());
+                    break;
+                case NAME:
+                    result = compareNoCase(a.getName(), b.getName());
+                    break;
+                default:
+                    result = a.getDate().compareTo(b.getDate());
+                    break;
+            }
+            return result != 0 ? result : Integer.compare(a.getId(), b.getId());
+        };
+    }
+
+    /**
+     * Merges expanded occurrences into a page of tasks read from the database.
+     * A page takes the occurrences that sort after the previous page and up to its own
+     * last task; the last page also takes every occurrence after that.
+     * @param page The tasks of the page, in this query's sort order.
+     * @param occurrences All occurrences for this query, in this query's sort order.
+     * @param after The last task shown before this page, or null for the first page.
+     * @param lastPage Whether no more pages follow.
+     * @return The page with its occurrences merged in, in sort order.
+     */
+    public List<Task> mergeOccurrences(List<Task> page, List<Task> occurrences, Task after, boolean lastPage) {
+        if (occurrences.isEmpty()) {
+            return page;
+        }
+        Comparator<Task> order = comparator();
+        Task last = page.isEmpty() ? null : page.get(page.size() - 1);
+        List<Task> merged = new ArrayList<>(page.size() + occurrences.size());
+        int next = 0;
+        for (Task occurrence : occurrences) {
+            if (after != null && order.compare(occurrence, after) <= 0) {
+                continue;
+            }
+            if (!lastPage && (last == null || order.compare(occurrence, last) > 0)) {
+                break;
+            }
+            // Copy the page tasks that sort before this occurrence
+            while (next < page.size() && order.compare(page.get(next), occurrence) < 0) {
+                merged.add(page.get(next++));
+            }
+            merged.add(occurrence);
+        }
+        merged.addAll(page.subList(next, page.size()));
+        return merged;
+    }
+
+    /**
+     * Compares two strings like SQLite's NOCASE collation, which only folds ASCII letters.
+     */
+    private static int compareNoCase(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(i);
+            if (ca >= 'A' && ca <= 'Z') {
+                ca += 'a' - 'A';
+            }
+            if (cb >= 'A' && cb <= 'Z') {
+                cb += 'a' - 'A';
+            }
+            if (ca != cb) {
+                return ca - cb;
+            }
+        }
+        return a.length() - b.length();
+    }
+}
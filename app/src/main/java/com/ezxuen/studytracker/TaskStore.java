@@ -0,0 +1,404 @@
+package com.ezxuen.studytracker;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * TaskStore is a list of tasks stored by column rather than as Task objects, for lists
+ * that grow to tens of thousands of rows (e.g. the Home list after scrolling a long way).
+ *
+ * Ids, due dates (as epoch days) and durations are kept in parallel int arrays, the status
+ * in a bitset of completed rows, and the topic as an id into a dictionary of distinct
+ * topics. Names are stored back to back in one UTF-8 byte array, and the few occurrences of
+ * recurring tasks keep their rule in a map by task id. A row therefore takes a few dozen
+ * bytes instead of a Task object with four strings of its own.
+ *
+ * {@link #get(int)} returns a lightweight view of a row rather than a stored object: its
+ * getters read the columns, and {@link Task#setStatus(String)} writes through to the store.
+ * A view finds its row by id, so it stays valid while rows are inserted or removed around
+ * it; a view of a removed row reads as an empty task. A status other than "pending" or
+ * "completed" (which only a bad row or a newer app version writes) is kept in a map by
+ * task id, like the occurrences.
+ */
+public class TaskStore extends AbstractList<Task> implements RandomAccess {
+    private static final String PENDING = "pending";
+    private static final String COMPLETED = "completed";
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Marks a missing topic or due date
+    private static final int NONE = Integer.MIN_VALUE;
+
+    private int size;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] days = new int[INITIAL_CAPACITY];
+    private int[] durations = new int[INITIAL_CAPACITY];
+    private int[] topicIds = new int[INITIAL_CAPACITY];
+    private int[] nameStarts = new int[INITIAL_CAPACITY];
+    private int[] nameLengths = new int[INITIAL_CAPACITY];
+    private final BitSet completed = new BitSet();
+
+    // Names of all rows, back to back; replaced names leave gaps until the next compaction
+    private byte[] nameBytes = new byte[INITIAL_CAPACITY * 16];
+    private int nameEnd;
+    private int nameBytesUsed;
+
+    // Distinct topics; a topic id is an index into the list
+    private final List<String> topics = new ArrayList<>();
+    private final Map<String, Integer> topicIndex = new HashMap<>();
+
+    // Rule and date of the rows that are occurrences of recurring tasks, by task id
+    private final Map<Integer, Occurrence> occurrences = new HashMap<>();
+
+    // Statuses other than pending and completed, by task id; their completed bit is clear
+    private final Map<Integer, String> otherStatuses = new HashMap<>();
+
+    /**
+     * The recurrence rule a row was expanded from.
+     */
+    private static final class Occurrence {
+        final int recurrenceId;
+        final String date;
+
+        Occurrence(int recurrenceId, String date) {
+            this.recurrenceId = recurrenceId;
+            this.date = date;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets a view of a row. Views are created per call and are cheap to discard.
+     * @param index The position of the row.
+     * @return A Task reading the row's columns.
+     */
+    @Override
+    public Task get(int index) {
+        checkIndex(index, size);
+        return new Row(index, ids[index]);
+    }
+
+    @Override
+    public Task set(int index, Task task) {
+        checkIndex(index, size);
+        Task previous = materialize(index);
+        nameBytesUsed -= Math.max(0, nameLengths[index]);
+        occurrences.remove(ids[index]);
+        otherStatuses.remove(ids[index]);
+        write(index, task);
+        compactNamesIfSparse();
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Task task) {
+        checkIndex(index, size + 1);
+        ensureCapacity(size + 1);
+        if (index < size) {
+            shift(index, index + 1, size - index);
+        }
+        size++;
+        modCount++;
+        write(index, task);
+    }
+
+    @Override
+    public Task remove(int index) {
+        checkIndex(index, size);
+        Task removed = materialize(index);
+        nameBytesUsed -= Math.max(0, nameLengths[index]);
+        occurrences.remove(ids[index]);
+        otherStatuses.remove(ids[index]);
+        shift(index + 1, index, size - index - 1);
+        size--;
+        modCount++;
+        compactNamesIfSparse();
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        completed.clear();
+        nameEnd = 0;
+        nameBytesUsed = 0;
+        topics.clear();
+        topicIndex.clear();
+        occurrences.clear();
+        otherStatuses.clear();
+        modCount++;
+    }
+
+    /**
+     * Estimates the heap taken by the columns, counting their unused capacity, and by the
+     * topic dictionary and the maps of occurrences and other statuses.
+     * @return The estimated size in bytes.
+     */
+    public long estimateBytes() {
+        long bytes = 6L * (16 + 4L * ids.length) + 16 + nameBytes.length + completed.size() / 8;
+        for (String topic : topics) {
+            // The string, its map entry and its boxed id
+            bytes += 40 + 2L * topic.length() + 48;
+        }
+        return bytes + 64L * (occurrences.size() + otherStatuses.size());
+    }
+
+    private void write(int index, Task task) {
+        ids[index] = task.getId();
+        days[index] = task.getDate() == null ? NONE : EpochDay.parse(task.getDate());
+        durations[index] = task.getDuration();
+        topicIds[index] = internTopic(task.getTopic());
+        writeOccurrence(task.getId(), task.getRecurrenceId(), task.getOccurrenceDate());
+        writeStatus(index, task.getStatus());
+        writeName(index, task.getName());
+    }
+
+    private Task materialize(int index) {
+        Task task = new Task(ids[index], readName(index), readTopic(index), readStatus(index),
+                durations[index], readDate(index));
+        Occurrence occurrence = occurrences.get(ids[index]);
+        if (occurrence != null) {
+            task.setOccurrence(occurrence.recurrenceId, occurrence.date);
+        }
+        return task;
+    }
+
+    private void writeOccurrence(int id, int recurrenceId, String date) {
+        if (recurrenceId == 0 && date == null) {
+            occurrences.remove(id);
+        } else {
+            occurrences.put(id, new Occurrence(recurrenceId, date));
+        }
+    }
+
+    private int internTopic(String topic) {
+        if (topic == null) {
+            return NONE;
+        }
+        Integer topicId = topicIndex.get(topic);
+        if (topicId == null) {
+            topicId = topics.size();
+            topics.add(topic);
+            topicIndex.put(topic, topicId);
+        }
+        return topicId;
+    }
+
+    private String readTopic(int index) {
+        return topicIds[index] == NONE ? null : topics.get(topicIds[index]);
+    }
+
+    private void writeStatus(int index, String status) {
+        completed.set(index, COMPLETED.equals(status));
+        if (PENDING.equals(status) || COMPLETED.equals(status)) {
+            otherStatuses.remove(ids[index]);
+        } else {
+            otherStatuses.put(ids[index], status);
+        }
+    }
+
+    private String readDate(int index) {
+        return days[index] == NONE ? null : EpochDay.format(days[index]);
+    }
+
+    private String readStatus(int index) {
+        if (completed.get(index)) {
+            return COMPLETED;
+        }
+        if (!otherStatuses.isEmpty() && otherStatuses.containsKey(ids[index])) {
+            return otherStatuses.get(ids[index]);
+        }
+        return PENDING;
+    }
+
+    private void writeName(int index, String name) {
+        if (name == null) {
+            // A negative length marks a null name
+            nameStarts[index] = nameEnd;
+            nameLengths[index] = -1;
+            return;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameEnd + bytes.length > nameBytes.length) {
+            nameBytes = Arrays.copyOf(nameBytes, Math.max(nameBytes.length * 2, nameEnd + bytes.length));
+        }
+        System.arraycopy(bytes, 0, nameBytes, nameEnd, bytes.length);
+        nameStarts[index] = nameEnd;
+        nameLengths[index] = bytes.length;
+        nameEnd += bytes.length;
+        nameBytesUsed += bytes.length;
+    }
+
+    private String readName(int index) {
+        return nameLengths[index] < 0 ? null
+                : new String(nameBytes, nameStarts[index], nameLengths[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rewrites the names without the gaps left by replaced and removed rows, once the
+     * gaps take up more than half of the name array.
+     */
+    private void compactNamesIfSparse() {
+        if (nameEnd < 1024 || nameBytesUsed * 2 > nameEnd) {
+            return;
+        }
+        byte[] compacted = new byte[Math.max(INITIAL_CAPACITY * 16, nameBytesUsed * 2)];
+        int end = 0;
+        for (int i = 0; i < size; i++) {
+            int length = Math.max(0, nameLengths[i]);
+            System.arraycopy(nameBytes, nameStarts[i], compacted, end, length);
+            nameStarts[i] = end;
+            end += length;
+        }
+        nameBytes = compacted;
+        nameEnd = end;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, newCapacity);
+        days = Arrays.copyOf(days, newCapacity);
+        durations = Arrays.copyOf(durations, newCapacity);
+        topicIds = Arrays.copyOf(topicIds, newCapacity);
+        nameStarts = Arrays.copyOf(nameStarts, newCapacity);
+        nameLengths = Arrays.copyOf(nameLengths, newCapacity);
+    }
+
+    /**
+     * Moves a run of rows within the columns.
+     */
+    private void shift(int from, int to, int count) {
+        for (int[] column : new int[][]{ids, days, durations, topicIds, nameStarts, nameLengths}) {
+            System.arraycopy(column, from, column, to, count);
+        }
+        BitSet moved = completed.get(from, from + count);
+        completed.clear(Math.min(from, to), Math.max(from, to) + count);
+        for (int i = moved.nextSetBit(0); i >= 0; i = moved.nextSetBit(i + 1)) {
+            completed.set(to + i);
+        }
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + bound);
+        }
+    }
+
+    /**
+     * A view of one row. It remembers the row's position and id, and looks the id up
+     * again if the row has moved.
+     */
+    private final class Row extends Task {
+        private final int id;
+        private int index;
+
+        Row(int index, int id) {
+            super(id, null, null, null, 0, null);
+            this.index = index;
+            this.id = id;
+        }
+
+        /**
+         * Finds the current position of the row.
+         * @return The position, or -1 if the row was removed.
+         */
+        private int row() {
+            if (index < size && ids[index] == id) {
+                return index;
+            }
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    index = i;
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int getId() {
+            return id;
+        }
+
+        @Override
+        public boolean isVirtual() {
+            return id < 0;
+        }
+
+        @Override
+        public String getName() {
+            int row = row();
+            return row < 0 ? null : readName(row);
+        }
+
+        @Override
+        public String getTopic() {
+            int row = row();
+            return row < 0 ? null : readTopic(row);
+        }
+
+        @Override
+        public String getStatus() {
+            int row = row();
+            return row < 0 ? PENDING : readStatus(row);
+        }
+
+        @Override
+        public void setStatus(String status) {
+            int row = row();
+            if (row >= 0) {
+                writeStatus(row, status);
+            }
+        }
+
+        @Override
+        public int getDuration() {
+            int row = row();
+            return row < 0 ? 0 : durations[row];
+        }
+
+        @Override
+        public String getDate() {
+            int row = row();
+            return row < 0 ? null : readDate(row);
+        }
+
+        @Override
+        public int getRecurrenceId() {
+            Occurrence occurrence = row() < 0 ? null : occurrences.get(id);
+            return occurrence == null ? 0 : occurrence.recurrenceId;
+        }
+
+        @Override
+        public String getOccurrenceDate() {
+            Occurrence occurrence = row() < 0 ? null : occurrences.get(id);
+            return occurrence == null ? null : occurrence.date;
+        }
+
+        @Override
+        public void setOccurrence(int recurrenceId, String occurrenceDate) {
+            if (row() >= 0) {
+                writeOccurrence(id, recurrenceId, occurrenceDate);
+            }
+        }
+
+        @Override
+        public Task copy() {
+            int row = row();
+            return row < 0 ? new Task(id, null, null, PENDING, 0, null) : materialize(row);
+        }
+    }
+}
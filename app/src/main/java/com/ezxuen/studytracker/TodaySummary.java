@@ -0,0 +1,155 @@
+package com.ezxuen.studytracker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.Objects;
+
+/**
+ * TodaySummary holds what the home screen widget shows: how many tasks are still pending
+ * today, their planned minutes, and the next one to study. It is computed from the database
+ * by {@link TodayWidgetUpdater} after task writes and stored in a small preferences file,
+ * so the widget can be drawn without opening the database.
+ */
+public final class TodaySummary {
+    private static final String PREFS_NAME = "today_summary";
+    private static final String KEY_DAY = "day";
+    private static final String KEY_PENDING = "pending";
+    private static final String KEY_MINUTES = "minutes";
+    private static final String KEY_NEXT_NAME = "next_name";
+    private static final String KEY_NEXT_TOPIC = "next_topic";
+
+    private final int day;
+    private final int pendingCount;
+    private final int plannedMinutes;
+    private final String nextName;
+    private final String nextTopic;
+
+    /**
+     * @param day The epoch day the summary was computed for.
+     * @param pendingCount The number of pending tasks due that day.
+     * @param plannedMinutes The total duration of those tasks in minutes.
+     * @param nextName The name of the next task, or null if nothing is pending.
+     * @param nextTopic The topic of the next task, or null.
+     */
+    TodaySummary(int day, int pendingCount, int plannedMinutes, String nextName, String nextTopic) {
+        this.day = day;
+        this.pendingCount = pendingCount;
+        this.plannedMinutes = plannedMinutes;
+        this.nextName = nextName;
+        this.nextTopic = nextTopic;
+    }
+
+    /**
+     * Computes the summary of a day from the pending task rows due that day and the
+     * recurring occurrences that have no row yet. The next task is the first one in id order,
+     * then the first occurrence. Meant to run on the disk I/O thread.
+     * @param dbHelper The database to read.
+     * @param day The epoch day to summarize.
+     * @return The summary of the day.
+     */
+    public static TodaySummary compute(DatabaseHelper dbHelper, int day) {
+        String date = EpochDay.format(day);
+        int count = 0;
+        int minutes = 0;
+        Task next = null;
+        try (TaskIterable tasks = dbHelper.streamTasks(DatabaseHelper.STATUS + " = 'pending' AND "
+                + DatabaseHelper.DATE + " = ?", new String[]{date}, DatabaseHelper.STREAM_CHUNK_SIZE)) {
+            for (Task task : tasks) {
+                count++;
+                minutes += task.getDuration();
+                if (next == null) {
+                    next = task;
+                }
+            }
+        }
+        for (Task occurrence : dbHelper.getOccurrences(date, date)) {
+            count++;
+            minutes += occurrence.getDuration();
+            if (next == null) {
+                next = occurrence;
+            }
+        }
+        return next == null ? new TodaySummary(day, 0, 0, null, null)
+                : new TodaySummary(day, count, minutes, next.getName(), next.getTopic());
+    }
+
+    /**
+     * Reads the stored summary.
+     * @param context Any context.
+     * @return The last stored summary, or null if none is stored.
+     */
+    public static TodaySummary load(Context context) {
+        SharedPreferences preferences = getPreferences(context);
+        if (!preferences.contains(KEY_DAY)) {
+            return null;
+        }
+        return new TodaySummary(preferences.getInt(KEY_DAY, 0), preferences.getInt(KEY_PENDING, 0),
+                preferences.getInt(KEY_MINUTES, 0), preferences.getString(KEY_NEXT_NAME, null),
+                preferences.getString(KEY_NEXT_TOPIC, null));
+    }
+
+    /**
+     * Stores this summary in place of the previous one.
+     * @param context Any context.
+     */
+    public void save(Context context) {
+        getPreferences(context).edit()
+                .putInt(KEY_DAY, day)
+                .putInt(KEY_PENDING, pendingCount)
+                .putInt(KEY_MINUTES, plannedMinutes)
+                .putString(KEY_NEXT_NAME, nextName)
+                .putString(KEY_NEXT_TOPIC, nextTopic)
+                .apply();
+    }
+
+    /**
+     * Removes the stored summary, e.g. when the last widget is removed and writes stop updating it.
+     * @param context Any context.
+     */
+    public static void clear(Context context) {
+        getPreferences(context).edit().clear().apply();
+    }
+
+    public int getDay() {
+        return day;
+    }
+
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    public int getPlannedMinutes() {
+        return plannedMinutes;
+    }
+
+    public String getNextName() {
+        return nextName;
+    }
+
+    public String getNextTopic() {
+        return nextTopic;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TodaySummary)) {
+            return false;
+        }
+        TodaySummary other = (TodaySummary) o;
+        return day == other.day && pendingCount == other.pendingCount && plannedMinutes == other.plannedMinutes
+                && Objects.equals(nextName, other.nextName) && Objects.equals(nextTopic, other.nextTopic);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(day, pendingCount, plannedMinutes, nextName, nextTopic);
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,93 @@
+package com.ezxuen.studytracker;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.view.View;
+import android.widget.RemoteViews;
+
+/**
+ * TodayWidget is the home screen widget that shows today's pending tasks, their planned
+ * minutes and the next task. It draws the stored {@link TodaySummary} and never opens the
+ * database itself; {@link TodayWidgetUpdater} stores a new summary and redraws the widgets
+ * after task writes. A summary from an earlier day (e.g. on the first periodic update after
+ * midnight) is not shown; the widget asks for a refresh instead.
+ */
+public class TodayWidget extends AppWidgetProvider {
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        TodaySummary summary = TodaySummary.load(context);
+        if (summary == null || summary.getDay() != EpochDay.today()) {
+            summary = null;
+            TodayWidgetUpdater.getInstance(context).requestRefresh();
+        }
+        appWidgetManager.updateAppWidget(appWidgetIds, buildViews(context, summary));
+    }
+
+    @Override
+    public void onDisabled(Context context) {
+        TodayWidgetUpdater.getInstance(context).clear();
+    }
+
+    /**
+     * Checks whether any widget is placed, so that no summary is computed for nobody.
+     * @param context Any context.
+     * @return true if at least one widget is on the home screen.
+     */
+    static boolean hasWidgets(Context context) {
+        return getWidgetIds(context).length > 0;
+    }
+
+    /**
+     * Redraws every placed widget with a summary.
+     * @param context Any context.
+     * @param summary The summary to show.
+     */
+    static void updateAll(Context context, TodaySummary summary) {
+        int[] ids = getWidgetIds(context);
+        if (ids.length > 0) {
+            AppWidgetManager.getInstance(context).updateAppWidget(ids, buildViews(context, summary));
+        }
+    }
+
+    private static int[] getWidgetIds(Context context) {
+        return AppWidgetManager.getInstance(context).getAppWidgetIds(new ComponentName(context, TodayWidget.class));
+    }
+
+    /**
+     * Builds the widget views for a summary.
+     * @param context Any context.
+     * @param summary The summary to show, or null while it is being computed.
+     * @return The views of the widget.
+     */
+    static RemoteViews buildViews(Context context, TodaySummary summary) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_today);
+        if (summary == null) {
+            views.setTextViewText(R.id.widgetPending, "Updating…");
+            views.setViewVisibility(R.id.widgetMinutes, View.GONE);
+            views.setViewVisibility(R.id.widgetNext, View.GONE);
+        } else if (summary.getPendingCount() == 0) {
+            views.setTextViewText(R.id.widgetPending, "All done for today");
+            views.setViewVisibility(R.id.widgetMinutes, View.GONE);
+            views.setViewVisibility(R.id.widgetNext, View.GONE);
+        } else {
+            int count = summary.getPendingCount();
+            views.setTextViewText(R.id.widgetPending, count == 1 ? "1 task left" : count + " tasks left");
+            views.setTextViewText(R.id.widgetMinutes, summary.getPlannedMinutes() + " min planned");
+            views.setViewVisibility(R.id.widgetMinutes, View.VISIBLE);
+            String topic = summary.getNextTopic();
+            views.setTextViewText(R.id.widgetNext, "Next: " + summary.getNextName()
+                    + (topic == null || topic.isEmpty() ? "" : " - " + topic));
+            views.setViewVisibility(R.id.widgetNext, View.VISIBLE);
+        }
+
+        Intent openApp = new Intent(context, MainActivity.class).setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        views.setOnClickPendingIntent(R.id.widgetRoot,
+                PendingIntent.getActivity(context, 0, openApp, PendingIntent.FLAG_IMMUTABLE));
+        return views;
+    }
+}
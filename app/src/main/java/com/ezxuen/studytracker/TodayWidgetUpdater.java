@@ -0,0 +1,122 @@
+package com.ezxuen.studytracker;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+/**
+ * TodayWidgetUpdater keeps the {@link TodaySummary} shown by {@link TodayWidget} current.
+ * Task writes reach it through {@link DatabaseHelper.TaskChangeListener}, and each one asks
+ * for a refresh: the summary is computed again on the disk I/O thread, stored, and the
+ * widgets are redrawn only if it changed.
+ *
+ * Refreshes are throttled to one per {@link #MIN_INTERVAL_MS}. The first write after a quiet
+ * period refreshes right away; writes that arrive while a refresh is waiting are folded into
+ * it, so a bulk edit or a run of status toggles redraws the widgets at most once a second.
+ * Nothing is computed while no widget is placed.
+ */
+public class TodayWidgetUpdater implements DatabaseHelper.TaskChangeListener {
+
+    // Minimum time between two refreshes
+    static final long MIN_INTERVAL_MS = 1000;
+
+    private static TodayWidgetUpdater instance;
+
+    private final Context appContext;
+    private final DatabaseHelper dbHelper;
+    private final Runnable refresh = () -> AppExecutors.diskIO().execute(this::refreshNow);
+    private boolean started;
+
+    // Guarded by this
+    private boolean scheduled;
+    private long lastRefreshTime = -MIN_INTERVAL_MS;
+
+    // Accessed on the disk I/O thread only
+    private TodaySummary shown;
+
+    private TodayWidgetUpdater(Context context) {
+        this.appContext = context.getApplicationContext();
+        this.dbHelper = DatabaseHelper.getInstance(appContext);
+    }
+
+    /**
+     * Gets the shared TodayWidgetUpdater instance.
+     * @param context Any context; the application context is retained.
+     * @return The shared TodayWidgetUpdater.
+     */
+    public static synchronized TodayWidgetUpdater getInstance(Context context) {
+        if (instance == null) {
+            instance = new TodayWidgetUpdater(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Starts listening for task changes and refreshes the summary once, which also moves
+     * it to the new day when the app is opened. Calling this more than once has no effect.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        dbHelper.addTaskChangeListener(this);
+        requestRefresh();
+    }
+
+    @Override
+    public void onTaskChanged(Task before, Task after) {
+        requestRefresh();
+    }
+
+    @Override
+    public void onTasksChanged() {
+        requestRefresh();
+    }
+
+    /**
+     * Asks for the summary to be computed again. Requests made while one is waiting are
+     * coalesced into it. Can be called on any thread.
+     */
+    public synchronized void requestRefresh() {
+        if (scheduled) {
+            return;
+        }
+        scheduled = true;
+        long wait = lastRefreshTime + MIN_INTERVAL_MS - SystemClock.elapsedRealtime();
+        AppExecutors.runOnMainDelayed(refresh, Math.max(0, wait));
+    }
+
+    /**
+     * Computes the summary and redraws the widgets if it changed. Runs on the disk I/O thread.
+     */
+    private void refreshNow() {
+        synchronized (this) {
+            // A write from here on is read by the next refresh, not this one
+            scheduled = false;
+            lastRefreshTime = SystemClock.elapsedRealtime();
+        }
+        if (!TodayWidget.hasWidgets(appContext)) {
+            return;
+        }
+        if (shown == null) {
+            shown = TodaySummary.load(appContext);
+        }
+        TodaySummary summary = TodaySummary.compute(dbHelper, EpochDay.today());
+        if (!summary.equals(shown)) {
+            summary.save(appContext);
+            shown = summary;
+            TodayWidget.updateAll(appContext, summary);
+        }
+    }
+
+    /**
+     * Removes the stored summary once the last widget is removed, since writes no longer
+     * keep it current.
+     */
+    void clear() {
+        AppExecutors.diskIO().execute(() -> {
+            TodaySummary.clear(appContext);
+            shown = null;
+        });
+    }
+}
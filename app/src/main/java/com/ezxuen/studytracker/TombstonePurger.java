@@ -0,0 +1,128 @@
+package com.ezxuen.studytracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TombstonePurger permanently removes soft-deleted tasks well after their undo window has passed.
+ * Tombstones are deleted in batches, each in its own transaction together with the task's
+ * tags and sync rows, and the freed pages are released with incremental vacuuming, so even
+ * a large cleanup never blocks for long. Listeners are notified after each batch.
+ */
+public class TombstonePurger {
+    private static final String TAG = "TombstonePurger";
+
+    // How long the undo action is offered after a delete
+    public static final int UNDO_WINDOW_MS = 8000;
+
+    // How long a deleted task is kept before it is purged. Much longer than the undo window,
+    // since the undo Snackbar appears late, stays while touched and lasts longer with
+    // accessibility timeouts; an undo tapped at its very end must still find the task.
+    public static final long TOMBSTONE_RETENTION_MS = 10 * 60 * 1000;
+
+    private static final int BATCH_SIZE = 500;
+    private static final int VACUUM_PAGES_PER_BATCH = 128;
+
+    private static Runnable scheduledPurge;
+
+    private final DatabaseHelper dbHelper;
+
+    /**
+     * Constructs a TombstonePurger.
+     * @param context The context in which the database is accessed.
+     */
+    public TombstonePurger(Context context) {
+        this.dbHelper = DatabaseHelper.getInstance(context);
+    }
+
+    /**
+     * Schedules a purge on the disk I/O thread once a delete made now is past its retention time.
+     * Deleting several tasks in a row results in a single purge. If the process ends first,
+     * the purge at the next startup removes the tombstone.
+     * @param context Any context; the application context is used.
+     */
+    public static synchronized void schedule(Context context) {
+        if (scheduledPurge == null) {
+            Context appContext = context.getApplicationContext();
+            scheduledPurge = () -> AppExecutors.diskIO().execute(() -> new TombstonePurger(appContext).purge());
+        }
+        AppExecutors.runOnMainDelayed(scheduledPurge, TOMBSTONE_RETENTION_MS + 1000);
+    }
+
+    /**
+     * Hard-deletes all tombstones older than the retention time. Meant to run on a background thread.
+     * @return The number of tasks purged.
+     */
+    public int purge() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        String cutoff = String.valueOf(System.currentTimeMillis() - TOMBSTONE_RETENTION_MS);
+
+        int total = 0;
+        List<String> ids;
+        do {
+            ids = findBatch(db, cutoff);
+            if (ids.isEmpty()) {
+                break;
+            }
+            if (total == 0) {
+                dbHelper.enableIncrementalVacuum();
+            }
+
+            String idList = TextUtils.join(",", ids);
+            String uids = "SELECT " + DatabaseHelper.UID + " FROM " + DatabaseHelper.TABLE_TASKS
+                    + " WHERE " + DatabaseHelper.ID + " IN (" + idList + ")";
+            db.beginTransaction();
+            try {
+                // The sync rows go with the task, except those of the delete itself: its clock
+                // marks the uid as purged, so pulled changes do not bring the task back (see
+                // ChangeLog#findOrCreateTask), and a delete not pushed yet must still reach the
+                // other devices. The server acknowledging it removes its log row as usual.
+                String otherFields = " IN (" + uids + ") AND " + ChangeLog.FIELD + " != '"
+                        + DatabaseHelper.DELETED_AT + "'";
+                db.execSQL("DELETE FROM " + ChangeLog.TABLE_FIELD_CLOCK + " WHERE " + DatabaseHelper.UID + otherFields);
+                db.execSQL("DELETE FROM " + ChangeLog.TABLE_CHANGE_LOG + " WHERE " + DatabaseHelper.UID + otherFields);
+                db.execSQL("DELETE FROM " + DatabaseHelper.TABLE_TASKS
+                        + " WHERE " + DatabaseHelper.ID + " IN (" + idList + ")");
+                db.execSQL("DELETE FROM " + TagIndex.TABLE_TASK_TAGS
+                        + " WHERE " + TagIndex.TASK_ID + " IN (" + idList + ")");
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                dbHelper.getQueryCache().invalidate(DatabaseHelper.TABLE_TASKS);
+            }
+            total += ids.size();
+            dbHelper.notifyTasksChanged();
+
+            // Return the pages freed by this batch to the file system
+            dbHelper.incrementalVacuum(VACUUM_PAGES_PER_BATCH);
+        } while (ids.size() == BATCH_SIZE);
+
+        if (total > 0) {
+            Log.i(TAG, "Purged " + total + " deleted tasks");
+        }
+        return total;
+    }
+
+    private List<String> findBatch(SQLiteDatabase db, String cutoff) {
+        List<String> ids = new ArrayList<>(BATCH_SIZE);
+        // A deleted occurrence of a recurring task keeps its tombstone until its date has passed,
+        // since the tombstone is what stops the rule from expanding it again
+        String todayDate = EpochDay.format(EpochDay.today());
+        // Served by the partial index on deleted_at, which only contains tombstones
+        Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.ID + " FROM " + DatabaseHelper.TABLE_TASKS
+                + " WHERE " + DatabaseHelper.DELETED_AT + " IS NOT NULL AND " + DatabaseHelper.DELETED_AT + " < ?"
+                + " AND (" + DatabaseHelper.RECURRENCE_ID + " IS NULL OR " + DatabaseHelper.OCCURRENCE_DATE + " < ?)"
+                + " LIMIT " + BATCH_SIZE, new String[]{cutoff, todayDate});
+        while (cursor.moveToNext()) {
+            ids.add(String.valueOf(cursor.getInt(0)));
+        }
+        cursor.close();
+        return ids;
+    }
+}
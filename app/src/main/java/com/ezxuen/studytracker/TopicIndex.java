@@ -0,0 +1,245 @@
+package com.ezxuen.studytracker;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * TopicIndex suggests existing topics while a topic is typed, so the same topic is not
+ * entered in several spellings. Topics are matched case- and space-insensitively: "Math",
+ * "math " and "MATH" share one entry, shown in its most used spelling.
+ *
+ * The index is built once on the disk I/O thread from a grouped query and then kept up to
+ * date through {@link DatabaseHelper.TaskChangeListener}, so typing never queries the
+ * database. The normalized topics are kept in a sorted list: the topics starting with a
+ * prefix are found by binary search, then ranked by how often they are used, discounted by
+ * how long ago they were last used.
+ */
+public class TopicIndex implements DatabaseHelper.TaskChangeListener {
+    // A topic's weight halves for every this many days since it was last used
+    public static final int HALF_LIFE_DAYS = 30;
+
+    /**
+     * One distinct topic and its usage.
+     */
+    private static class Entry {
+        String topic;     // Most used spelling
+        int topicCount;   // Uses of that spelling when the index was built
+        int count;        // Uses of every spelling
+        int lastDay = Integer.MIN_VALUE; // Epoch day of the latest task with this topic
+
+        double weight(int today) {
+            int age = Math.max(0, today - lastDay);
+            return count * Math.pow(0.5, (double) age / HALF_LIFE_DAYS);
+        }
+    }
+
+    private static TopicIndex instance;
+
+    private final DatabaseHelper dbHelper;
+    private Map<String, Entry> entries = new HashMap<>();
+    private List<String> sortedKeys = new ArrayList<>();
+    private boolean loaded;
+    private boolean loading;
+    private int version = 0; // Incremented on every write, so a build that raced a write is redone
+
+    private TopicIndex(Context context) {
+        this.dbHelper = DatabaseHelper.getInstance(context);
+        dbHelper.addTaskChangeListener(this);
+    }
+
+    /**
+     * Gets the shared TopicIndex instance.
+     * @param context Any context; the application context is used.
+     * @return The shared TopicIndex.
+     */
+    public static synchronized TopicIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new TopicIndex(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Builds the index on the disk I/O thread unless it is already built or being built.
+     */
+    public synchronized void load() {
+        if (loaded || loading) {
+            return;
+        }
+        loading = true;
+        AppExecutors.diskIO().execute(this::rebuild);
+    }
+
+    /**
+     * Reads every topic with one grouped query and replaces the index.
+     * Meant to run on the disk I/O thread.
+     */
+    private void rebuild() {
+        int buildVersion;
+        Map<String, Entry> built;
+        do {
+            synchronized (this) {
+                buildVersion = version;
+            }
+            built = new HashMap<>();
+            Cursor cursor = dbHelper.getTopicCounts();
+            while (cursor.moveToNext()) {
+                String topic = cursor.getString(0);
+                String key = normalize(topic);
+                if (key.isEmpty()) {
+                    continue;
+                }
+                Entry entry = built.get(key);
+                if (entry == null) {
+                    entry = new Entry();
+                    built.put(key, entry);
+                }
+                int count = cursor.getInt(1);
+                entry.count += count;
+                if (count > entry.topicCount) {
+                    entry.topic = topic.trim();
+                    entry.topicCount = count;
+                }
+                String lastDate = cursor.getString(2);
+                if (lastDate != null) {
+                    entry.lastDay = Math.max(entry.lastDay, EpochDay.parse(lastDate));
+                }
+            }
+            cursor.close();
+        } while (!install(built, buildVersion));
+    }
+
+    /**
+     * Replaces the index with a newly built one, unless a write happened during the build.
+     * @return true if the index was replaced.
+     */
+    private synchronized boolean install(Map<String, Entry> built, int buildVersion) {
+        if (buildVersion != version) {
+            return false;
+        }
+        List<String> keys = new ArrayList<>(built.keySet());
+        Collections.sort(keys);
+        entries = built;
+        sortedKeys = keys;
+        loaded = true;
+        loading = false;
+        return true;
+    }
+
+    /**
+     * Suggests existing topics that start with what has been typed.
+     * @param prefix The text typed so far.
+     * @param limit The maximum number of suggestions.
+     * @return The matching topics in their most used spelling, best ranked first.
+     */
+    public synchronized List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        List<Entry> matches = new ArrayList<>();
+        int index = Collections.binarySearch(sortedKeys, key);
+        for (int i = index >= 0 ? index : -index - 1; i < sortedKeys.size(); i++) {
+            String candidate = sortedKeys.get(i);
+            if (!candidate.startsWith(key)) {
+                break;
+            }
+            matches.add(entries.get(candidate));
+        }
+
+        int today = EpochDay.today();
+        Collections.sort(matches, (a, b) -> {
+            int result = Double.compare(b.weight(today), a.weight(today));
+            return result != 0 ? result : Integer.compare(b.count, a.count);
+        });
+        List<String> topics = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            topics.add(matches.get(i).topic);
+        }
+        return topics;
+    }
+
+    /**
+     * Gets the spelling a topic is already stored in, so "math " is saved as "Math".
+     * @param topic The topic as entered.
+     * @return The existing spelling of the same topic, or the entered topic trimmed.
+     */
+    public synchronized String canonicalize(String topic) {
+        Entry entry = entries.get(normalize(topic));
+        return entry != null ? entry.topic : topic.trim();
+    }
+
+    @Override
+    public synchronized void onTaskChanged(Task before, Task after) {
+        version++;
+        if (before != null && after != null && normalize(before.getTopic()).equals(normalize(after.getTopic()))) {
+            // Same topic; only a later due date can change its recency
+            Entry entry = entries.get(normalize(after.getTopic()));
+            if (entry != null) {
+                entry.lastDay = Math.max(entry.lastDay, EpochDay.parse(after.getDate()));
+            }
+            return;
+        }
+        if (before != null) {
+            remove(before);
+        }
+        if (after != null) {
+            add(after);
+        }
+    }
+
+    @Override
+    public synchronized void onTasksChanged() {
+        version++;
+        if (loaded && !loading) {
+            loading = true;
+            AppExecutors.diskIO().execute(this::rebuild);
+        }
+    }
+
+    private void add(Task task) {
+        String key = normalize(task.getTopic());
+        if (key.isEmpty()) {
+            return;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            entry.topic = task.getTopic().trim();
+            entries.put(key, entry);
+            // Insert into the sorted keys at the position the binary search reports
+            sortedKeys.add(-Collections.binarySearch(sortedKeys, key) - 1, key);
+        }
+        entry.count++;
+        entry.lastDay = Math.max(entry.lastDay, EpochDay.parse(task.getDate()));
+    }
+
+    private void remove(Task task) {
+        String key = normalize(task.getTopic());
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        // The latest date of the remaining uses is unknown, so it is kept until the next build
+        if (--entry.count <= 0) {
+            entries.remove(key);
+            sortedKeys.remove(Collections.binarySearch(sortedKeys, key));
+        }
+    }
+
+    /**
+     * Normalizes a topic for matching: trimmed, with single spaces, in lower case.
+     * @param topic The topic, or null.
+     * @return The normalized topic, or an empty string.
+     */
+    static String normalize(String topic) {
+        if (topic == null) {
+            return "";
+        }
+        return topic.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
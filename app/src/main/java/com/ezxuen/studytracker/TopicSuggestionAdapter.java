@@ -0,0 +1,64 @@
+package com.ezxuen.studytracker;
+
+import android.content.Context;
+import android.widget.ArrayAdapter;
+import android.widget.Filter;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TopicSuggestionAdapter feeds an AutoCompleteTextView with topics from the {@link TopicIndex}.
+ * Suggestions are looked up in memory on the filter thread; no query runs per keystroke.
+ */
+public class TopicSuggestionAdapter extends ArrayAdapter<String> {
+    // Maximum number of topics shown in the drop-down
+    private static final int MAX_SUGGESTIONS = 8;
+
+    private final TopicIndex topicIndex;
+
+    /**
+     * Constructs a TopicSuggestionAdapter and starts building the topic index if needed.
+     * @param context The context of the drop-down views.
+     */
+    public TopicSuggestionAdapter(Context context) {
+        super(context, android.R.layout.simple_dropdown_item_1line, new ArrayList<>());
+        this.topicIndex = TopicIndex.getInstance(context);
+        topicIndex.load();
+    }
+
+    @NonNull
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+
+    private final Filter filter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            FilterResults results = new FilterResults();
+            List<String> topics = constraint == null ? new ArrayList<>()
+                    : topicIndex.suggest(constraint.toString(), MAX_SUGGESTIONS);
+            results.values = topics;
+            results.count = topics.size();
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            setNotifyOnChange(false);
+            clear();
+            if (results.values != null) {
+                addAll((List<String>) results.values);
+            }
+            if (results.count > 0) {
+                notifyDataSetChanged();
+            } else {
+                notifyDataSetInvalidated();
+            }
+        }
+    };
+}
@@ -0,0 +1,155 @@
+package com.ezxuen.studytracker;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WorkloadCache keeps the per-day minute totals of recently viewed months, so moving between
+ * months in the calendar does not query the database again. Missing months are loaded together
+ * with a single grouped range query (see {@link DatabaseHelper#addDailyMinutes}).
+ *
+ * Entries are invalidated through {@link DatabaseHelper.TaskChangeListener}: a single task
+ * write drops only the months of its old and new due date; bulk writes clear the cache.
+ */
+public class WorkloadCache implements DatabaseHelper.TaskChangeListener {
+    // Number of months kept; enough for three years of heatmaps
+    private static final int MAX_MONTHS = 36;
+
+    private static WorkloadCache instance;
+
+    private final DatabaseHelper dbHelper;
+    private final Map<Integer, MonthWorkload> months = new LinkedHashMap<Integer, MonthWorkload>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, MonthWorkload> eldest) {
+            return size() > MAX_MONTHS;
+        }
+    };
+    private int version = 0; // Incremented on every invalidation, so a load that raced a write is not cached
+
+    private WorkloadCache(Context context) {
+        this.dbHelper = DatabaseHelper.getInstance(context);
+        dbHelper.addTaskChangeListener(this);
+    }
+
+    /**
+     * Gets the shared WorkloadCache instance.
+     * @param context Any context; the application context is used.
+     * @return The shared WorkloadCache.
+     */
+    public static synchronized WorkloadCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new WorkloadCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the workload of consecutive months, loading the ones not cached with one query.
+     * Meant to run on a background thread.
+     * @param year The year of the first month.
+     * @param month The first month, from 1 to 12.
+     * @param count The number of months.
+     * @return The workload of each month, in order.
+     */
+    public List<MonthWorkload> getMonths(int year, int month, int count) {
+        int first = year * 12 + month - 1;
+        int firstMissing = -1;
+        int lastMissing = -1;
+        int loadVersion;
+        synchronized (this) {
+            for (int key = first; key < first + count; key++) {
+                if (!months.containsKey(key)) {
+                    firstMissing = firstMissing == -1 ? key : firstMissing;
+                    lastMissing = key;
+                }
+            }
+            loadVersion = version;
+        }
+
+        List<MonthWorkload> loaded = firstMissing == -1 ? new ArrayList<>() : load(firstMissing, lastMissing);
+
+        List<MonthWorkload> result = new ArrayList<>(count);
+        synchronized (this) {
+            if (loadVersion == version) {
+                for (MonthWorkload workload : loaded) {
+                    months.put(monthKey(workload), workload);
+                }
+            }
+            for (int key = first; key < first + count; key++) {
+                MonthWorkload workload = months.get(key);
+                if (workload == null && firstMissing != -1 && key >= firstMissing && key <= lastMissing) {
+                    // Invalidated while loading; the freshly loaded value is still the newest to show
+                    workload = loaded.get(key - firstMissing);
+                }
+                result.add(workload);
+            }
+        }
+
+        // A cached month may have been invalidated since it was checked; load it on its own
+        for (int i = 0; i < result.size(); i++) {
+            if (result.get(i) == null) {
+                result.set(i, load(first + i, first + i).get(0));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads a range of months with a single grouped query.
+     * @param firstKey The first month, as year * 12 + month - 1.
+     * @param lastKey The last month, in the same form.
+     * @return The workload of each month in the range, in order.
+     */
+    private List<MonthWorkload> load(int firstKey, int lastKey) {
+        int fromDay = EpochDay.of(firstKey / 12, firstKey % 12 + 1, 1);
+        int toDay = EpochDay.of(lastKey / 12, lastKey % 12 + 1, 1)
+                + MonthWorkload.daysInMonth(lastKey / 12, lastKey % 12 + 1) - 1;
+        int[] planned = new int[toDay - fromDay + 1];
+        int[] completed = new int[planned.length];
+        dbHelper.addDailyMinutes(EpochDay.format(fromDay), EpochDay.format(toDay), planned, completed);
+
+        List<MonthWorkload> loaded = new ArrayList<>();
+        int offset = 0;
+        for (int key = firstKey; key <= lastKey; key++) {
+            int year = key / 12;
+            int month = key % 12 + 1;
+            int days = MonthWorkload.daysInMonth(year, month);
+            int[] monthPlanned = new int[days];
+            int[] monthCompleted = new int[days];
+            System.arraycopy(planned, offset, monthPlanned, 0, days);
+            System.arraycopy(completed, offset, monthCompleted, 0, days);
+            loaded.add(new MonthWorkload(year, month, monthPlanned, monthCompleted));
+            offset += days;
+        }
+        return loaded;
+    }
+
+    @Override
+    public synchronized void onTaskChanged(Task before, Task after) {
+        if (before != null) {
+            months.remove(monthKey(before.getDate()));
+        }
+        if (after != null) {
+            months.remove(monthKey(after.getDate()));
+        }
+        version++;
+    }
+
+    @Override
+    public synchronized void onTasksChanged() {
+        months.clear();
+        version++;
+    }
+
+    private static int monthKey(MonthWorkload workload) {
+        return workload.getYear() * 12 + workload.getMonth() - 1;
+    }
+
+    private static int monthKey(String date) {
+        return Integer.parseInt(date.substring(0, 4)) * 12 + Integer.parseInt(date.substring(5, 7)) - 1;
+    }
+}
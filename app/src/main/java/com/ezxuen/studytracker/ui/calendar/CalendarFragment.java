@@ -0,0 +1,134 @@
+package com.ezxuen.studytracker.ui.calendar;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.os.Bundle;
+import android.view.GestureDetector;
+import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.fragment.app.Fragment;
+
+import com.ezxuen.studytracker.AppExecutors;
+import com.ezxuen.studytracker.MonthWorkload;
+import com.ezxuen.studytracker.R;
+import com.ezxuen.studytracker.WorkloadCache;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * CalendarFragment shows a month calendar and a year heatmap of planned versus completed
+ * study minutes. Swiping (or the arrow buttons) moves between months.
+ * The minutes of a whole year are read with one grouped query and kept in the
+ * {@link WorkloadCache}, so moving between months of that year does not query again.
+ */
+public class CalendarFragment extends Fragment {
+
+    private MonthView monthView;
+    private HeatmapView heatmapView;
+    private TextView txtMonthTitle, txtMonthSummary, txtYearTitle;
+    private int year;
+    private int month;
+    private int loadGeneration = 0; // Discards results of loads for a month no longer shown
+
+    @SuppressLint("ClickableViewAccessibility")
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        // Inflate the layout for this fragment
+        View root = inflater.inflate(R.layout.fragment_calendar, container, false);
+
+        monthView = root.findViewById(R.id.monthView);
+        heatmapView = root.findViewById(R.id.heatmapView);
+        txtMonthTitle = root.findViewById(R.id.txtMonthTitle);
+        txtMonthSummary = root.findViewById(R.id.txtMonthSummary);
+        txtYearTitle = root.findViewById(R.id.txtYearTitle);
+        Button btnPrevMonth = root.findViewById(R.id.btnPrevMonth);
+        Button btnNextMonth = root.findViewById(R.id.btnNextMonth);
+
+        // Start at the current month
+        if (year == 0) {
+            Calendar calendar = Calendar.getInstance();
+            year = calendar.get(Calendar.YEAR);
+            month = calendar.get(Calendar.MONTH) + 1;
+        }
+
+        btnPrevMonth.setOnClickListener(v -> changeMonth(-1));
+        btnNextMonth.setOnClickListener(v -> changeMonth(1));
+
+        // Swipe left for the next month and right for the previous one
+        GestureDetector gestureDetector = new GestureDetector(requireContext(), new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(@NonNull MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onFling(MotionEvent e1, @NonNull MotionEvent e2, float velocityX, float velocityY) {
+                if (Math.abs(velocityX) <= Math.abs(velocityY)) {
+                    return false;
+                }
+                changeMonth(velocityX < 0 ? 1 : -1);
+                return true;
+            }
+        });
+        monthView.setOnTouchListener((v, event) -> gestureDetector.onTouchEvent(event));
+
+        return root;
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        // Months changed by edits elsewhere were invalidated; unchanged ones come from the cache
+        showMonth();
+    }
+
+    /**
+     * Moves the calendar by a number of months.
+     * @param delta The number of months to move; negative moves back.
+     */
+    private void changeMonth(int delta) {
+        int index = year * 12 + month - 1 + delta;
+        year = index / 12;
+        month = index % 12 + 1;
+        showMonth();
+    }
+
+    /**
+     * Shows the current month and the heatmap of its year, reading the year's minutes
+     * from the cache on the disk I/O thread.
+     */
+    private void showMonth() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, 1);
+        txtMonthTitle.setText(new SimpleDateFormat("MMMM yyyy", Locale.getDefault()).format(calendar.getTime()));
+        txtYearTitle.setText("Year " + year);
+
+        Context appContext = requireContext().getApplicationContext();
+        int shownYear = year;
+        int shownMonth = month;
+        int generation = ++loadGeneration;
+        AppExecutors.diskIO().execute(() -> {
+            List<MonthWorkload> months = WorkloadCache.getInstance(appContext).getMonths(shownYear, 1, 12);
+            AppExecutors.runOnMain(() -> {
+                if (getView() == null || generation != loadGeneration) {
+                    return;
+                }
+                MonthWorkload workload = months.get(shownMonth - 1);
+                monthView.setWorkload(workload);
+                heatmapView.setYear(shownYear, months);
+                txtMonthSummary.setText("Planned: " + workload.getTotalPlannedMinutes() + " mins, Completed: "
+                        + workload.getTotalCompletedMinutes() + " mins");
+            });
+        });
+    }
+}
@@ -0,0 +1,106 @@
+package com.ezxuen.studytracker.ui.calendar;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.ezxuen.studytracker.EpochDay;
+import com.ezxuen.studytracker.MonthWorkload;
+
+import java.util.List;
+
+/**
+ * HeatmapView draws a year as a grid of days, one column per week and one row per weekday.
+ * A day's opacity shows how many minutes were planned (relative to the busiest day of the
+ * year), and its color goes from orange to teal as more of those minutes are completed.
+ */
+public class HeatmapView extends View {
+    private static final int COLOR_EMPTY = Color.parseColor("#FFEEEEEE");
+    private static final int COLOR_NOT_DONE = Color.parseColor("#FFFF9800");
+    private static final int COLOR_DONE = Color.parseColor("#FF018786");
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float cellSize;
+    private final float gap;
+
+    private int firstDay; // Epoch day of January 1st of the year shown
+    private int[] planned = new int[0];
+    private int[] completed = new int[0];
+    private int maxPlanned;
+
+    public HeatmapView(Context context) {
+        this(context, null);
+    }
+
+    public HeatmapView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        cellSize = 11 * density;
+        gap = 2 * density;
+    }
+
+    /**
+     * Sets the year to draw.
+     * @param year The year.
+     * @param months The workload of the twelve months of the year, in order.
+     */
+    public void setYear(int year, List<MonthWorkload> months) {
+        firstDay = EpochDay.of(year, 1, 1);
+        int dayCount = EpochDay.of(year + 1, 1, 1) - firstDay;
+        planned = new int[dayCount];
+        completed = new int[dayCount];
+        maxPlanned = 0;
+
+        int offset = 0;
+        for (MonthWorkload month : months) {
+            for (int dayOfMonth = 1; dayOfMonth <= month.getDayCount(); dayOfMonth++) {
+                planned[offset] = month.getPlannedMinutes(dayOfMonth);
+                completed[offset] = month.getCompletedMinutes(dayOfMonth);
+                maxPlanned = Math.max(maxPlanned, planned[offset]);
+                offset++;
+            }
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        // Up to 54 week columns are needed when the year starts late in the week
+        int width = (int) Math.ceil(54 * (cellSize + gap));
+        int height = (int) Math.ceil(7 * (cellSize + gap));
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec), resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        int firstColumnOffset = EpochDay.dayOfWeek(firstDay);
+        for (int i = 0; i < planned.length; i++) {
+            int index = firstColumnOffset + i;
+            float left = (index / 7) * (cellSize + gap);
+            float top = (index % 7) * (cellSize + gap);
+
+            if (planned[i] == 0) {
+                paint.setColor(COLOR_EMPTY);
+            } else {
+                float done = Math.min(1f, completed[i] / (float) planned[i]);
+                int color = blend(COLOR_NOT_DONE, COLOR_DONE, done);
+                // Busier days are drawn more opaque, with a floor so light days stay visible
+                int alpha = (int) (255 * (0.3f + 0.7f * planned[i] / (float) maxPlanned));
+                paint.setColor((color & 0x00FFFFFF) | (alpha << 24));
+            }
+            canvas.drawRect(left, top, left + cellSize, top + cellSize, paint);
+        }
+    }
+
+    private static int blend(int from, int to, float fraction) {
+        int r = (int) (Color.red(from) + (Color.red(to) - Color.red(from)) * fraction);
+        int g = (int) (Color.green(from) + (Color.green(to) - Color.green(from)) * fraction);
+        int b = (int) (Color.blue(from) + (Color.blue(to) - Color.blue(from)) * fraction);
+        return Color.rgb(r, g, b);
+    }
+}
@@ -0,0 +1,104 @@
+package com.ezxuen.studytracker.ui.calendar;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.ezxuen.studytracker.EpochDay;
+import com.ezxuen.studytracker.MonthWorkload;
+
+/**
+ * MonthView draws a month calendar (weeks starting on Monday) in which each day shows its
+ * planned minutes, filled from the bottom in proportion to the minutes completed.
+ * The whole grid is drawn by this one view, so changing months only needs a redraw.
+ */
+public class MonthView extends View {
+    private static final String[] WEEKDAY_LABELS = {"M", "T", "W", "T", "F", "S", "S"};
+    private static final int COLOR_PLANNED = Color.parseColor("#FFE0F2F1");
+    private static final int COLOR_COMPLETED = Color.parseColor("#FF80CBC4");
+    private static final int COLOR_GRID = Color.parseColor("#FFDDDDDD");
+    private static final int COLOR_TODAY = Color.parseColor("#FF018786");
+
+    private final Paint fillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint gridPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint dayPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint minutesPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF cell = new RectF();
+    private final float density;
+
+    private MonthWorkload workload;
+
+    public MonthView(Context context) {
+        this(context, null);
+    }
+
+    public MonthView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        density = getResources().getDisplayMetrics().density;
+        gridPaint.setStyle(Paint.Style.STROKE);
+        gridPaint.setStrokeWidth(density);
+        dayPaint.setTextSize(13 * density);
+        dayPaint.setColor(Color.BLACK);
+        minutesPaint.setTextSize(10 * density);
+        minutesPaint.setColor(Color.DKGRAY);
+        minutesPaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    /**
+     * Sets the month to draw.
+     * @param workload The planned and completed minutes of each day of the month.
+     */
+    public void setWorkload(MonthWorkload workload) {
+        this.workload = workload;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        float headerHeight = 24 * density;
+        float cellWidth = getWidth() / 7f;
+        float cellHeight = (getHeight() - headerHeight) / 6f;
+
+        dayPaint.setTextAlign(Paint.Align.CENTER);
+        for (int i = 0; i < 7; i++) {
+            canvas.drawText(WEEKDAY_LABELS[i], cellWidth * (i + 0.5f), headerHeight * 0.7f, dayPaint);
+        }
+        if (workload == null) {
+            return;
+        }
+
+        int firstDay = workload.getFirstDay();
+        int firstColumn = EpochDay.dayOfWeek(firstDay);
+        int today = EpochDay.today();
+        dayPaint.setTextAlign(Paint.Align.LEFT);
+        for (int dayOfMonth = 1; dayOfMonth <= workload.getDayCount(); dayOfMonth++) {
+            int index = firstColumn + dayOfMonth - 1;
+            float left = (index % 7) * cellWidth;
+            float top = headerHeight + (index / 7) * cellHeight;
+            cell.set(left, top, left + cellWidth, top + cellHeight);
+
+            int planned = workload.getPlannedMinutes(dayOfMonth);
+            int completed = workload.getCompletedMinutes(dayOfMonth);
+            if (planned > 0) {
+                fillPaint.setColor(COLOR_PLANNED);
+                canvas.drawRect(cell, fillPaint);
+                // Fill from the bottom in proportion to the completed minutes
+                float filled = cellHeight * Math.min(1f, completed / (float) planned);
+                fillPaint.setColor(COLOR_COMPLETED);
+                canvas.drawRect(left, top + cellHeight - filled, left + cellWidth, top + cellHeight, fillPaint);
+                canvas.drawText(completed + "/" + planned, left + cellWidth / 2, top + cellHeight - 4 * density, minutesPaint);
+            }
+
+            boolean isToday = firstDay + dayOfMonth - 1 == today;
+            gridPaint.setColor(isToday ? COLOR_TODAY : COLOR_GRID);
+            gridPaint.setStrokeWidth(isToday ? 2 * density : density);
+            canvas.drawRect(cell, gridPaint);
+            canvas.drawText(String.valueOf(dayOfMonth), left + 4 * density, top + 15 * density, dayPaint);
+        }
+    }
+}
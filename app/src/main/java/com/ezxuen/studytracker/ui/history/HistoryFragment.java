@@ -1,6 +1,5 @@
 package com.ezxuen.studytracker.ui.history;
 
-import android.database.Cursor;
 import android.graphics.Typeface;
 import android.os.Bundle;
 import android.view.Gravity;
@@ -16,6 +15,8 @@ import androidx.fragment.app.Fragment;
 
 import com.ezxuen.studytracker.DatabaseHelper;
 import com.ezxuen.studytracker.R;
+import com.ezxuen.studytracker.Task;
+import com.ezxuen.studytracker.TaskIterable;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -28,6 +29,7 @@ import java.util.Locale;
 public class HistoryFragment extends Fragment {
 
     private TableLayout tableLayout;
+    private String currentDate; // To track and group tasks by date
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -37,12 +39,23 @@ public class HistoryFragment extends Fragment {
         // Find the TableLayout where the history will be displayed
         tableLayout = root.findViewById(R.id.tableLayoutHistory);
 
-        // Initialize the database helper and fetch completed tasks
-        DatabaseHelper dbHelper = new DatabaseHelper(getContext());
-        Cursor cursor = dbHelper.getTasksByStatus("completed");
+        // Initialize the database helper and stream completed tasks in chunks,
+        // starting with the archived (older) ones if there is an archive
+        DatabaseHelper dbHelper = DatabaseHelper.getInstance(requireContext());
+        boolean hasRows = false;
+        currentDate = "";
+
+        if (dbHelper.hasArchive()) {
+            try (TaskIterable archivedTasks = dbHelper.streamArchivedTasksByStatus("completed")) {
+                hasRows = addTaskRows(archivedTasks, false);
+            }
+        }
+        try (TaskIterable completedTasks = dbHelper.streamTasksByStatus("completed")) {
+            hasRows = addTaskRows(completedTasks, hasRows);
+        }
 
         // Check if there are no completed tasks
-        if (cursor.getCount() == 0) {
+        if (!hasRows) {
             // Display a message indicating no completed tasks
             TextView emptyView = new TextView(getContext());
             emptyView.setText("No completed tasks yet.");
@@ -50,34 +63,37 @@ public class HistoryFragment extends Fragment {
             emptyView.setTypeface(Typeface.defaultFromStyle(Typeface.ITALIC));
             emptyView.setPadding(16, 16, 16, 16);
             tableLayout.addView(emptyView);
-        } else {
-            // Add a sub-header row for table columns
-            tableLayout.addView(createSubHeaderRow());
-
-            String currentDate = ""; // To track and group tasks by date
-            while (cursor.moveToNext()) {
-                // Fetch task details from the database cursor
-                String date = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.DATE));
-                String taskName = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.NAME));
-                String topic = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.TOPIC));
-                int duration = cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.DURATION));
-
-                // Add a header row for a new date
-                if (!date.equals(currentDate)) {
-                    currentDate = date;
-                    tableLayout.addView(createHeaderRow("Completed Tasks: " + formatDate(currentDate)));
-                }
-
-                // Add a row with task details
-                tableLayout.addView(createDataRow(taskName, topic, String.valueOf(duration)));
-            }
         }
 
-        // Close the database cursor to release resources
-        cursor.close();
         return root;
     }
 
+    /**
+     * Adds table rows for the given tasks, with a header row each time the date changes.
+     * @param tasks The tasks to add, grouped by date.
+     * @param hasRows Whether rows have already been added to the table.
+     * @return true if the table has any task rows after this call.
+     */
+    private boolean addTaskRows(Iterable<Task> tasks, boolean hasRows) {
+        for (Task task : tasks) {
+            if (!hasRows) {
+                // Add a sub-header row for table columns
+                tableLayout.addView(createSubHeaderRow());
+                hasRows = true;
+            }
+
+            // Add a header row for a new date
+            if (!task.getDate().equals(currentDate)) {
+                currentDate = task.getDate();
+                tableLayout.addView(createHeaderRow("Completed Tasks: " + formatDate(currentDate)));
+            }
+
+            // Add a row with task details
+            tableLayout.addView(createDataRow(task.getName(), task.getTopic(), String.valueOf(task.getDuration())));
+        }
+        return hasRows;
+    }
+
     /**
      * Creates a table row with a date header.
      * @param title The title for the header row (e.g., "Completed Tasks: Dec 01, 2024").
@@ -1,12 +1,20 @@
 package com.ezxuen.studytracker.ui.home;
 
 import android.app.DatePickerDialog;
+import android.content.Context;
 import android.os.Bundle;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.AutoCompleteTextView;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -15,24 +23,46 @@ import androidx.fragment.app.Fragment;
 import androidx.navigation.NavController;
 import androidx.navigation.Navigation;
 
+import com.ezxuen.studytracker.AppExecutors;
 import com.ezxuen.studytracker.DatabaseHelper;
 import com.ezxuen.studytracker.R;
+import com.ezxuen.studytracker.RecurrenceRule;
+import com.ezxuen.studytracker.TagFilter;
 import com.ezxuen.studytracker.Task;
+import com.ezxuen.studytracker.TombstonePurger;
+import com.ezxuen.studytracker.TopicIndex;
+import com.ezxuen.studytracker.TopicSuggestionAdapter;
 
 import java.util.Calendar;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  * AddTaskFragment allows users to add, update, or delete study tasks.
- * It handles task details like name, topic, duration, and due date.
+ * It handles task details like name, topic, duration, and due date; the topic field
+ * suggests existing topics from the {@link TopicIndex}. Any number of comma-separated tags
+ * can be given to a single task (see {@link TagFilter}).
+ * A new task can be made recurring, in which case only its rule is stored; editing an
+ * occurrence of a recurring task can also end the series after that occurrence.
+ * The task is read and written on the disk I/O thread; the buttons stay disabled until
+ * the task being edited has loaded and while a write is running.
  */
 public class AddTaskFragment extends Fragment {
 
-    private EditText editTaskName, editTaskTopic, editTaskDuration;
+    private EditText editTaskName, editTaskDuration, editTaskTags;
+    private AutoCompleteTextView editTaskTopic;
     private TextView txtDueDate;
-    private Button btnSetDate, btnAddTask, btnDeleteTask;
+    private Button btnSetDate, btnAddTask, btnDeleteTask, btnRepeatUntil;
+    private CheckBox checkRepeat;
+    private LinearLayout layoutRepeatOptions, layoutWeekdays;
+    private Spinner spinnerFrequency;
+    private EditText editRepeatInterval, editRepeatCount;
+    private final CheckBox[] weekdayBoxes = new CheckBox[7]; // Monday to Sunday
 
     private String selectedDate;
+    private String repeatUntilDate;
     private int taskId = -1; // Default value indicating a new task
+    private Task editedTask;
     private boolean isTaskCompleted = false;
 
     @Override
@@ -43,11 +73,14 @@ public class AddTaskFragment extends Fragment {
         // Initialize UI elements
         editTaskName = root.findViewById(R.id.editTaskName);
         editTaskTopic = root.findViewById(R.id.editTaskTopic);
+        editTaskTopic.setAdapter(new TopicSuggestionAdapter(requireContext()));
+        editTaskTags = root.findViewById(R.id.editTaskTags);
         editTaskDuration = root.findViewById(R.id.taskDuration);
         txtDueDate = root.findViewById(R.id.txtDueDate);
         btnSetDate = root.findViewById(R.id.btnSetDate);
         btnAddTask = root.findViewById(R.id.btnAddTask);
         btnDeleteTask = root.findViewById(R.id.btnDeleteTask);
+        initRepeatOptions(root);
 
         // Check if fragment has arguments for editing an existing task
         if (getArguments() != null) {
@@ -74,7 +107,8 @@ public class AddTaskFragment extends Fragment {
         btnAddTask.setOnClickListener(v -> {
             // Retrieve user inputs
             String name = editTaskName.getText().toString();
-            String topic = editTaskTopic.getText().toString();
+            // Save a known topic in its existing spelling (e.g., "math " as "Math")
+            String topic = TopicIndex.getInstance(requireContext()).canonicalize(editTaskTopic.getText().toString());
             String durationStr = editTaskDuration.getText().toString();
             int duration = 0;
 
@@ -94,61 +128,225 @@ public class AddTaskFragment extends Fragment {
                 return;
             }
 
-            String status = "pending";
-            DatabaseHelper dbHelper = new DatabaseHelper(getContext());
+            // Editing keeps the task's status, so a completed task keeps its completion date
+            String status = editedTask != null ? editedTask.getStatus() : "pending";
+            String date = selectedDate;
+            List<String> tags = TagFilter.parseTags(editTaskTags.getText().toString());
+            int id = taskId;
+            Task edited = editedTask;
+            boolean endSeries = edited != null && edited.getRecurrenceId() != 0 && !checkRepeat.isChecked();
+            int finalDuration = duration;
 
-            if (taskId == -1) {
+            if (taskId == -1 && checkRepeat.isChecked()) {
+                // Store the recurrence rule once; its occurrences are expanded when shown
+                addRecurringTask(name, topic, duration);
+            } else if (taskId == -1) {
                 // Add a new task to the database
-                long result = dbHelper.insertTask(name, topic, status, duration, selectedDate);
-                if (result != -1) {
-                    Toast.makeText(getContext(), "Task added successfully", Toast.LENGTH_SHORT).show();
-                } else {
-                    Toast.makeText(getContext(), "Failed to add task", Toast.LENGTH_SHORT).show();
-                }
+                saveInBackground(dbHelper -> {
+                    long result = dbHelper.insertTask(name, topic, status, finalDuration, date, tags);
+                    return result == -1 ? "Failed to add task" : "Task added successfully";
+                });
             } else {
                 // Update an existing task in the database
-                boolean updated = dbHelper.updateTask(taskId, name, topic, status, duration, selectedDate);
-                if (updated) {
-                    Toast.makeText(getContext(), "Task updated successfully", Toast.LENGTH_SHORT).show();
-                } else {
-                    Toast.makeText(getContext(), "Failed to update task", Toast.LENGTH_SHORT).show();
-                }
+                saveInBackground(dbHelper -> {
+                    if (!dbHelper.updateTask(id, name, topic, status, finalDuration, date, tags)) {
+                        return "Failed to update task";
+                    }
+                    if (endSeries) {
+                        // Stop repeating: this occurrence is the last one of the series
+                        dbHelper.endRecurrence(edited.getRecurrenceId(), edited.getOccurrenceDate());
+                    }
+                    return "Task updated successfully";
+                });
             }
-
-            // Navigate back to the home screen
-            navigateToHome();
         });
 
         // Handle "Delete Task" button click
         btnDeleteTask.setOnClickListener(v -> {
-            DatabaseHelper dbHelper = new DatabaseHelper(getContext());
-            boolean deleted = dbHelper.deleteTask(taskId);
-            if (deleted) {
-                Toast.makeText(getContext(), "Task deleted successfully", Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(getContext(), "Failed to delete task", Toast.LENGTH_SHORT).show();
-            }
-            navigateToHome();
+            Context appContext = requireContext().getApplicationContext();
+            int id = taskId;
+            setButtonsEnabled(false);
+            AppExecutors.diskIO().execute(() -> {
+                boolean deleted = DatabaseHelper.getInstance(appContext).deleteTask(id);
+                AppExecutors.runOnMain(() -> {
+                    if (deleted) {
+                        // The tombstone is purged well after the Home screen's undo
+                        TombstonePurger.schedule(appContext);
+                    } else {
+                        Toast.makeText(appContext, "Failed to delete task", Toast.LENGTH_SHORT).show();
+                    }
+                    if (getView() == null) {
+                        return;
+                    }
+                    if (deleted) {
+                        // Let the Home screen offer an undo
+                        Bundle result = new Bundle();
+                        result.putInt("TASK_ID", id);
+                        getParentFragmentManager().setFragmentResult(HomeFragment.RESULT_TASK_DELETED, result);
+                    }
+                    navigateToHome();
+                });
+            });
         });
 
         return root;
     }
 
     /**
-     * Load task details for editing an existing task.
+     * Load task details for editing an existing task on the disk I/O thread. Saving stays
+     * disabled until they are shown, so an edit never writes over fields it has not read.
      * @param taskId The ID of the task to edit.
      */
     private void loadTaskDetails(int taskId) {
-        DatabaseHelper dbHelper = new DatabaseHelper(getContext());
-        Task task = dbHelper.getTaskById(taskId);
-
-        if (task != null) {
-            editTaskName.setText(task.getName());
-            editTaskTopic.setText(task.getTopic());
-            txtDueDate.setText("Due Date: " + task.getDate());
-            editTaskDuration.setText(String.valueOf(task.getDuration()));
-            selectedDate = task.getDate();
+        Context appContext = requireContext().getApplicationContext();
+        setButtonsEnabled(false);
+        AppExecutors.diskIO().execute(() -> {
+            DatabaseHelper dbHelper = DatabaseHelper.getInstance(appContext);
+            Task task = dbHelper.getTaskById(taskId);
+            List<String> tags = task != null ? dbHelper.getTaskTags(taskId) : null;
+            AppExecutors.runOnMain(() -> {
+                if (getView() == null) {
+                    return;
+                }
+                editedTask = task;
+                if (task == null) {
+                    // The task was deleted meanwhile (e.g. by a sync)
+                    Toast.makeText(getContext(), "Task not found", Toast.LENGTH_SHORT).show();
+                    navigateToHome();
+                    return;
+                }
+                editTaskName.setText(task.getName());
+                editTaskTopic.setText(task.getTopic());
+                editTaskTags.setText(TextUtils.join(", ", tags));
+                txtDueDate.setText("Due Date: " + task.getDate());
+                editTaskDuration.setText(String.valueOf(task.getDuration()));
+                selectedDate = task.getDate();
+
+                // Only occurrences of recurring tasks can change their repeat setting when edited
+                checkRepeat.setChecked(task.getRecurrenceId() != 0);
+                checkRepeat.setVisibility(task.getRecurrenceId() != 0 ? View.VISIBLE : View.GONE);
+                layoutRepeatOptions.setVisibility(View.GONE);
+                setButtonsEnabled(true);
+            });
+        });
+    }
+
+    /**
+     * Runs a write on the disk I/O thread, then shows its message and returns to the home
+     * screen on the main thread.
+     * @param write The write; returns the message to show.
+     */
+    private void saveInBackground(Function<DatabaseHelper, String> write) {
+        Context appContext = requireContext().getApplicationContext();
+        setButtonsEnabled(false);
+        AppExecutors.diskIO().execute(() -> {
+            String message = write.apply(DatabaseHelper.getInstance(appContext));
+            AppExecutors.runOnMain(() -> {
+                Toast.makeText(appContext, message, Toast.LENGTH_SHORT).show();
+                if (getView() != null) {
+                    navigateToHome();
+                }
+            });
+        });
+    }
+
+    private void setButtonsEnabled(boolean enabled) {
+        btnAddTask.setEnabled(enabled);
+        btnDeleteTask.setEnabled(enabled);
+    }
+
+    /**
+     * Initializes the repeat options shown when a new task is made recurring.
+     * @param root The root view of the fragment.
+     */
+    private void initRepeatOptions(View root) {
+        checkRepeat = root.findViewById(R.id.checkRepeat);
+        layoutRepeatOptions = root.findViewById(R.id.layoutRepeatOptions);
+        layoutWeekdays = root.findViewById(R.id.layoutWeekdays);
+        spinnerFrequency = root.findViewById(R.id.spinnerFrequency);
+        editRepeatInterval = root.findViewById(R.id.editRepeatInterval);
+        editRepeatCount = root.findViewById(R.id.editRepeatCount);
+        btnRepeatUntil = root.findViewById(R.id.btnRepeatUntil);
+        int[] weekdayIds = {R.id.checkMon, R.id.checkTue, R.id.checkWed, R.id.checkThu,
+                R.id.checkFri, R.id.checkSat, R.id.checkSun};
+        for (int i = 0; i < weekdayIds.length; i++) {
+            weekdayBoxes[i] = root.findViewById(weekdayIds[i]);
         }
+
+        ArrayAdapter<String> frequencyAdapter = new ArrayAdapter<>(requireContext(),
+                android.R.layout.simple_spinner_item, new String[]{"Daily", "Weekly"});
+        frequencyAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerFrequency.setAdapter(frequencyAdapter);
+        spinnerFrequency.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                // Weekdays can only be picked for weekly repeats
+                layoutWeekdays.setVisibility(position == 1 ? View.VISIBLE : View.GONE);
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+                layoutWeekdays.setVisibility(View.GONE);
+            }
+        });
+
+        checkRepeat.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (taskId == -1) {
+                layoutRepeatOptions.setVisibility(isChecked ? View.VISIBLE : View.GONE);
+                // Recurring task rules have no tags
+                editTaskTags.setVisibility(isChecked ? View.GONE : View.VISIBLE);
+            }
+        });
+
+        btnRepeatUntil.setOnClickListener(v -> showDatePicker(date -> {
+            repeatUntilDate = date;
+            btnRepeatUntil.setText("Repeat Until: " + date);
+        }));
+    }
+
+    /**
+     * Adds a recurring task from the repeat options, if they are valid.
+     * @param name The name of the task.
+     * @param topic The topic of the task.
+     * @param duration The duration of the task in minutes.
+     */
+    private void addRecurringTask(String name, String topic, int duration) {
+        int interval;
+        int count;
+        try {
+            String intervalStr = editRepeatInterval.getText().toString();
+            String countStr = editRepeatCount.getText().toString();
+            interval = intervalStr.isEmpty() ? 1 : Integer.parseInt(intervalStr);
+            count = countStr.isEmpty() ? 0 : Integer.parseInt(countStr);
+        } catch (NumberFormatException e) {
+            Toast.makeText(getContext(), "Invalid repeat value", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (interval < 1 || count < 0) {
+            Toast.makeText(getContext(), "Invalid repeat value", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (repeatUntilDate != null && repeatUntilDate.compareTo(selectedDate) < 0) {
+            Toast.makeText(getContext(), "Repeat end date is before the due date", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        boolean weekly = spinnerFrequency.getSelectedItemPosition() == 1;
+        int weekdays = 0;
+        if (weekly) {
+            for (int i = 0; i < weekdayBoxes.length; i++) {
+                if (weekdayBoxes[i].isChecked()) {
+                    weekdays |= 1 << i;
+                }
+            }
+        }
+
+        String frequency = weekly ? RecurrenceRule.WEEKLY : RecurrenceRule.DAILY;
+        int finalWeekdays = weekdays;
+        String startDate = selectedDate;
+        String untilDate = repeatUntilDate;
+        saveInBackground(dbHelper -> dbHelper.insertRecurrence(name, topic, duration, frequency, interval,
+                finalWeekdays, startDate, untilDate, count) != -1 ? "Recurring task added" : "Failed to add task");
     }
 
     /**
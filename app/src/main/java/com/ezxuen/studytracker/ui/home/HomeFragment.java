@@ -1,39 +1,100 @@
 package com.ezxuen.studytracker.ui.home;
 
-import android.database.Cursor;
+import android.app.DatePickerDialog;
+import android.content.Context;
 import android.os.Bundle;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.Spinner;
+import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
+import androidx.core.view.MenuProvider;
 import androidx.fragment.app.Fragment;
 import androidx.navigation.NavController;
 import androidx.navigation.Navigation;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.ezxuen.studytracker.AppExecutors;
 import com.ezxuen.studytracker.DatabaseHelper;
+import com.ezxuen.studytracker.DayClock;
+import com.ezxuen.studytracker.EpochDay;
+import com.ezxuen.studytracker.HomeSnapshot;
+import com.ezxuen.studytracker.OverdueCounter;
 import com.ezxuen.studytracker.R;
+import com.ezxuen.studytracker.StartupMetrics;
+import com.ezxuen.studytracker.StartupPipeline;
+import com.ezxuen.studytracker.TagFilter;
 import com.ezxuen.studytracker.Task;
 import com.ezxuen.studytracker.TaskAdapter;
+import com.ezxuen.studytracker.TaskDiffCallback;
+import com.ezxuen.studytracker.TaskQuery;
+import com.ezxuen.studytracker.TaskStore;
+import com.ezxuen.studytracker.TombstonePurger;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import com.google.android.material.snackbar.Snackbar;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 /**
  * HomeFragment displays a list of tasks that are due today or later.
+ * Pending tasks whose due date has passed are counted in an overdue header above the
+ * list, which expands to show them; the count comes from the {@link OverdueCounter}.
+ * The list is sorted and filtered in SQL (see {@link TaskQuery}) and loaded one page at a time.
+ * Occurrences of recurring tasks within the query's date window are expanded and merged
+ * into the pages in sort order. When the date changes while the list is shown, the
+ * {@link DayClock} moves it to the new day.
+ * On cold start it first shows the cached {@link HomeSnapshot} and then reconciles
+ * it with the live database query, which runs in the background.
+ * Long-pressing a task starts a multi-select mode with bulk actions, each of which
+ * runs as a single database transaction.
  * Users can navigate to the Add Task screen via a FloatingActionButton.
  */
 public class HomeFragment extends Fragment {
 
+    // Fragment result sent by AddTaskFragment when a task is deleted
+    public static final String RESULT_TASK_DELETED = "task_deleted";
+
+    // Start loading the next page when this many tasks are left below the last visible one
+    private static final int PREFETCH_DISTANCE = 10;
+
     private RecyclerView recyclerView;
     private TaskAdapter taskAdapter;
     private List<Task> taskList;
+    private TextView txtOverdueHeader;
+    private RecyclerView recyclerViewOverdue;
+    private TaskAdapter overdueAdapter;
+    private final List<Task> overdueList = new ArrayList<>();
+    private boolean overdueExpanded = false;
+    private int overdueCount = 0;
+    private String todayDate;
+    private ActionMode actionMode;
+    private TaskQuery query;
+    private List<Task> occurrences = Collections.emptyList(); // Expanded occurrences for the query, in sort order
+    private boolean loadingPage = false;
+    private boolean endReached = false;
+    private int loadGeneration = 0; // Discards results of loads started before the query changed
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -42,39 +103,64 @@ public class HomeFragment extends Fragment {
 
         // Initialize RecyclerView and set its layout manager
         recyclerView = root.findViewById(R.id.recyclerViewTasks);
-        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
-
-        // Initialize the database helper and task list
-        DatabaseHelper dbHelper = new DatabaseHelper(getContext());
-        taskList = new ArrayList<>();
-
-        // Get the current date in "yyyy-MM-dd" format
-        String todayDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date());
-
-        // Fetch tasks due today or later from the database
-        Cursor cursor = dbHelper.getTasksDueTodayOrLater(todayDate);
-        if (cursor.moveToFirst()) {
-            do {
-                // Create a Task object from the cursor data
-                Task task = new Task(
-                        cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.ID)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.NAME)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.TOPIC)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.STATUS)),
-                        cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.DURATION)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.DATE))
-                );
-
-                // Add the task to the list
-                taskList.add(task);
-            } while (cursor.moveToNext());
-        }
-        // Close the cursor to release resources
-        cursor.close();
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        recyclerView.setLayoutManager(layoutManager);
+
+        // Initialize the task list and the current date in "yyyy-MM-dd" format; the list is
+        // stored by column, since it can grow to many thousands of tasks while scrolling
+        taskList = new TaskStore();
+        todayDate = EpochDay.format(DayClock.getInstance(requireContext()).getToday());
+        if (query == null) {
+            query = TaskQuery.dueTodayOrLater(todayDate);
+        }
+        endReached = false;
+
+        // Show the cached snapshot of the first screenful immediately, before SQLite is opened
+        List<Task> snapshot = query.isDefault(todayDate) ? HomeSnapshot.read(requireContext(), todayDate) : null;
+        if (snapshot != null) {
+            taskList.addAll(snapshot);
+        }
 
         // Initialize the adapter and set it to the RecyclerView
         taskAdapter = new TaskAdapter(getContext(), taskList);
+        taskAdapter.setSelectionListener(this::onSelectionChanged);
         recyclerView.setAdapter(taskAdapter);
+        if (snapshot != null) {
+            recyclerView.post(() -> StartupMetrics.markContentShown(StartupMetrics.SNAPSHOT));
+        }
+
+        // Load the live list in the background and reconcile it with the snapshot
+        loadTasksInBackground();
+
+        // Load the next page when the user scrolls near the end of the list
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= taskList.size() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        // Show the overdue tasks above the list when the overdue header is tapped
+        txtOverdueHeader = root.findViewById(R.id.txtOverdueHeader);
+        recyclerViewOverdue = root.findViewById(R.id.recyclerViewOverdue);
+        recyclerViewOverdue.setLayoutManager(new LinearLayoutManager(getContext()));
+        overdueList.clear();
+        overdueAdapter = new TaskAdapter(getContext(), overdueList);
+        overdueAdapter.setSelectionEnabled(false);
+        recyclerViewOverdue.setAdapter(overdueAdapter);
+        txtOverdueHeader.setOnClickListener(v -> {
+            overdueExpanded = !overdueExpanded;
+            showOverdueCount(overdueCount);
+        });
+
+        // Add the sort and filter options to the app bar
+        requireActivity().addMenuProvider(menuProvider, getViewLifecycleOwner());
+
+        // Offer to undo a delete made on the Add Task screen
+        getParentFragmentManager().setFragmentResultListener(RESULT_TASK_DELETED, getViewLifecycleOwner(),
+                (requestKey, result) -> showUndoDelete(Collections.singletonList(result.getInt("TASK_ID", -1))));
 
         // Handle FloatingActionButton click to navigate to Add Task screen
         FloatingActionButton fabAddTask = root.findViewById(R.id.fabAddTask);
@@ -85,4 +171,588 @@ public class HomeFragment extends Fragment {
 
         return root;
     }
-}
\ No newline at end of file
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        OverdueCounter.getInstance(requireContext()).addCountListener(overdueCountListener);
+        DayClock dayClock = DayClock.getInstance(requireContext());
+        dayClock.addDayListener(dayListener);
+        // The day may have changed while the app was in the background
+        dayClock.check();
+        moveToDay(dayClock.getToday());
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        OverdueCounter.getInstance(requireContext()).removeCountListener(overdueCountListener);
+        DayClock.getInstance(requireContext()).removeDayListener(dayListener);
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (actionMode != null) {
+            actionMode.finish();
+        }
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        // Persist the first screenful (including checkbox changes) for the next cold start;
+        // the snapshot only ever holds the default Home query
+        if (!query.isDefault(todayDate)) {
+            return;
+        }
+        // The list holds views into a TaskStore, so the tasks are copied before leaving the main thread
+        List<Task> firstTasks = new ArrayList<>();
+        for (Task task : taskList.subList(0, Math.min(taskList.size(), HomeSnapshot.MAX_TASKS))) {
+            firstTasks.add(task.copy());
+        }
+        Context appContext = requireContext().getApplicationContext();
+        AppExecutors.diskIO().execute(() -> HomeSnapshot.write(appContext, firstTasks));
+    }
+
+    /**
+     * Moves the list to the new day whenever the date changes.
+     */
+    private final DayClock.DayListener dayListener = (previousDay, today, change) -> moveToDay(today);
+
+    /**
+     * Moves a "today or later" list to a new day. Moving forward drops the tasks now in the
+     * past from the loaded list, without querying; they are counted as overdue by the
+     * {@link OverdueCounter}. The occurrence window moves with the day, so only the days it
+     * gained are expanded. Moving back (the clock was set back) re-queries the loaded
+     * range, since earlier tasks have to be added.
+     * @param today The new epoch day.
+     */
+    private void moveToDay(int today) {
+        String previousDate = todayDate;
+        String newDate = EpochDay.format(today);
+        if (newDate.equals(previousDate)) {
+            return;
+        }
+        todayDate = newDate;
+        // Lists with a date range chosen in the filter do not depend on today
+        if (!previousDate.equals(query.getFromDate())) {
+            return;
+        }
+        query.setFromDate(newDate);
+        if (newDate.compareTo(previousDate) < 0 || loadingPage) {
+            // A page loading for the previous day is dropped and the loaded range re-queried
+            loadGeneration++;
+            loadTasksInBackground();
+            return;
+        }
+        for (int i = taskList.size() - 1; i >= 0; i--) {
+            if (taskList.get(i).getDate().compareTo(newDate) < 0) {
+                taskList.remove(i);
+                taskAdapter.notifyItemRemoved(i);
+            }
+        }
+        List<Task> currentOccurrences = new ArrayList<>();
+        for (Task occurrence : occurrences) {
+            if (occurrence.getDate().compareTo(newDate) >= 0) {
+                currentOccurrences.add(occurrence);
+            }
+        }
+        occurrences = currentOccurrences;
+
+        // An open-ended list expands occurrences a fixed number of days past today
+        if (query.getToDate() == null) {
+            int previousEnd = EpochDay.parse(previousDate) + TaskQuery.OCCURRENCE_HORIZON_DAYS;
+            loadOccurrenceTail(Math.max(previousEnd + 1, today), today + TaskQuery.OCCURRENCE_HORIZON_DAYS);
+        }
+    }
+
+    /**
+     * Expands the occurrences of the days that entered the occurrence window on the disk I/O
+     * thread, and merges them into the loaded list. Occurrences that sort after the last
+     * shown task are left for the next page, unless the list is complete.
+     * @param fromDay The first new epoch day of the window.
+     * @param toDay The last epoch day of the window.
+     */
+    private void loadOccurrenceTail(int fromDay, int toDay) {
+        Context appContext = requireContext().getApplicationContext();
+        String date = todayDate;
+        TaskQuery tailQuery = query.copy();
+        tailQuery.setFromDate(EpochDay.format(fromDay));
+        tailQuery.setToDate(EpochDay.format(toDay));
+        int generation = loadGeneration;
+
+        AppExecutors.diskIO().execute(() -> {
+            List<Task> tail = DatabaseHelper.getInstance(appContext).queryOccurrences(tailQuery, date);
+            AppExecutors.runOnMain(() -> {
+                if (getView() == null || generation != loadGeneration || tail.isEmpty()) {
+                    return;
+                }
+                if (loadingPage) {
+                    // The page being loaded was merged without these occurrences
+                    loadGeneration++;
+                    loadTasksInBackground();
+                    return;
+                }
+                Comparator<Task> order = query.comparator();
+                List<Task> merged = new ArrayList<>(occurrences);
+                merged.addAll(tail);
+                Collections.sort(merged, order);
+                occurrences = merged;
+
+                Task lastShown = taskList.isEmpty() ? null : taskList.get(taskList.size() - 1).copy();
+                int index = 0;
+                for (Task occurrence : tail) {
+                    if (!endReached && (lastShown == null || order.compare(occurrence, lastShown) > 0)) {
+                        break;
+                    }
+                    while (index < taskList.size() && order.compare(taskList.get(index), occurrence) < 0) {
+                        index++;
+                    }
+                    taskList.add(index, occurrence);
+                    taskAdapter.notifyItemInserted(index++);
+                }
+            });
+        });
+    }
+
+    /**
+     * Updates the overdue header whenever the overdue count changes.
+     */
+    private final OverdueCounter.CountListener overdueCountListener = this::showOverdueCount;
+
+    /**
+     * Shows the overdue header, and the overdue tasks if the header is expanded.
+     * @param count The number of overdue tasks.
+     */
+    private void showOverdueCount(int count) {
+        if (getView() == null) {
+            return;
+        }
+        overdueCount = count;
+        if (count == 0) {
+            overdueExpanded = false;
+        }
+        txtOverdueHeader.setVisibility(count > 0 ? View.VISIBLE : View.GONE);
+        txtOverdueHeader.setText((count == 1 ? "1 overdue task" : count + " overdue tasks")
+                + (overdueExpanded ? " \u25B2" : " \u25BC"));
+        recyclerViewOverdue.setVisibility(overdueExpanded ? View.VISIBLE : View.GONE);
+        if (overdueExpanded) {
+            loadOverdueTasks();
+        }
+    }
+
+    /**
+     * Reads the overdue tasks on the disk I/O thread and shows them in the overdue list.
+     */
+    private void loadOverdueTasks() {
+        Context appContext = requireContext().getApplicationContext();
+        String date = todayDate;
+        AppExecutors.diskIO().execute(() -> {
+            List<Task> loadedTasks = DatabaseHelper.getInstance(appContext).getOverdueTasks(date);
+            AppExecutors.runOnMain(() -> {
+                if (getView() == null) {
+                    return;
+                }
+                DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new TaskDiffCallback(overdueList, loadedTasks));
+                overdueList.clear();
+                overdueList.addAll(loadedTasks);
+                diff.dispatchUpdatesTo(overdueAdapter);
+            });
+        });
+    }
+
+    /**
+     * Starts, updates, or finishes the selection action mode as tasks are selected.
+     * @param selectedCount The number of selected tasks.
+     */
+    private void onSelectionChanged(int selectedCount) {
+        if (selectedCount == 0 && !taskAdapter.isSelectionMode()) {
+            if (actionMode != null) {
+                actionMode.finish();
+            }
+            return;
+        }
+        if (actionMode == null) {
+            actionMode = ((AppCompatActivity) requireActivity()).startSupportActionMode(selectionCallback);
+        }
+        if (actionMode != null) {
+            actionMode.setTitle(selectedCount + " selected");
+        }
+    }
+
+    /**
+     * Action mode callback with the bulk actions for the selected tasks.
+     */
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.menu_task_selection, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            int itemId = item.getItemId();
+            if (itemId == R.id.action_select_all) {
+                taskAdapter.selectAll();
+                return true;
+            }
+            if (itemId == R.id.action_select_all_matching) {
+                // Select every matching task, including the pages that are not loaded yet
+                DatabaseHelper dbHelper = DatabaseHelper.getInstance(requireContext());
+                TaskQuery currentQuery = query.copy();
+                String date = todayDate;
+                AppExecutors.diskIO().execute(() -> {
+                    List<Integer> ids = dbHelper.queryTaskIds(currentQuery);
+                    for (Task occurrence : dbHelper.queryOccurrences(currentQuery, date)) {
+                        ids.add(occurrence.getId());
+                    }
+                    AppExecutors.runOnMain(() -> {
+                        if (getView() != null) {
+                            taskAdapter.selectIds(ids);
+                        }
+                    });
+                });
+                return true;
+            }
+
+            Set<Integer> selectedIds = taskAdapter.getSelectedIds();
+            if (selectedIds.isEmpty()) {
+                return true;
+            }
+            DatabaseHelper dbHelper = DatabaseHelper.getInstance(requireContext());
+
+            // Selected occurrences of recurring tasks are saved as rows before the action applies
+            List<Task> selectedOccurrences = new ArrayList<>();
+            for (Task occurrence : occurrences) {
+                if (selectedIds.contains(occurrence.getId())) {
+                    selectedOccurrences.add(occurrence);
+                }
+            }
+
+            if (itemId == R.id.action_complete) {
+                runBulkAction(() -> dbHelper.updateTasksStatus(
+                        dbHelper.materializeOccurrences(selectedIds, selectedOccurrences), "completed"));
+            } else if (itemId == R.id.action_reopen) {
+                runBulkAction(() -> dbHelper.updateTasksStatus(
+                        dbHelper.materializeOccurrences(selectedIds, selectedOccurrences), "pending"));
+            } else if (itemId == R.id.action_reschedule) {
+                showDatePicker(date -> runBulkAction(() -> dbHelper.rescheduleTasks(
+                        dbHelper.materializeOccurrences(selectedIds, selectedOccurrences), date)));
+                return true;
+            } else if (itemId == R.id.action_delete) {
+                deleteSelected(dbHelper, selectedIds, selectedOccurrences);
+            } else {
+                return false;
+            }
+            mode.finish();
+            return true;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            actionMode = null;
+            taskAdapter.clearSelection();
+        }
+    };
+
+    /**
+     * Runs a bulk database action on the disk I/O thread, then reloads the list
+     * and applies the result as a single diff.
+     * @param action The bulk action; it runs as one DatabaseHelper transaction.
+     */
+    private void runBulkAction(Runnable action) {
+        // Both run on the serial disk executor, so the reload sees the action's changes
+        AppExecutors.diskIO().execute(action);
+        loadTasksInBackground();
+    }
+
+    /**
+     * Soft-deletes the selected tasks on the disk I/O thread and offers to undo it.
+     * Occurrences are saved as deleted rows, so their rule does not show them again.
+     * @param dbHelper The database helper.
+     * @param selectedIds The IDs of the selected tasks.
+     * @param selectedOccurrences The selected occurrences that have not been saved yet.
+     */
+    private void deleteSelected(DatabaseHelper dbHelper, Set<Integer> selectedIds, List<Task> selectedOccurrences) {
+        Context appContext = requireContext().getApplicationContext();
+        AppExecutors.diskIO().execute(() -> {
+            Set<Integer> ids = dbHelper.materializeOccurrences(selectedIds, selectedOccurrences);
+            dbHelper.deleteTasks(ids);
+            TombstonePurger.schedule(appContext);
+            AppExecutors.runOnMain(() -> {
+                if (getView() != null) {
+                    showUndoDelete(ids);
+                }
+            });
+        });
+        loadTasksInBackground();
+    }
+
+    /**
+     * Display a date picker dialog to select a date, then finish the action mode if one is active.
+     * @param callback The callback to handle the selected date.
+     */
+    private void showDatePicker(AddTaskFragment.DatePickerCallback callback) {
+        Calendar calendar = Calendar.getInstance();
+        new DatePickerDialog(requireContext(),
+                (view, year, month, dayOfMonth) -> {
+                    callback.onDateSet(String.format(Locale.US, "%04d-%02d-%02d", year, month + 1, dayOfMonth));
+                    if (actionMode != null) {
+                        actionMode.finish();
+                    }
+                },
+                calendar.get(Calendar.YEAR),
+                calendar.get(Calendar.MONTH),
+                calendar.get(Calendar.DAY_OF_MONTH)).show();
+    }
+
+    /**
+     * Shows a Snackbar that restores deleted tasks while their undo window is open.
+     * @param taskIds The IDs of the deleted tasks.
+     */
+    private void showUndoDelete(Collection<Integer> taskIds) {
+        String message = taskIds.size() == 1 ? "Task deleted" : taskIds.size() + " tasks deleted";
+        Snackbar.make(requireView(), message, TombstonePurger.UNDO_WINDOW_MS)
+                .setAnchorView(requireActivity().findViewById(R.id.nav_view))
+                .setAction("Undo", v -> {
+                    Context appContext = requireContext().getApplicationContext();
+                    DatabaseHelper dbHelper = DatabaseHelper.getInstance(appContext);
+                    runBulkAction(() -> {
+                        // Nothing is restored if the tombstones were purged in the meantime
+                        if (dbHelper.restoreTasks(taskIds) == 0) {
+                            AppExecutors.runOnMain(() -> Toast.makeText(appContext,
+                                    "The deleted tasks could not be restored", Toast.LENGTH_SHORT).show());
+                        }
+                    });
+                })
+                .show();
+    }
+
+    /**
+     * Menu provider for the sort and filter options of the Home list.
+     */
+    private final MenuProvider menuProvider = new MenuProvider() {
+        @Override
+        public void onCreateMenu(@NonNull Menu menu, @NonNull MenuInflater menuInflater) {
+            menuInflater.inflate(R.menu.menu_home, menu);
+        }
+
+        @Override
+        public void onPrepareMenu(@NonNull Menu menu) {
+            int checkedId;
+            switch (query.getSortOrder()) {
+                case DURATION:
+                    checkedId = R.id.action_sort_duration;
+                    break;
+                case NAME:
+                    checkedId = R.id.action_sort_name;
+                    break;
+                default:
+                    checkedId = R.id.action_sort_date;
+                    break;
+            }
+            menu.findItem(checkedId).setChecked(true);
+        }
+
+        @Override
+        public boolean onMenuItemSelected(@NonNull MenuItem item) {
+            int itemId = item.getItemId();
+            if (itemId == R.id.action_sort_date) {
+                changeSortOrder(TaskQuery.SortOrder.DATE);
+            } else if (itemId == R.id.action_sort_duration) {
+                changeSortOrder(TaskQuery.SortOrder.DURATION);
+            } else if (itemId == R.id.action_sort_name) {
+                changeSortOrder(TaskQuery.SortOrder.NAME);
+            } else if (itemId == R.id.action_filter) {
+                showFilterDialog();
+            } else if (itemId == R.id.action_plan) {
+                Navigation.findNavController(requireActivity(), R.id.nav_host_fragment_activity_main)
+                        .navigate(R.id.navigation_planner);
+            } else if (itemId == R.id.action_stats) {
+                Navigation.findNavController(requireActivity(), R.id.nav_host_fragment_activity_main)
+                        .navigate(R.id.navigation_stats);
+            } else {
+                return false;
+            }
+            return true;
+        }
+    };
+
+    /**
+     * Changes the sort order and re-queries only the first page.
+     * @param sortOrder The new sort order.
+     */
+    private void changeSortOrder(TaskQuery.SortOrder sortOrder) {
+        if (query.getSortOrder() == sortOrder) {
+            return;
+        }
+        query.setSortOrder(sortOrder);
+        requireActivity().invalidateMenu();
+        reloadFirstPage();
+    }
+
+    /**
+     * Shows a dialog for filtering the list by topic, tags, status, and due date range.
+     */
+    private void showFilterDialog() {
+        View dialogView = getLayoutInflater().inflate(R.layout.dialog_filter_tasks, null);
+        EditText editTopic = dialogView.findViewById(R.id.editFilterTopic);
+        EditText editTags = dialogView.findViewById(R.id.editFilterTags);
+        Spinner spinnerStatus = dialogView.findViewById(R.id.spinnerFilterStatus);
+        Button btnFromDate = dialogView.findViewById(R.id.btnFilterFromDate);
+        Button btnToDate = dialogView.findViewById(R.id.btnFilterToDate);
+
+        String[] statusValues = {null, "pending", "completed"};
+        ArrayAdapter<String> statusAdapter = new ArrayAdapter<>(requireContext(),
+                android.R.layout.simple_spinner_item, new String[]{"Any status", "Pending", "Completed"});
+        statusAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerStatus.setAdapter(statusAdapter);
+
+        // Edit a copy so that cancelling leaves the current filter unchanged
+        TaskQuery edited = query.copy();
+        editTopic.setText(edited.getTopic());
+        editTags.setText(edited.getTagFilter() != null ? edited.getTagFilter().toString() : "");
+        spinnerStatus.setSelection(Arrays.asList(statusValues).indexOf(edited.getStatus()));
+        btnFromDate.setText("From: " + (edited.getFromDate() != null ? edited.getFromDate() : "Any"));
+        btnToDate.setText("To: " + (edited.getToDate() != null ? edited.getToDate() : "Any"));
+        btnFromDate.setOnClickListener(v -> showDatePicker(date -> {
+            edited.setFromDate(date);
+            btnFromDate.setText("From: " + date);
+        }));
+        btnToDate.setOnClickListener(v -> showDatePicker(date -> {
+            edited.setToDate(date);
+            btnToDate.setText("To: " + date);
+        }));
+
+        new AlertDialog.Builder(requireContext())
+                .setTitle("Filter Tasks")
+                .setView(dialogView)
+                .setPositiveButton("Apply", (dialog, which) -> {
+                    String topic = editTopic.getText().toString().trim();
+                    edited.setTopic(topic.isEmpty() ? null : topic);
+                    TagFilter tagFilter = TagFilter.parse(editTags.getText().toString());
+                    edited.setTagFilter(tagFilter.isEmpty() ? null : tagFilter);
+                    edited.setStatus(statusValues[spinnerStatus.getSelectedItemPosition()]);
+                    query = edited;
+                    reloadFirstPage();
+                })
+                .setNeutralButton("Reset", (dialog, which) -> {
+                    TaskQuery reset = TaskQuery.dueTodayOrLater(todayDate);
+                    reset.setSortOrder(query.getSortOrder());
+                    query = reset;
+                    reloadFirstPage();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * Discards the loaded pages and loads the first page of the current query.
+     */
+    private void reloadFirstPage() {
+        loadGeneration++;
+        loadingPage = false;
+        endReached = false;
+        occurrences = Collections.emptyList();
+        taskList.clear();
+        taskAdapter.notifyDataSetChanged();
+        loadTasksInBackground();
+    }
+
+    /**
+     * Queries the tasks on the disk I/O thread, then applies the difference against
+     * the currently shown list on the main thread. As many tasks as are currently
+     * loaded (at least one page) are re-queried, so the scroll position is kept.
+     */
+    private void loadTasksInBackground() {
+        Context appContext = requireContext().getApplicationContext();
+        String date = todayDate;
+        TaskQuery currentQuery = query.copy();
+        int limit = Math.max(TaskQuery.PAGE_SIZE, taskList.size());
+        int generation = loadGeneration;
+        loadingPage = true;
+
+        AppExecutors.diskIO().execute(() -> {
+            // Use the first page prefetched at process start if it is still for today
+            List<Task> liveTasks = null;
+            if (currentQuery.isDefault(date) && limit == TaskQuery.PAGE_SIZE) {
+                liveTasks = StartupPipeline.getInstance(appContext).takePrefetchedHomeTasks(date);
+            }
+            DatabaseHelper dbHelper = DatabaseHelper.getInstance(appContext);
+            if (liveTasks == null) {
+                liveTasks = dbHelper.queryTasks(currentQuery, null, limit);
+            }
+            boolean lastPage = liveTasks.size() < limit;
+            List<Task> loadedOccurrences = dbHelper.queryOccurrences(currentQuery, date);
+            List<Task> loadedTasks = currentQuery.mergeOccurrences(liveTasks, loadedOccurrences, null, lastPage);
+            if (currentQuery.isDefault(date)) {
+                HomeSnapshot.write(appContext, loadedTasks);
+            }
+
+            AppExecutors.runOnMain(() -> {
+                // The view may have been destroyed, or the query changed, while the query was running
+                if (getView() == null || generation != loadGeneration) {
+                    return;
+                }
+                DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new TaskDiffCallback(taskList, loadedTasks));
+                taskList.clear();
+                taskList.addAll(loadedTasks);
+                diff.dispatchUpdatesTo(taskAdapter);
+                occurrences = loadedOccurrences;
+                loadingPage = false;
+                endReached = lastPage;
+                recyclerView.post(() -> StartupMetrics.markContentShown(StartupMetrics.LIVE_QUERY));
+            });
+        });
+    }
+
+    /**
+     * Loads the page after the last loaded task and appends it to the list.
+     */
+    private void loadNextPage() {
+        if (loadingPage || endReached || taskList.isEmpty()) {
+            return;
+        }
+        Context appContext = requireContext().getApplicationContext();
+        TaskQuery currentQuery = query.copy();
+        List<Task> pageOccurrences = occurrences;
+        Task lastTask = taskList.get(taskList.size() - 1).copy();
+        int generation = loadGeneration;
+
+        // The next page continues after the last task read from the database, not after an occurrence
+        Task lastRow = null;
+        for (int i = taskList.size() - 1; i >= 0 && lastRow == null; i--) {
+            if (!taskList.get(i).isVirtual()) {
+                lastRow = taskList.get(i).copy();
+            }
+        }
+        if (lastRow == null) {
+            return;
+        }
+        Task after = lastRow;
+        loadingPage = true;
+
+        AppExecutors.diskIO().execute(() -> {
+            List<Task> rows = DatabaseHelper.getInstance(appContext).queryTasks(currentQuery, after, TaskQuery.PAGE_SIZE);
+            boolean lastPage = rows.size() < TaskQuery.PAGE_SIZE;
+            List<Task> page = currentQuery.mergeOccurrences(rows, pageOccurrences, lastTask, lastPage);
+            AppExecutors.runOnMain(() -> {
+                if (getView() == null || generation != loadGeneration) {
+                    return;
+                }
+                int start = taskList.size();
+                taskList.addAll(page);
+                taskAdapter.notifyItemRangeInserted(start, page.size());
+                loadingPage = false;
+                endReached = lastPage;
+            });
+        });
+    }
+}
@@ -0,0 +1,267 @@
+package com.ezxuen.studytracker.ui.planner;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.fragment.app.Fragment;
+
+import com.ezxuen.studytracker.AppExecutors;
+import com.ezxuen.studytracker.DatabaseHelper;
+import com.ezxuen.studytracker.EpochDay;
+import com.ezxuen.studytracker.R;
+import com.ezxuen.studytracker.StudyPlanner;
+import com.ezxuen.studytracker.Task;
+import com.ezxuen.studytracker.TaskIterable;
+import com.ezxuen.studytracker.TaskQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PlannerFragment shows a day-by-day study plan that packs the pending tasks into a daily
+ * budget of study minutes, earliest due date first, and flags the tasks that cannot be
+ * finished by their due date.
+ *
+ * The plan is built once when the screen starts. While it is shown, single task writes
+ * reach it through {@link DatabaseHelper.TaskChangeListener} and only re-plan the tasks
+ * after the changed one (see {@link StudyPlanner#update}); the planner is only touched on
+ * the disk I/O thread.
+ */
+public class PlannerFragment extends Fragment implements DatabaseHelper.TaskChangeListener {
+    private static final String PREFS_NAME = "planner";
+    private static final String KEY_DAILY_BUDGET = "daily_budget";
+    private static final int DEFAULT_DAILY_BUDGET = 120;
+
+    // Number of days listed on the screen
+    private static final int DAYS_SHOWN = 14;
+
+    private EditText editDailyBudget;
+    private TextView txtPlanSummary;
+    private LinearLayout layoutPlanDays;
+    private StudyPlanner planner; // Accessed on the disk I/O thread only
+
+    /**
+     * The allocations of one day, read from the planner for display.
+     */
+    private static class DayPlan {
+        final int day;
+        final List<StudyPlanner.Allocation> allocations;
+
+        DayPlan(int day, List<StudyPlanner.Allocation> allocations) {
+            this.day = day;
+            this.allocations = allocations;
+        }
+    }
+
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        // Inflate the layout for this fragment
+        View root = inflater.inflate(R.layout.fragment_planner, container, false);
+
+        editDailyBudget = root.findViewById(R.id.editDailyBudget);
+        txtPlanSummary = root.findViewById(R.id.txtPlanSummary);
+        layoutPlanDays = root.findViewById(R.id.layoutPlanDays);
+        Button btnApplyBudget = root.findViewById(R.id.btnApplyBudget);
+
+        editDailyBudget.setText(String.valueOf(getDailyBudget()));
+        btnApplyBudget.setOnClickListener(v -> applyDailyBudget());
+
+        return root;
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        // Register before loading, so no write between the load and the registration is missed
+        DatabaseHelper.getInstance(requireContext()).addTaskChangeListener(this);
+        loadPlan();
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        DatabaseHelper.getInstance(requireContext()).removeTaskChangeListener(this);
+    }
+
+    /**
+     * Re-plans after a single task write.
+     * @param before The task before the write, or null if it was inserted or restored.
+     * @param after The task after the write, or null if it was deleted.
+     */
+    @Override
+    public void onTaskChanged(Task before, Task after) {
+        if (before == null && after != null && after.getRecurrenceId() != 0) {
+            // A saved occurrence replaces an expanded one that the plan knows under another id
+            loadPlan();
+            return;
+        }
+        AppExecutors.diskIO().execute(() -> {
+            if (planner != null) {
+                planner.update(before, after);
+                showPlan(planner);
+            }
+        });
+    }
+
+    /**
+     * Rebuilds the plan after a bulk write.
+     */
+    @Override
+    public void onTasksChanged() {
+        loadPlan();
+    }
+
+    /**
+     * Saves the daily budget entered by the user and re-plans the current tasks with it.
+     */
+    private void applyDailyBudget() {
+        String text = editDailyBudget.getText().toString().trim();
+        int budget;
+        try {
+            budget = TextUtils.isEmpty(text) ? 0 : Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            budget = 0;
+        }
+        if (budget <= 0 || budget > 24 * 60) {
+            Toast.makeText(getContext(), "Please enter between 1 and 1440 minutes", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        getPreferences().edit().putInt(KEY_DAILY_BUDGET, budget).apply();
+
+        AppExecutors.diskIO().execute(() -> {
+            if (planner == null) {
+                return;
+            }
+            // The budget changes every day's capacity, so the tasks are planned again from scratch
+            List<Task> tasks = new ArrayList<>(planner.getTaskCount());
+            for (int i = 0; i < planner.getTaskCount(); i++) {
+                tasks.add(planner.getTask(i));
+            }
+            planner = new StudyPlanner(budget, planner.getStartDay());
+            planner.setTasks(tasks);
+            showPlan(planner);
+        });
+    }
+
+    /**
+     * Reads the pending tasks and the upcoming occurrences of recurring tasks and plans them
+     * on the disk I/O thread.
+     */
+    private void loadPlan() {
+        Context appContext = requireContext().getApplicationContext();
+        int budget = getDailyBudget();
+        AppExecutors.diskIO().execute(() -> {
+            DatabaseHelper dbHelper = DatabaseHelper.getInstance(appContext);
+            int today = EpochDay.today();
+
+            List<Task> tasks = new ArrayList<>();
+            try (TaskIterable pendingTasks = dbHelper.streamTasksByStatus("pending")) {
+                for (Task task : pendingTasks) {
+                    tasks.add(task);
+                }
+            }
+            tasks.addAll(dbHelper.getOccurrences(EpochDay.format(today),
+                    EpochDay.format(today + TaskQuery.OCCURRENCE_HORIZON_DAYS)));
+
+            planner = new StudyPlanner(budget, today);
+            planner.setTasks(tasks);
+            showPlan(planner);
+        });
+    }
+
+    /**
+     * Reads the first days of a plan and posts them to the main thread for display.
+     * Meant to run on the disk I/O thread.
+     * @param plan The plan to show.
+     */
+    private void showPlan(StudyPlanner plan) {
+        int lastDay = Math.min(plan.getLastDay(), plan.getStartDay() + DAYS_SHOWN - 1);
+        List<DayPlan> days = new ArrayList<>();
+        for (int day = plan.getStartDay(); day <= lastDay; day++) {
+            days.add(new DayPlan(day, plan.getDay(day)));
+        }
+        int taskCount = plan.getTaskCount();
+        int lateCount = plan.getLateCount();
+        String lastDate = EpochDay.format(plan.getLastDay());
+
+        AppExecutors.runOnMain(() -> {
+            if (getView() == null) {
+                return;
+            }
+            if (taskCount == 0) {
+                txtPlanSummary.setText("No pending tasks to plan.");
+            } else if (lateCount > 0) {
+                txtPlanSummary.setText(lateCount + " of " + taskCount
+                        + " tasks cannot be finished by their due date. Plan ends on " + lastDate + ".");
+            } else {
+                txtPlanSummary.setText("All " + taskCount + " tasks finish on time. Plan ends on " + lastDate + ".");
+            }
+
+            layoutPlanDays.removeAllViews();
+            for (DayPlan dayPlan : days) {
+                layoutPlanDays.addView(createDayHeader(dayPlan));
+                for (StudyPlanner.Allocation allocation : dayPlan.allocations) {
+                    layoutPlanDays.addView(createAllocationRow(allocation));
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates the header of a day with its date and total planned minutes.
+     * @param dayPlan The day.
+     * @return A styled TextView for the header.
+     */
+    private TextView createDayHeader(DayPlan dayPlan) {
+        int minutes = 0;
+        for (StudyPlanner.Allocation allocation : dayPlan.allocations) {
+            minutes += allocation.getMinutes();
+        }
+        TextView header = new TextView(getContext());
+        header.setText(EpochDay.format(dayPlan.day) + " (" + minutes + " mins)");
+        header.setTextSize(16);
+        header.setTypeface(Typeface.defaultFromStyle(Typeface.BOLD));
+        header.setPadding(16, 24, 16, 8);
+        return header;
+    }
+
+    /**
+     * Creates a row for the minutes of one task on a day; late tasks are shown in red.
+     * @param allocation The planned minutes.
+     * @return A TextView for the row.
+     */
+    private TextView createAllocationRow(StudyPlanner.Allocation allocation) {
+        Task task = allocation.getTask();
+        TextView row = new TextView(getContext());
+        String text = task.getName() + " (" + task.getTopic() + "): " + allocation.getMinutes()
+                + " of " + task.getDuration() + " mins, due " + task.getDate();
+        if (allocation.isLate()) {
+            text += " - late";
+            row.setTextColor(Color.RED);
+        }
+        row.setText(text);
+        row.setPadding(32, 4, 16, 4);
+        return row;
+    }
+
+    private int getDailyBudget() {
+        return getPreferences().getInt(KEY_DAILY_BUDGET, DEFAULT_DAILY_BUDGET);
+    }
+
+    private SharedPreferences getPreferences() {
+        return requireContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -13,15 +13,17 @@ import android.widget.Button;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
-import android.database.Cursor;
 import android.widget.EditText;
 
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
 
 import com.ezxuen.studytracker.DatabaseHelper;
+import com.ezxuen.studytracker.EpochDay;
 import com.ezxuen.studytracker.R;
 import com.ezxuen.studytracker.Task;
+import com.ezxuen.studytracker.TaskIterable;
+import com.ezxuen.studytracker.TaskQuery;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -39,6 +41,7 @@ public class ReminderFragment extends Fragment {
     private CountDownTimer taskTimer, breakTimer;
     private long remainingTaskTime, remainingBreakTime;
     private Task selectedTask;
+    private List<Task> pendingTasks;
     private boolean isPaused = false;
 
     @Override
@@ -87,22 +90,28 @@ public class ReminderFragment extends Fragment {
      * Loads tasks with "pending" status into the Spinner for selection.
      */
     private void loadPendingTasks() {
-        DatabaseHelper dbHelper = new DatabaseHelper(getContext());
+        DatabaseHelper dbHelper = DatabaseHelper.getInstance(requireContext());
         List<String> spinnerItems = new ArrayList<>();
 
         // Add default "Please select a task" option
         spinnerItems.add("Please select a task");
 
-        // Fetch tasks with "pending" status
-        Cursor cursor = dbHelper.getTasksByStatus("pending");
-        if (cursor.moveToFirst()) {
-            do {
-                String taskName = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.NAME));
-                String taskTopic = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.TOPIC));
-                spinnerItems.add(taskName + " - " + taskTopic);
-            } while (cursor.moveToNext());
+        // Fetch tasks with "pending" status, keeping them for selection
+        pendingTasks = new ArrayList<>();
+        try (TaskIterable tasks = dbHelper.streamTasksByStatus("pending")) {
+            for (Task task : tasks) {
+                pendingTasks.add(task);
+                spinnerItems.add(task.getName() + " - " + task.getTopic());
+            }
+        }
+
+        // Add the upcoming occurrences of recurring tasks; a timer does not need them saved as rows
+        int today = EpochDay.today();
+        for (Task occurrence : dbHelper.getOccurrences(EpochDay.format(today),
+                EpochDay.format(today + TaskQuery.OCCURRENCE_HORIZON_DAYS))) {
+            pendingTasks.add(occurrence);
+            spinnerItems.add(occurrence.getName() + " - " + occurrence.getTopic() + " (" + occurrence.getDate() + ")");
         }
-        cursor.close();
 
         // Populate the Spinner with task names
         ArrayAdapter<String> adapter = new ArrayAdapter<>(getContext(), android.R.layout.simple_spinner_item, spinnerItems);
@@ -119,20 +128,9 @@ public class ReminderFragment extends Fragment {
                     return;
                 }
 
-                // Load selected task details
+                // Select the task shown at this position
                 int taskPosition = position - 1; // Adjust for default option
-                Cursor taskCursor = dbHelper.getTasksByStatus("pending");
-                if (taskCursor.moveToPosition(taskPosition)) {
-                    selectedTask = new Task(
-                            taskCursor.getInt(taskCursor.getColumnIndexOrThrow(DatabaseHelper.ID)),
-                            taskCursor.getString(taskCursor.getColumnIndexOrThrow(DatabaseHelper.NAME)),
-                            taskCursor.getString(taskCursor.getColumnIndexOrThrow(DatabaseHelper.TOPIC)),
-                            taskCursor.getString(taskCursor.getColumnIndexOrThrow(DatabaseHelper.STATUS)),
-                            taskCursor.getInt(taskCursor.getColumnIndexOrThrow(DatabaseHelper.DURATION)),
-                            taskCursor.getString(taskCursor.getColumnIndexOrThrow(DatabaseHelper.DATE))
-                    );
-                }
-                taskCursor.close();
+                selectedTask = pendingTasks.get(taskPosition);
             }
 
             @Override
@@ -0,0 +1,116 @@
+package com.ezxuen.studytracker.ui.stats;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.fragment.app.Fragment;
+
+import com.ezxuen.studytracker.AppExecutors;
+import com.ezxuen.studytracker.DatabaseHelper;
+import com.ezxuen.studytracker.EpochDay;
+import com.ezxuen.studytracker.R;
+import com.ezxuen.studytracker.StatsEngine;
+import com.ezxuen.studytracker.StudyStats;
+
+import java.util.Locale;
+
+/**
+ * StatsFragment shows study statistics: total completed minutes, the on-time completion
+ * rate, the current and longest streak, minutes per week and the top topics.
+ * The numbers come from the running totals of the {@link StatsEngine}, so opening the
+ * screen does not scan the tasks. The verify button checks the totals against a full
+ * recomputation and rebuilds them if they differ.
+ */
+public class StatsFragment extends Fragment {
+    // Number of weeks and topics listed
+    private static final int WEEK_COUNT = 8;
+    private static final int TOPIC_COUNT = 10;
+
+    private TextView txtStatsSummary;
+    private LinearLayout layoutWeeks, layoutTopics;
+
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        // Inflate the layout for this fragment
+        View root = inflater.inflate(R.layout.fragment_stats, container, false);
+
+        txtStatsSummary = root.findViewById(R.id.txtStatsSummary);
+        layoutWeeks = root.findViewById(R.id.layoutWeeks);
+        layoutTopics = root.findViewById(R.id.layoutTopics);
+        Button btnVerifyStats = root.findViewById(R.id.btnVerifyStats);
+        btnVerifyStats.setOnClickListener(v -> verifyStats());
+
+        loadStats();
+        return root;
+    }
+
+    /**
+     * Reads the statistics on the disk I/O thread and shows them.
+     */
+    private void loadStats() {
+        Context appContext = requireContext().getApplicationContext();
+        AppExecutors.diskIO().execute(() -> {
+            StudyStats stats = DatabaseHelper.getInstance(appContext).getStatsEngine().getStats(WEEK_COUNT, TOPIC_COUNT);
+            AppExecutors.runOnMain(() -> {
+                if (getView() != null) {
+                    showStats(stats);
+                }
+            });
+        });
+    }
+
+    /**
+     * Checks the stored totals against a full recomputation on the disk I/O thread,
+     * rebuilding them if they differ.
+     */
+    private void verifyStats() {
+        Context appContext = requireContext().getApplicationContext();
+        AppExecutors.diskIO().execute(() -> {
+            StatsEngine statsEngine = DatabaseHelper.getInstance(appContext).getStatsEngine();
+            boolean valid = statsEngine.verify();
+            if (!valid) {
+                statsEngine.recompute();
+            }
+            AppExecutors.runOnMain(() -> Toast.makeText(appContext,
+                    valid ? "Statistics are up to date" : "Statistics were rebuilt", Toast.LENGTH_SHORT).show());
+        });
+        loadStats();
+    }
+
+    private void showStats(StudyStats stats) {
+        txtStatsSummary.setText("Completed: " + stats.getCompletedTasks() + " tasks, " + stats.getTotalMinutes() + " mins\n"
+                + "On time: " + String.format(Locale.getDefault(), "%.0f%%", stats.getOnTimeRate() * 100) + "\n"
+                + "Current streak: " + stats.getCurrentStreak() + " days\n"
+                + "Longest streak: " + stats.getLongestStreak() + " days");
+
+        layoutWeeks.removeAllViews();
+        for (StatsEngine.Total week : stats.getWeeks()) {
+            layoutWeeks.addView(createRow("Week of " + EpochDay.format(week.getKey()) + ": "
+                    + week.getMinutes() + " mins (" + week.getTasks() + " tasks)"));
+        }
+
+        layoutTopics.removeAllViews();
+        if (stats.getTopics().isEmpty()) {
+            layoutTopics.addView(createRow("No completed tasks yet."));
+        }
+        for (StatsEngine.Total topic : stats.getTopics()) {
+            layoutTopics.addView(createRow(topic.getLabel() + ": " + topic.getMinutes() + " mins ("
+                    + topic.getTasks() + " tasks)"));
+        }
+    }
+
+    private TextView createRow(String text) {
+        TextView row = new TextView(getContext());
+        row.setText(text);
+        row.setPadding(16, 4, 16, 4);
+        return row;
+    }
+}
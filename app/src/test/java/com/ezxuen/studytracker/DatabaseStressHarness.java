@@ -0,0 +1,516 @@
+package com.ezxuen.studytracker;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * DatabaseStressHarness runs reader and writer threads against one shared DatabaseHelper
+ * at the same time, the way the Home list, the timer, the task editor and background jobs
+ * do in the app, and measures the throughput and latency of each operation.
+ *
+ * Every writer owns its own tasks and remembers the last values it wrote to them, so that
+ * after a run {@link #verify()} can check that no write was lost, that the cached reads,
+ * counts and statistics agree with the rows, and that every single-task and bulk write
+ * notified the change listeners exactly once.
+ */
+class DatabaseStressHarness {
+
+    /**
+     * The operations run by the threads.
+     */
+    enum Op {
+        // Writes
+        INSERT, SET_STATUS, EDIT, DELETE, RESTORE, BULK_STATUS,
+        // Reads
+        GET_TASK, FIRST_PAGE, COUNT_OVERDUE, STATS
+    }
+
+    /**
+     * A mix of reader and writer threads to run.
+     */
+    static class Mix {
+        final String name;
+        final int readers;
+        final int writers;
+        final int opsPerThread;
+
+        /**
+         * @param name The name shown in the report.
+         * @param readers The number of reader threads.
+         * @param writers The number of writer threads.
+         * @param opsPerThread The number of operations each thread runs.
+         */
+        Mix(String name, int readers, int writers, int opsPerThread) {
+            this.name = name;
+            this.readers = readers;
+            this.writers = writers;
+            this.opsPerThread = opsPerThread;
+        }
+    }
+
+    // Tasks each writer creates before the run and then keeps writing to
+    private static final int TASKS_PER_WRITER = 50;
+
+    // Due dates are spread around today, so that writes move tasks in and out of "overdue"
+    private static final int DATE_SPREAD = 10;
+
+    private static final String[] STATUSES = {"pending", "completed"};
+    private static final String[] TOPICS = {"Math", "Physics", "History"};
+
+    private final DatabaseHelper dbHelper;
+    private final int seededCount;
+    private final String today = EpochDay.format(EpochDay.today());
+    private final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger taskNotifications = new AtomicInteger();
+    private final AtomicInteger bulkNotifications = new AtomicInteger();
+    private final List<Writer> writers = new ArrayList<>();
+
+    /**
+     * Creates a harness over a database that already holds some tasks.
+     * @param dbHelper The database helper shared by every thread.
+     * @param seededCount The number of tasks in the table, which the writers leave alone.
+     */
+    DatabaseStressHarness(DatabaseHelper dbHelper, int seededCount) {
+        this.dbHelper = dbHelper;
+        this.seededCount = seededCount;
+        dbHelper.addTaskChangeListener(new DatabaseHelper.TaskChangeListener() {
+            @Override
+            public void onTaskChanged(Task before, Task after) {
+                taskNotifications.incrementAndGet();
+            }
+
+            @Override
+            public void onTasksChanged() {
+                bulkNotifications.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Runs a mix and waits for every thread to finish.
+     * @param mix The threads to run.
+     * @param timeoutMillis How long to wait before reporting the threads as deadlocked.
+     * @return The throughput and latencies of the run.
+     * @throws AssertionError If a thread failed or the threads did not finish in time.
+     */
+    Report run(Mix mix, long timeoutMillis) throws InterruptedException {
+        // Build the statistics first, so that every write updates them incrementally
+        dbHelper.getStatsEngine().ensureBuilt();
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < mix.writers; i++) {
+            Writer writer = new Writer(writers.size(), mix.opsPerThread);
+            writers.add(writer);
+            workers.add(writer);
+        }
+        int[] readIds = readableIds();
+        for (int i = 0; i < mix.readers; i++) {
+            workers.add(new Reader(i, mix.opsPerThread, readIds));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (Worker worker : workers) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    worker.run();
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            }, worker.name);
+            // A deadlocked thread must not keep the test JVM alive
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Thread thread : threads) {
+            thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+        StringBuilder stuck = new StringBuilder();
+        for (Thread thread : threads) {
+            if (thread.isAlive()) {
+                stuck.append('\n').append(thread.getName()).append(" (").append(thread.getState()).append(')');
+                for (StackTraceElement element : thread.getStackTrace()) {
+                    stuck.append("\n    at ").append(element);
+                }
+            }
+        }
+        if (stuck.length() > 0) {
+            fail(mix.name + ": threads still running after " + timeoutMillis + " ms, possibly deadlocked:" + stuck);
+        }
+        if (!errors.isEmpty()) {
+            AssertionError error = new AssertionError(mix.name + ": " + errors.size() + " operations failed");
+            error.initCause(errors.peek());
+            throw error;
+        }
+
+        Report report = new Report(mix.name, elapsedNanos);
+        for (Worker worker : workers) {
+            report.add(worker.samples);
+        }
+        return report;
+    }
+
+    /**
+     * Checks the final state against what the writers wrote. Called after {@link #run}.
+     */
+    void verify() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        int expectedRows = seededCount;
+        int expectedTaskNotifications = 0;
+        int expectedBulkNotifications = 0;
+        for (Writer writer : writers) {
+            expectedRows += writer.expected.size();
+            expectedTaskNotifications += writer.taskWrites;
+            expectedBulkNotifications += writer.bulkWrites;
+            for (Map.Entry<Integer, Task> entry : writer.expected.entrySet()) {
+                int id = entry.getKey();
+                Task expected = entry.getValue();
+                boolean deleted = writer.deleted.contains(id);
+                // The rows themselves, read around the query cache
+                Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.STATUS + ", " + DatabaseHelper.DURATION + ", "
+                        + DatabaseHelper.NAME + ", " + DatabaseHelper.DATE + ", " + DatabaseHelper.DELETED_AT
+                        + " IS NOT NULL FROM " + DatabaseHelper.TABLE_TASKS + " WHERE " + DatabaseHelper.ID + " = ?",
+                        new String[]{String.valueOf(id)});
+                assertTrue("Task " + id + " is missing", cursor.moveToFirst());
+                assertEquals("Status of task " + id, expected.getStatus(), cursor.getString(0));
+                assertEquals("Duration of task " + id, expected.getDuration(), cursor.getInt(1));
+                assertEquals("Name of task " + id, expected.getName(), cursor.getString(2));
+                assertEquals("Date of task " + id, expected.getDate(), cursor.getString(3));
+                assertEquals("Deletion of task " + id, deleted, cursor.getInt(4) != 0);
+                cursor.close();
+
+                // The same task through the query cache must not be stale
+                Task cached = dbHelper.getTaskById(id);
+                if (deleted) {
+                    assertNull("Deleted task " + id + " is still returned", cached);
+                } else {
+                    assertNotNull("Task " + id + " is not returned", cached);
+                    assertEquals("Cached status of task " + id, expected.getStatus(), cached.getStatus());
+                    assertEquals("Cached duration of task " + id, expected.getDuration(), cached.getDuration());
+                }
+            }
+        }
+
+        assertEquals("Task rows", expectedRows, count(db, "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_TASKS));
+        assertEquals("Overdue count", count(db, "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_TASKS + " WHERE "
+                        + DatabaseHelper.STATUS + " = ? AND " + DatabaseHelper.NOT_DELETED + " AND " + DatabaseHelper.DATE
+                        + " < ?", "pending", today),
+                dbHelper.countOverdueTasks(today));
+
+        // The running statistics are rolled up from the completed rows
+        StatsEngine statsEngine = dbHelper.getStatsEngine();
+        assertTrue("Stored statistics differ from the rows", statsEngine.verify());
+        StudyStats stats = statsEngine.getStats(4, TOPICS.length);
+        String completed = " FROM " + DatabaseHelper.TABLE_TASKS + " WHERE " + DatabaseHelper.STATUS
+                + " = 'completed' AND " + DatabaseHelper.NOT_DELETED;
+        assertEquals("Completed tasks", count(db, "SELECT COUNT(*)" + completed), stats.getCompletedTasks());
+        assertEquals("Completed minutes", count(db, "SELECT TOTAL(" + DatabaseHelper.DURATION + ")" + completed),
+                stats.getTotalMinutes());
+
+        assertEquals("Single-task notifications", expectedTaskNotifications, taskNotifications.get());
+        assertEquals("Bulk notifications", expectedBulkNotifications, bulkNotifications.get());
+    }
+
+    private int[] readableIds() {
+        List<Integer> writerIds = new ArrayList<>();
+        for (Writer writer : writers) {
+            writerIds.addAll(writer.expected.keySet());
+        }
+        int[] ids = new int[seededCount + writerIds.size()];
+        for (int i = 0; i < seededCount; i++) {
+            ids[i] = i + 1;
+        }
+        for (int i = 0; i < writerIds.size(); i++) {
+            ids[seededCount + i] = writerIds.get(i);
+        }
+        return ids;
+    }
+
+    private static long count(SQLiteDatabase db, String sql, String... args) {
+        Cursor cursor = db.rawQuery(sql, args);
+        long count = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        cursor.close();
+        return count;
+    }
+
+    private String randomDate(Random random) {
+        return EpochDay.format(EpochDay.today() + random.nextInt(2 * DATE_SPREAD + 1) - DATE_SPREAD);
+    }
+
+    /**
+     * A thread's work, with the latency of every operation it ran.
+     */
+    private abstract static class Worker {
+        final String name;
+        final int ops;
+        final Random random;
+        final Map<Op, Samples> samples = new EnumMap<>(Op.class);
+
+        Worker(String name, int seed, int ops) {
+            this.name = name;
+            this.ops = ops;
+            this.random = new Random(seed);
+        }
+
+        void run() {
+            for (int i = 0; i < ops; i++) {
+                long start = System.nanoTime();
+                Op op = step(i);
+                Samples opSamples = samples.get(op);
+                if (opSamples == null) {
+                    opSamples = new Samples();
+                    samples.put(op, opSamples);
+                }
+                opSamples.add(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Runs one operation.
+         * @param i The number of the operation within the thread.
+         * @return The operation that ran.
+         */
+        abstract Op step(int i);
+    }
+
+    /**
+     * Writes to its own tasks only, and remembers what it wrote.
+     */
+    private class Writer extends Worker {
+        final Map<Integer, Task> expected = new HashMap<>();
+        final List<Integer> live = new ArrayList<>();
+        final List<Integer> deleted = new ArrayList<>();
+        int taskWrites;
+        int bulkWrites;
+
+        Writer(int index, int ops) {
+            super("writer-" + index, 1000 + index, ops);
+            // Created on the test thread, before the run starts
+            for (int i = 0; i < TASKS_PER_WRITER; i++) {
+                insert("Seed " + i);
+            }
+        }
+
+        @Override
+        Op step(int i) {
+            int roll = random.nextInt(100);
+            if (roll < 10 || live.isEmpty()) {
+                insert(name + " task " + i);
+                return Op.INSERT;
+            } else if (roll < 45) {
+                int id = pick(live);
+                String status = STATUSES[random.nextInt(STATUSES.length)];
+                assertTrue("Status update of task " + id + " was not applied", dbHelper.updateTaskStatus(id, status));
+                expected.get(id).setStatus(status);
+                taskWrites++;
+                return Op.SET_STATUS;
+            } else if (roll < 65) {
+                int id = pick(live);
+                Task task = new Task(id, name + " edit " + i, TOPICS[random.nextInt(TOPICS.length)],
+                        STATUSES[random.nextInt(STATUSES.length)], 5 + random.nextInt(120), randomDate(random));
+                assertTrue("Edit of task " + id + " was not applied", dbHelper.updateTask(id, task.getName(),
+                        task.getTopic(), task.getStatus(), task.getDuration(), task.getDate()));
+                expected.put(id, task);
+                taskWrites++;
+                return Op.EDIT;
+            } else if (roll < 75) {
+                int id = pick(live);
+                assertTrue("Deletion of task " + id + " was not applied", dbHelper.deleteTask(id));
+                live.remove((Integer) id);
+                deleted.add(id);
+                taskWrites++;
+                return Op.DELETE;
+            } else if (roll < 85 && !deleted.isEmpty()) {
+                int id = pick(deleted);
+                assertTrue("Restore of task " + id + " was not applied", dbHelper.restoreTask(id));
+                deleted.remove((Integer) id);
+                live.add(id);
+                taskWrites++;
+                return Op.RESTORE;
+            } else {
+                List<Integer> ids = new ArrayList<>();
+                for (int j = 1 + random.nextInt(10); j > 0; j--) {
+                    int id = pick(live);
+                    if (!ids.contains(id)) {
+                        ids.add(id);
+                    }
+                }
+                String status = STATUSES[random.nextInt(STATUSES.length)];
+                assertEquals("Bulk status update", ids.size(), dbHelper.updateTasksStatus(ids, status));
+                for (int id : ids) {
+                    expected.get(id).setStatus(status);
+                }
+                bulkWrites++;
+                return Op.BULK_STATUS;
+            }
+        }
+
+        private void insert(String taskName) {
+            Task task = new Task(0, taskName, TOPICS[random.nextInt(TOPICS.length)],
+                    STATUSES[random.nextInt(STATUSES.length)], 5 + random.nextInt(120), randomDate(random));
+            long id = dbHelper.insertTask(task.getName(), task.getTopic(), task.getStatus(), task.getDuration(),
+                    task.getDate());
+            assertTrue("Insert failed", id != -1);
+            expected.put((int) id, new Task((int) id, task.getName(), task.getTopic(), task.getStatus(),
+                    task.getDuration(), task.getDate()));
+            live.add((int) id);
+            taskWrites++;
+        }
+
+        private int pick(List<Integer> ids) {
+            return ids.get(random.nextInt(ids.size()));
+        }
+    }
+
+    /**
+     * Reads through the same calls as the screens, and checks each result on its own.
+     */
+    private class Reader extends Worker {
+        private final int[] ids;
+
+        Reader(int index, int ops, int[] ids) {
+            super("reader-" + index, 2000 + index, ops);
+            this.ids = ids;
+        }
+
+        @Override
+        Op step(int i) {
+            int roll = random.nextInt(100);
+            if (roll < 50) {
+                Task task = dbHelper.getTaskById(ids[random.nextInt(ids.length)]);
+                if (task != null) {
+                    assertTrue("Unknown status " + task.getStatus(), Arrays.asList(STATUSES).contains(task.getStatus()));
+                }
+                return Op.GET_TASK;
+            } else if (roll < 75) {
+                List<Task> page = dbHelper.queryTasks(TaskQuery.dueTodayOrLater(today), null, TaskQuery.PAGE_SIZE);
+                assertTrue("Page of " + page.size() + " tasks", page.size() <= TaskQuery.PAGE_SIZE);
+                return Op.FIRST_PAGE;
+            } else if (roll < 90) {
+                assertTrue("Negative overdue count", dbHelper.countOverdueTasks(today) >= 0);
+                return Op.COUNT_OVERDUE;
+            } else {
+                StudyStats stats = dbHelper.getStatsEngine().getStats(4, TOPICS.length);
+                assertTrue("Negative minutes", stats.getTotalMinutes() >= 0);
+                return Op.STATS;
+            }
+        }
+    }
+
+    /**
+     * Latencies of one operation, in nanoseconds.
+     */
+    static class Samples {
+        private long[] values = new long[64];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+    }
+
+    /**
+     * The throughput of a run, and the latency percentiles of each operation.
+     */
+    static class Report {
+        private final String name;
+        private final long elapsedNanos;
+        private final Map<Op, Samples> samples = new EnumMap<>(Op.class);
+
+        Report(String name, long elapsedNanos) {
+            this.name = name;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        void add(Map<Op, Samples> threadSamples) {
+            for (Map.Entry<Op, Samples> entry : threadSamples.entrySet()) {
+                Samples opSamples = samples.get(entry.getKey());
+                if (opSamples == null) {
+                    opSamples = new Samples();
+                    samples.put(entry.getKey(), opSamples);
+                }
+                opSamples.addAll(entry.getValue());
+            }
+        }
+
+        /**
+         * @return The number of operations run by all threads.
+         */
+        int getOperations() {
+            int operations = 0;
+            for (Samples opSamples : samples.values()) {
+                operations += opSamples.size;
+            }
+            return operations;
+        }
+
+        /**
+         * @return The operations run per second, over all threads.
+         */
+        double getOpsPerSecond() {
+            return getOperations() * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Gets a latency percentile of one operation.
+         * @param op The operation.
+         * @param percentile The percentile, from 0 to 100.
+         * @return The latency in milliseconds, or 0 if the operation never ran.
+         */
+        double getLatencyMillis(Op op, double percentile) {
+            Samples opSamples = samples.get(op);
+            if (opSamples == null || opSamples.size == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(opSamples.values, opSamples.size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(String.format(Locale.ROOT,
+                    "%s: %d ops in %.0f ms, %.0f ops/s%n", name, getOperations(), elapsedNanos / 1e6, getOpsPerSecond()));
+            builder.append(String.format(Locale.ROOT, "  %-14s %7s %9s %9s %9s %9s%n",
+                    "op", "count", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+            for (Map.Entry<Op, Samples> entry : samples.entrySet()) {
+                Op op = entry.getKey();
+                builder.append(String.format(Locale.ROOT, "  %-14s %7d %9.2f %9.2f %9.2f %9.2f%n", op,
+                        entry.getValue().size, getLatencyMillis(op, 50), getLatencyMillis(op, 95),
+                        getLatencyMillis(op, 99), getLatencyMillis(op, 100)));
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.ezxuen.studytracker;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs mixes of concurrent readers and writers against one shared DatabaseHelper, and
+ * checks that none of them deadlocks, fails, or loses a write. Prints the throughput and
+ * latency percentiles of each mix; run with -Dstress.ops=N for longer runs.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+public class DatabaseStressTest {
+    private static final int SEEDED_TASKS = 5_000;
+    private static final int OPS_PER_THREAD = Integer.getInteger("stress.ops", 500);
+    private static final long TIMEOUT_MS = 120_000;
+
+    private DatabaseHelper dbHelper;
+    private DatabaseStressHarness harness;
+
+    @Before
+    public void setUp() {
+        dbHelper = new DatabaseHelper(ApplicationProvider.getApplicationContext(), null);
+        TaskFixtures.seed(dbHelper.getWritableDatabase(), SEEDED_TASKS);
+        harness = new DatabaseStressHarness(dbHelper, SEEDED_TASKS);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void readHeavyMix_keepsEveryWrite() throws InterruptedException {
+        runAndVerify(new DatabaseStressHarness.Mix("read-heavy", 6, 2, OPS_PER_THREAD));
+    }
+
+    @Test
+    public void writeHeavyMix_keepsEveryWrite() throws InterruptedException {
+        runAndVerify(new DatabaseStressHarness.Mix("write-heavy", 2, 6, OPS_PER_THREAD));
+    }
+
+    @Test
+    public void repeatedMixes_keepEveryWrite() throws InterruptedException {
+        // The second run starts with the query cache and the statistics left by the first
+        runAndVerify(new DatabaseStressHarness.Mix("balanced", 4, 4, OPS_PER_THREAD));
+        runAndVerify(new DatabaseStressHarness.Mix("writers only", 0, 8, OPS_PER_THREAD));
+    }
+
+    private void runAndVerify(DatabaseStressHarness.Mix mix) throws InterruptedException {
+        DatabaseStressHarness.Report report = harness.run(mix, TIMEOUT_MS);
+        System.out.print(report);
+        assertEquals((mix.readers + mix.writers) * OPS_PER_THREAD, report.getOperations());
+        harness.verify();
+    }
+}
@@ -0,0 +1,84 @@
+package com.ezxuen.studytracker;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Checks that DayClock reports the new day when the time zone moves the date, and stops
+ * reporting once its last listener is removed.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+public class DayClockTest {
+    private final List<int[]> events = new ArrayList<>();
+    private final List<DayClock.Change> changes = new ArrayList<>();
+    private final DayClock.DayListener listener = (previousDay, today, change) -> {
+        events.add(new int[]{previousDay, today});
+        changes.add(change);
+    };
+
+    private TimeZone originalZone;
+    private Context context;
+
+    @Before
+    public void setUp() {
+        originalZone = TimeZone.getDefault();
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(originalZone);
+    }
+
+    @Test
+    public void timeZoneChange_reportsTheNewDay() {
+        // UTC-12 and UTC+14 are 26 hours apart, so they never share a date
+        TimeZone.setDefault(TimeZone.getTimeZone("Etc/GMT+12"));
+        DayClock clock = DayClock.getInstance(context);
+        clock.addDayListener(listener);
+        int before = clock.getToday();
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Etc/GMT-14"));
+        context.sendBroadcast(new Intent(Intent.ACTION_TIMEZONE_CHANGED));
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(1, events.size());
+        assertEquals(before, events.get(0)[0]);
+        assertEquals(EpochDay.today(), events.get(0)[1]);
+        assertTrue(events.get(0)[1] > before);
+        assertEquals(DayClock.Change.TIME_ZONE, changes.get(0));
+        assertEquals(EpochDay.today(), clock.getToday());
+
+        // A manual time change within the day is reported with an unchanged day
+        context.sendBroadcast(new Intent(Intent.ACTION_TIME_CHANGED));
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(2, events.size());
+        assertEquals(events.get(1)[0], events.get(1)[1]);
+        assertEquals(DayClock.Change.TIME, changes.get(1));
+
+        clock.removeDayListener(listener);
+        TimeZone.setDefault(TimeZone.getTimeZone("Etc/GMT+12"));
+        context.sendBroadcast(new Intent(Intent.ACTION_TIMEZONE_CHANGED));
+        shadowOf(Looper.getMainLooper()).idle();
+        assertEquals(2, events.size());
+    }
+}
@@ -0,0 +1,128 @@
+package com.ezxuen.studytracker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that QueryCache serves repeated reads from memory, never serves a result read
+ * before a write to one of its tables, and stays within its byte budget.
+ */
+public class QueryCacheTest {
+    private static final String[] TASKS = {"tasks"};
+    private static final String[] OCCURRENCES = {"recurrences", "tasks"};
+
+    private int loads;
+
+    @Test
+    public void repeatedReads_areServedFromMemory() {
+        QueryCache cache = new QueryCache(1 << 20);
+        Task first = getTask(cache, 7);
+        Task second = getTask(cache, 7);
+
+        assertEquals(1, loads);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals("Task 7", second.getName());
+
+        // Callers get copies, so changing one does not change the cached task
+        first.setStatus("completed");
+        assertEquals("pending", getTask(cache, 7).getStatus());
+
+        // Different arguments are different results
+        getTask(cache, 8);
+        assertEquals(2, loads);
+    }
+
+    @Test
+    public void writes_invalidateOnlyResultsReadFromTheWrittenTable() {
+        QueryCache cache = new QueryCache(1 << 20);
+        getTask(cache, 1);
+        getOccurrences(cache);
+
+        cache.invalidate("recurrences");
+        getTask(cache, 1);
+        assertEquals(2, loads);
+        getOccurrences(cache);
+        assertEquals(3, loads);
+
+        cache.invalidate("tasks");
+        getTask(cache, 1);
+        getOccurrences(cache);
+        assertEquals(5, loads);
+    }
+
+    @Test
+    public void resultLoadedDuringWrite_isNotKept() {
+        QueryCache cache = new QueryCache(1 << 20);
+        cache.get("task", new Object[]{1}, TASKS, QueryCache.TASK, () -> {
+            loads++;
+            // A write commits while the query is running
+            cache.invalidate("tasks");
+            return new Task(1, "Old", "Math", "pending", 30, "2025-01-01");
+        });
+        getTask(cache, 1);
+        assertEquals(2, loads);
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void leastRecentlyUsedResults_areEvictedOverBudget() {
+        QueryCache probe = new QueryCache(1 << 20);
+        getTask(probe, 0);
+        long entryBytes = probe.getSizeBytes();
+
+        QueryCache cache = new QueryCache(entryBytes * 3);
+        getTask(cache, 1);
+        getTask(cache, 2);
+        getTask(cache, 3);
+        getTask(cache, 1);
+        getTask(cache, 4);
+
+        // Task 2 was the least recently used when task 4 came in
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, cache.getEntryCount());
+        assertTrue(cache.getSizeBytes() <= entryBytes * 3);
+        loads = 0;
+        getTask(cache, 1);
+        assertEquals(0, loads);
+        getTask(cache, 2);
+        assertEquals(1, loads);
+
+        cache.resize(0);
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getSizeBytes());
+    }
+
+    @Test
+    public void listsAndValues_areSizedAndCopied() {
+        QueryCache cache = new QueryCache(1 << 20);
+        List<Integer> ids = cache.get("ids", new Object[0], TASKS, QueryCache.IDS,
+                () -> new ArrayList<>(Arrays.asList(1, 2, 3)));
+        ids.add(4);
+        assertEquals(3, cache.get("ids", new Object[0], TASKS, QueryCache.IDS, ArrayList::new).size());
+
+        int count = cache.get("count", new Object[]{"2025-01-01"}, TASKS, QueryCache.<Integer>immutable(), () -> 42);
+        assertEquals(42, count);
+        assertEquals(2, cache.getEntryCount());
+        assertTrue(cache.getSizeBytes() > 0);
+    }
+
+    private Task getTask(QueryCache cache, int id) {
+        return cache.get("task", new Object[]{id}, TASKS, QueryCache.TASK, () -> {
+            loads++;
+            return new Task(id, "Task " + id, "Math", "pending", 30, "2025-01-01");
+        });
+    }
+
+    private List<Task> getOccurrences(QueryCache cache) {
+        return cache.get("occurrences", new Object[]{"2025-01-01", "2025-01-28"}, OCCURRENCES, QueryCache.TASKS, () -> {
+            loads++;
+            return new ArrayList<>(Arrays.asList(new Task(-1, "Review", "Math", "pending", 15, "2025-01-02")));
+        });
+    }
+}
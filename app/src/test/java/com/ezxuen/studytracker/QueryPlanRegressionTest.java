@@ -0,0 +1,227 @@
+package com.ezxuen.studytracker;
+
+import android.app.Application;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Guards the public DatabaseHelper queries against plan regressions over a large synthetic
+ * table. The SQL each query actually runs is captured through a cursor factory, and its
+ * EXPLAIN QUERY PLAN must use the intended index and never scan the whole `tasks` table
+ * (e.g., a DATE(date) predicate would). Bounded queries must also stay within a fraction
+ * of the time of a full table scan measured on the same machine.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+public class QueryPlanRegressionTest {
+    private static final int TASK_COUNT = 50_000;
+    private static final int RUNS = 15;
+
+    // A bounded query may take at most this share of the time of a full table scan
+    private static final double BUDGET_FRACTION = 0.25;
+
+    // A plan line that reads every row of the tasks table (aliased "t" in queryTasks)
+    // or of the task-tag join table (aliased "l" in getTaskTags)
+    private static final Pattern FULL_SCAN = Pattern.compile("^SCAN (TABLE )?(tasks|t|task_tags|l)( AS \\w+)?$");
+
+    private final List<String> captured = Collections.synchronizedList(new ArrayList<>());
+    private DatabaseHelper dbHelper;
+    private int today;
+    private String todayDate;
+
+    @Before
+    public void setUp() {
+        // Record the SQL of every cursor the helper opens
+        SQLiteDatabase.CursorFactory factory = (db, driver, editTable, query) -> {
+            captured.add(query.toString().replaceFirst("^SQLiteQuery: ", ""));
+            return new SQLiteCursor(driver, editTable, query);
+        };
+        dbHelper = new DatabaseHelper(ApplicationProvider.getApplicationContext(), null, factory);
+        // Every call must reach SQLite, not the query cache
+        dbHelper.getQueryCache().resize(0);
+        today = EpochDay.today();
+        todayDate = EpochDay.format(today);
+        TaskFixtures.seedAroundDay(dbHelper.getWritableDatabase(), TASK_COUNT, today);
+        dbHelper.insertRecurrence("Review", "Topic 3", 30, RecurrenceRule.DAILY, 1, 0,
+                EpochDay.format(today - 10), null, 0);
+        for (int id = 1; id <= 1_000; id++) {
+            dbHelper.setTaskTags(id, Arrays.asList("Tag " + id % 7, "Tag " + id % 11));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void singleTaskQueries_useThePrimaryKey() {
+        assertPlan("getTaskById", () -> dbHelper.getTaskById(TASK_COUNT / 2), "INTEGER PRIMARY KEY");
+        assertPlan("getTaskTags", () -> dbHelper.getTaskTags(500), "PRIMARY KEY");
+    }
+
+    @Test
+    public void dateAndStatusQueries_useTheirIndexes() {
+        assertPlan("getTasksByStatus", () -> dbHelper.getTasksByStatus("pending").close(), "idx_tasks_status_date");
+        assertPlan("getTasksDueTodayOrLater", () -> dbHelper.getTasksDueTodayOrLater(todayDate).close(),
+                "idx_tasks_sort_date", "idx_tasks_day_minutes");
+        assertPlan("getOverdueTasks", () -> dbHelper.getOverdueTasks(todayDate), "idx_tasks_pending_date");
+        assertPlan("countOverdueTasks", () -> dbHelper.countOverdueTasks(todayDate), "idx_tasks_pending_date");
+        assertPlan("getNextDueDate", () -> dbHelper.getNextDueDate(todayDate),
+                "idx_tasks_pending_date", "idx_tasks_status_date");
+        assertPlan("addDailyMinutes", () -> dbHelper.addDailyMinutes(todayDate, EpochDay.format(today + 30),
+                new int[31], new int[31]), "idx_tasks_day_minutes");
+        assertPlan("streamTasksByStatus", () -> {
+            try (TaskIterable tasks = dbHelper.streamTasksByStatus("completed")) {
+                tasks.iterator().next();
+            }
+        }, "INTEGER PRIMARY KEY", "idx_tasks_status_date");
+
+        fillArchive();
+        assertPlan("streamArchivedTasksByStatus", () -> {
+            try (TaskIterable tasks = dbHelper.streamArchivedTasksByStatus("completed")) {
+                tasks.iterator().next();
+            }
+        }, "INTEGER PRIMARY KEY");
+    }
+
+    @Test
+    public void homeQueries_useTheSortAndTopicIndexes() {
+        assertPlan("queryTasks default", () -> dbHelper.queryTasks(TaskQuery.dueTodayOrLater(todayDate),
+                null, TaskQuery.PAGE_SIZE), "idx_tasks_sort_date");
+
+        String[] sortIndexes = {"idx_tasks_sort_date", "idx_tasks_sort_duration", "idx_tasks_sort_name"};
+        for (TaskQuery.SortOrder sortOrder : TaskQuery.SortOrder.values()) {
+            TaskQuery query = new TaskQuery();
+            query.setSortOrder(sortOrder);
+            assertPlan("queryTasks by " + sortOrder, () -> dbHelper.queryTasks(query, null, TaskQuery.PAGE_SIZE),
+                    sortIndexes[sortOrder.ordinal()]);
+        }
+
+        TaskQuery byTopic = TaskQuery.dueTodayOrLater(todayDate);
+        byTopic.setTopic("Topic 7");
+        assertPlan("queryTaskIds by topic", () -> dbHelper.queryTaskIds(byTopic), "idx_tasks_topic_date");
+        assertPlan("getTopicCounts", () -> dbHelper.getTopicCounts().close(), "idx_tasks_topic_date");
+        assertPlan("getOccurrences", () -> dbHelper.getOccurrences(todayDate, EpochDay.format(today + 28)),
+                "idx_tasks_occurrence");
+        assertPlan("queryOccurrences", () -> dbHelper.queryOccurrences(TaskQuery.dueTodayOrLater(todayDate),
+                todayDate), "idx_tasks_occurrence");
+    }
+
+    @Test
+    public void boundedQueries_stayWithinBudget() {
+        double budgetMs = TaskFixtures.fullScanMillis(dbHelper, RUNS) * BUDGET_FRACTION;
+
+        assertWithinBudget("getTaskById", budgetMs, () -> dbHelper.getTaskById(TASK_COUNT / 2));
+        assertWithinBudget("getTaskTags", budgetMs, () -> dbHelper.getTaskTags(500));
+        assertWithinBudget("getNextDueDate", budgetMs, () -> dbHelper.getNextDueDate(todayDate));
+        assertWithinBudget("countOverdueTasks", budgetMs, () -> dbHelper.countOverdueTasks(todayDate));
+        assertWithinBudget("addDailyMinutes", budgetMs, () -> dbHelper.addDailyMinutes(todayDate,
+                EpochDay.format(today + 30), new int[31], new int[31]));
+        for (TaskQuery.SortOrder sortOrder : TaskQuery.SortOrder.values()) {
+            TaskQuery query = TaskQuery.dueTodayOrLater(todayDate);
+            query.setSortOrder(sortOrder);
+            assertWithinBudget("queryTasks by " + sortOrder, budgetMs,
+                    () -> dbHelper.queryTasks(query, null, TaskQuery.PAGE_SIZE));
+        }
+        assertWithinBudget("queryOccurrences", budgetMs,
+                () -> dbHelper.queryOccurrences(TaskQuery.dueTodayOrLater(todayDate), todayDate));
+
+        fillArchive();
+        assertWithinBudget("streamArchivedTasksByStatus", budgetMs, () -> {
+            try (TaskIterable tasks = dbHelper.streamArchivedTasksByStatus("completed")) {
+                tasks.iterator().next();
+            }
+        });
+    }
+
+    /**
+     * Copies the tasks completed over a month ago into the archive, leaving the live table as
+     * seeded. Once the archive exists, the queries that union it in read it too, so this runs
+     * after their checks.
+     */
+    private void fillArchive() {
+        dbHelper.attachArchive().execSQL("INSERT OR REPLACE INTO archive." + DatabaseHelper.TABLE_TASKS
+                + " SELECT * FROM main." + DatabaseHelper.TABLE_TASKS + " WHERE " + DatabaseHelper.STATUS
+                + " = 'completed' AND " + DatabaseHelper.DATE + " < ?", new Object[]{EpochDay.format(today - 30)});
+    }
+
+    /**
+     * Runs a query method and checks the plan of every statement it ran: together they
+     * must use one of the expected indexes, and none may scan the whole tasks table.
+     */
+    private void assertPlan(String label, Runnable call, String... expected) {
+        List<String> plan = explain(capture(call));
+        boolean usesIndex = false;
+        for (String line : plan) {
+            assertFalse(label + " scans the whole table:\n" + format(plan), FULL_SCAN.matcher(line).matches());
+            for (String index : expected) {
+                usesIndex |= line.contains(index);
+            }
+        }
+        assertTrue(label + " does not use " + Arrays.toString(expected) + ":\n" + format(plan), usesIndex);
+    }
+
+    private void assertWithinBudget(String label, double budgetMs, Runnable call) {
+        double medianMs = TaskFixtures.medianMillis(call, RUNS);
+        if (medianMs > budgetMs) {
+            fail(String.format("%s took %.2f ms, over the budget of %.2f ms:%n%s", label, medianMs, budgetMs,
+                    format(explain(capture(call)))));
+        }
+    }
+
+    private List<String> capture(Runnable call) {
+        captured.clear();
+        call.run();
+        List<String> statements = new ArrayList<>(captured);
+        captured.clear();
+        return statements;
+    }
+
+    /**
+     * Gets the EXPLAIN QUERY PLAN lines of some statements. The plan does not depend on the
+     * values bound, so every placeholder is bound to a dummy value.
+     */
+    private List<String> explain(List<String> statements) {
+        List<String> plan = new ArrayList<>();
+        for (String sql : statements) {
+            String[] args = new String[sql.length() - sql.replace("?", "").length()];
+            Arrays.fill(args, "0");
+            plan.add("-- " + sql);
+            Cursor cursor = dbHelper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+            cursor.close();
+        }
+        captured.clear();
+        return plan;
+    }
+
+    private static String format(List<String> plan) {
+        StringBuilder text = new StringBuilder();
+        for (String line : plan) {
+            text.append("  ").append(line).append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,42 @@
+package com.ezxuen.studytracker;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the tasks expanded from recurrence rules get ids that are negative, stable
+ * and different for every rule and day, however large the rule id.
+ */
+public class RecurrenceRuleTest {
+
+    @Test
+    public void virtualIds_areNegativeAndUnique() {
+        int today = EpochDay.parse("2026-10-19");
+        int[] ruleIds = {1, 2, 16383, 16384, 32767, 32768, 65536, 100_000, Integer.MAX_VALUE};
+        int[] days = {0, 1, today, today + 1, 0xFFFF, 0x10000, 0x10001};
+        Set<Integer> ids = new HashSet<>();
+        for (int ruleId : ruleIds) {
+            for (int day : days) {
+                int id = RecurrenceRule.virtualId(ruleId, day);
+                assertTrue("Rule " + ruleId + ", day " + day + " got id " + id, id < 0);
+                assertTrue("Rule " + ruleId + ", day " + day + " shares id " + id, ids.add(id));
+                assertEquals(id, RecurrenceRule.virtualId(ruleId, day));
+            }
+        }
+    }
+
+    @Test
+    public void occurrenceOfLargeRule_isVirtual() {
+        int day = EpochDay.parse("2026-10-19");
+        RecurrenceRule rule = new RecurrenceRule(40_000, "Review", "Math", 30, RecurrenceRule.DAILY,
+                1, 0, day, -1, 0);
+        Task task = rule.toTask(day);
+        assertTrue(task.isVirtual());
+        assertEquals(40_000, task.getRecurrenceId());
+        assertEquals(task.getId(), rule.toTask(day).getId());
+    }
+}
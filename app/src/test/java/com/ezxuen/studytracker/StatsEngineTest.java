@@ -0,0 +1,154 @@
+package com.ezxuen.studytracker;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the running statistics kept by StatsEngine on every task write match
+ * a full recomputation from the task rows.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+public class StatsEngineTest {
+    private static final String[] TOPICS = {"Math", "math ", "MATH", "Physics", "History", "Biology"};
+
+    private DatabaseHelper dbHelper;
+    private StatsEngine statsEngine;
+    private int today;
+
+    @Before
+    public void setUp() {
+        dbHelper = new DatabaseHelper(ApplicationProvider.getApplicationContext(), null);
+        statsEngine = dbHelper.getStatsEngine();
+        statsEngine.ensureBuilt();
+        today = EpochDay.today();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void completingTasks_updatesTotalsAndOnTimeRate() {
+        long onTime = dbHelper.insertTask("Algebra", "Math", "pending", 30, EpochDay.format(today + 1));
+        long late = dbHelper.insertTask("Optics", "Physics", "pending", 45, EpochDay.format(today - 3));
+        dbHelper.insertTask("Calculus", "math ", "completed", 20, EpochDay.format(today));
+        dbHelper.updateTaskStatus((int) onTime, "completed");
+        dbHelper.updateTaskStatus((int) late, "completed");
+
+        StudyStats stats = statsEngine.getStats(4, 10);
+        assertEquals(3, stats.getCompletedTasks());
+        assertEquals(2, stats.getOnTimeTasks());
+        assertEquals(95, stats.getTotalMinutes());
+        assertEquals(1, stats.getCurrentStreak());
+        assertEquals(1, stats.getLongestStreak());
+
+        // "Math" and "math " are one topic
+        assertEquals(2, stats.getTopics().size());
+        assertEquals(50, stats.getTopics().get(0).getMinutes());
+        assertEquals(95, stats.getWeeks().get(stats.getWeeks().size() - 1).getMinutes());
+
+        // Reopening and deleting take the tasks back out
+        dbHelper.updateTaskStatus((int) late, "pending");
+        dbHelper.deleteTask((int) onTime);
+        stats = statsEngine.getStats(4, 10);
+        assertEquals(1, stats.getCompletedTasks());
+        assertEquals(20, stats.getTotalMinutes());
+        assertTrue(statsEngine.verify());
+    }
+
+    @Test
+    public void computeStreaks_findsLongestAndLastRun() {
+        assertArrayEquals(new int[]{3, 12, 2}, StatsEngine.computeStreaks(Arrays.asList(1, 2, 3, 7, 11, 12)));
+        assertArrayEquals(new int[]{1, 5, 1}, StatsEngine.computeStreaks(Arrays.asList(1, 5)));
+        assertArrayEquals(new int[]{0, 0, 0}, StatsEngine.computeStreaks(new ArrayList<>()));
+    }
+
+    @Test
+    public void randomWrites_matchFullRecompute() {
+        Random random = new Random(7);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            ids.add((int) dbHelper.insertTask("Task " + i, randomTopic(random),
+                    random.nextBoolean() ? "completed" : "pending", 5 + random.nextInt(120), randomDate(random)));
+        }
+
+        Set<Integer> deleted = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            int id = ids.get(random.nextInt(ids.size()));
+            switch (random.nextInt(7)) {
+                case 0:
+                    dbHelper.updateTaskStatus(id, random.nextBoolean() ? "completed" : "pending");
+                    break;
+                case 1:
+                    dbHelper.updateTask(id, "Edited " + i, randomTopic(random), random.nextBoolean() ? "completed" : "pending",
+                            5 + random.nextInt(120), randomDate(random));
+                    break;
+                case 2:
+                    if (dbHelper.deleteTask(id)) {
+                        deleted.add(id);
+                    }
+                    break;
+                case 3:
+                    if (!deleted.isEmpty()) {
+                        int deletedId = deleted.iterator().next();
+                        dbHelper.restoreTask(deletedId);
+                        deleted.remove(deletedId);
+                    }
+                    break;
+                case 4:
+                    dbHelper.updateTasksStatus(randomIds(random, ids), random.nextBoolean() ? "completed" : "pending");
+                    break;
+                case 5:
+                    dbHelper.rescheduleTasks(randomIds(random, ids), randomDate(random));
+                    break;
+                default:
+                    Set<Integer> chosen = randomIds(random, ids);
+                    dbHelper.deleteTasks(chosen);
+                    dbHelper.restoreTasks(chosen);
+                    break;
+            }
+        }
+
+        assertTrue("running totals differ from a full recompute", statsEngine.verify());
+
+        // Recomputing leaves the same totals in place
+        StatsEngine.Aggregates before = statsEngine.loadStored();
+        statsEngine.recompute();
+        assertEquals(before, statsEngine.loadStored());
+    }
+
+    private String randomTopic(Random random) {
+        return TOPICS[random.nextInt(TOPICS.length)];
+    }
+
+    private String randomDate(Random random) {
+        return EpochDay.format(today - 30 + random.nextInt(60));
+    }
+
+    private Set<Integer> randomIds(Random random, List<Integer> ids) {
+        Set<Integer> chosen = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            chosen.add(ids.get(random.nextInt(ids.size())));
+        }
+        return chosen;
+    }
+}
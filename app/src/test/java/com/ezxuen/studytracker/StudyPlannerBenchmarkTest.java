@@ -0,0 +1,139 @@
+package com.ezxuen.studytracker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the study planner's deadline packing and benchmarks it on a 50k-task backlog.
+ * Re-planning after one task changes must be much cheaper than building the plan again,
+ * even in the worst case of a task due first, which re-walks the whole plan.
+ */
+public class StudyPlannerBenchmarkTest {
+    private static final int TASK_COUNT = 50_000;
+    private static final int DAILY_BUDGET = 240;
+    private static final int START_DAY = EpochDay.parse("2025-01-01");
+    private static final int RUNS = 15;
+    private static final int UPDATES = 500;
+
+    // A worst-case re-plan may take at most this share of the time of a full build
+    private static final double UPDATE_BUDGET_FRACTION = 0.2;
+
+    private int nextId = TASK_COUNT + 1;
+
+    @Test
+    public void packsTasksEarliestDueDateFirst() {
+        StudyPlanner planner = new StudyPlanner(60, START_DAY);
+        planner.setTasks(Arrays.asList(
+                new Task(1, "Essay", "English", "pending", 90, "2025-01-03"),
+                new Task(2, "Quiz", "Math", "pending", 30, "2025-01-01"),
+                new Task(3, "Lab", "Physics", "pending", 60, "2025-01-02")));
+
+        // Quiz (30) and half of Lab fill day 1; the rest of Lab and half of Essay fill day 2
+        assertEquals(2, planner.getDay(START_DAY).size());
+        assertEquals(30, planner.getDay(START_DAY).get(1).getMinutes());
+        assertEquals(START_DAY + 1, planner.getFinishDay(1));
+        assertEquals(START_DAY + 2, planner.getFinishDay(2));
+        assertEquals(0, planner.getLateCount());
+
+        // A task due today that does not fit makes itself late, and pushes the others
+        planner.update(null, new Task(4, "Exam prep", "Math", "pending", 120, "2025-01-01"));
+        assertEquals(START_DAY + 2, planner.getFinishDay(1));
+        assertTrue(planner.isLate(1));
+        assertEquals(3, planner.getLateCount());
+    }
+
+    @Test
+    public void incrementalUpdates_matchFullReplan() {
+        Random random = new Random(7);
+        List<Task> backlog = createBacklog(TASK_COUNT, random);
+        StudyPlanner planner = new StudyPlanner(DAILY_BUDGET, START_DAY);
+        planner.setTasks(backlog);
+
+        for (int i = 0; i < UPDATES; i++) {
+            applyRandomChange(planner, backlog, random);
+        }
+
+        StudyPlanner expected = new StudyPlanner(DAILY_BUDGET, START_DAY);
+        expected.setTasks(backlog);
+        assertEquals(expected.getTaskCount(), planner.getTaskCount());
+        assertEquals(expected.getLateCount(), planner.getLateCount());
+        for (int i = 0; i < expected.getTaskCount(); i++) {
+            assertEquals(expected.getTask(i).getId(), planner.getTask(i).getId());
+            assertEquals(expected.getFinishDay(i), planner.getFinishDay(i));
+        }
+    }
+
+    @Test
+    public void worstCaseUpdate_isCheaperThanFullPlan() {
+        Random random = new Random(42);
+        List<Task> backlog = createBacklog(TASK_COUNT, random);
+        StudyPlanner planner = new StudyPlanner(DAILY_BUDGET, START_DAY);
+        double fullMs = TaskFixtures.medianMillis(() -> planner.setTasks(backlog), RUNS);
+
+        // Moving a task to the start day and back puts it first, so each update re-walks every task
+        Task task = backlog.get(0);
+        Task first = new Task(task.getId(), task.getName(), task.getTopic(), "pending", 45,
+                EpochDay.format(START_DAY));
+        double updateMs = TaskFixtures.medianMillis(() -> {
+            planner.update(task, first);
+            planner.update(first, task);
+        }, UPDATES) / 2;
+
+        assertTrue(String.format("Re-planning from the first task took %.3f ms against %.2f ms for a full plan",
+                updateMs, fullMs), updateMs < fullMs * UPDATE_BUDGET_FRACTION);
+    }
+
+    /**
+     * Changes, adds, or completes a random task, both in the planner and in the backlog list.
+     */
+    private void applyRandomChange(StudyPlanner planner, List<Task> backlog, Random random) {
+        int index = random.nextInt(backlog.size());
+        Task before = backlog.get(index);
+        switch (random.nextInt(3)) {
+            case 0: {
+                // Reschedule and resize
+                Task after = new Task(before.getId(), before.getName(), before.getTopic(), "pending",
+                        15 + random.nextInt(8) * 15, randomDate(random));
+                backlog.set(index, after);
+                planner.update(before, after);
+                break;
+            }
+            case 1: {
+                Task added = new Task(nextId++, "New", "Topic",
+                        "pending", 30, randomDate(random));
+                backlog.add(added);
+                planner.update(null, added);
+                break;
+            }
+            default: {
+                Task completed = new Task(before.getId(), before.getName(), before.getTopic(), "completed",
+                        before.getDuration(), before.getDate());
+                backlog.remove(index);
+                planner.update(before, completed);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Creates pending tasks due over the next two years with 15 to 120 minute durations.
+     */
+    private static List<Task> createBacklog(int count, Random random) {
+        List<Task> backlog = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            backlog.add(new Task(i, "Task " + i, "Topic " + random.nextInt(20), "pending",
+                    15 + random.nextInt(8) * 15, randomDate(random)));
+        }
+        return backlog;
+    }
+
+    private static String randomDate(Random random) {
+        return EpochDay.format(START_DAY + random.nextInt(730));
+    }
+}
@@ -0,0 +1,248 @@
+package com.ezxuen.studytracker;
+
+import android.app.Application;
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Syncs two in-memory databases through an in-process fake server and checks that they
+ * converge, field by field, including after interrupted pushes and pulls.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+public class SyncEngineTest {
+    private FakeSyncServer server;
+    private DatabaseHelper phone;
+    private DatabaseHelper tablet;
+    private String today;
+
+    @Before
+    public void setUp() {
+        server = new FakeSyncServer();
+        phone = new DatabaseHelper(ApplicationProvider.getApplicationContext(), null);
+        tablet = new DatabaseHelper(ApplicationProvider.getApplicationContext(), null);
+        phone.getStatsEngine().ensureBuilt();
+        tablet.getStatsEngine().ensureBuilt();
+        today = EpochDay.format(EpochDay.today());
+    }
+
+    @After
+    public void tearDown() {
+        phone.close();
+        tablet.close();
+    }
+
+    @Test
+    public void concurrentEdits_mergePerField() throws IOException {
+        int phoneId = (int) phone.insertTask("Algebra", "Math", "pending", 30, today);
+        sync(phone);
+        sync(tablet);
+        int tabletId = findId(tablet, "Algebra");
+        assertNotEquals(-1, tabletId);
+
+        // Each device edits a different field of the same task
+        phone.updateTask(phoneId, "Linear algebra", "Math", "pending", 30, today);
+        tablet.updateTaskStatus(tabletId, "completed");
+        sync(phone);
+        sync(tablet);
+        sync(phone);
+
+        for (DatabaseHelper db : new DatabaseHelper[]{phone, tablet}) {
+            Task task = db.getTaskById(findId(db, "Linear algebra"));
+            assertEquals("completed", task.getStatus());
+            assertEquals(30, task.getDuration());
+        }
+        assertTrue(tablet.getStatsEngine().verify());
+
+        // The same field written on both devices keeps the later write
+        phone.updateTask(phoneId, "Linear algebra", "Math", "completed", 45, today);
+        long later = System.currentTimeMillis() + 60_000;
+        tablet.getChangeLog().setWallClock(() -> later);
+        tablet.updateTask(tabletId, "Linear algebra", "Math", "completed", 60, today);
+        sync(phone);
+        sync(tablet);
+        sync(phone);
+        assertEquals(60, phone.getTaskById(phoneId).getDuration());
+        assertEquals(60, tablet.getTaskById(tabletId).getDuration());
+    }
+
+    @Test
+    public void deletes_andAcknowledgedChanges_areCompacted() throws IOException {
+        int id = (int) phone.insertTask("Optics", "Physics", "pending", 20, today);
+        for (int i = 0; i < 10; i++) {
+            phone.updateTask(id, "Optics " + i, "Physics", "pending", 20, today);
+        }
+
+        // Repeated writes to a field leave a single log row per field
+        assertEquals(ChangeLog.FIELDS.length, countLog(phone));
+        sync(phone);
+        assertEquals(0, countLog(phone));
+
+        sync(tablet);
+        int tabletId = findId(tablet, "Optics 9");
+        assertTrue(tablet.deleteTask(tabletId));
+        sync(tablet);
+        sync(phone);
+        assertNull(phone.getTaskById(id));
+    }
+
+    @Test
+    public void interruptedSync_resumes() throws IOException {
+        for (int i = 0; i < 25; i++) {
+            phone.insertTask("Task " + i, "History", i % 2 == 0 ? "completed" : "pending", 10 + i, today);
+        }
+        SyncEngine phoneEngine = new SyncEngine(phone, server, 10);
+        server.failAfter(2);
+        try {
+            phoneEngine.sync();
+            fail("sync should have been interrupted");
+        } catch (IOException expected) {
+            // Two batches were stored before the connection dropped
+        }
+        assertEquals(20, server.size());
+
+        // Only the changes that were not acknowledged are pushed again
+        phoneEngine.sync();
+        int stored = server.size();
+        assertEquals(25 * ChangeLog.FIELDS.length, stored);
+
+        SyncEngine tabletEngine = new SyncEngine(tablet, server, 10);
+        server.failAfter(3);
+        try {
+            tabletEngine.sync();
+            fail("sync should have been interrupted");
+        } catch (IOException expected) {
+            // The batches applied before the failure are kept with their cursor
+        }
+
+        // The task cut off by the failure is hidden until the rest of its fields arrive
+        int pulledTasks = 30 / ChangeLog.FIELDS.length;
+        assertEquals(pulledTasks, count(tablet, DatabaseHelper.NOT_DELETED));
+        assertEquals(0, count(tablet, DatabaseHelper.NAME + " = '' AND " + DatabaseHelper.NOT_DELETED));
+        tabletEngine.sync();
+        assertEquals(25, count(tablet, DatabaseHelper.NOT_DELETED));
+
+        // Pulled changes are not logged again, and the tablet has every task
+        assertEquals(stored, server.size());
+        for (int i = 0; i < 25; i++) {
+            Task task = tablet.getTaskById(findId(tablet, "Task " + i));
+            assertEquals(10 + i, task.getDuration());
+        }
+        assertEquals(phone.getStatsEngine().getStats(4, 10).getTotalMinutes(),
+                tablet.getStatsEngine().getStats(4, 10).getTotalMinutes());
+        assertTrue(tablet.getStatsEngine().verify());
+    }
+
+    @Test
+    public void invalidValues_areSkipped() throws IOException {
+        int phoneId = (int) phone.insertTask("Algebra", "Math", "pending", 30, today);
+        sync(phone);
+        String uid = findUid(phone, phoneId);
+        long clock = System.currentTimeMillis() + 60_000;
+        server.push(Arrays.asList(
+                new SyncTransport.Change(1, uid, DatabaseHelper.DATE, "2025-02-30", clock, "other"),
+                new SyncTransport.Change(2, uid, DatabaseHelper.STATUS, "archived", clock, "other"),
+                new SyncTransport.Change(3, uid, DatabaseHelper.DURATION, "-5", clock, "other"),
+                new SyncTransport.Change(4, uid, DatabaseHelper.NAME, "Linear algebra", clock, "other")));
+        sync(tablet);
+        sync(phone);
+
+        // Only the valid change is applied on either device
+        for (DatabaseHelper db : new DatabaseHelper[]{phone, tablet}) {
+            Task task = db.getTaskById(findId(db, "Linear algebra"));
+            assertEquals(today, task.getDate());
+            assertEquals("pending", task.getStatus());
+            assertEquals(30, task.getDuration());
+        }
+    }
+
+    private void sync(DatabaseHelper db) throws IOException {
+        new SyncEngine(db, server, 4).sync();
+    }
+
+    private int findId(DatabaseHelper db, String name) {
+        Cursor cursor = db.getReadableDatabase().rawQuery("SELECT " + DatabaseHelper.ID + " FROM "
+                + DatabaseHelper.TABLE_TASKS + " WHERE " + DatabaseHelper.NAME + " = ?", new String[]{name});
+        int id = cursor.moveToFirst() ? cursor.getInt(0) : -1;
+        cursor.close();
+        return id;
+    }
+
+    private String findUid(DatabaseHelper db, int id) {
+        Cursor cursor = db.getReadableDatabase().rawQuery("SELECT " + DatabaseHelper.UID + " FROM "
+                + DatabaseHelper.TABLE_TASKS + " WHERE " + DatabaseHelper.ID + " = ?", new String[]{String.valueOf(id)});
+        String uid = cursor.moveToFirst() ? cursor.getString(0) : null;
+        cursor.close();
+        return uid;
+    }
+
+    private int count(DatabaseHelper db, String condition) {
+        Cursor cursor = db.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_TASKS
+                + " WHERE " + condition, null);
+        int count = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        cursor.close();
+        return count;
+    }
+
+    private int countLog(DatabaseHelper db) {
+        Cursor cursor = db.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + ChangeLog.TABLE_CHANGE_LOG, null);
+        int count = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        cursor.close();
+        return count;
+    }
+
+    /**
+     * A sync server kept in memory: one ordered log of every pushed change.
+     * Requests can be made to fail, to simulate a dropped connection.
+     */
+    private static class FakeSyncServer implements SyncTransport {
+        private final List<Change> log = new ArrayList<>();
+        private int requestsLeft = -1;
+
+        void failAfter(int requests) {
+            requestsLeft = requests;
+        }
+
+        int size() {
+            return log.size();
+        }
+
+        @Override
+        public void push(List<Change> changes) throws IOException {
+            request();
+            log.addAll(changes);
+        }
+
+        @Override
+        public PullResult pull(long cursor, int limit) throws IOException {
+            request();
+            int end = (int) Math.min(cursor + limit, log.size());
+            return new PullResult(new ArrayList<>(log.subList((int) cursor, end)), end, end < log.size());
+        }
+
+        private void request() throws IOException {
+            if (requestsLeft == 0) {
+                requestsLeft = -1;
+                throw new IOException("connection lost");
+            }
+            if (requestsLeft > 0) {
+                requestsLeft--;
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.ezxuen.studytracker;
+
+import android.app.Application;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks tag filters over a 100k-task table: combined AND/OR/NOT filters must return
+ * exactly the tasks with matching tags, page without gaps, and answer the first page
+ * within the same share of a full table scan as the other Home queries.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+public class TagIndexTest {
+    private static final int TASK_COUNT = 100_000;
+    private static final int RUNS = 25;
+
+    // A first page may take at most this share of the time of a full table scan
+    private static final double BUDGET_FRACTION = 0.25;
+    private static final String[] TAGS = {"exam", "reading", "group", "draft", "lab", "essay"};
+
+    private DatabaseHelper dbHelper;
+    private boolean[][] tagged; // [task id][tag index]
+
+    @Before
+    public void setUp() {
+        dbHelper = new DatabaseHelper(ApplicationProvider.getApplicationContext(), null);
+        dbHelper.getQueryCache().resize(0);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        TaskFixtures.seed(db, TASK_COUNT);
+        tagged = seedTags(db, TASK_COUNT);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void combinedFilters_matchExactlyTheTaggedTasks() {
+        assertMatches("exam");
+        assertMatches("exam, reading");
+        assertMatches("reading | group");
+        assertMatches("exam, reading | group, -draft");
+        assertMatches("-draft, -lab");
+        assertMatches("EXAM, unknown | essay");
+
+        // Tag filters combine with the other filters
+        TaskQuery query = new TaskQuery();
+        query.setStatus("pending");
+        query.setTagFilter(TagFilter.parse("exam, -draft"));
+        Set<Integer> expected = expectedIds(query.getTagFilter());
+        expected.retainAll(queryIds("SELECT " + DatabaseHelper.ID + " FROM " + DatabaseHelper.TABLE_TASKS
+                + " WHERE " + DatabaseHelper.STATUS + " = 'pending'"));
+        assertEquals(expected, new HashSet<>(dbHelper.queryTaskIds(query)));
+    }
+
+    @Test
+    public void taggedPages_continueWithoutGaps() {
+        TaskQuery query = TaskQuery.dueTodayOrLater("2025-01-01");
+        query.setTagFilter(TagFilter.parse("exam, reading | group"));
+
+        List<Task> first = dbHelper.queryTasks(query, null, TaskQuery.PAGE_SIZE);
+        List<Task> second = dbHelper.queryTasks(query, first.get(first.size() - 1), TaskQuery.PAGE_SIZE);
+        List<Task> both = dbHelper.queryTasks(query, null, TaskQuery.PAGE_SIZE * 2);
+
+        assertEquals(TaskQuery.PAGE_SIZE * 2, both.size());
+        for (int i = 0; i < TaskQuery.PAGE_SIZE; i++) {
+            assertEquals(both.get(i).getId(), first.get(i).getId());
+            assertEquals(both.get(TaskQuery.PAGE_SIZE + i).getId(), second.get(i).getId());
+        }
+        assertTrue(dbHelper.queryOccurrences(query, "2025-01-01").isEmpty());
+    }
+
+    @Test
+    public void combinedFirstPage_isUnderBudget() {
+        TaskQuery query = TaskQuery.dueTodayOrLater("2025-01-01");
+        query.setStatus("pending");
+        query.setTagFilter(TagFilter.parse("exam, reading | group, -draft"));
+        // The first call loads the index; typing a filter only re-evaluates it
+        assertEquals(TaskQuery.PAGE_SIZE, dbHelper.queryTasks(query, null, TaskQuery.PAGE_SIZE).size());
+
+        double budgetMs = TaskFixtures.fullScanMillis(dbHelper, RUNS) * BUDGET_FRACTION;
+        double medianMs = TaskFixtures.medianMillis(() -> dbHelper.queryTasks(query, null, TaskQuery.PAGE_SIZE), RUNS);
+        assertTrue(String.format("tag filter took %.2f ms, over the budget of %.2f ms", medianMs, budgetMs),
+                medianMs < budgetMs);
+    }
+
+    @Test
+    public void tagEdits_updateTheIndex() {
+        TagIndex index = dbHelper.getTagIndex();
+        index.ensureLoaded();
+        int taskId = TASK_COUNT / 2;
+
+        // An existing tag is reused whatever its case; a new one is created
+        dbHelper.setTaskTags(taskId, TagFilter.parseTags("EXAM, Group work, exam"));
+        assertEquals(Arrays.asList("exam", "Group work"), dbHelper.getTaskTags(taskId));
+        assertEquals(Collections.singletonList(taskId), ids(index.match(TagFilter.parse("group work"))));
+        assertTrue(index.match(TagFilter.parse("exam")).get(taskId));
+        assertTrue(index.getTagNames().contains("Group work"));
+
+        dbHelper.setTaskTags(taskId, Collections.emptyList());
+        assertTrue(dbHelper.getTaskTags(taskId).isEmpty());
+        assertTrue(index.match(TagFilter.parse("group work")).isEmpty());
+        assertFalse(index.match(TagFilter.parse("exam")).get(taskId));
+        assertTrue(index.match(TagFilter.parse("-exam")).get(taskId));
+    }
+
+    @Test
+    public void taskSavedWithTags_notifiesOnceWithTheTagsInPlace() {
+        TagIndex index = dbHelper.getTagIndex();
+        index.ensureLoaded();
+        List<List<String>> tagsSeen = new ArrayList<>();
+        dbHelper.addTaskChangeListener(new DatabaseHelper.TaskChangeListener() {
+            @Override
+            public void onTaskChanged(Task before, Task after) {
+                tagsSeen.add(dbHelper.getTaskTags(after.getId()));
+            }
+
+            @Override
+            public void onTasksChanged() {
+                fail("A single task save reported a bulk change");
+            }
+        });
+
+        int taskId = (int) dbHelper.insertTask("Mock exam", "Topic 1", "pending", 60, "2025-03-01",
+                TagFilter.parseTags("exam, mock"));
+        assertTrue(dbHelper.updateTask(taskId, "Mock exam", "Topic 1", "pending", 90, "2025-03-02",
+                TagFilter.parseTags("mock")));
+
+        // Each save is one event, and the listener already reads the tags written with it
+        assertEquals(Arrays.asList(Arrays.asList("exam", "mock"), Collections.singletonList("mock")), tagsSeen);
+        assertEquals(Collections.singletonList(taskId), ids(index.match(TagFilter.parse("mock"))));
+        assertFalse(index.match(TagFilter.parse("exam")).get(taskId));
+    }
+
+    private void assertMatches(String filterText) {
+        TaskQuery query = new TaskQuery();
+        query.setTagFilter(TagFilter.parse(filterText));
+        List<Integer> actual = dbHelper.queryTaskIds(query);
+        List<Integer> expected = new ArrayList<>(expectedIds(query.getTagFilter()));
+        Collections.sort(expected);
+        assertEquals(filterText, expected, actual);
+    }
+
+    /**
+     * Evaluates a filter against the tags assigned by {@link #seedTags}, one task at a time.
+     */
+    private Set<Integer> expectedIds(TagFilter filter) {
+        List<String> names = Arrays.asList(TAGS);
+        Set<Integer> ids = new HashSet<>();
+        for (int id = 1; id <= TASK_COUNT; id++) {
+            boolean matches = true;
+            for (Set<String> anyOf : filter.getRequired()) {
+                boolean any = false;
+                for (String tag : anyOf) {
+                    int index = names.indexOf(tag);
+                    any |= index >= 0 && tagged[id][index];
+                }
+                matches &= any;
+            }
+            for (String tag : filter.getExcluded()) {
+                int index = names.indexOf(tag);
+                matches &= index < 0 || !tagged[id][index];
+            }
+            if (matches) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private Set<Integer> queryIds(String sql) {
+        Set<Integer> ids = new HashSet<>();
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery(sql, null);
+        while (cursor.moveToNext()) {
+            ids.add(cursor.getInt(0));
+        }
+        cursor.close();
+        return ids;
+    }
+
+    private static List<Integer> ids(BitSet bits) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    /**
+     * Gives every task each tag with a one in four chance; tags are created in order,
+     * so their ids are their index plus one.
+     */
+    private static boolean[][] seedTags(SQLiteDatabase db, int count) {
+        Random random = new Random(43);
+        boolean[][] tagged = new boolean[count + 1][TAGS.length];
+        SQLiteStatement link = db.compileStatement("INSERT INTO " + TagIndex.TABLE_TASK_TAGS + " ("
+                + TagIndex.TASK_ID + ", " + TagIndex.TAG_ID + ") VALUES (?, ?)");
+        db.beginTransaction();
+        try {
+            for (String tag : TAGS) {
+                db.execSQL("INSERT INTO " + TagIndex.TABLE_TAGS + " (" + DatabaseHelper.NAME + ") VALUES (?)",
+                        new Object[]{tag});
+            }
+            for (int id = 1; id <= count; id++) {
+                for (int tag = 0; tag < TAGS.length; tag++) {
+                    if (random.nextInt(4) == 0) {
+                        tagged[id][tag] = true;
+                        link.bindLong(1, id);
+                        link.bindLong(2, tag + 1);
+                        link.executeInsert();
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return tagged;
+    }
+}
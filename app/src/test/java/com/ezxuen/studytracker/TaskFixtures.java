@@ -0,0 +1,114 @@
+package com.ezxuen.studytracker;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Shared helpers for the database tests that seed large task tables and time queries.
+ * Timings are compared with a full scan of the tasks table measured on the same machine,
+ * not with a fixed number of milliseconds, so that the tests hold on slower or busy build
+ * machines.
+ */
+final class TaskFixtures {
+
+    private TaskFixtures() {
+    }
+
+    /**
+     * Measures the median time of a call, after one warm-up call that fills the statement
+     * cache and page cache.
+     * @param call The call to time.
+     * @param runs The number of timed runs.
+     * @return The median time in milliseconds.
+     */
+    static double medianMillis(Runnable call, int runs) {
+        call.run();
+        double[] timings = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            call.run();
+            timings[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(timings);
+        return timings[runs / 2];
+    }
+
+    /**
+     * Measures the median time of reading every row of the tasks table, which the
+     * index-backed queries must stay well under.
+     * @param dbHelper The database to scan.
+     * @param runs The number of timed runs.
+     * @return The median time in milliseconds.
+     */
+    static double fullScanMillis(DatabaseHelper dbHelper, int runs) {
+        // "+ 0" keeps SQLite from answering from an index
+        return medianMillis(() -> {
+            Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM "
+                    + DatabaseHelper.TABLE_TASKS + " WHERE " + DatabaseHelper.DURATION + " + 0 >= 0", null);
+            cursor.moveToFirst();
+            cursor.close();
+        }, runs);
+    }
+
+    /**
+     * Inserts synthetic tasks spread over two years, 20 topics, and both statuses.
+     */
+    static void seed(SQLiteDatabase db, int count) {
+        Random random = new Random(42);
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + DatabaseHelper.TABLE_TASKS + " ("
+                + DatabaseHelper.NAME + ", " + DatabaseHelper.TOPIC + ", " + DatabaseHelper.STATUS + ", "
+                + DatabaseHelper.DURATION + ", " + DatabaseHelper.DATE + ") VALUES (?, ?, ?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < count; i++) {
+                insert.bindString(1, "Task " + random.nextInt(1_000_000));
+                insert.bindString(2, "Topic " + random.nextInt(20));
+                insert.bindString(3, random.nextInt(10) < 7 ? "pending" : "completed");
+                insert.bindLong(4, 15 + random.nextInt(12) * 15);
+                insert.bindString(5, String.format("%04d-%02d-%02d",
+                        2024 + random.nextInt(2), 1 + random.nextInt(12), 1 + random.nextInt(28)));
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Inserts synthetic tasks due from two months before a day to two years after, over
+     * 20 topics and both statuses; one in ten is soft-deleted.
+     * @param db The database to fill.
+     * @param count The number of tasks.
+     * @param today The day the dates are spread around, as an epoch day.
+     */
+    static void seedAroundDay(SQLiteDatabase db, int count, int today) {
+        Random random = new Random(41);
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + DatabaseHelper.TABLE_TASKS + " ("
+                + DatabaseHelper.NAME + ", " + DatabaseHelper.TOPIC + ", " + DatabaseHelper.STATUS + ", "
+                + DatabaseHelper.DURATION + ", " + DatabaseHelper.DATE + ", " + DatabaseHelper.DELETED_AT
+                + ") VALUES (?, ?, ?, ?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < count; i++) {
+                insert.clearBindings();
+                insert.bindString(1, "Task " + random.nextInt(1_000_000));
+                insert.bindString(2, "Topic " + random.nextInt(20));
+                insert.bindString(3, random.nextInt(10) < 7 ? "pending" : "completed");
+                insert.bindLong(4, 15 + random.nextInt(12) * 15);
+                insert.bindString(5, EpochDay.format(today - 60 + random.nextInt(790)));
+                if (random.nextInt(10) == 0) {
+                    insert.bindLong(6, System.currentTimeMillis());
+                }
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
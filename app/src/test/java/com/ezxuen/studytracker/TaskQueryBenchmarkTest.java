@@ -0,0 +1,97 @@
+package com.ezxuen.studytracker;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmarks sorting and filtering the Home list in SQL over a 100k-task table.
+ * Re-sorting only re-queries the first page, which must take a small fraction of the time
+ * of a full table scan on the same machine, and must also meet the absolute 10 ms target
+ * for a re-sort at this table size.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+public class TaskQueryBenchmarkTest {
+    private static final int TASK_COUNT = 100_000;
+    private static final int RUNS = 25;
+
+    // A first page may take at most this share of the time of a full table scan
+    private static final double BUDGET_FRACTION = 0.25;
+
+    // The re-sort target at TASK_COUNT rows, whatever the speed of the machine
+    private static final double TARGET_MS = 10;
+
+    private DatabaseHelper dbHelper;
+    private double budgetMs;
+
+    @Before
+    public void setUp() {
+        dbHelper = new DatabaseHelper(ApplicationProvider.getApplicationContext(), null);
+        // Measure the queries themselves, not the query cache
+        dbHelper.getQueryCache().resize(0);
+        TaskFixtures.seed(dbHelper.getWritableDatabase(), TASK_COUNT);
+        budgetMs = TaskFixtures.fullScanMillis(dbHelper, RUNS) * BUDGET_FRACTION;
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void resortFirstPage_isUnderBudget() {
+        for (TaskQuery.SortOrder sortOrder : TaskQuery.SortOrder.values()) {
+            TaskQuery query = TaskQuery.dueTodayOrLater("2025-01-01");
+            query.setSortOrder(sortOrder);
+            assertUnderBudget("sort by " + sortOrder, query);
+        }
+    }
+
+    @Test
+    public void filteredFirstPage_isUnderBudget() {
+        TaskQuery query = TaskQuery.dueTodayOrLater("2025-01-01");
+        query.setTopic("Topic 7");
+        query.setStatus("pending");
+        query.setToDate("2025-12-31");
+        for (TaskQuery.SortOrder sortOrder : TaskQuery.SortOrder.values()) {
+            query.setSortOrder(sortOrder);
+            assertUnderBudget("filtered sort by " + sortOrder, query);
+        }
+    }
+
+    @Test
+    public void keysetPages_followSortOrderWithoutGaps() {
+        TaskQuery query = TaskQuery.dueTodayOrLater("2025-01-01");
+        query.setSortOrder(TaskQuery.SortOrder.DURATION);
+
+        List<Task> first = dbHelper.queryTasks(query, null, TaskQuery.PAGE_SIZE);
+        List<Task> second = dbHelper.queryTasks(query, first.get(first.size() - 1), TaskQuery.PAGE_SIZE);
+        List<Task> both = dbHelper.queryTasks(query, null, TaskQuery.PAGE_SIZE * 2);
+
+        for (int i = 0; i < TaskQuery.PAGE_SIZE; i++) {
+            assertEquals(both.get(i).getId(), first.get(i).getId());
+            assertEquals(both.get(TaskQuery.PAGE_SIZE + i).getId(), second.get(i).getId());
+        }
+    }
+
+    private void assertUnderBudget(String label, TaskQuery query) {
+        assertFalse(label + " returned no tasks", dbHelper.queryTasks(query, null, TaskQuery.PAGE_SIZE).isEmpty());
+        double medianMs = TaskFixtures.medianMillis(() -> dbHelper.queryTasks(query, null, TaskQuery.PAGE_SIZE), RUNS);
+        String timing = String.format("%s took %.2f ms (budget %.2f ms, target %.0f ms at %d rows)",
+                label, medianMs, budgetMs, TARGET_MS, TASK_COUNT);
+        assertTrue(timing + ": over the budget", medianMs < budgetMs);
+        assertTrue(timing + ": over the target", medianMs < TARGET_MS);
+    }
+}
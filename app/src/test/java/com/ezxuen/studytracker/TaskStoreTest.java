@@ -0,0 +1,153 @@
+package com.ezxuen.studytracker;
+
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that TaskStore behaves like a list of tasks, that its views follow their rows,
+ * and measures its retained heap against an ArrayList of Task objects with JOL.
+ */
+public class TaskStoreTest {
+    private static final int TASK_COUNT = 100_000;
+
+    // The store must take at most this share of the heap of the equivalent ArrayList
+    private static final double MAX_HEAP_FRACTION = 1 / 3.0;
+
+    // estimateBytes() may differ from the measured size by at most this share
+    private static final double ESTIMATE_TOLERANCE = 0.25;
+
+    @Test
+    public void randomEdits_matchAnArrayList() {
+        Random random = new Random(44);
+        List<Task> expected = new ArrayList<>();
+        TaskStore store = new TaskStore();
+        for (int i = 0; i < 5_000; i++) {
+            int op = random.nextInt(10);
+            if (op < 5 || expected.isEmpty()) {
+                int index = random.nextInt(expected.size() + 1);
+                Task task = newTask(random, i + 1);
+                expected.add(index, task);
+                store.add(index, task);
+            } else if (op < 7) {
+                int index = random.nextInt(expected.size());
+                Task task = newTask(random, i + 1);
+                assertSameTask(expected.set(index, task), store.set(index, task));
+            } else if (op < 9) {
+                int index = random.nextInt(expected.size());
+                assertSameTask(expected.remove(index), store.remove(index));
+            } else {
+                int index = random.nextInt(expected.size());
+                String status = random.nextBoolean() ? "completed" : "pending";
+                expected.get(index).setStatus(status);
+                store.get(index).setStatus(status);
+            }
+        }
+        assertEquals(expected.size(), store.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameTask(expected.get(i), store.get(i));
+        }
+        store.clear();
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    public void views_followTheirRow() {
+        TaskStore store = new TaskStore();
+        store.add(new Task(1, "Algebra", "Math", "pending", 30, "2025-01-01"));
+        Task occurrence = new Task(-65537, "Review", "Math", "pending", 15, "2025-01-02");
+        occurrence.setOccurrence(1, "2025-01-02");
+        store.add(occurrence);
+
+        Task view = store.get(0);
+        view.setStatus("completed");
+        assertEquals("completed", store.get(0).getStatus());
+        assertTrue(store.get(1).isVirtual());
+        assertEquals("2025-01-02", store.get(1).getOccurrenceDate());
+
+        // Rows inserted before the viewed one, or a reload of the same tasks, do not confuse the view
+        store.add(0, new Task(2, "Optics", null, "pending", 20, "2025-02-01"));
+        assertEquals("Algebra", view.getName());
+        assertNull(store.get(0).getTopic());
+        List<Task> reloaded = new ArrayList<>();
+        for (Task task : store) {
+            reloaded.add(task.copy());
+        }
+        store.clear();
+        store.addAll(reloaded.subList(1, 3));
+        assertEquals("completed", view.getStatus());
+        assertEquals("2025-01-01", view.getDate());
+
+        store.remove(0);
+        assertNull(view.getName());
+
+        // A copy of a removed row's view has no date, and can still be stored
+        store.add(view.copy());
+        assertNull(store.get(store.size() - 1).getDate());
+    }
+
+    @Test
+    public void unknownStatuses_areKept() {
+        TaskStore store = new TaskStore();
+        store.add(new Task(1, "Algebra", "Math", "archived", 30, "2025-01-01"));
+        store.add(new Task(2, "Optics", "Physics", null, 20, "2025-01-02"));
+        store.add(new Task(3, "Essay", "History", "completed", 60, "2025-01-03"));
+        assertEquals("archived", store.get(0).getStatus());
+        assertNull(store.get(1).getStatus());
+
+        // A known status replaces the unknown one, and rows after a removed one keep theirs
+        store.get(0).setStatus("completed");
+        assertEquals("completed", store.get(0).getStatus());
+        store.get(0).setStatus("pending");
+        assertEquals("pending", store.get(0).getStatus());
+        assertSameTask(new Task(2, "Optics", "Physics", null, 20, "2025-01-02"), store.remove(1));
+        assertEquals("completed", store.get(1).getStatus());
+    }
+
+    @Test
+    public void heapPerTask_isSeveralTimesSmaller() {
+        List<Task> list = load(new ArrayList<>());
+        TaskStore store = (TaskStore) load(new TaskStore());
+        assertEquals(TASK_COUNT, store.size());
+
+        // Retained sizes of the whole object graphs, as laid out by this JVM
+        long listBytes = GraphLayout.parseInstance(list).totalSize();
+        long storeBytes = GraphLayout.parseInstance(store).totalSize();
+        assertTrue("TaskStore takes " + storeBytes + " bytes against " + listBytes,
+                storeBytes < listBytes * MAX_HEAP_FRACTION);
+
+        // The store's own estimate stays close to what it really takes
+        assertEquals(storeBytes, store.estimateBytes(), storeBytes * ESTIMATE_TOLERANCE);
+    }
+
+    /**
+     * Adds synthetic tasks as they come out of a cursor: every string is a new instance.
+     */
+    private static List<Task> load(List<Task> list) {
+        Random random = new Random(45);
+        for (int i = 1; i <= TASK_COUNT; i++) {
+            list.add(newTask(random, i));
+        }
+        return list;
+    }
+
+    private static Task newTask(Random random, int id) {
+        return new Task(id, "Task " + random.nextInt(1_000_000), "Topic " + random.nextInt(20),
+                new String(random.nextInt(10) < 7 ? "pending" : "completed"), 15 + random.nextInt(12) * 15,
+                EpochDay.format(EpochDay.parse("2025-01-01") + random.nextInt(730)));
+    }
+
+    private static void assertSameTask(Task expected, Task actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getTopic(), actual.getTopic());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getDuration(), actual.getDuration());
+        assertEquals(expected.getDate(), actual.getDate());
+    }
+}
@@ -0,0 +1,80 @@
+package com.ezxuen.studytracker;
+
+import android.app.Application;
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the widget summary counts only today's pending tasks and occurrences, and
+ * that it survives being stored and read back.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+public class TodaySummaryTest {
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private int today;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        dbHelper = new DatabaseHelper(context, null);
+        today = EpochDay.today();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void compute_countsTodaysPendingTasksAndOccurrences() {
+        String todayDate = EpochDay.format(today);
+        assertEquals(new TodaySummary(today, 0, 0, null, null), TodaySummary.compute(dbHelper, today));
+
+        long first = dbHelper.insertTask("Algebra", "Math", "pending", 30, todayDate);
+        dbHelper.insertTask("Optics", "Physics", "pending", 45, todayDate);
+        dbHelper.insertTask("Essay", "History", "completed", 60, todayDate);
+        dbHelper.insertTask("Tomorrow", "Math", "pending", 20, EpochDay.format(today + 1));
+        dbHelper.insertTask("Yesterday", "Math", "pending", 20, EpochDay.format(today - 1));
+        long deleted = dbHelper.insertTask("Deleted", "Math", "pending", 90, todayDate);
+        dbHelper.deleteTask((int) deleted);
+        dbHelper.insertRecurrence("Review", "Biology", 15, RecurrenceRule.DAILY, 1, 0, todayDate, null, 0);
+
+        TodaySummary summary = TodaySummary.compute(dbHelper, today);
+        assertEquals(3, summary.getPendingCount());
+        assertEquals(90, summary.getPlannedMinutes());
+        assertEquals("Algebra", summary.getNextName());
+        assertEquals("Math", summary.getNextTopic());
+
+        // Completing the next task moves on to the following one
+        dbHelper.updateTaskStatus((int) first, "completed");
+        summary = TodaySummary.compute(dbHelper, today);
+        assertEquals(2, summary.getPendingCount());
+        assertEquals(60, summary.getPlannedMinutes());
+        assertEquals("Optics", summary.getNextName());
+    }
+
+    @Test
+    public void saveAndLoad_roundTrip() {
+        TodaySummary.clear(context);
+        assertNull(TodaySummary.load(context));
+
+        TodaySummary summary = new TodaySummary(today, 2, 75, "Algebra", null);
+        summary.save(context);
+        assertEquals(summary, TodaySummary.load(context));
+
+        TodaySummary.clear(context);
+        assertNull(TodaySummary.load(context));
+    }
+}